@@ -17,9 +17,18 @@ package org.trpr.dataaccess.hbase;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
@@ -41,11 +50,11 @@ import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.coprocessor.Batch;
 import org.apache.hadoop.hbase.ipc.CoprocessorProtocol;
 import org.apache.hadoop.hbase.util.Bytes;
-import org.apache.hadoop.hbase.util.PoolMap;
 import org.apache.hadoop.hbase.util.PoolMap.PoolType;
 import org.trpr.dataaccess.hbase.auth.AuthenticationProvider;
 import org.trpr.platform.core.impl.logging.LogFactory;
 import org.trpr.platform.core.spi.logging.Logger;
+import org.trpr.platform.core.spi.persistence.PersistenceException;
 
 
 /**
@@ -55,9 +64,17 @@ import org.trpr.platform.core.spi.logging.Logger;
  * 
  * This implementation has the following additional capabilities:
  * <pre><ul>
- * <li>Cycles through all existing connections in the pool using a background thread and keeps them active by executing a 'ping' query</li>
+ * <li>Cycles through all idle connections in the pool using a scheduled background task and keeps them active by executing a 'ping' query</li>
  * <li>Authenticates using the specified {@link AuthenticationProvider}, if one exists, when new connections are created</li>
+ * <li>Keeps idle tables in a lock-free queue per table name. As in the original implementation, the max size bounds the number of idle tables
+ * retained per table name and tables returned in excess of it are released</li>
+ * <li>Bounds the number of tables checked out per table name to {@link #getMaxCheckedOut()}, {@link #DEFAULT_MAX_CHECKED_OUT} by default. Callers 
+ * wait up to {@link #getMaxWaitMillis()} when the limit is reached</li>
+ * <li>Wraps each table in a single {@link PooledHTable} that is reused across checkouts. Each checkout is stamped on the wrapper, so that closing
+ * the wrapper more than once for a checkout returns its table only once</li>
+ * <li>Keeps counts of checkouts, waits, timeouts and created tables</li>
  * </ul><pre>
+ * The pool type is retained for compatibility and is ignored i.e. all pools behave as {@link PoolType#Reusable}
  * @author Regunath B
  * @version 1.0, 08 Jan 2014
  * 
@@ -68,18 +85,36 @@ public class HTablePool implements Closeable {
 	/** The Log instance for this class */
 	private static final Logger LOGGER = LogFactory.getLogger(HTablePool.class);
 	
+	/** The default time to wait for a table when the pool is exhausted*/
+	public static final long DEFAULT_MAX_WAIT_MILLIS = 10000L;
+	
+	/** The default max number of tables checked out per table name*/
+	public static final int DEFAULT_MAX_CHECKED_OUT = 100;
+	
 	/** Protected non-final member variables providing access to modify implementation by sub-types, if needed*/
-	protected PoolMap<String, HTableInterface> tables;
+	protected Map<String, TableQueue> tables = new ConcurrentHashMap<String, TableQueue>();
 	protected int maxSize;
 	protected PoolType poolType;
 	protected Configuration config;
 	protected HTableInterfaceFactory tableFactory;
+	protected long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+	protected int maxCheckedOut = DEFAULT_MAX_CHECKED_OUT;
 	
 	/**The connection validity check interval in minutes*/
 	protected Integer callConnectionValidityCheckMinutes; 
 	
 	/** The AuthenticationProvider to use prior to creating connections*/
 	protected AuthenticationProvider authenticationProvider;
+	
+	/** The executor running the connection validity check, if turned on*/
+	protected ScheduledExecutorService connectionValidatorExecutor;
+	
+	/** Pool metrics*/
+	private final LongAdder checkoutCount = new LongAdder();
+	private final LongAdder waitCount = new LongAdder();
+	private final LongAdder timeoutCount = new LongAdder();
+	private final LongAdder createdCount = new LongAdder();
+	private final LongAdder releasedCount = new LongAdder();
 
 	/** Constructors from the original implementation*/
 	public HTablePool() {
@@ -103,77 +138,123 @@ public class HTablePool implements Closeable {
 		this.maxSize = maxSize;
 		this.tableFactory = tableFactory == null ? new HTableFactory() : tableFactory;
 		this.callConnectionValidityCheckMinutes = callConnectionValidityCheckMinutes;
-		if (poolType == null) {
-			this.poolType = PoolType.Reusable;
-		} else {
-			switch (poolType) {
-			case Reusable:
-			case ThreadLocal:
-				this.poolType = poolType;
-				break;
-			default:
-				this.poolType = PoolType.Reusable;
-				break;
-			}
-		}
-		this.tables = new PoolMap<String, HTableInterface>(this.poolType,this.maxSize);
-		// create and start the connection pool validator thread if connection validity check is turned on i.e. is not null
+		this.poolType = PoolType.Reusable;
+		// schedule the connection validity check if it is turned on i.e. is not null
 		if (this.getCallConnectionValidityCheckMinutes() != null) {
-			new ConnectionValidator(this);
+			final String threadName = "HTablePoolValidator_" + this.hashCode();
+			this.connectionValidatorExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, threadName);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			long intervalMinutes = this.getCallConnectionValidityCheckMinutes();
+			this.connectionValidatorExecutor.scheduleWithFixedDelay(new ConnectionValidator(), intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
 		}
 	}
 
 	/** Methods copied from original implementation, private methods are made proptected to permit overriding by sub-types*/
+	/**
+	 * Checks out a table from the pool, creating one if no idle table exists. Waits up to {@link #getMaxWaitMillis()} for a table to be returned 
+	 * if {@link #getMaxCheckedOut()} tables are checked out for the table name.
+	 * @throws PersistenceException if no table became available within the max wait time
+	 */
 	public HTableInterface getTable(String tableName) {
-		HTableInterface table = findOrCreateTable(tableName);
-		return new PooledHTable(table);
+		TableQueue tableQueue = this.findOrCreateTableQueue(tableName);
+		this.checkoutCount.increment();
+		if (!tableQueue.permits.tryAcquire()) {
+			this.waitCount.increment();
+			try {
+				if (!tableQueue.permits.tryAcquire(this.maxWaitMillis, TimeUnit.MILLISECONDS)) {
+					this.timeoutCount.increment();
+					throw new PersistenceException("Timed out after " + this.maxWaitMillis + " ms waiting for a table from the pool for : " + tableName);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new PersistenceException("Interrupted while waiting for a table from the pool for : " + tableName, e);
+			}
+		}
+		PooledHTable pooledTable = pollIdleTable(tableQueue);
+		if (pooledTable == null) {
+			try {
+				pooledTable = new PooledHTable(tableQueue, createHTable(tableName));
+			} catch (RuntimeException e) {
+				tableQueue.permits.release();
+				throw e;
+			}
+			this.createdCount.increment();
+		}
+		pooledTable.checkout();
+		return pooledTable;
 	}	
 	public HTableInterface getTable(byte[] tableName) {
 		return getTable(Bytes.toString(tableName));
 	}
 	public void putTable(HTableInterface table) throws IOException {
 		if (table instanceof PooledHTable) {
-			returnTable(((PooledHTable) table).getWrappedTable());
+			table.close();
 		} else {
 			throw new IllegalArgumentException("not a pooled table: " + table);
 		}
 	}
+	/**
+	 * Releases all idle tables for the specified table name. Tables checked out at the time are released when they are returned.
+	 */
 	public void closeTablePool(final String tableName) throws IOException {
-		Collection<HTableInterface> tables = this.tables.values(tableName);
-		if (tables != null) {
-			for (HTableInterface table : tables) {
-				this.tableFactory.releaseHTableInterface(table);
-			}
+		TableQueue tableQueue = this.tables.remove(tableName);
+		if (tableQueue != null) {
+			tableQueue.closed = true;
+			releaseIdleTables(tableQueue);
 		}
-		this.tables.remove(tableName);
 	}
 	public void closeTablePool(final byte[] tableName) throws IOException {
 		closeTablePool(Bytes.toString(tableName));
 	}
 	public void close() throws IOException {
+		if (this.connectionValidatorExecutor != null) {
+			this.connectionValidatorExecutor.shutdownNow();
+		}
 		for (String tableName : tables.keySet()) {
 			closeTablePool(tableName);
 		}
-		this.tables.clear();
 	}
 	int getCurrentPoolSize(String tableName) {
-		return tables.size(tableName);
+		TableQueue tableQueue = this.tables.get(tableName);
+		return tableQueue == null ? 0 : tableQueue.idleCount.get();
 	}	
-	protected HTableInterface findOrCreateTable(String tableName) {
-		HTableInterface table = tables.get(tableName);
-		if (table == null) {
-			table = createHTable(tableName);
+	protected TableQueue findOrCreateTableQueue(String tableName) {
+		TableQueue tableQueue = this.tables.get(tableName);
+		if (tableQueue == null) {
+			TableQueue newTableQueue = new TableQueue(this.maxCheckedOut);
+			tableQueue = ((ConcurrentHashMap<String, TableQueue>)this.tables).putIfAbsent(tableName, newTableQueue);
+			if (tableQueue == null) {
+				tableQueue = newTableQueue;
+			}
 		}
-		return table;
+		return tableQueue;
 	}
-	protected void returnTable(HTableInterface table) throws IOException {
-		String tableName = Bytes.toString(table.getTableName());
-		if (tables.size(tableName) >= maxSize) {
-			this.tables.remove(tableName, table);
-			this.tableFactory.releaseHTableInterface(table);
-			return;
-		}
-		tables.put(tableName, table);
+	/**
+	 * Returns the specified table to the idle tables of the specified TableQueue, or releases it if max size tables are idle already or if the 
+	 * pool for the table name has been closed in the meantime
+	 */
+	protected void returnTable(TableQueue tableQueue, PooledHTable table) throws IOException {
+		try {
+			if (tableQueue.closed) {
+				releaseTable(table);
+			} else if (tableQueue.idleCount.incrementAndGet() > this.maxSize) {
+				tableQueue.idleCount.decrementAndGet();
+				releaseTable(table);
+			} else {
+				tableQueue.idleTables.offer(table);
+				if (tableQueue.closed) { // the pool was closed concurrently and may have missed this table
+					releaseIdleTables(tableQueue);
+				}
+			}
+		} finally {
+			tableQueue.permits.release();
+		}
 	}
 	/**
 	 * Creates a new HTableInterface using the factory for the specified table name.
@@ -188,6 +269,35 @@ public class HTablePool implements Closeable {
 		return this.tableFactory.createHTableInterface(config,Bytes.toBytes(tableName));
 	}
 	
+	/**
+	 * Helper method to remove and return an idle table of the specified TableQueue, or null if none is idle
+	 */
+	private PooledHTable pollIdleTable(TableQueue tableQueue) {
+		PooledHTable table = tableQueue.idleTables.poll();
+		if (table != null) {
+			tableQueue.idleCount.decrementAndGet();
+		}
+		return table;
+	}
+	
+	/**
+	 * Helper method to release all idle tables of the specified TableQueue
+	 */
+	private void releaseIdleTables(TableQueue tableQueue) throws IOException {
+		PooledHTable table = null;
+		while ((table = pollIdleTable(tableQueue)) != null) {
+			releaseTable(table);
+		}
+	}
+	
+	/**
+	 * Helper method to release the HTableInterface wrapped by the specified PooledHTable
+	 */
+	private void releaseTable(PooledHTable table) throws IOException {
+		this.releasedCount.increment();
+		this.tableFactory.releaseHTableInterface(table.table);
+	}
+	
 	/** Getter/Setter methods*/
 	public Integer getCallConnectionValidityCheckMinutes() {
 		return this.callConnectionValidityCheckMinutes;
@@ -198,62 +308,118 @@ public class HTablePool implements Closeable {
 	public AuthenticationProvider getAuthenticationProvider() {
 		return this.authenticationProvider;
 	}
+	public long getMaxWaitMillis() {
+		return this.maxWaitMillis;
+	}
+	public void setMaxWaitMillis(long maxWaitMillis) {
+		this.maxWaitMillis = maxWaitMillis;
+	}
+	public int getMaxCheckedOut() {
+		return this.maxCheckedOut;
+	}
+	/**
+	 * Sets the max number of tables that may be checked out per table name. Applies to table names first used after this call
+	 * @throws IllegalArgumentException if the specified value is not greater than 0
+	 */
+	public void setMaxCheckedOut(int maxCheckedOut) {
+		if (maxCheckedOut <= 0) {
+			throw new IllegalArgumentException("Max checked out tables must be greater than 0. Specified value is : " + maxCheckedOut);
+		}
+		this.maxCheckedOut = maxCheckedOut;
+	}
+	public long getCheckoutCount() {
+		return this.checkoutCount.sum();
+	}
+	public long getWaitCount() {
+		return this.waitCount.sum();
+	}
+	public long getTimeoutCount() {
+		return this.timeoutCount.sum();
+	}
+	public long getCreatedCount() {
+		return this.createdCount.sum();
+	}
+	public long getReleasedCount() {
+		return this.releasedCount.sum();
+	}
 	
 	/**
-	 * Connection validator thread. Checks for connection validity periodically with period specified by the {@link HTablePool}. Closes broken
-	 * or otherwise invalid connections.
+	 * The tables of a table name : idle tables in a lock-free queue with their count, and permits bounding the number of tables checked out
 	 */
-	class ConnectionValidator extends Thread {
-		/** The pool to validate connections for*/
-		HTablePool tablePool;
-		ConnectionValidator(HTablePool tablePool) {
-			this.tablePool = tablePool;
-			setPriority(Thread.MIN_PRIORITY);
-			setDaemon(true);
-			setName("HTablePoolValidator_" + this.tablePool.hashCode());
-			start();			
+	static class TableQueue {
+		final ConcurrentLinkedQueue<PooledHTable> idleTables = new ConcurrentLinkedQueue<PooledHTable>();
+		final AtomicInteger idleCount = new AtomicInteger();
+		final Semaphore permits;
+		volatile boolean closed;
+		TableQueue(int maxCheckedOut) {
+			this.permits = new Semaphore(maxCheckedOut);
 		}
+	}
+	
+	/**
+	 * Connection validator task. Checks for connection validity periodically with period specified by the {@link HTablePool}. Validates each 
+	 * idle table once per run, skipping table names whose tables are all checked out. Releases all idle tables of a table name if one of them 
+	 * is found to be invalid - new ones are created on demand.
+	 */
+	class ConnectionValidator implements Runnable {
 		public void run() {
-			while(true) {
-				try {
-					Thread.sleep((long)(this.tablePool.getCallConnectionValidityCheckMinutes() * 60000));
-					long start = System.currentTimeMillis();
-					LOGGER.debug("Starting to validate connections for tablepool with size : " + this.tablePool.tables.keySet().size());
-					for (String tableName : this.tablePool.tables.keySet()) {
-						HTableInterface table = this.tablePool.tables.get(tableName); // pick up the first available table from the pool. Over time all connections will get picked up and validated
+			try {
+				long start = System.currentTimeMillis();
+				LOGGER.debug("Starting to validate connections for tablepool with size : " + tables.size());
+				for (Map.Entry<String, TableQueue> entry : tables.entrySet()) {
+					TableQueue tableQueue = entry.getValue();
+					for (int i = tableQueue.idleTables.size(); i > 0; i--) {
+						if (!tableQueue.permits.tryAcquire()) {
+							break; // all tables are checked out, no idle table to validate
+						}
+						PooledHTable table = pollIdleTable(tableQueue);
+						if (table == null) {
+							tableQueue.permits.release();
+							break;
+						}
 						try {
 							// Validate the table/connection by calling a Get with row key as System.currentTimeMillis(). This call will exercise the 
 							// network components of the table's connection
-							if (table != null) { // we can get null if all connections have already been borrowed i.e. are being used
-								table.exists(new Get(Bytes.toBytes( System.currentTimeMillis())));
-								this.tablePool.returnTable(table); // return the table back to the pool
-							}
+							table.exists(new Get(Bytes.toBytes( System.currentTimeMillis())));
 						} catch (Exception ex) {
-							LOGGER.info("Error validating connection for : " + tableName + " : " + ex.getMessage() + " . Invalidating all connections for this table.");
-							this.tablePool.closeTablePool(tableName);
-							LOGGER.info("Recreating a single connection for : " + tableName);
-							table = this.tablePool.createHTable(tableName);
-							table.close(); // calling close will simply return the valid connection to the pool
+							LOGGER.info("Error validating connection for : " + entry.getKey() + " : " + ex.getMessage() + " . Invalidating all idle connections for this table.");
+							tableQueue.permits.release();
+							releaseTable(table);
+							releaseIdleTables(tableQueue);
+							break;
 						}
+						returnTable(tableQueue, table); // return the table back to the pool, at the tail of the idle tables
 					}
-					LOGGER.debug("Completed validating connections. Connections size : " + tables.keySet().size() + 
-							". Completed in : " + (System.currentTimeMillis() - start) + " ms");
-				} catch (Exception e) {
-					LOGGER.error("Error validating pool connections : " + e.getMessage() + ". Will retry in : " + 
-							this.tablePool.getCallConnectionValidityCheckMinutes() + " minutes.", e);
 				}
+				LOGGER.debug("Completed validating connections. Connections size : " + tables.size() + 
+						". Completed in : " + (System.currentTimeMillis() - start) + " ms");
+			} catch (Exception e) {
+				LOGGER.error("Error validating pool connections : " + e.getMessage() + ". Will retry in : " + 
+						getCallConnectionValidityCheckMinutes() + " minutes.", e);
 			}
 		}
 	}
 
-	/** Pooled HTable class copied from original implementation*/
+	/** 
+	 * Pooled HTable class copied from original implementation. A PooledHTable wraps a table for as long as the table is pooled and is handed out
+	 * on each checkout of the table. The checkout stamp is odd while the table is checked out and is advanced by the first close() of a checkout only, 
+	 * so that further calls to close() for the same checkout do not return the table again.
+	 */
 	class PooledHTable implements HTableInterface {
 
-		private HTableInterface table;
+		private final TableQueue tableQueue;
+		private final HTableInterface table;
+		/** The checkout stamp, incremented on checkout and on return of the table*/
+		private final AtomicLong checkoutStamp = new AtomicLong();
 
-		public PooledHTable(HTableInterface table) {
+		public PooledHTable(TableQueue tableQueue, HTableInterface table) {
+			this.tableQueue = tableQueue;
 			this.table = table;
 		}
+		/** Marks the table as checked out. Called by the pool that has exclusive access to this idle table*/
+		void checkout() {
+			this.checkoutStamp.incrementAndGet();
+		}
 		public byte[] getTableName() {
 			return table.getTableName();
 		}
@@ -326,7 +492,10 @@ public class HTablePool implements Closeable {
 			table.flushCommits();
 		}
 		public void close() throws IOException {
-			returnTable(table);
+			long stamp = this.checkoutStamp.get();
+			if ((stamp & 1L) == 1L && this.checkoutStamp.compareAndSet(stamp, stamp + 1)) {
+				returnTable(this.tableQueue, this);
+			}
 		}
 		public RowLock lockRow(byte[] row) throws IOException {
 			return table.lockRow(row);
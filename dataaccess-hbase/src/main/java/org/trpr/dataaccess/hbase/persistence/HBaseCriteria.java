@@ -16,6 +16,7 @@
 package org.trpr.dataaccess.hbase.persistence;
 
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.trpr.platform.core.spi.persistence.Criteria;
 
 /**
@@ -34,6 +35,8 @@ public class HBaseCriteria extends Criteria {
 	public static final String VERSIONS = "numVersionsToFetch";
 	public static final String START_KEY = "startKey";
 	public static final String END_KEY = "endKey";
+	public static final String SCANNER_CACHING = "scannerCaching";
+	public static final String SCANNER_BATCH = "scannerBatch";
 	
 	/** The Scan object that may be used for highly customized and very HBase specific queries*/
 	private Scan scan;
@@ -45,5 +48,21 @@ public class HBaseCriteria extends Criteria {
 	public void setScan(Scan scan) {
 		this.scan = scan;
 	}
+	/** End Getter/Setter methods */
+
+	/**
+	 * Sets up this Criteria to resume a scan from the row that follows the specified row key, typically the one returned by
+	 * {@link HBaseEntityCursor#getLastRowKey()}. The first result index is reset as the rows prior to the resumed position are no longer scanned.
+	 * @param lastRowKey the row key of the last entity read in a previous scan
+	 */
+	public void resumeAfter(byte[] lastRowKey) {
+		// the smallest row key that sorts after the specified row key
+		byte[] startKey = Bytes.add(lastRowKey, new byte[] {0});
+		this.addParameter(START_KEY, startKey);
+		if (this.scan != null) {
+			this.scan.setStartRow(startKey);
+		}
+		this.firstResult = 0;
+	}
 	
 }
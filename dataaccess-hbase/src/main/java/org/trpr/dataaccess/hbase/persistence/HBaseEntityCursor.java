@@ -0,0 +1,211 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.dataaccess.hbase.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.trpr.dataaccess.hbase.persistence.entity.HBaseEntity;
+import org.trpr.platform.core.impl.logging.LogFactory;
+import org.trpr.platform.core.spi.logging.Logger;
+import org.trpr.platform.core.spi.persistence.PersistenceException;
+import org.trpr.platform.core.spi.persistence.PersistentEntity;
+
+/**
+ * The <code>HBaseEntityCursor</code> streams the entities of a HBase scan, constructing each entity only when it is requested. It is useful for
+ * reading large result sets that need not be held in memory in entirety. A cursor holds a table from the HTablePool and an open scanner and therefore
+ * must always be closed, preferably in a finally block.
+ * 
+ * Reading may be resumed later, for e.g. to fetch the next page, by calling {@link HBaseCriteria#resumeAfter(byte[])} with the row key returned by
+ * {@link #getLastRowKey()} and opening a new cursor using the criteria. This avoids scanning and discarding all rows prior to the requested page.
+ * 
+ * @author agent
+ * @version 1.0, 17/10/2026
+ */
+public class HBaseEntityCursor implements Iterator<PersistentEntity>, Closeable {
+
+	/**
+	 * The Log instance for this class
+	 */
+	private static final Logger LOGGER = LogFactory.getLogger(HBaseEntityCursor.class);
+
+	/** The delegate and compiled mapping used to construct entities*/
+	private final HBaseHandlerDelegate delegate;
+	private final HBaseEntityMapping mapping;
+
+	/** The table and scanner*/
+	private final HTableInterface table;
+	private final ResultScanner scanner;
+
+	/** Indicates if a row may be returned by the scanner in multiple parts, as happens when Scan#setBatch() is used*/
+	private final boolean mergePartialRows;
+
+	/** The number of rows to skip and the number of entities still to be returned, -1 if there is no limit*/
+	private int rowsToSkip;
+	private int remaining;
+
+	/** The scanned row read ahead when merging partial rows*/
+	private Result pendingRow;
+
+	/** The next entity to return and its row key, the row key of the last returned entity and the state of this cursor*/
+	private PersistentEntity nextEntity;
+	private byte[] nextRowKey;
+	private byte[] lastRowKey;
+	private boolean closed;
+
+	/**
+	 * Constructor for this class
+	 * @param delegate the HBaseHandlerDelegate for constructing entities from scanned rows
+	 * @param mapping the compiled HBase mapping of the scanned entity
+	 * @param table the table being scanned. The table is closed i.e. returned to its pool when this cursor is closed
+	 * @param scanner the open scanner
+	 * @param mergePartialRows true if a row may be returned by the scanner in multiple parts
+	 * @param firstResult the number of rows to skip
+	 * @param maxResults the maximum number of entities to return, -1 for no limit
+	 */
+	HBaseEntityCursor(HBaseHandlerDelegate delegate, HBaseEntityMapping mapping, HTableInterface table, ResultScanner scanner, boolean mergePartialRows,
+			int firstResult, int maxResults) {
+		this.delegate = delegate;
+		this.mapping = mapping;
+		this.table = table;
+		this.scanner = scanner;
+		this.mergePartialRows = mergePartialRows;
+		this.rowsToSkip = firstResult;
+		this.remaining = maxResults;
+	}
+
+	/**
+	 * Interface method implementation. Reads ahead the next entity, if any
+	 * @see java.util.Iterator#hasNext()
+	 * @throws PersistenceException in case of errors reading from HBase
+	 */
+	public boolean hasNext() {
+		if (this.nextEntity != null) {
+			return true;
+		}
+		if (this.closed || this.remaining == 0) {
+			return false;
+		}
+		try {
+			for (Result resultRow = this.nextRow(); resultRow != null; resultRow = this.nextRow()) {
+				if (resultRow.isEmpty()) {
+					continue;
+				}
+				if (this.rowsToSkip > 0) {
+					this.rowsToSkip -= 1;
+					continue;
+				}
+				this.nextEntity = this.delegate.constructEntityFromResultRow(this.mapping, resultRow, (HBaseEntity)this.mapping.getEntityClass().newInstance());
+				this.nextRowKey = resultRow.getRow();
+				if (this.remaining > 0) {
+					this.remaining -= 1;
+				}
+				return true;
+			}
+		} catch (Exception e) {
+			throw new PersistenceException("Exception occcurred while scanning table " + this.mapping.getMetadata().getHbaseClass().getTable(), e);
+		}
+		return false;
+	}
+
+	/**
+	 * Interface method implementation. Returns the next entity
+	 * @see java.util.Iterator#next()
+	 * @throws PersistenceException in case of errors reading from HBase
+	 */
+	public PersistentEntity next() {
+		if (!this.hasNext()) {
+			throw new NoSuchElementException("No more entities in this cursor");
+		}
+		PersistentEntity entity = this.nextEntity;
+		this.lastRowKey = this.nextRowKey;
+		this.nextEntity = null;
+		this.nextRowKey = null;
+		return entity;
+	}
+
+	/**
+	 * Interface method implementation. Throws UnsupportedOperationException
+	 * @see java.util.Iterator#remove()
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException("Remove is not supported by a cursor. Use HBaseHandler#makeTransient() instead");
+	}
+
+	/**
+	 * Interface method implementation. Closes the scanner and returns the table to its pool
+	 * @see java.io.Closeable#close()
+	 */
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		this.nextEntity = null;
+		this.nextRowKey = null;
+		try {
+			this.scanner.close();
+		} finally {
+			try {
+				this.table.close();
+			} catch (IOException e) {
+				LOGGER.warn("Error returning table to the pool : " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the row key of the entity last returned by {@link #next()}. This row key may be passed to {@link HBaseCriteria#resumeAfter(byte[])}
+	 * for resuming the scan from the following row.
+	 * @return the row key of the last returned entity or null if none has been returned
+	 */
+	public byte[] getLastRowKey() {
+		return this.lastRowKey;
+	}
+
+	/**
+	 * Helper method to read the next row from the scanner. Merges the parts of a row if the scanner may return a row in multiple parts.
+	 */
+	private Result nextRow() throws IOException {
+		Result row = this.pendingRow != null ? this.pendingRow : this.scanner.next();
+		this.pendingRow = null;
+		if (row == null || !this.mergePartialRows) {
+			return row;
+		}
+		List<KeyValue> keyValues = null;
+		for (Result part = this.scanner.next(); part != null; part = this.scanner.next()) {
+			if (!Bytes.equals(row.getRow(), part.getRow())) {
+				this.pendingRow = part;
+				break;
+			}
+			if (keyValues == null) {
+				keyValues = new ArrayList<KeyValue>(Arrays.asList(row.raw()));
+			}
+			keyValues.addAll(Arrays.asList(part.raw()));
+		}
+		return keyValues == null ? row : new Result(keyValues);
+	}
+}
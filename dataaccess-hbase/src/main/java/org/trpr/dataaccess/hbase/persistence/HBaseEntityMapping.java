@@ -0,0 +1,285 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.dataaccess.hbase.persistence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.trpr.dataaccess.hbase.model.config.ColumnDefinition;
+import org.trpr.dataaccess.hbase.model.config.HbaseMapping;
+import org.trpr.dataaccess.hbase.model.config.RowKeyDefinition;
+import org.trpr.dataaccess.hbase.model.config.RowKeyMember;
+import org.trpr.platform.runtime.spi.config.ConfigurationException;
+
+/**
+ * The <code>HBaseEntityMapping</code> is the compiled form of a {@link HbaseMapping} for an entity class. It holds {@link PropertyAccessor} instances
+ * for the row key and column attributes and the pre-encoded column family and column qualifier bytes, so that none of these are computed
+ * when reading or writing individual cells. Instances are immutable and are created once per entity class.
+ * 
+ * Column mappings are also indexed by the raw bytes of column family and column qualifier prefix, using a trie of qualifier bytes per column 
+ * family. Cells read from HBase are thereby matched to their column mapping in time proportional to the qualifier length and without 
+ * creating any objects, instead of scanning all column definitions.
+ *
+ * @author agent
+ * @version 1.0, 17/10/2026
+ */
+class HBaseEntityMapping {
+
+	/** The HBase mapping meta data and the entity class it is compiled for*/
+	private final HbaseMapping metadata;
+	private final Class<?> entityClass;
+
+	/** Accessor for single attribute row key, null if row key is composite*/
+	private final PropertyAccessor rowKeyAccessor;
+
+	/** Composite row key members, empty if row key is a single attribute*/
+	private final List<RowKeyMemberMapping> rowKeyMemberMappings;
+
+	/** The column mappings, in the order of column definitions*/
+	private final List<ColumnMapping> columnMappings;
+
+	/** The column mappings indexed by column family and column qualifier prefix*/
+	private final FamilyIndex[] familyIndexes;
+
+	/**
+	 * Constructor for this class
+	 * @param metadata the HBase mapping meta data
+	 * @param entityClass the entity class mapped by the meta data
+	 * @throws ConfigurationException in case of errors introspecting the entity class
+	 */
+	HBaseEntityMapping(HbaseMapping metadata, Class<?> entityClass) throws ConfigurationException {
+		this.metadata = metadata;
+		this.entityClass = entityClass;
+		try {
+			RowKeyDefinition rowKeyDefinition = metadata.getHbaseClass().getRowkeyDefinition();
+			List<RowKeyMemberMapping> rowKeyMembers = new ArrayList<RowKeyMemberMapping>();
+			if (rowKeyDefinition.getCompositeRowKey() != null) {
+				this.rowKeyAccessor = null;
+				for (RowKeyMember rowKeyMember : rowKeyDefinition.getCompositeRowKey().getRowKeyMember()) {
+					rowKeyMembers.add(new RowKeyMemberMapping(rowKeyMember, createAccessor(rowKeyMember.getValueAttribute())));
+				}
+			} else {
+				this.rowKeyAccessor = createAccessor(rowKeyDefinition.getValueAttribute());
+			}
+			this.rowKeyMemberMappings = Collections.unmodifiableList(rowKeyMembers);
+			List<ColumnMapping> columns = new ArrayList<ColumnMapping>();
+			for (ColumnDefinition column : metadata.getHbaseClass().getColumnDefinition()) {
+				columns.add(new ColumnMapping(column, createAccessor(column.getValueAttribute()), createAccessor(column.getColumnQualifierAttribute())));
+			}
+			this.columnMappings = Collections.unmodifiableList(columns);
+			List<FamilyIndex> families = new ArrayList<FamilyIndex>();
+			for (int i = 0; i < columns.size(); i++) {
+				ColumnMapping column = columns.get(i);
+				FamilyIndex familyIndex = null;
+				for (FamilyIndex family : families) {
+					if (Arrays.equals(family.columnFamily, column.getColumnFamily())) {
+						familyIndex = family;
+						break;
+					}
+				}
+				if (familyIndex == null) {
+					familyIndex = new FamilyIndex(column.getColumnFamily());
+					families.add(familyIndex);
+				}
+				familyIndex.root.insert(column.getColumnQualifier(), 0, column, i);
+			}
+			this.familyIndexes = families.toArray(new FamilyIndex[families.size()]);
+		} catch (Exception e) {
+			throw new ConfigurationException("Error compiling HBase mapping for entity class : " + entityClass.getName(), e);
+		}
+	}
+
+	/** Getter methods*/
+	HbaseMapping getMetadata() {
+		return this.metadata;
+	}
+	Class<?> getEntityClass() {
+		return this.entityClass;
+	}
+	PropertyAccessor getRowKeyAccessor() {
+		return this.rowKeyAccessor;
+	}
+	boolean isCompositeRowKey() {
+		return this.rowKeyAccessor == null;
+	}
+	List<RowKeyMemberMapping> getRowKeyMemberMappings() {
+		return this.rowKeyMemberMappings;
+	}
+	List<ColumnMapping> getColumnMappings() {
+		return this.columnMappings;
+	}
+	/** End getter methods*/
+
+	/**
+	 * Finds the column mapping for a cell identified by the column family and column qualifier bytes contained in the specified buffer. 
+	 * The matching column mapping is the first one, in the order of column definitions, whose column family is equal to the cell's
+	 * family and whose column qualifier is a prefix of the cell's qualifier. The prefix match supports columns whose qualifier is
+	 * comprised of a fixed string literal part and a variable value from an entity attribute.
+	 * @param buffer the buffer containing the cell's column family and column qualifier, for e.g. KeyValue#getBuffer()
+	 * @param familyOffset the offset of the column family in the buffer
+	 * @param familyLength the length of the column family
+	 * @param qualifierOffset the offset of the column qualifier in the buffer
+	 * @param qualifierLength the length of the column qualifier
+	 * @return the ColumnMapping for the cell or null if none matches
+	 */
+	ColumnMapping findColumnMapping(byte[] buffer, int familyOffset, int familyLength, int qualifierOffset, int qualifierLength) {
+		for (FamilyIndex familyIndex : this.familyIndexes) {
+			if (Bytes.equals(familyIndex.columnFamily, 0, familyIndex.columnFamily.length, buffer, familyOffset, familyLength)) {
+				return familyIndex.root.findFirstPrefixMatch(buffer, qualifierOffset, qualifierLength);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Helper method to create a PropertyAccessor for the specified attribute. Returns null if the attribute is blank
+	 */
+	private PropertyAccessor createAccessor(String attribute) throws Exception {
+		if (StringUtils.isBlank(attribute)) {
+			return null;
+		}
+		return new PropertyAccessor(this.entityClass, attribute);
+	}
+
+	/**
+	 * Index of the column mappings of a column family. There are typically few families per table and these are therefore searched linearly
+	 */
+	private static class FamilyIndex {
+		private final byte[] columnFamily;
+		private final QualifierTrieNode root = new QualifierTrieNode();
+		FamilyIndex(byte[] columnFamily) {
+			this.columnFamily = columnFamily;
+		}
+	}
+
+	/**
+	 * A node in a trie of column qualifier bytes. A node holds the first defined column mapping whose column qualifier ends at the node, if any.
+	 * Child nodes are held in arrays sorted by the child's byte value and are binary searched.
+	 */
+	private static class QualifierTrieNode {
+		private byte[] childKeys = new byte[0];
+		private QualifierTrieNode[] children = new QualifierTrieNode[0];
+		private ColumnMapping column;
+		private int columnIndex = Integer.MAX_VALUE;
+
+		/**
+		 * Inserts the specified column mapping against the remaining bytes of the specified column qualifier
+		 */
+		void insert(byte[] qualifier, int position, ColumnMapping column, int columnIndex) {
+			if (position == qualifier.length) {
+				if (this.column == null) { // retain the first defined column for a qualifier
+					this.column = column;
+					this.columnIndex = columnIndex;
+				}
+				return;
+			}
+			int childPosition = Arrays.binarySearch(this.childKeys, qualifier[position]);
+			if (childPosition < 0) {
+				childPosition = -(childPosition + 1);
+				byte[] keys = new byte[this.childKeys.length + 1];
+				QualifierTrieNode[] nodes = new QualifierTrieNode[this.children.length + 1];
+				System.arraycopy(this.childKeys, 0, keys, 0, childPosition);
+				System.arraycopy(this.children, 0, nodes, 0, childPosition);
+				keys[childPosition] = qualifier[position];
+				nodes[childPosition] = new QualifierTrieNode();
+				System.arraycopy(this.childKeys, childPosition, keys, childPosition + 1, this.childKeys.length - childPosition);
+				System.arraycopy(this.children, childPosition, nodes, childPosition + 1, this.children.length - childPosition);
+				this.childKeys = keys;
+				this.children = nodes;
+			}
+			this.children[childPosition].insert(qualifier, position + 1, column, columnIndex);
+		}
+
+		/**
+		 * Returns the first defined column mapping whose qualifier is a prefix of the specified qualifier bytes
+		 */
+		ColumnMapping findFirstPrefixMatch(byte[] buffer, int offset, int length) {
+			ColumnMapping match = this.column;
+			int matchIndex = this.columnIndex;
+			QualifierTrieNode node = this;
+			for (int i = offset; i < offset + length; i++) {
+				int childPosition = Arrays.binarySearch(node.childKeys, buffer[i]);
+				if (childPosition < 0) {
+					break;
+				}
+				node = node.children[childPosition];
+				if (node.columnIndex < matchIndex) {
+					match = node.column;
+					matchIndex = node.columnIndex;
+				}
+			}
+			return match;
+		}
+	}
+
+	/**
+	 * The compiled form of a composite row key member
+	 */
+	static class RowKeyMemberMapping {
+		private final RowKeyMember rowKeyMember;
+		private final PropertyAccessor accessor;
+		RowKeyMemberMapping(RowKeyMember rowKeyMember, PropertyAccessor accessor) {
+			this.rowKeyMember = rowKeyMember;
+			this.accessor = accessor;
+		}
+		RowKeyMember getRowKeyMember() {
+			return this.rowKeyMember;
+		}
+		PropertyAccessor getAccessor() {
+			return this.accessor;
+		}
+	}
+
+	/**
+	 * The compiled form of a column definition
+	 */
+	static class ColumnMapping {
+		/** The column definition*/
+		private final ColumnDefinition columnDefinition;
+		/** The encoded column family and the encoded fixed part of the column qualifier (empty if there is none)*/
+		private final byte[] columnFamily;
+		private final byte[] columnQualifier;
+		/** Accessors for the value attribute and the column qualifier attribute (null if there is none)*/
+		private final PropertyAccessor valueAccessor;
+		private final PropertyAccessor columnQualifierAccessor;
+		ColumnMapping(ColumnDefinition columnDefinition, PropertyAccessor valueAccessor, PropertyAccessor columnQualifierAccessor) {
+			this.columnDefinition = columnDefinition;
+			this.columnFamily = Bytes.toBytes(columnDefinition.getColumnFamily());
+			this.columnQualifier = StringUtils.isNotBlank(columnDefinition.getColumnQualifier()) ? columnDefinition.getColumnQualifier().getBytes() : new byte[0];
+			this.valueAccessor = valueAccessor;
+			this.columnQualifierAccessor = columnQualifierAccessor;
+		}
+		ColumnDefinition getColumnDefinition() {
+			return this.columnDefinition;
+		}
+		byte[] getColumnFamily() {
+			return this.columnFamily;
+		}
+		byte[] getColumnQualifier() {
+			return this.columnQualifier;
+		}
+		PropertyAccessor getValueAccessor() {
+			return this.valueAccessor;
+		}
+		PropertyAccessor getColumnQualifierAccessor() {
+			return this.columnQualifierAccessor;
+		}
+	}
+}
@@ -15,8 +15,12 @@
  */
 package org.trpr.dataaccess.hbase.persistence;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -25,6 +29,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.trpr.dataaccess.hbase.HTablePool;
 import org.trpr.dataaccess.hbase.auth.AuthenticationProvider;
@@ -88,10 +93,20 @@ public class HBaseHandler extends AbstractPersistenceHandler implements Initiali
 	/** The HTable pool size */
 	private int htablePoolSize = HTABLE_POOL_SIZE;
 
+	/** The max number of tables checked out per table name from a HTablePool */
+	private int htablePoolMaxCheckedOut = HTablePool.DEFAULT_MAX_CHECKED_OUT;
+
+	/** The time to wait for a table when the checkout limit of a HTablePool is reached */
+	private long htablePoolMaxWaitMillis = HTablePool.DEFAULT_MAX_WAIT_MILLIS;
+
 	private Boolean useWAL = true;
 
 	private Boolean useAutoFlush = true;
 
+	/** The scanner caching and batch size defaults for scans, if set. Defaults of the HBaseHandlerDelegate apply otherwise */
+	private Integer scannerCaching;
+	private Integer scannerBatch;
+
 	/** The HBase mapping container instance */
 	private HBaseMappingContainer hbaseMappingContainer;
 
@@ -135,6 +150,10 @@ public class HBaseHandler extends AbstractPersistenceHandler implements Initiali
 		for (String shard : this.targetHbaseConfigurations.keySet()) {
 			this.targetHbaseTablePools.put(shard, new HTablePool(this.targetHbaseConfigurations.get(shard), this.htablePoolSize));
 		}
+		for (HTablePool tablePool : this.targetHbaseTablePools.values()) {
+			tablePool.setMaxCheckedOut(this.htablePoolMaxCheckedOut);
+			tablePool.setMaxWaitMillis(this.htablePoolMaxWaitMillis);
+		}
 		// initialize the delegate with defaults, if not set already
 		if (this.hbaseHandlerDelegate == null) {
 			this.hbaseHandlerDelegate = new HBaseHandlerDelegate(this.hbaseMappingContainer);
@@ -158,9 +177,49 @@ public class HBaseHandler extends AbstractPersistenceHandler implements Initiali
 		}
 		this.hbaseHandlerDelegate.setUseAutoFlush(useAutoFlush);
 		this.hbaseHandlerDelegate.setUseWAL(useWAL);
+		if (this.scannerCaching != null) {
+			this.hbaseHandlerDelegate.setScannerCaching(this.scannerCaching);
+		}
+		if (this.scannerBatch != null) {
+			this.hbaseHandlerDelegate.setScannerBatch(this.scannerBatch);
+		}
 
 	}
 
+	/** HTablePool metrics, summed over the pools of all shards*/
+	@ManagedAttribute
+	public long getHTablePoolCheckoutCount() {
+		long count = 0;
+		for (HTablePool tablePool : this.targetHbaseTablePools.values()) {
+			count += tablePool.getCheckoutCount();
+		}
+		return count;
+	}
+	@ManagedAttribute
+	public long getHTablePoolWaitCount() {
+		long count = 0;
+		for (HTablePool tablePool : this.targetHbaseTablePools.values()) {
+			count += tablePool.getWaitCount();
+		}
+		return count;
+	}
+	@ManagedAttribute
+	public long getHTablePoolTimeoutCount() {
+		long count = 0;
+		for (HTablePool tablePool : this.targetHbaseTablePools.values()) {
+			count += tablePool.getTimeoutCount();
+		}
+		return count;
+	}
+	@ManagedAttribute
+	public long getHTablePoolCreatedCount() {
+		long count = 0;
+		for (HTablePool tablePool : this.targetHbaseTablePools.values()) {
+			count += tablePool.getCreatedCount();
+		}
+		return count;
+	}
+
 	public HbaseMapping getMappingForClass(String className) {
 		return hbaseMappingContainer.getMappingForClass(className);
 	}
@@ -233,6 +292,44 @@ public class HBaseHandler extends AbstractPersistenceHandler implements Initiali
 		return persistentEntity;
 	}
 
+	/**
+	 * Persists the specified entities, writing all rows that map to the same HTablePool and table in batches instead of one
+	 * round trip per entity. Buffering and flushing of writes are controlled by the HBase mapping of each entity type.
+	 * @param entities the PersistentEntity instances to persist, all of which must be HBaseEntity instances
+	 * @return the persisted PersistentEntity instances, in the order of the specified entities
+	 * @throws PersistenceException in case of persistence errors
+	 */
+	public Collection<PersistentEntity> makePersistent(Collection<PersistentEntity> entities) throws PersistenceException {
+		// signal performance metrics capture. actual capture will happen only if it has been enabled via #startPerformanceMetricsLogging(). Default is off
+		this.performanceMetricsLogger.startPerformanceMetricsCapture();
+		PersistentEntity[] entitiesArray = entities.toArray(new PersistentEntity[entities.size()]);
+		// group the entity positions by HTablePool, so that the persisted entities may be returned in the order of the entities passed in
+		Map<HTablePool, List<Integer>> positionsByTablePool = new LinkedHashMap<HTablePool, List<Integer>>();
+		for (int i = 0; i < entitiesArray.length; i++) {
+			HTablePool tablePool = getHbaseTablePool((HBaseEntity) entitiesArray[i]);
+			List<Integer> poolPositions = positionsByTablePool.get(tablePool);
+			if (poolPositions == null) {
+				poolPositions = new ArrayList<Integer>();
+				positionsByTablePool.put(tablePool, poolPositions);
+			}
+			poolPositions.add(i);
+		}
+		PersistentEntity[] persistentEntities = new PersistentEntity[entitiesArray.length];
+		for (Map.Entry<HTablePool, List<Integer>> poolPositions : positionsByTablePool.entrySet()) {
+			Collection<HBaseEntity> poolEntities = new ArrayList<HBaseEntity>(poolPositions.getValue().size());
+			for (Integer position : poolPositions.getValue()) {
+				poolEntities.add((HBaseEntity) entitiesArray[position]);
+			}
+			Iterator<PersistentEntity> persistedPoolEntities = this.hbaseHandlerDelegate.makePersistent(poolEntities, poolPositions.getKey()).iterator();
+			for (Integer position : poolPositions.getValue()) {
+				persistentEntities[position] = persistedPoolEntities.next();
+			}
+		}
+		// log performance metrics captured. actual capture will happen only if it has been enabled via #startPerformanceMetricsLogging(). Default is off
+		this.performanceMetricsLogger.logPerformanceMetrics("HBaseHandler.makePersistent", "Batch of size : " + entities.size());		
+		return Arrays.asList(persistentEntities);
+	}
+
 	@Override
 	public void makeTransient(PersistentEntity entity) throws PersistenceException {
 		// signal performance metrics capture. actual capture will happen only if it has been enabled via #startPerformanceMetricsLogging(). Default is off
@@ -268,6 +365,25 @@ public class HBaseHandler extends AbstractPersistenceHandler implements Initiali
 		}
 	}
 
+	/**
+	 * Opens a cursor for streaming the entities that match the specified criteria. The returned cursor must be closed by the caller.
+	 * Large result sets may be read page by page by calling {@link HBaseCriteria#resumeAfter(byte[])} with the last row key read from a cursor 
+	 * and opening a new cursor with the criteria.
+	 * @param criteria the HBaseCriteria for the scan
+	 * @return HBaseEntityCursor for the entities matching the criteria
+	 * @throws PersistenceException in case of errors opening the cursor
+	 */
+	public HBaseEntityCursor openCursor(Criteria criteria) throws PersistenceException {
+		try {
+			return this.hbaseHandlerDelegate.openCursor(getHbaseTablePool((HBaseEntity)criteria.getManagedClass().newInstance()), (HBaseCriteria) criteria, getMappingForClass(criteria.getManagedClass().getName()));
+		} catch (PersistenceException e) {
+			throw e;
+		} catch (Exception e) {
+			LOGGER.error("Error while reading data :: ", e);
+			throw new PersistenceException("Error while reading data :: ", e);
+		}
+	}
+
 	/** Getter/Setter methods */
 	public Configuration getHbaseConfiguration() {
 		return this.hbaseConfiguration;
@@ -287,12 +403,36 @@ public class HBaseHandler extends AbstractPersistenceHandler implements Initiali
 	public Boolean getUseAutoFlush() {
 		return useAutoFlush;
 	}
+	public void setScannerCaching(Integer scannerCaching) {
+		this.scannerCaching = scannerCaching;
+	}
+	public Integer getScannerCaching() {
+		return this.scannerCaching;
+	}
+	public void setScannerBatch(Integer scannerBatch) {
+		this.scannerBatch = scannerBatch;
+	}
+	public Integer getScannerBatch() {
+		return this.scannerBatch;
+	}
 	public void setHtablePoolSize(int htablePoolSize) {
 		this.htablePoolSize = htablePoolSize;
 	}
 	public int getHtablePoolSize() {
 		return this.htablePoolSize;
 	}
+	public void setHtablePoolMaxCheckedOut(int htablePoolMaxCheckedOut) {
+		this.htablePoolMaxCheckedOut = htablePoolMaxCheckedOut;
+	}
+	public int getHtablePoolMaxCheckedOut() {
+		return this.htablePoolMaxCheckedOut;
+	}
+	public void setHtablePoolMaxWaitMillis(long htablePoolMaxWaitMillis) {
+		this.htablePoolMaxWaitMillis = htablePoolMaxWaitMillis;
+	}
+	public long getHtablePoolMaxWaitMillis() {
+		return this.htablePoolMaxWaitMillis;
+	}
 	public AuthenticationProvider getAuthProvider() {
 		return this.authProvider;
 	}
@@ -16,15 +16,15 @@
 package org.trpr.dataaccess.hbase.persistence;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.commons.beanutils.PropertyUtils;
-import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
@@ -33,16 +33,18 @@ import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PageFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.util.Assert;
 import org.trpr.dataaccess.hbase.HTablePool;
 import org.trpr.dataaccess.hbase.mappings.config.HBaseMappingContainer;
-import org.trpr.dataaccess.hbase.model.config.ColumnDefinition;
 import org.trpr.dataaccess.hbase.model.config.HbaseClass;
 import org.trpr.dataaccess.hbase.model.config.HbaseMapping;
-import org.trpr.dataaccess.hbase.model.config.RowKeyDefinition;
-import org.trpr.dataaccess.hbase.model.config.RowKeyMember;
+import org.trpr.dataaccess.hbase.persistence.HBaseEntityMapping.ColumnMapping;
+import org.trpr.dataaccess.hbase.persistence.HBaseEntityMapping.RowKeyMemberMapping;
 import org.trpr.dataaccess.hbase.persistence.entity.HBaseEntity;
 import org.trpr.dataaccess.hbase.serializer.DateSerializer;
 import org.trpr.dataaccess.hbase.serializer.IntegerSerializer;
@@ -60,6 +62,9 @@ import org.trpr.platform.runtime.spi.config.ConfigurationException;
  * operations using HTablePool instances created and managed by the
  * {@link HBaseHandler}.
  * 
+ * The HBase mapping of each entity class is compiled once into a {@link HBaseEntityMapping} that holds property accessors and encoded column names,
+ * so that entity attributes are not introspected for every cell read or written.
+ * 
  * @author Regunath B
  */
 public class HBaseHandlerDelegate implements InitializingBean {
@@ -75,9 +80,17 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	/** The HBase mapping container instance */
 	private HBaseMappingContainer hbaseMappingContainer;
 
+	/** The compiled HBase mappings, keyed by entity class */
+	private Map<Class<?>, HBaseEntityMapping> entityMappings = new ConcurrentHashMap<Class<?>, HBaseEntityMapping>();
+
 	/** Properties to control HBase data writes */
 	private Boolean useWAL = true;
 	private Boolean useAutoFlush = true;
+
+	/** Default number of rows fetched per scanner RPC and max number of columns per Result, -1 to use the HBase client defaults. 
+	 * May be overridden per query using HBaseCriteria parameters */
+	private int scannerCaching = -1;
+	private int scannerBatch = -1;
 	
 	/**
 	 * No args constructor. Instance created using this default constructor is useful after #setClassNameToSerializerMap() and #setHBaseMappingContainer()
@@ -129,6 +142,7 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 */
 	void setHBaseMappingContainer(HBaseMappingContainer hbaseMappingContainer) {
 		this.hbaseMappingContainer = hbaseMappingContainer;
+		this.entityMappings.clear();
 	}	
 	
 	/**
@@ -143,11 +157,38 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 *             in case of persistence errors
 	 */
 	public PersistentEntity makePersistent(HBaseEntity entity, HTablePool hbaseTablePool) throws PersistenceException {
-		HbaseMapping metadata = hbaseMappingContainer.getMappingForClass(entity.getClass().getName());
-		addEntity(hbaseTablePool, metadata, entity);
+		addEntity(hbaseTablePool, getEntityMapping(entity.getClass()), entity);
 		return entity;
 	}
 
+	/**
+	 * Persists the specified entities using the specified HTablePool. Entities are grouped by type and all rows for a type are written
+	 * using the client-side write buffer of a single table, instead of a round trip per entity.
+	 * 
+	 * @param entities
+	 *            the HBaseEntity instances to persist
+	 * @param hbaseTablePool
+	 *            the HTablePool to use for persistence
+	 * @return the persisted PersistentEntity instances
+	 * @throws PersistenceException
+	 *             in case of persistence errors
+	 */
+	public Collection<PersistentEntity> makePersistent(Collection<HBaseEntity> entities, HTablePool hbaseTablePool) throws PersistenceException {
+		Map<Class<?>, List<HBaseEntity>> entitiesByClass = new LinkedHashMap<Class<?>, List<HBaseEntity>>();
+		for (HBaseEntity entity : entities) {
+			List<HBaseEntity> classEntities = entitiesByClass.get(entity.getClass());
+			if (classEntities == null) {
+				classEntities = new ArrayList<HBaseEntity>();
+				entitiesByClass.put(entity.getClass(), classEntities);
+			}
+			classEntities.add(entity);
+		}
+		for (Class<?> entityClass : entitiesByClass.keySet()) {
+			addEntities(hbaseTablePool, getEntityMapping(entityClass), entitiesByClass.get(entityClass));
+		}
+		return new ArrayList<PersistentEntity>(entities);
+	}
+
 	/**
 	 * Deletes the specified entity using the specified HTablePool
 	 * 
@@ -160,8 +201,7 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 *             in case of persistence errors
 	 */
 	public void makeTransient(HBaseEntity entity, HTablePool hbaseTablePool) throws PersistenceException {
-		HbaseMapping metadata = hbaseMappingContainer.getMappingForClass(entity.getClass().getName());
-		deleteEntity(hbaseTablePool, entity, metadata);
+		deleteEntity(hbaseTablePool, entity, getEntityMapping(entity.getClass()));
 	}
 
 	/**
@@ -170,8 +210,8 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 * 
 	 * @param hbaseTablePool
 	 *            HTablePool instance for HBase access
-	 * @param metadata
-	 *            HBase mapping defining mapping from PersistentEntity to
+	 * @param mapping
+	 *            compiled HBase mapping defining mapping from PersistentEntity to
 	 *            various columns of HBase table
 	 * @param entity
 	 *            HBaseEntity to persist.
@@ -179,27 +219,79 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 *             In cases when HBase is not reachable or table does not exist
 	 *             or any other errors.
 	 */
-	private void addEntity(HTablePool hbaseTablePool, HbaseMapping metadata, HBaseEntity entity) throws PersistenceException {
+	private void addEntity(HTablePool hbaseTablePool, HBaseEntityMapping mapping, HBaseEntity entity) throws PersistenceException {
 		HTableInterface table = null;
-		HbaseClass classDefinition = metadata.getHbaseClass();
+		HbaseClass classDefinition = mapping.getMetadata().getHbaseClass();
 		try {
 			table = (HTableInterface) hbaseTablePool.getTable(classDefinition.getTable());
 			table.setAutoFlush(useAutoFlush);
 
-			Put put = new Put(constructRowKey(entity, classDefinition.getRowkeyDefinition()));
-			put.setWriteToWAL(useWAL);
-
-			for (ColumnDefinition column : classDefinition.getColumnDefinition()) {
-				put.add(getColumnFamilyInBytes(column), getColumnQualifierInBytes(entity, column), getColumnValueInBytes(entity, column));
+			// Insert new row into HBase table
+			table.put(constructPut(entity, mapping));
+		} catch (Exception e) {
+			throw new PersistenceException("Exception in putData of " + classDefinition.getTable(), e);
+		} finally {
+			if (table != null) {
+				try {
+					table.close();
+				} catch (IOException e) {
+					LOGGER.warn("Error returning table to the pool : " + e.getMessage(), e);
+				}
 			}
+		}
+	}
 
-			// Insert new row into HBase table
-			table.put(put);
+	/**
+	 * Inserts rows in the HBase table for all the specified entities, all of which share the same mapping. Rows are written using the client-side
+	 * write buffer and are flushed every {@link HbaseClass#getWriteBatchSize()} rows, if specified, and at the end.
+	 * 
+	 * @param hbaseTablePool
+	 *            HTablePool instance for HBase access
+	 * @param mapping
+	 *            compiled HBase mapping defining mapping from PersistentEntity to
+	 *            various columns of HBase table
+	 * @param entities
+	 *            HBaseEntity instances to persist.
+	 * @throws PersistenceException
+	 *             In cases when HBase is not reachable or table does not exist
+	 *             or any other errors.
+	 */
+	private void addEntities(HTablePool hbaseTablePool, HBaseEntityMapping mapping, List<HBaseEntity> entities) throws PersistenceException {
+		HTableInterface table = null;
+		long defaultWriteBufferSize = -1;
+		HbaseClass classDefinition = mapping.getMetadata().getHbaseClass();
+		try {
+			table = (HTableInterface) hbaseTablePool.getTable(classDefinition.getTable());
+			// clear the buffer on failure so that failed rows are not left behind in the pooled table
+			table.setAutoFlush(false, true);
+			if (classDefinition.getWriteBufferSize() != null) {
+				defaultWriteBufferSize = table.getWriteBufferSize();
+				table.setWriteBufferSize(classDefinition.getWriteBufferSize());
+			}
+			int batchSize = classDefinition.getWriteBatchSize() == null ? entities.size() : Math.max(1, classDefinition.getWriteBatchSize());
+			List<Put> puts = new ArrayList<Put>(Math.min(batchSize, entities.size()));
+			for (HBaseEntity entity : entities) {
+				puts.add(constructPut(entity, mapping));
+				if (puts.size() >= batchSize) {
+					table.put(puts);
+					table.flushCommits();
+					puts = new ArrayList<Put>(batchSize);
+				}
+			}
+			if (!puts.isEmpty()) {
+				table.put(puts);
+			}
+			table.flushCommits();
 		} catch (Exception e) {
 			throw new PersistenceException("Exception in putData of " + classDefinition.getTable(), e);
 		} finally {
 			if (table != null) {
 				try {
+					// restore the table's write settings before returning it to the pool
+					table.setAutoFlush(useAutoFlush);
+					if (defaultWriteBufferSize != -1) {
+						table.setWriteBufferSize(defaultWriteBufferSize);
+					}
 					table.close();
 				} catch (IOException e) {
 					LOGGER.warn("Error returning table to the pool : " + e.getMessage(), e);
@@ -208,6 +300,26 @@ public class HBaseHandlerDelegate implements InitializingBean {
 		}
 	}
 
+	/**
+	 * Helper method to construct a HBase Put for the specified entity using the specified compiled mapping
+	 * 
+	 * @param entity
+	 *            the HBaseEntity to construct the Put for
+	 * @param mapping
+	 *            the compiled HBase mapping
+	 * @return the HBase Put
+	 * @throws ConfigurationException
+	 *             in case of errors reading the entity attributes
+	 */
+	private Put constructPut(HBaseEntity entity, HBaseEntityMapping mapping) throws ConfigurationException {
+		Put put = new Put(constructRowKey(entity, mapping));
+		put.setWriteToWAL(useWAL);
+		for (ColumnMapping column : mapping.getColumnMappings()) {
+			put.add(column.getColumnFamily(), getColumnQualifierInBytes(entity, column), getColumnValueInBytes(entity, column));
+		}
+		return put;
+	}
+
 	/**
 	 * Deletes a row in HBase table
 	 * 
@@ -215,16 +327,17 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 *            the HBase table to use for HBase access
 	 * @param entity
 	 *            HBaseEntity to delete
-	 * @param metadata
-	 *            HBase table mapping definition
+	 * @param mapping
+	 *            compiled HBase table mapping definition
 	 * @throws PersistenceException
 	 *             in case anything goes wrong
 	 */
-	private void deleteEntity(HTablePool hbaseTablePool, HBaseEntity entity, HbaseMapping metadata) throws PersistenceException {
+	private void deleteEntity(HTablePool hbaseTablePool, HBaseEntity entity, HBaseEntityMapping mapping) throws PersistenceException {
 		HTableInterface table = null;
+		HbaseMapping metadata = mapping.getMetadata();
 		try {
 			table = (HTableInterface) hbaseTablePool.getTable(metadata.getHbaseClass().getTable());
-			Delete delete = new Delete(constructRowKey(entity, metadata.getHbaseClass().getRowkeyDefinition()));
+			Delete delete = new Delete(constructRowKey(entity, mapping));
 			table.delete(delete);
 		} catch (Exception e) {
 			throw new PersistenceException("Failed to delete entry for table " + metadata.getHbaseClass().getTable(), e);
@@ -242,14 +355,15 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	public HBaseEntity findEntity(HTablePool hbaseTablePool, HBaseEntity entity, HbaseMapping metadata) throws PersistenceException {
 		HTableInterface table = null;
 		try {
+			HBaseEntityMapping mapping = getEntityMapping(entity.getClass());
 			table = (HTableInterface) hbaseTablePool.getTable(metadata.getHbaseClass().getTable());
-			byte[] rowKey = constructRowKey(entity, metadata.getHbaseClass().getRowkeyDefinition());
+			byte[] rowKey = constructRowKey(entity, mapping);
 			if (rowKey != null && rowKey.length > 0) {
 				// do a get operation
-				Get g = constructGetQuery(metadata, entity, rowKey);
+				Get g = constructGetQuery(mapping, entity, rowKey);
 				Result result = table.get(g);
 				if (!result.isEmpty()) {
-					return constructEntityFromResultRow(metadata, result, entity);
+					return constructEntityFromResultRow(mapping, result, entity);
 				}
 			}
 		} catch (Exception e) {
@@ -283,46 +397,93 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 */
 	public Collection<PersistentEntity> findEntities(HTablePool hbaseTablePool, HBaseCriteria criteria, HbaseMapping metadata) throws PersistenceException {
 		List<PersistentEntity> searchResultList = new ArrayList<PersistentEntity>();
+		HBaseEntityCursor cursor = openCursor(hbaseTablePool, criteria, metadata);
+		try {
+			while (cursor.hasNext()) {
+				searchResultList.add(cursor.next());
+			}
+		} catch (PersistenceException e) {
+			LOGGER.error("Exception occurred in searchData:", e);
+			throw e;
+		} finally {
+			cursor.close();
+		}
+		return searchResultList;
+	}
+
+	/**
+	 * Opens a cursor on rows of a HBase table for streaming the PersistentEntity instances corresponding to them. 
+	 * The first result index and max results of the criteria are applied as follows:
+	 * <ul>
+	 * <li>The max results, if positive, limits the rows returned by each region server using a PageFilter and limits the scanner caching, if one 
+	 * is configured, so that rows beyond the requested page are neither read nor transferred. The client's hbase.client.scanner.caching applies
+	 * when the scanner caching is not configured. A PageFilter is not used if the scan batch size is set as the two are 
+	 * incompatible in HBase.</li>
+	 * <li>Rows prior to the first result index are skipped by the cursor as HBase does not support row offsets. Use 
+	 * {@link HBaseCriteria#resumeAfter(byte[])} to start scans from the next page instead, for e.g. when paging through large result sets.</li>
+	 * </ul>
+	 * The Scan object set on the criteria, if any, is not modified.
+	 * 
+	 * @param hbaseTablePool
+	 *            HBase table pool for HBase access
+	 * @param criteria
+	 *            the HBase criteria for the scan
+	 * @param metadata
+	 *            Table mapping details
+	 * @return HBaseEntityCursor that must be closed by the caller
+	 * @throws PersistenceException
+	 *             in case anything goes wrong
+	 */
+	public HBaseEntityCursor openCursor(HTablePool hbaseTablePool, HBaseCriteria criteria, HbaseMapping metadata) throws PersistenceException {
 		HTableInterface table = null;
 		try {
-			table = (HTableInterface) hbaseTablePool.getTable(metadata.getHbaseClass().getTable());
-			// do a scan operation
-			Scan s = constructScanQuery(metadata, criteria);
-			ResultScanner scanner = table.getScanner(s);
-			// check to see if start and end indices have been specified, for pagination say
-			int startIndex = criteria.getFirstResult();
-			int maxResults = criteria.getMaxResults();
-			int count = 0;
-			for (Result resultRow = scanner.next(); resultRow != null; resultRow = scanner.next()) {
-				if (!resultRow.isEmpty() && count >= startIndex) {
-					searchResultList.add(constructEntityFromResultRow(metadata, resultRow, (HBaseEntity)criteria.getManagedClass().newInstance()));
+			HBaseEntityMapping mapping = getEntityMapping(criteria.getManagedClass());
+			Scan scan = constructScanQuery(metadata, criteria);
+			if (scan == criteria.getScan()) {
+				scan = new Scan(scan); // do not modify the Scan passed in through the HBaseCriteria
+			}
+			int firstResult = Math.max(criteria.getFirstResult(), 0);
+			int maxResults = criteria.getMaxResults() > 0 ? criteria.getMaxResults() : -1;
+			int caching = criteria.getParameter(HBaseCriteria.SCANNER_CACHING) == null ? this.scannerCaching : Integer.valueOf((String)criteria.getParameter(HBaseCriteria.SCANNER_CACHING));
+			int batch = criteria.getParameter(HBaseCriteria.SCANNER_BATCH) == null ? this.scannerBatch : Integer.valueOf((String)criteria.getParameter(HBaseCriteria.SCANNER_BATCH));
+			if (batch > 0 && scan.getBatch() <= 0 && (scan.getFilter() == null || !scan.getFilter().hasFilterRow())) {
+				scan.setBatch(batch);
+			}
+			if (maxResults > 0) {
+				long pageSize = (long)firstResult + maxResults;
+				if (scan.getBatch() <= 0) {
+					PageFilter pageFilter = new PageFilter(pageSize);
+					scan.setFilter(scan.getFilter() == null ? pageFilter : new FilterList(FilterList.Operator.MUST_PASS_ALL, Arrays.<Filter>asList(scan.getFilter(), pageFilter)));
 				}
-				count += 1;
-				if (count >= maxResults) {
-					break;
+				if (caching > 0) {
+					caching = (int)Math.min(caching, pageSize);
 				}
 			}
+			if (caching > 0 && scan.getCaching() <= 0) {
+				scan.setCaching(caching);
+			}
+			table = (HTableInterface) hbaseTablePool.getTable(metadata.getHbaseClass().getTable());
+			ResultScanner scanner = table.getScanner(scan);
+			return new HBaseEntityCursor(this, mapping, table, scanner, scan.getBatch() > 0, firstResult, maxResults);
 		} catch (Exception e) {
-			LOGGER.error("Exception occurred in searchData:", e);
-			throw new PersistenceException("Exception occcurred while performing search for table " + metadata.getHbaseClass().getTable(), e);
-		} finally {
 			if (table != null) {
 				try {
 					table.close();
-				} catch (IOException e) {
-					LOGGER.warn("Error returning table to the pool : " + e.getMessage(), e);
+				} catch (IOException ioe) {
+					LOGGER.warn("Error returning table to the pool : " + ioe.getMessage(), ioe);
 				}
 			}
+			LOGGER.error("Exception occurred in searchData:", e);
+			throw new PersistenceException("Exception occcurred while performing search for table " + metadata.getHbaseClass().getTable(), e);
 		}
-		return searchResultList;
 	}
 
 	/**
 	 * Helper method to construct a HBase get query using the meta data
 	 * specified for the specified HBase entity and the row id.
 	 * 
-	 * @param metadata
-	 *            the HBase mapping meta data
+	 * @param mapping
+	 *            the compiled HBase mapping
 	 * @param entity
 	 *            the HBase entity to construct the get query for
 	 * @param rowId
@@ -331,7 +492,8 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 * @throws ConfigurationException
 	 *             in case of HBase access errors
 	 */
-	private Get constructGetQuery(HbaseMapping metadata, HBaseEntity entity, byte[] rowId) throws ConfigurationException {
+	private Get constructGetQuery(HBaseEntityMapping mapping, HBaseEntity entity, byte[] rowId) throws ConfigurationException {
+		HbaseMapping metadata = mapping.getMetadata();
 		Get getRequest = null;
 		try {
 			getRequest = new Get(rowId);
@@ -356,8 +518,8 @@ public class HBaseHandlerDelegate implements InitializingBean {
 					getRequest.setTimeRange(startTimestamp, endTimestamp);
 				}
 			}
-			for (ColumnDefinition column : metadata.getHbaseClass().getColumnDefinition()) {
-				getRequest.addColumn(getColumnFamilyInBytes(column), getColumnQualifierInBytes(entity, column));
+			for (ColumnMapping column : mapping.getColumnMappings()) {
+				getRequest.addColumn(column.getColumnFamily(), getColumnQualifierInBytes(entity, column));
 			}
 		} catch (IOException e) {
 			throw new ConfigurationException("Exception occurred while constructing get query for table " + metadata.getHbaseClass().getTable() + " using entity " + entity.toString(), e);
@@ -426,7 +588,7 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 * Constructs an entity from the HBase query <code>Result</code>
 	 * 
 	 * @param mapping
-	 *            HBase table mapping data
+	 *            compiled HBase table mapping data
 	 * @param resultRow
 	 *            Result of search result
 	 * @param entity
@@ -440,42 +602,41 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 *             attribute of the entity the value corresponds to. Workaround
 	 *             is to use raw HBase APIs for reading data in such cases.
 	 */
-	private HBaseEntity constructEntityFromResultRow(HbaseMapping metadata, Result resultRow, HBaseEntity resEntity) throws ConfigurationException {
+	HBaseEntity constructEntityFromResultRow(HBaseEntityMapping mapping, Result resultRow, HBaseEntity resEntity) throws ConfigurationException {
 		try {
 			// Populate attribute from row key
 			byte[] rowKey = resultRow.getRow();
 
-			populateRowKeyAttributes(metadata, resEntity, rowKey);
+			populateRowKeyAttributes(mapping, resEntity, rowKey);
 
 			// Populate attributes from column values
 			// TODO: How to handle multiple versions of columns?
 			List<KeyValue> keyValuePairs = resultRow.list();
 			if (keyValuePairs != null && keyValuePairs.size() > 0) {
 				for (KeyValue keyValue : keyValuePairs) {
-					String columnFamily = new String(keyValue.getFamily());
-					String columnQualifier = new String(keyValue.getQualifier());
-					ColumnDefinition columnDefinition = findColumnDefinition(metadata, columnFamily, columnQualifier);
-					if (columnDefinition != null) {
-						setAttribute(resEntity, columnDefinition.getValueAttribute(), convertToObject(PropertyUtils.getPropertyDescriptor(resEntity, columnDefinition.getValueAttribute()).getPropertyType(), keyValue.getValue()));
+					ColumnMapping column = mapping.findColumnMapping(keyValue.getBuffer(), keyValue.getFamilyOffset(), keyValue.getFamilyLength(), 
+							keyValue.getQualifierOffset(), keyValue.getQualifierLength());
+					if (column != null) {
+						setAttribute(resEntity, column.getValueAccessor(), convertToObject(column.getValueAccessor().getType(resEntity), keyValue.getValue()));
 
-						if (StringUtils.isNotBlank(columnDefinition.getColumnQualifierAttribute())) {
+						if (column.getColumnQualifierAccessor() != null) {
 							byte[] columnQualifierAttributeValue = keyValue.getQualifier();
 
 							// If column qualifier has fixed string literal
 							// part, then, remove those leading bytes to get the
 							// actual
 							// value of the column qualifier attribute
-							if (StringUtils.isNotBlank(columnDefinition.getColumnQualifier())) {
-								columnQualifierAttributeValue = Bytes.tail(columnQualifierAttributeValue, columnQualifierAttributeValue.length - columnDefinition.getColumnQualifier().getBytes().length);
+							if (column.getColumnQualifier().length > 0) {
+								columnQualifierAttributeValue = Bytes.tail(columnQualifierAttributeValue, columnQualifierAttributeValue.length - column.getColumnQualifier().length);
 							}
 
-							setAttribute(resEntity, columnDefinition.getColumnQualifierAttribute(), convertToObject(PropertyUtils.getPropertyDescriptor(resEntity, columnDefinition.getColumnQualifierAttribute()).getPropertyType(), columnQualifierAttributeValue));
+							setAttribute(resEntity, column.getColumnQualifierAccessor(), convertToObject(column.getColumnQualifierAccessor().getType(resEntity), columnQualifierAttributeValue));
 						}
 					}
 				}
 			}
 		} catch (Exception e) {
-			throw new ConfigurationException("Error while creating entity for table " + metadata.getHbaseClass().getTable(), e);
+			throw new ConfigurationException("Error while creating entity for table " + mapping.getMetadata().getHbaseClass().getTable(), e);
 		}
 		return resEntity;
 	}
@@ -483,24 +644,22 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	/**
 	 * Helper method to populate row key attributes using the specified data
 	 */
-	private void populateRowKeyAttributes(HbaseMapping metadata, PersistentEntity resEntity, byte[] rowKey) throws ConfigurationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+	private void populateRowKeyAttributes(HBaseEntityMapping mapping, PersistentEntity resEntity, byte[] rowKey) throws Exception {
 		// If composite row key, loop through all row key members and populate
 		// entity accordingly
-		if (metadata.getHbaseClass().getRowkeyDefinition().getCompositeRowKey() != null) {
-			List<RowKeyMember> rowKeyMembers = metadata.getHbaseClass().getRowkeyDefinition().getCompositeRowKey().getRowKeyMember();
-
+		if (mapping.isCompositeRowKey()) {
 			int startIndex = 0;
-			for (RowKeyMember rowKeyMember : rowKeyMembers) {
+			for (RowKeyMemberMapping rowKeyMember : mapping.getRowKeyMemberMappings()) {
 				// For each constituent of a composite row key, extract the
 				// corresponding bytes and store it in entity
-				int endIndex = startIndex + rowKeyMember.getValueLength();
+				int endIndex = startIndex + rowKeyMember.getRowKeyMember().getValueLength();
 				byte[] part = extractBytes(rowKey, startIndex, endIndex);
-				setAttribute(resEntity, rowKeyMember.getValueAttribute(), convertToObject(PropertyUtils.getPropertyDescriptor(resEntity, rowKeyMember.getValueAttribute()).getPropertyType(), part));
+				setAttribute(resEntity, rowKeyMember.getAccessor(), convertToObject(rowKeyMember.getAccessor().getType(resEntity), part));
 				startIndex = endIndex;
 			}
 		} else {
 			// Single attribute based row key
-			setAttribute(resEntity, metadata.getHbaseClass().getRowkeyDefinition().getValueAttribute(), convertToObject(PropertyUtils.getPropertyDescriptor(resEntity, metadata.getHbaseClass().getRowkeyDefinition().getValueAttribute()).getPropertyType(), rowKey));
+			setAttribute(resEntity, mapping.getRowKeyAccessor(), convertToObject(mapping.getRowKeyAccessor().getType(resEntity), rowKey));
 		}
 	}
 
@@ -515,54 +674,24 @@ public class HBaseHandlerDelegate implements InitializingBean {
 		return extractedBytes;
 	}
 
-	/**
-	 * This method iterates through the HbaseMapping entries and finds the
-	 * Column definition for column identified by a given
-	 * <code>columnFamily</code> and <code>columnQualifier</code>
-	 * 
-	 * @param metadata
-	 *            HBaseMapping object representing a Hbase table meta data
-	 * @param columnFamilyFromHbaseRow
-	 *            Column family name
-	 * @param columnQualifierFromHbaseRow
-	 *            Column qualifier name
-	 * @return ColumnDefinition instance for the column
-	 */
-	private ColumnDefinition findColumnDefinition(HbaseMapping metadata, String columnFamilyFromHbaseRow, String columnQualifierFromHbaseRow) {
-		for (ColumnDefinition columnDefinition : metadata.getHbaseClass().getColumnDefinition()) {
-			// We are looking for a column definition whose column family
-			// matches the one from HBase, and
-			// whose column qualifier is a prefix in the column qualifier read
-			// from HBase. This is needed
-			// to support those columns which are comprised of a fixed part
-			// string literal value and a variable
-			// value from the entity's attribute. Hence, below code uses
-			// "starsWith" for matching column qualifier.
-			if (columnFamilyFromHbaseRow != null && columnFamilyFromHbaseRow.equals(columnDefinition.getColumnFamily()) && columnQualifierFromHbaseRow != null && columnQualifierFromHbaseRow.startsWith(columnDefinition.getColumnQualifier())) {
-				return columnDefinition;
-			}
-		}
-		return null;
-	}
-
 	/**
 	 * Sets value for an entity's attribute
 	 * 
 	 * @param entity
 	 *            HBase entity that is being updated
-	 * @param attribute
-	 *            Attribute whose value is to be updated
+	 * @param accessor
+	 *            Accessor for the attribute whose value is to be updated
 	 * @param value
 	 *            Value for the attribute
 	 * @throws ConfigurationException
 	 */
-	private void setAttribute(PersistentEntity entity, String attribute, Object value) throws ConfigurationException {
+	private void setAttribute(PersistentEntity entity, PropertyAccessor accessor, Object value) throws ConfigurationException {
 		try {
-			if (StringUtils.isNotBlank(attribute)) {
-				PropertyUtils.setProperty(entity, attribute, value);
+			if (accessor != null) {
+				accessor.setValue(entity, value);
 			}
 		} catch (Exception e) {
-			LOGGER.error("Error setting attribute " + attribute, e);
+			LOGGER.error("Error setting attribute " + accessor.getName(), e);
 		}
 	}
 
@@ -596,17 +725,6 @@ public class HBaseHandlerDelegate implements InitializingBean {
 		return null;
 	}
 
-	/**
-	 * Retrieves a column family name as bytes
-	 * 
-	 * @param column
-	 *            Column definition
-	 * @return byte array representing column family
-	 */
-	private byte[] getColumnFamilyInBytes(ColumnDefinition column) {
-		return Bytes.toBytes(column.getColumnFamily());
-	}
-
 	/**
 	 * Retrieves the value of the column specified by <code>column</code> as
 	 * byte array
@@ -614,12 +732,12 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 * @param entity
 	 *            PersistentEntity in the context,
 	 * @param column
-	 *            Column definition of the column in the context
+	 *            Column mapping of the column in the context
 	 * @return byte array representing column value as needed by HBase APIs
 	 * @throws ConfigurationException
 	 */
-	private byte[] getColumnValueInBytes(PersistentEntity entity, ColumnDefinition column) throws ConfigurationException {
-		return convertToBytes(getAttribute(entity, column.getValueAttribute()));
+	private byte[] getColumnValueInBytes(PersistentEntity entity, ColumnMapping column) throws ConfigurationException {
+		return convertToBytes(getAttribute(entity, column.getValueAccessor()));
 	}
 
 	/**
@@ -631,24 +749,21 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 *            have variable part in column qualifier whose value may have to
 	 *            be retrieved from the PersistentEntity instance.
 	 * @param column
-	 *            Column definition of the column in the context
+	 *            Column mapping of the column in the context
 	 * @return byte array representing column qualifier as needed by HBase APIs
 	 * @throws ConfigurationException
 	 */
-	private byte[] getColumnQualifierInBytes(PersistentEntity entity, ColumnDefinition column) throws ConfigurationException {
-		byte[] columnQualifier = new byte[0];
-		if (StringUtils.isNotBlank(column.getColumnQualifier())) {
-			columnQualifier = Bytes.add(columnQualifier, column.getColumnQualifier().getBytes());
-		}
-		if (StringUtils.isNotBlank(column.getColumnQualifierAttribute())) {
+	private byte[] getColumnQualifierInBytes(PersistentEntity entity, ColumnMapping column) throws ConfigurationException {
+		byte[] columnQualifier = column.getColumnQualifier();
+		if (column.getColumnQualifierAccessor() != null) {
 			try {
-				columnQualifier = Bytes.add(columnQualifier, convertToBytes(getAttribute(entity, column.getColumnQualifierAttribute())));
+				columnQualifier = Bytes.add(columnQualifier, convertToBytes(getAttribute(entity, column.getColumnQualifierAccessor())));
 			} catch (Exception e) {
-				LOGGER.error("Error reading column qualifier value for : " + column.getColumnQualifierAttribute(), e);
+				LOGGER.error("Error reading column qualifier value for : " + column.getColumnQualifierAccessor().getName(), e);
 			}
 		}
 		if (columnQualifier.length == 0) {
-			throw new ConfigurationException("Could not determine the column qualifier value for a column from family: " + column.getColumnFamily());
+			throw new ConfigurationException("Could not determine the column qualifier value for a column from family: " + column.getColumnDefinition().getColumnFamily());
 		}
 		return columnQualifier;
 	}
@@ -659,31 +774,29 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 * 
 	 * @param obj
 	 *            the HBase entity to construct the row key for
-	 * @param rowIdMetaData
-	 *            the row key definition meta data
+	 * @param mapping
+	 *            the compiled HBase mapping containing the row key definition
 	 * @return the row key as a byte array
 	 * @throws ConfigurationException
 	 *             in case of any HBase access exceptions
 	 */
-	private final byte[] constructRowKey(PersistentEntity obj, RowKeyDefinition rowIdMetaData) throws ConfigurationException {
+	private final byte[] constructRowKey(PersistentEntity obj, HBaseEntityMapping mapping) throws ConfigurationException {
 		try {
-			if (rowIdMetaData.getCompositeRowKey() != null) {
+			if (mapping.isCompositeRowKey()) {
 				// Compose row key from multiple attributes
-				List<RowKeyMember> rowKeyMembers = rowIdMetaData.getCompositeRowKey().getRowKeyMember();
-
 				byte[] idValue = new byte[0];
-				for (RowKeyMember rowKeyMember : rowKeyMembers) {
+				for (RowKeyMemberMapping rowKeyMember : mapping.getRowKeyMemberMappings()) {
 					// Get the value of each attribute and concatenate bytes to
 					// form the composite row key
-					idValue = Bytes.add(idValue, convertToBytes(getAttribute(obj, rowKeyMember.getValueAttribute())));
+					idValue = Bytes.add(idValue, convertToBytes(getAttribute(obj, rowKeyMember.getAccessor())));
 				}
 				return idValue;
 			} else {
-				byte[] idValue = convertToBytes(getAttribute(obj, rowIdMetaData.getValueAttribute()));
+				byte[] idValue = convertToBytes(getAttribute(obj, mapping.getRowKeyAccessor()));
 				return idValue;
 			}
 		} catch (Exception e) {
-			LOGGER.error("Error reading ID attribute : " + rowIdMetaData.getValueAttribute(), e);
+			LOGGER.error("Error reading ID attribute : " + mapping.getMetadata().getHbaseClass().getRowkeyDefinition().getValueAttribute(), e);
 			return new byte[0];
 		}
 	}
@@ -720,20 +833,41 @@ public class HBaseHandlerDelegate implements InitializingBean {
 	 * 
 	 * @param entity
 	 *            Entity whose attribute's value is being read
-	 * @param attribute
-	 *            Name of the attribute whose value is being read
+	 * @param accessor
+	 *            Accessor for the attribute whose value is being read
 	 * @return Object represent the value of the attribute
 	 */
-	private Object getAttribute(Object entity, String attribute) {
+	private Object getAttribute(Object entity, PropertyAccessor accessor) {
 		Object returnValue = null;
+		if (accessor == null) {
+			return returnValue;
+		}
 		try {
-			returnValue = PropertyUtils.getProperty(entity, attribute);
+			returnValue = accessor.getValue(entity);
 		} catch (Exception e) {
-			LOGGER.error("Error reading attribute : '" + attribute + "' in class " + entity.getClass().getName(), e);
+			LOGGER.error("Error reading attribute : '" + accessor.getName() + "' in class " + entity.getClass().getName(), e);
 		}
 		return returnValue;
 	}
 
+	/**
+	 * Returns the compiled HBase mapping for the specified entity class, creating and caching it if required
+	 * 
+	 * @param entityClass
+	 *            the HBase entity class
+	 * @return the compiled HBase mapping
+	 * @throws ConfigurationException
+	 *             in case the entity class mapping could not be compiled
+	 */
+	private HBaseEntityMapping getEntityMapping(Class<?> entityClass) throws ConfigurationException {
+		HBaseEntityMapping mapping = this.entityMappings.get(entityClass);
+		if (mapping == null) {
+			mapping = new HBaseEntityMapping(this.hbaseMappingContainer.getMappingForClass(entityClass.getName()), entityClass);
+			this.entityMappings.put(entityClass, mapping);
+		}
+		return mapping;
+	}
+
 	/** Getter/Setter methods */
 	public void setUseWAL(Boolean useWAL) {
 		this.useWAL = useWAL;
@@ -743,4 +877,20 @@ public class HBaseHandlerDelegate implements InitializingBean {
 		this.useAutoFlush = useAutoFlush;
 	}
 
+	public int getScannerCaching() {
+		return this.scannerCaching;
+	}
+
+	public void setScannerCaching(int scannerCaching) {
+		this.scannerCaching = scannerCaching;
+	}
+
+	public int getScannerBatch() {
+		return this.scannerBatch;
+	}
+
+	public void setScannerBatch(int scannerBatch) {
+		this.scannerBatch = scannerBatch;
+	}
+
 }
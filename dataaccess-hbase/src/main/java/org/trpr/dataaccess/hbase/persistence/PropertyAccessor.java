@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.dataaccess.hbase.persistence;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import org.apache.commons.beanutils.PropertyUtils;
+
+/**
+ * The <code>PropertyAccessor</code> reads and writes a single property of an entity class. Simple properties are accessed using method handles
+ * to the getter and setter that are resolved once when the accessor is created, instead of introspecting the entity on every access.
+ * Nested, indexed and mapped property expressions are not resolved upfront and are delegated to commons-beanutils {@link PropertyUtils}.
+ *
+ * @author agent
+ * @version 1.0, 17/10/2026
+ */
+class PropertyAccessor {
+
+	/** The method types that getters and setters are adapted to*/
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	/** The entity class and property name*/
+	private final Class<?> beanClass;
+	private final String name;
+
+	/** Indicates if the property expression is resolved using PropertyUtils*/
+	private final boolean isExpression;
+
+	/** The property type and method handles, resolved for simple properties. May be null if the property does not exist or is not readable/writeable*/
+	private Class<?> type;
+	private MethodHandle getter;
+	private MethodHandle setter;
+
+	/**
+	 * Constructor for this class
+	 * @param beanClass the entity class
+	 * @param name the property name or expression
+	 * @throws IntrospectionException in case of errors introspecting the entity class
+	 * @throws IllegalAccessException in case the property getter or setter is not accessible
+	 */
+	PropertyAccessor(Class<?> beanClass, String name) throws IntrospectionException, IllegalAccessException {
+		this.beanClass = beanClass;
+		this.name = name;
+		this.isExpression = name.indexOf('.') >= 0 || name.indexOf('[') >= 0 || name.indexOf('(') >= 0;
+		if (!this.isExpression) {
+			for (PropertyDescriptor descriptor : Introspector.getBeanInfo(beanClass).getPropertyDescriptors()) {
+				if (descriptor.getName().equals(name)) {
+					this.type = descriptor.getPropertyType();
+					this.getter = toMethodHandle(descriptor.getReadMethod(), GETTER_TYPE);
+					this.setter = toMethodHandle(descriptor.getWriteMethod(), SETTER_TYPE);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the type of the property
+	 * @param bean the entity instance, used only for property expressions
+	 * @return the property type
+	 * @throws Exception in case the property does not exist
+	 */
+	Class<?> getType(Object bean) throws Exception {
+		if (this.isExpression) {
+			return PropertyUtils.getPropertyType(bean, this.name);
+		}
+		if (this.type == null) {
+			throw new NoSuchMethodException("Unknown property '" + this.name + "' on class '" + this.beanClass.getName() + "'");
+		}
+		return this.type;
+	}
+
+	/**
+	 * Returns the value of the property from the specified entity
+	 * @param bean the entity instance
+	 * @return the property value
+	 * @throws Exception in case the property does not exist or is not readable
+	 */
+	Object getValue(Object bean) throws Exception {
+		if (this.isExpression) {
+			return PropertyUtils.getProperty(bean, this.name);
+		}
+		if (this.getter == null) {
+			throw new NoSuchMethodException("Property '" + this.name + "' has no getter method in class '" + this.beanClass.getName() + "'");
+		}
+		try {
+			return this.getter.invokeExact(bean);
+		} catch (Exception e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException("Error reading property '" + this.name + "' in class '" + this.beanClass.getName() + "'", e);
+		}
+	}
+
+	/**
+	 * Sets the value of the property on the specified entity
+	 * @param bean the entity instance
+	 * @param value the property value
+	 * @throws Exception in case the property does not exist or is not writeable
+	 */
+	void setValue(Object bean, Object value) throws Exception {
+		if (this.isExpression) {
+			PropertyUtils.setProperty(bean, this.name, value);
+			return;
+		}
+		if (this.setter == null) {
+			throw new NoSuchMethodException("Property '" + this.name + "' has no setter method in class '" + this.beanClass.getName() + "'");
+		}
+		try {
+			this.setter.invokeExact(bean, value);
+		} catch (Exception e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException("Error setting property '" + this.name + "' in class '" + this.beanClass.getName() + "'", e);
+		}
+	}
+
+	/**
+	 * Returns the property name or expression
+	 * @return the property name
+	 */
+	String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Helper method to create a method handle of the specified type for the specified method
+	 */
+	private static MethodHandle toMethodHandle(Method method, MethodType methodType) throws IllegalAccessException {
+		if (method == null) {
+			return null;
+		}
+		method.setAccessible(true); // the entity class may not be public
+		return MethodHandles.lookup().unreflect(method).asType(methodType);
+	}
+}
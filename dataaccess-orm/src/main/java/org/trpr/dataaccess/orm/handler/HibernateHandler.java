@@ -53,11 +53,20 @@ import org.trpr.platform.core.spi.persistence.PersistentEntity;
 @ManagedResource(objectName = "spring.application:type=Trooper,application=Performance-Metrics,name=HibernateMetrics-", description = "Hibernate Performance Metrics Logger")
 public class HibernateHandler extends RDBMSHandler {
 
+	/** The default number of entities saved between session flushes in bulk persistence*/
+	private static final int DEFAULT_BATCH_SIZE = 50;
+
 	/**
 	 * Hibernate Template to provide the hibernate API.
 	 */
 	private HibernateTemplate template;
 
+	/**
+	 * The number of entities saved between session flushes in {@link #makePersistent(Collection)}. Should ideally match the 
+	 * "hibernate.jdbc.batch_size" property of the session factory so that each flush is sent to the database as JDBC statement batches.
+	 */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
 	/**
 	 * No arg constructor.
 	 */
@@ -182,6 +191,54 @@ public class HibernateHandler extends RDBMSHandler {
 		return entity;
 	}
 
+	/**
+	 * Overriden super type method. Saves all the entities in a single Hibernate session and flushes and clears the session after every 
+	 * {@link #getBatchSize()} entities, instead of clearing it after each entity. This allows Hibernate to group the inserts and updates into 
+	 * JDBC statement batches when "hibernate.jdbc.batch_size" is set on the session factory, while keeping the first-level cache bounded.
+	 * @see PersistenceHandler#makePersistent(Collection)
+	 */
+	public Collection<PersistentEntity> makePersistent(final Collection<PersistentEntity> entities) throws PersistenceException {
+		// signal performance metrics capture. actual capture will happen only if it has been enabled via #startPerformanceMetricsLogging(). Default is off
+		this.performanceMetricsLogger.startPerformanceMetricsCapture();
+		
+		try {
+			this.template.execute(new HibernateCallback<Object>() {
+				public Object doInHibernate(Session session) throws HibernateException, SQLException {
+					int count = 0;
+					for (PersistentEntity entity : entities) {
+						if(entity.getEntityName() != null) {
+							session.saveOrUpdate(entity.getEntityName(), entity);
+						} else {
+							session.saveOrUpdate(entity);
+						}
+						if (++count % batchSize == 0) {
+							session.flush();
+							session.clear();
+						}
+					}
+					session.flush();
+					return null;
+				}
+			});
+		}catch(DataIntegrityViolationException die){
+			throw new org.trpr.platform.core.spi.persistence.DataIntegrityViolationException(
+					"Data integrity violation persisting batch of " + entities.size() + " entities", die);
+		} catch (DataAccessException de) {
+			throw new PersistenceException(
+					"Persistence failure persisting batch of " + entities.size() + " entities", de);
+		} catch (Exception e) {
+			throw new PersistenceException(
+					"Unrecognized/Unhandled Exception while persisting batch of " + entities.size() + " entities", e);			
+		} finally {
+			template.clear();			
+		}
+		
+		// log performance metrics captured. actual capture will happen only if it has been enabled via #startPerformanceMetricsLogging(). Default is off
+		this.performanceMetricsLogger.logPerformanceMetrics("HibernateHandler.makePersistent", "batch:" + entities.size());
+		
+		return entities;
+	}
+
 	/**
 	 * Interface method implementation.
 	 * @see PersistenceHandler#makeTransient(PersistentEntity)
@@ -248,6 +305,15 @@ public class HibernateHandler extends RDBMSHandler {
 	public HibernateTemplate getTemplate() {
 		return this.template;
 	}	
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Batch size must be positive : " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
 	public PerformanceMetricsLogger getPerformanceMetricsLogger() {
 		return this.performanceMetricsLogger;
 	}
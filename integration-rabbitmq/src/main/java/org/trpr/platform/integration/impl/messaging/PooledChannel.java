@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trpr.platform.integration.impl.messaging;
+
+import com.rabbitmq.client.Channel;
+
+/**
+ * The <code>PooledChannel</code> class holds a {@link Channel} borrowed from the channel pool of a {@link RabbitConnectionHolder} along with its
+ * publishing state i.e. the {@link PublisherConfirmListener} if the channel is in confirm mode and the number of messages published since the last
+ * TX commit if the channel is in TX mode. A PooledChannel is used by only one thread at a time, between borrowing it from and returning it to the pool.
+ * 
+ * @author agent
+ * @version 1.0, 17/10/2026
+ */
+public class PooledChannel {
+
+	/** The pooled Channel*/
+	private Channel channel;
+	
+	/** The listener tracking publisher confirms, null if the channel is not in confirm mode*/
+	private PublisherConfirmListener publisherConfirmListener;
+	
+	/** The number of messages published and not yet committed, when the channel is in TX mode*/
+	private int uncommittedMessageCount;
+	
+	/**
+	 * Constructor for this class
+	 * @param channel the pooled Channel
+	 * @param publisherConfirmListener the PublisherConfirmListener for the channel, may be null
+	 */
+	public PooledChannel(Channel channel, PublisherConfirmListener publisherConfirmListener) {
+		this.channel = channel;
+		this.publisherConfirmListener = publisherConfirmListener;
+	}
+	
+	/**
+	 * Increments the count of uncommitted messages published on the channel
+	 * @return the incremented count
+	 */
+	public int incrementUncommittedMessageCount() {
+		return ++this.uncommittedMessageCount;
+	}
+
+	/**
+	 * Resets the count of uncommitted messages, typically after a TX commit
+	 */
+	public void resetUncommittedMessageCount() {
+		this.uncommittedMessageCount = 0;
+	}
+	
+	/** == Start getter methods*/
+	public Channel getChannel() {
+		return this.channel;
+	}
+	public PublisherConfirmListener getPublisherConfirmListener() {
+		return this.publisherConfirmListener;
+	}
+	public int getUncommittedMessageCount() {
+		return this.uncommittedMessageCount;
+	}
+	/** == End getter methods*/
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trpr.platform.integration.impl.messaging;
+
+import java.io.IOException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.trpr.platform.integration.spi.messaging.MessagingException;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.QueueingConsumer;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * The <code>PrefetchingConsumer</code> is a push style RabbitMQ consumer that buffers the messages delivered by the broker, up to the prefetch count set 
+ * on the channel using {@link RabbitMQConfiguration#getPrefetchCount()}, for consumption one at a time using {@link #nextDelivery(long)}.
+ * 
+ * Consumed messages are acknowledged cumulatively i.e. using a single multiple-ack for a batch of messages. A batch is acknowledged when it reaches
+ * {@link RabbitMQConfiguration#getAckBatchSize()} messages, when its oldest message was consumed more than {@link RabbitMQConfiguration#getAckBatchWindowMillis()} 
+ * earlier, when the buffer runs empty and before the consumer is closed. Messages are acknowledged only after they are handed over for consumption,
+ * thereby preserving at-least-once delivery : unacknowledged messages are redelivered by the broker if the connection fails. 
+ * 
+ * Messages consumed by multiple threads may be acknowledged out of delivery order. A multiple-ack is therefore sent only for a contiguous run of consumed 
+ * delivery tags above the highest tag acknowledged so far. Consumed messages beyond a gap in the delivery tags, i.e. with a lower tag still being consumed, 
+ * are acknowledged one at a time. Tags that have already been acknowledged are ignored, as acknowledging these again is a channel error. This consumer 
+ * expects to be the only consumer on its channel.
+ * 
+ * @author agent
+ * @version 1.0, 17/10/2026
+ */
+public class PrefetchingConsumer extends DefaultConsumer {
+
+	/** Marker for the consumer being cancelled or shutdown*/
+	private static final QueueingConsumer.Delivery POISON = new QueueingConsumer.Delivery(null, null, null);
+
+	/** The buffer of delivered messages*/
+	private BlockingQueue<QueueingConsumer.Delivery> deliveries = new LinkedBlockingQueue<QueueingConsumer.Delivery>();
+
+	/** The ack batch size and window*/
+	private int ackBatchSize;
+	private long ackBatchWindowMillis;
+
+	/** The ack state i.e. the tag up to which all deliveries are acknowledged, consumed tags pending acknowledgement, tags above the former that have been 
+	 * acknowledged individually and the consumption time of the oldest pending tag*/
+	private long ackedUpToTag;
+	private SortedSet<Long> pendingAckTags = new TreeSet<Long>();
+	private SortedSet<Long> individuallyAckedTags = new TreeSet<Long>();
+	private long firstPendingAckTime;
+
+	/** Set if the consumer is cancelled or its channel is shutdown*/
+	private volatile ShutdownSignalException shutdownSignal;
+	private volatile boolean cancelled;
+
+	/**
+	 * Constructor for this class
+	 * @param channel the Channel to consume from
+	 * @param ackBatchSize the maximum number of messages acknowledged in a batch
+	 * @param ackBatchWindowMillis the maximum time in milliseconds that a consumed message may stay unacknowledged when consuming further messages
+	 */
+	public PrefetchingConsumer(Channel channel, int ackBatchSize, long ackBatchWindowMillis) {
+		super(channel);
+		this.ackBatchSize = Math.max(ackBatchSize, 1);
+		this.ackBatchWindowMillis = ackBatchWindowMillis;
+	}
+
+	/**
+	 * Overriden superclass method. Buffers the delivered message
+	 * @see com.rabbitmq.client.DefaultConsumer#handleDelivery(java.lang.String, com.rabbitmq.client.Envelope, com.rabbitmq.client.AMQP.BasicProperties, byte[])
+	 */
+	public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) throws IOException {
+		this.deliveries.add(new QueueingConsumer.Delivery(envelope, properties, body));
+	}
+
+	/**
+	 * Overriden superclass method. Wakes up threads waiting for messages
+	 * @see com.rabbitmq.client.DefaultConsumer#handleShutdownSignal(java.lang.String, com.rabbitmq.client.ShutdownSignalException)
+	 */
+	public void handleShutdownSignal(String consumerTag, ShutdownSignalException sig) {
+		this.shutdownSignal = sig;
+		this.deliveries.add(POISON);
+	}
+
+	/**
+	 * Overriden superclass method. Wakes up threads waiting for messages
+	 * @see com.rabbitmq.client.DefaultConsumer#handleCancel(java.lang.String)
+	 */
+	public void handleCancel(String consumerTag) throws IOException {
+		this.cancelled = true;
+		this.deliveries.add(POISON);
+	}
+
+	/**
+	 * Returns the next buffered message, waiting for a message to be delivered if the buffer is empty. Acknowledges pending consumed messages 
+	 * before waiting, as the broker will not deliver more messages than the prefetch count until consumed messages are acknowledged.
+	 * @param timeoutMillis the maximum time to wait in milliseconds, a value less than or equal to 0 to wait indefinitely
+	 * @return the next message or null if the wait timed out
+	 * @throws MessagingException if the consumer is cancelled or the channel is shutdown
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws IOException in case of errors acknowledging messages
+	 */
+	public QueueingConsumer.Delivery nextDelivery(long timeoutMillis) throws InterruptedException, IOException {
+		QueueingConsumer.Delivery delivery = this.deliveries.poll();
+		if (delivery == null) {
+			this.flushAcks();
+			delivery = timeoutMillis > 0 ? this.deliveries.poll(timeoutMillis, TimeUnit.MILLISECONDS) : this.deliveries.take();
+		}
+		if (delivery == POISON || (delivery == null && (this.shutdownSignal != null || this.cancelled))) {
+			this.deliveries.add(POISON); // for other threads waiting on this consumer
+			if (this.shutdownSignal != null) {
+				throw new MessagingException("Consumer channel has been shutdown", this.shutdownSignal);
+			}
+			throw new MessagingException("Consumer has been cancelled");
+		}
+		return delivery;
+	}
+
+	/**
+	 * Marks the specified delivery as consumed. The delivery is acknowledged along with other consumed messages when the ack batch is complete.
+	 * Delivery tags that have already been acknowledged are ignored.
+	 * @param deliveryTag the delivery tag of the consumed message
+	 * @throws IOException in case of errors acknowledging messages
+	 */
+	public synchronized void acknowledge(long deliveryTag) throws IOException {
+		if (deliveryTag <= this.ackedUpToTag || this.individuallyAckedTags.contains(deliveryTag) || !this.pendingAckTags.add(deliveryTag)) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (this.pendingAckTags.size() == 1) {
+			this.firstPendingAckTime = now;
+		}
+		if (this.pendingAckTags.size() >= this.ackBatchSize || now - this.firstPendingAckTime >= this.ackBatchWindowMillis) {
+			this.flushAcks();
+		}
+	}
+
+	/**
+	 * Acknowledges all consumed messages that are pending acknowledgement. Uses a single multiple-ack for the contiguous run of consumed tags following the
+	 * highest acknowledged tag, and individual acks for the rest.
+	 * @throws IOException in case of errors acknowledging messages
+	 */
+	public synchronized void flushAcks() throws IOException {
+		if (this.pendingAckTags.isEmpty()) {
+			return;
+		}
+		// find the end of the run of consumed or already acknowledged tags that follows the highest acknowledged tag
+		long runEndTag = this.ackedUpToTag;
+		long multipleAckTag = -1;
+		while (true) {
+			if (this.pendingAckTags.contains(runEndTag + 1)) {
+				multipleAckTag = runEndTag + 1;
+			} else if (!this.individuallyAckedTags.contains(runEndTag + 1)) {
+				break;
+			}
+			runEndTag += 1;
+		}
+		if (multipleAckTag > 0) {
+			this.getChannel().basicAck(multipleAckTag, true);
+		}
+		if (runEndTag > this.ackedUpToTag) {
+			this.pendingAckTags.headSet(runEndTag + 1).clear();
+			this.individuallyAckedTags.headSet(runEndTag + 1).clear();
+			this.ackedUpToTag = runEndTag;
+		}
+		while (!this.pendingAckTags.isEmpty()) {
+			Long deliveryTag = this.pendingAckTags.first();
+			this.getChannel().basicAck(deliveryTag, false);
+			this.pendingAckTags.remove(deliveryTag);
+			this.individuallyAckedTags.add(deliveryTag);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trpr.platform.integration.impl.messaging;
+
+import org.trpr.platform.integration.spi.messaging.MessagingException;
+
+/**
+ * Class <code>PublisherConfirmException</code> is a sub-type of the {@link MessagingException} used to signal that a published message was not 
+ * confirmed by the broker i.e. was nacked or that waiting for its confirm timed out or failed. The message may or may not have been delivered, 
+ * therefore publishing it again on another connection may create duplicates.
+ *  
+ * @author agent
+ * @version 1.0, 17/10/2026
+ */
+public class PublisherConfirmException extends MessagingException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor for this Exception
+	 * @param message the Exception message as String
+	 */
+	public PublisherConfirmException(String message) {
+		super(message);
+	}
+
+	/**
+	 * Constructor for this Exception
+	 * @param message the Exception message as String
+	 * @param cause the underlying cause
+	 */
+	public PublisherConfirmException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
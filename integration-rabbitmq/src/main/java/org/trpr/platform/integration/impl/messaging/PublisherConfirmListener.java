@@ -0,0 +1,198 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trpr.platform.integration.impl.messaging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.trpr.platform.core.impl.logging.LogFactory;
+import org.trpr.platform.core.spi.logging.Logger;
+
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * The <code>PublisherConfirmListener</code> class tracks the publisher confirms of a RabbitMQ channel that is in confirm mode. The sequence number of 
+ * each published message is registered as outstanding before the message is published and is cleared when the broker acknowledges the message, 
+ * possibly along with many other messages. Publishers may wait for outstanding confirms to fall below a bound, thereby limiting the messages that
+ * may be lost on a connection failure, or to reach zero at the end of a batch.
+ * 
+ * Messages that are negatively acknowledged by the broker are lost. These are logged, counted and reported as a {@link PublisherConfirmException} to 
+ * the publisher of the nacked message, if the nack arrives before that publisher has finished waiting for confirms. Nacks are tracked per sequence 
+ * number and are never reported to publishers of other messages. This listener must also be registered as a shutdown listener of the channel, so that 
+ * waiting publishers fail fast when the channel is shutdown.
+ * 
+ * @author agent
+ * @version 1.0, 17/10/2026
+ */
+public class PublisherConfirmListener implements ConfirmListener, ShutdownListener {
+
+	/**
+	 * The Logger instance for this class
+	 */
+	private static final Logger LOGGER = LogFactory.getLogger(PublisherConfirmListener.class);
+
+	/** Sequence numbers of published messages that are yet to be confirmed. Guarded by this instance's monitor*/
+	private SortedSet<Long> outstandingConfirms = new TreeSet<Long>();
+
+	/** The number of messages that were negatively acknowledged by the broker*/
+	private long nackedCount;
+
+	/** Sequence numbers of messages whose publishers have not finished waiting for confirms, and the nacked ones among them that are yet to be reported*/
+	private Set<Long> unawaitedPublishes = new HashSet<Long>();
+	private Set<Long> unreportedNacks = new HashSet<Long>();
+
+	/** Indicates if the channel has been shutdown, in which case outstanding confirms will never arrive*/
+	private boolean terminated;
+
+	/**
+	 * Registers the specified publish sequence number as outstanding. Must be called before the message is published.
+	 * @param sequenceNo the publish sequence number of the message, from Channel#getNextPublishSeqNo()
+	 */
+	public synchronized void addOutstandingConfirm(long sequenceNo) {
+		this.outstandingConfirms.add(sequenceNo);
+		this.unawaitedPublishes.add(sequenceNo);
+	}
+
+	/**
+	 * Interface method implementation. Clears the acknowledged sequence numbers
+	 * @see com.rabbitmq.client.ConfirmListener#handleAck(long, boolean)
+	 */
+	public synchronized void handleAck(long deliveryTag, boolean multiple) {
+		this.clearOutstandingConfirms(deliveryTag, multiple);
+	}
+
+	/**
+	 * Interface method implementation. Clears and counts the negatively acknowledged sequence numbers and records the ones whose publishers are 
+	 * yet to finish waiting for confirms, for reporting to these publishers
+	 * @see com.rabbitmq.client.ConfirmListener#handleNack(long, boolean)
+	 */
+	public synchronized void handleNack(long deliveryTag, boolean multiple) {
+		List<Long> nackedSequenceNos = this.clearOutstandingConfirms(deliveryTag, multiple);
+		for (Long sequenceNo : nackedSequenceNos) {
+			if (this.unawaitedPublishes.contains(sequenceNo)) {
+				this.unreportedNacks.add(sequenceNo);
+			}
+		}
+		this.nackedCount += nackedSequenceNos.size();
+		LOGGER.error("Broker nacked " + nackedSequenceNos.size() + " published message(s) up to sequence number : " + deliveryTag + ". Message(s) are lost.");
+	}
+
+	/**
+	 * Interface method implementation. Terminates this listener as confirms for the shutdown channel will never arrive
+	 * @see com.rabbitmq.client.ShutdownListener#shutdownCompleted(com.rabbitmq.client.ShutdownSignalException)
+	 */
+	public void shutdownCompleted(ShutdownSignalException cause) {
+		this.terminate();
+	}
+
+	/**
+	 * Waits until the number of outstanding confirms is no more than the specified count, on behalf of the publisher of the message with the specified
+	 * sequence number. Reports a nack of that message, if received by the time this method returns. Must be called once after each publish.
+	 * @param sequenceNo the publish sequence number of the message published by the caller
+	 * @param maxOutstandingConfirms the maximum number of outstanding confirms to wait for
+	 * @param timeoutMillis the maximum time to wait in milliseconds
+	 * @throws PublisherConfirmException in case of timeout, interruption, if the broker nacked the message with the specified sequence number or if 
+	 * the channel was shutdown with confirms outstanding
+	 */
+	public synchronized void awaitOutstandingConfirms(long sequenceNo, int maxOutstandingConfirms, long timeoutMillis) throws PublisherConfirmException {
+		try {
+			this.awaitOutstandingConfirms(maxOutstandingConfirms, timeoutMillis);
+			if (this.unreportedNacks.remove(sequenceNo)) {
+				throw new PublisherConfirmException("Broker nacked published message with sequence number : " + sequenceNo);
+			}
+		} finally {
+			this.unawaitedPublishes.remove(sequenceNo);
+			this.unreportedNacks.remove(sequenceNo);
+		}
+	}
+
+	/**
+	 * Waits until the number of outstanding confirms is no more than the specified count. Nacks are not reported to the caller, but are logged and
+	 * counted as they are received. Used for draining outstanding confirms, for e.g. before closing the channel.
+	 * @param maxOutstandingConfirms the maximum number of outstanding confirms to wait for
+	 * @param timeoutMillis the maximum time to wait in milliseconds
+	 * @throws PublisherConfirmException in case of timeout, interruption or if the channel was shutdown with confirms outstanding
+	 */
+	public synchronized void awaitOutstandingConfirms(int maxOutstandingConfirms, long timeoutMillis) throws PublisherConfirmException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (this.outstandingConfirms.size() > maxOutstandingConfirms) {
+			if (this.terminated) {
+				throw new PublisherConfirmException("Channel shutdown with " + this.outstandingConfirms.size() + " unconfirmed message(s)");
+			}
+			long waitMillis = deadline - System.currentTimeMillis();
+			if (waitMillis <= 0) {
+				throw new PublisherConfirmException("Timed out after " + timeoutMillis + " ms waiting for publisher confirms. Unconfirmed message(s) : " 
+						+ this.outstandingConfirms.size());
+			}
+			try {
+				this.wait(waitMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new PublisherConfirmException("Interrupted while waiting for publisher confirms", e);
+			}
+		}
+	}
+
+	/**
+	 * Marks the channel tracked by this listener as shutdown and wakes up all threads waiting for confirms
+	 */
+	public synchronized void terminate() {
+		this.terminated = true;
+		this.notifyAll();
+	}
+
+	/**
+	 * Returns the number of published messages that are yet to be confirmed
+	 * @return the outstanding confirms count
+	 */
+	public synchronized int getOutstandingConfirmCount() {
+		return this.outstandingConfirms.size();
+	}
+
+	/**
+	 * Returns the number of messages that were negatively acknowledged by the broker i.e. lost
+	 * @return the nacked messages count
+	 */
+	public synchronized long getNackedCount() {
+		return this.nackedCount;
+	}
+
+	/**
+	 * Helper method to clear the confirmed sequence numbers and wake up threads waiting for confirms. Returns the sequence numbers cleared
+	 */
+	private List<Long> clearOutstandingConfirms(long deliveryTag, boolean multiple) {
+		List<Long> confirmed = Collections.emptyList();
+		if (multiple) {
+			SortedSet<Long> confirmedSet = this.outstandingConfirms.headSet(deliveryTag + 1);
+			confirmed = new ArrayList<Long>(confirmedSet);
+			confirmedSet.clear();
+		} else if (this.outstandingConfirms.remove(deliveryTag)) {
+			confirmed = Collections.singletonList(deliveryTag);
+		}
+		if (!confirmed.isEmpty()) {
+			this.notifyAll();
+		}
+		return confirmed;
+	}
+}
@@ -17,6 +17,13 @@
 package org.trpr.platform.integration.impl.messaging;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.trpr.platform.core.impl.logging.LogFactory;
 import org.trpr.platform.core.spi.logging.Logger;
@@ -33,6 +40,11 @@ import com.rabbitmq.client.ShutdownSignalException;
  * The <code>RabbitConnectionHolder</code> class is a convenience class for creating and holding RabbitMQ connection related objects.
  * This utility class is used by {@link RabbitMQMessagePublisherImpl} , {@link RabbitMQMessageConsumerImpl} and the {@link RabbitMQRPCClientImpl}  
  * 
+ * This class may additionally hold a bounded pool of channels on the connection, if {@link RabbitMQRpcConfiguration#getChannelPoolSize()} is greater than 0.
+ * Channels are created lazily, are borrowed by publishing threads using {@link #borrowChannel()} and returned using {@link #returnChannel(PooledChannel, boolean)}.
+ * Channels that fail or are closed are discarded when returned and are replaced by new channels on subsequent borrowing. Consumers continue to use the
+ * single channel that carries the consumer.
+ * 
  * @author Regunath B
  * @version 1.0, 28/05/2012
  */
@@ -47,7 +59,19 @@ public class RabbitConnectionHolder implements ShutdownListener {
 	/** Connection related objects*/
 	private Connection conn;
 	private Channel channel;
-	private QueueingConsumer consumer;
+	private RpcReplyDispatcher rpcReplyDispatcher;
+	private PrefetchingConsumer prefetchingConsumer;
+	
+	/** The listener tracking publisher confirms, if the channel is in confirm mode*/
+	private PublisherConfirmListener publisherConfirmListener;
+	
+	/** The disable TX override used in creating the connection, applied to pooled channels as well*/
+	private boolean disableTX;
+	
+	/** The idle pooled channels, all pooled channels and the count of pooled channels. The pool is null if channel pooling is not enabled*/
+	private BlockingQueue<PooledChannel> channelPool;
+	private Set<PooledChannel> pooledChannels = Collections.newSetFromMap(new ConcurrentHashMap<PooledChannel, Boolean>());
+	private AtomicInteger pooledChannelCount = new AtomicInteger();
 	
 	/** The RPC replyTo queue name if this class was created with RabbitMQRpcConfiguration */
 	private String rpcReplyToQueueName;
@@ -103,16 +127,12 @@ public class RabbitConnectionHolder implements ShutdownListener {
 			
 			synchronized (this) { // all code blocks that mutate the connection and channel objects held by this class are synchronized
 			
+				this.disableTX = disableTX;
 				try {
-					// Setting the pre-fetch value as 1. This is set to achieve message distribution across multiple consumers. 
-					// The value "1" is set as default for the RabbitMQMessageConsumerImpl that uses this class. 
-					// So any application using the RabbitMQMessageConsumerImpl will have prefetch value set as "1".
-					this.channel.basicQos(1);
-					// enable TX mode on the channel if messages are durable and the disableTX override flag has not been set (typically for message consumers) and
-					// if no TX disabling override has been specified
-					if (rabbitMQConfiguration.isDurable() && !rabbitMQConfiguration.isDisableTX() && !disableTX) {
-						this.channel.txSelect();
-					}
+					// Setting the pre-fetch value as configured, default is 1. The default value of "1" achieves message distribution across multiple consumers. 
+					// Higher values allow the RabbitMQMessageConsumerImpl that uses this class to consume messages without a network round trip per message.
+					this.channel.basicQos(rabbitMQConfiguration.getPrefetchCount());
+					this.publisherConfirmListener = this.selectPublishMode(this.channel);
 					if (!rabbitMQConfiguration.isUsePredeclaredQueues()) { // declare the queue only if we are required to create queues i.e. not use pre-created queues
 						if (rabbitMQConfiguration.isDlqEnabled()) {
 			            	dlQueue = rabbitMQConfiguration.getQueueName() + RabbitMQConfiguration.DEAD_SUFFIX; // append the DLQ suffix to the queue name declared in the endpoint
@@ -160,8 +180,7 @@ public class RabbitConnectionHolder implements ShutdownListener {
 			return;
 		}		
 		if (this.rabbitMQConfiguration != null) {
-			this.createConsumer(this.rabbitMQConfiguration, 
-					this.rabbitMQConfiguration.getQueueName(), this.rabbitMQConfiguration.isNoAck()); // set up a regular consumer
+			this.createPrefetchingConsumer(this.rabbitMQConfiguration); // set up a regular consumer
 		}			
 	}
 	
@@ -216,11 +235,119 @@ public class RabbitConnectionHolder implements ShutdownListener {
 	}
 	
 	/**
-	 * Returns the QueueingConsumer created by this class
-	 * @return the QueueingConsumer instance
+	 * Returns the RpcReplyDispatcher consuming RPC replies, if this class was created with {@link RabbitMQRpcConfiguration}
+	 * @return the RpcReplyDispatcher instance
+	 */
+	public RpcReplyDispatcher getRpcReplyDispatcher() {
+		return this.rpcReplyDispatcher;
+	}
+	
+	/**
+	 * Returns the PrefetchingConsumer created by this class, if it was created with {@link RabbitMQConfiguration}
+	 * @return the PrefetchingConsumer instance
+	 */
+	public PrefetchingConsumer getPrefetchingConsumer() {
+		return this.prefetchingConsumer;
+	}
+	
+	/**
+	 * Returns a QueueingConsumer view of the PrefetchingConsumer created by this class, for callers of the QueueingConsumer API. Messages returned by
+	 * the view are not acknowledged by the PrefetchingConsumer and must be acknowledged on the channel by the caller, as before.
+	 * @return the QueueingConsumer view or null if no PrefetchingConsumer has been created, for e.g. if this class was created with {@link RabbitMQRpcConfiguration}
+	 * @deprecated use {@link #getPrefetchingConsumer()} and acknowledge messages using {@link PrefetchingConsumer#acknowledge(long)} instead
 	 */
+	@Deprecated
 	public QueueingConsumer getConsumer() {
-		return this.consumer;
+		final PrefetchingConsumer consumer = this.prefetchingConsumer;
+		if (consumer == null) {
+			return null;
+		}
+		return new QueueingConsumer(consumer.getChannel()) {
+			public QueueingConsumer.Delivery nextDelivery() throws InterruptedException {
+				return this.nextDeliveryFromConsumer(0); // waits indefinitely
+			}
+			public QueueingConsumer.Delivery nextDelivery(long timeout) throws InterruptedException {
+				return this.nextDeliveryFromConsumer(Math.max(timeout, 1));
+			}
+			public String getConsumerTag() {
+				return consumer.getConsumerTag();
+			}
+			private QueueingConsumer.Delivery nextDeliveryFromConsumer(long timeoutMillis) throws InterruptedException {
+				try {
+					return consumer.nextDelivery(timeoutMillis);
+				} catch (IOException e) {
+					throw new MessagingException("Error acknowledging consumed messages : " + e.getMessage(), e);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Checks if channel pooling is enabled for the connection held by this class
+	 * @return true if channel pooling is enabled
+	 */
+	public boolean isChannelPoolEnabled() {
+		return this.channelPool != null;
+	}
+	
+	/**
+	 * Borrows a channel from the channel pool. Creates a new channel if none is idle and the pool is not full, else waits for 
+	 * {@link RabbitMQRpcConfiguration#getChannelPoolWaitMillis()} for a channel to be returned. The borrowed channel must be returned using 
+	 * {@link #returnChannel(PooledChannel, boolean)}
+	 * @return a PooledChannel for exclusive use by the caller
+	 * @throws MessagingException if channel pooling is not enabled, in case of errors creating a channel or if no channel is available within the wait time
+	 */
+	public PooledChannel borrowChannel() throws MessagingException {
+		BlockingQueue<PooledChannel> pool = this.channelPool;
+		if (pool == null) {
+			throw new MessagingException("Channel pooling is not enabled for configuration : " + this.getConfiguration());
+		}
+		while (true) {
+			PooledChannel pooledChannel = pool.poll();
+			if (pooledChannel == null) {
+				int count = this.pooledChannelCount.get();
+				if (count < this.getConfiguration().getChannelPoolSize()) {
+					if (this.pooledChannelCount.compareAndSet(count, count + 1)) {
+						return this.createPooledChannel();
+					}
+					continue;
+				}
+				try {
+					pooledChannel = pool.poll(this.getConfiguration().getChannelPoolWaitMillis(), TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MessagingException("Interrupted while waiting for a pooled channel", e);
+				}
+				if (pooledChannel == null) {
+					throw new MessagingException("Timed out after " + this.getConfiguration().getChannelPoolWaitMillis() + " ms waiting for a pooled channel for : " 
+							+ this.getConfiguration());
+				}
+			}
+			if (pooledChannel.getChannel().isOpen()) {
+				return pooledChannel;
+			}
+			this.discardChannel(pooledChannel); // recycle channels that were closed, for e.g. by the broker on a channel error
+		}
+	}
+	
+	/**
+	 * Returns the specified channel to the channel pool. Channels that have failed or are closed are discarded and are replaced on subsequent borrowing.
+	 * @param pooledChannel the PooledChannel borrowed using {@link #borrowChannel()}
+	 * @param failed true if use of the channel failed, in which case the channel is closed and discarded
+	 */
+	public void returnChannel(PooledChannel pooledChannel, boolean failed) {
+		BlockingQueue<PooledChannel> pool = this.channelPool;
+		if (failed || pool == null || !pooledChannel.getChannel().isOpen() || !pool.offer(pooledChannel)) {
+			this.discardChannel(pooledChannel);
+		}
+	}
+	
+	/**
+	 * Returns the PublisherConfirmListener tracking publisher confirms on the Channel created by this class
+	 * @return the PublisherConfirmListener instance or null if the Channel is not in confirm mode
+	 */
+	public PublisherConfirmListener getPublisherConfirmListener() {
+		return this.publisherConfirmListener;
 	}
 	
 	/**
@@ -230,9 +357,18 @@ public class RabbitConnectionHolder implements ShutdownListener {
 	public void closeConnection() throws MessagingException {
 		try {
 			synchronized (this) { // all code blocks that mutate the connection and channel object references held by this class are synchronized
-				if (this.consumer != null) {
-					this.channel.basicCancel(this.consumer.getConsumerTag());
-					this.consumer = null;
+				this.closeChannelPool();
+				if (this.rpcReplyDispatcher != null) {
+					RpcReplyDispatcher dispatcher = this.rpcReplyDispatcher;
+					this.rpcReplyDispatcher = null;
+					// fail pending calls here as the cancelled dispatcher will not receive the channel shutdown signal
+					dispatcher.terminate(new MessagingException("RPC reply consumer has been closed for : " + this.getConfiguration()));
+					this.channel.basicCancel(dispatcher.getConsumerTag());
+				}
+				if (this.prefetchingConsumer != null) {
+					this.prefetchingConsumer.flushAcks(); // acknowledge consumed messages, else these are redelivered
+					this.channel.basicCancel(this.prefetchingConsumer.getConsumerTag());
+					this.prefetchingConsumer = null;
 				}
 				if (this.channel != null) {
 					this.channel.close();
@@ -242,11 +378,14 @@ public class RabbitConnectionHolder implements ShutdownListener {
 					this.conn.close();
 					this.conn = null;
 				}
+				if (this.publisherConfirmListener != null) {
+					this.publisherConfirmListener.terminate();
+				}
 			}
 		} catch (IOException e) {
-			LOGGER.error("Error while closing resources for : " + rabbitMQConfiguration.toString(), e);
+			LOGGER.error("Error while closing resources for : " + this.getConfiguration(), e);
 			throw new MessagingException(
-					"Error while closing resources for : " + rabbitMQConfiguration.toString());//not passing the root cause as it is logged here
+					"Error while closing resources for : " + this.getConfiguration());//not passing the root cause as it is logged here
 		}
 	}
 
@@ -255,11 +394,22 @@ public class RabbitConnectionHolder implements ShutdownListener {
 	 * @see com.rabbitmq.client.ShutdownListener#shutdownCompleted(com.rabbitmq.client.ShutdownSignalException)
 	 */
 	public void shutdownCompleted(ShutdownSignalException sse) {
-		LOGGER.info("Connection terminated for configuration : " + this.rabbitMQConfiguration.toString());
+		LOGGER.info("Connection terminated for configuration : " + this.getConfiguration());
 		synchronized (this) { // all code blocks that mutate the connection and channel object references held by this class are synchronized
 			this.conn = null;
 			this.channel = null;
-			this.consumer = null;
+			this.rpcReplyDispatcher = null;
+			this.prefetchingConsumer = null;
+			if (this.publisherConfirmListener != null) {
+				this.publisherConfirmListener.terminate();
+			}
+			for (PooledChannel pooledChannel : this.pooledChannels) {
+				if (pooledChannel.getPublisherConfirmListener() != null) {
+					pooledChannel.getPublisherConfirmListener().terminate();
+				}
+			}
+			this.channelPool = null;
+			this.pooledChannels.clear();
 		}
 	}
 	
@@ -315,6 +465,9 @@ public class RabbitConnectionHolder implements ShutdownListener {
 				// create the channel
 				this.channel = this.conn.createChannel();
 				this.channel.exchangeDeclare(configuration.getExchangeName(), configuration.getExchangeType(),configuration.isDurable());				
+				if (configuration.getChannelPoolSize() > 0) {
+					this.channelPool = new ArrayBlockingQueue<PooledChannel>(configuration.getChannelPoolSize());
+				}
 			} catch (Exception e) {
 				LOGGER.error("Error initializing RabbitMQ connection for : " + configuration.toString(), e);
 				throw new MessagingException("Error initializing RabbitMQ connection for : " + configuration.toString()); //not passing the root cause as it is logged here
@@ -324,7 +477,110 @@ public class RabbitConnectionHolder implements ShutdownListener {
 	}
 	
 	/**
-	 * Helper method for creating the Consumer for the specified {@link RabbitMQRpcConfiguration}
+	 * Helper method to return the configuration that this class was created with, for logging
+	 */
+	private RabbitMQRpcConfiguration getConfiguration() {
+		return this.rabbitMQConfiguration != null ? this.rabbitMQConfiguration : this.rabbitMQRpcConfiguration;
+	}
+	
+	/**
+	 * Helper method to put the specified channel in TX mode if messages are durable and the disableTX override flag has not been set (typically for 
+	 * message consumers) and if no TX disabling override has been specified. Puts the channel in confirm mode instead of TX if publisher confirms are 
+	 * to be used.
+	 * @param channel the Channel to set the publish mode on
+	 * @return the PublisherConfirmListener registered on the channel if it is put in confirm mode, null otherwise
+	 * @throws IOException in case of errors setting the channel mode
+	 */
+	private PublisherConfirmListener selectPublishMode(Channel channel) throws IOException {
+		if (this.rabbitMQConfiguration.isDurable() && !this.rabbitMQConfiguration.isDisableTX() && !this.disableTX) {
+			if (this.rabbitMQConfiguration.isUsePublisherConfirms()) {
+				PublisherConfirmListener confirmListener = new PublisherConfirmListener();
+				channel.addConfirmListener(confirmListener);
+				channel.addShutdownListener(confirmListener);
+				channel.confirmSelect();
+				return confirmListener;
+			}
+			channel.txSelect();
+		}
+		return null;
+	}
+	
+	/**
+	 * Helper method to create a pooled channel. Releases the pool slot reserved by the caller if the channel cannot be created. The publish mode is set
+	 * only for channels of a connection created with RabbitMQConfiguration, RPC requests are always published on channels in the default mode
+	 * @return the created PooledChannel
+	 * @throws MessagingException in case of errors creating the channel
+	 */
+	private PooledChannel createPooledChannel() throws MessagingException {
+		try {
+			Connection connection = this.conn;
+			if (connection == null) {
+				throw new MessagingException("Connection not initialized for : " + this.getConfiguration());
+			}
+			Channel pooledChannel = connection.createChannel();
+			PooledChannel channelHolder = new PooledChannel(pooledChannel, this.rabbitMQConfiguration != null ? this.selectPublishMode(pooledChannel) : null);
+			this.pooledChannels.add(channelHolder);
+			return channelHolder;
+		} catch (IOException e) {
+			this.pooledChannelCount.decrementAndGet();
+			LOGGER.error("Error creating pooled channel for : " + this.getConfiguration(), e);
+			throw new MessagingException("Error creating pooled channel for : " + this.getConfiguration()); //not passing the root cause as it is logged here
+		} catch (MessagingException e) {
+			this.pooledChannelCount.decrementAndGet();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Helper method to close and discard the specified pooled channel, freeing its slot in the pool
+	 * @param pooledChannel the PooledChannel to discard
+	 */
+	private void discardChannel(PooledChannel pooledChannel) {
+		if (this.pooledChannels.remove(pooledChannel)) {
+			this.pooledChannelCount.decrementAndGet();
+		}
+		if (pooledChannel.getPublisherConfirmListener() != null) {
+			pooledChannel.getPublisherConfirmListener().terminate();
+		}
+		try {
+			if (pooledChannel.getChannel().isOpen()) {
+				pooledChannel.getChannel().close();
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Error closing discarded pooled channel for : " + this.getConfiguration() + ". Error is : " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Helper method to close the pooled channels. Waits for outstanding publisher confirms or commits uncommitted messages, as applicable, on idle 
+	 * channels before closing them
+	 */
+	private void closeChannelPool() {
+		BlockingQueue<PooledChannel> pool = this.channelPool;
+		if (pool == null) {
+			return;
+		}
+		this.channelPool = null;
+		for (PooledChannel pooledChannel = pool.poll(); pooledChannel != null; pooledChannel = pool.poll()) {
+			try {
+				if (pooledChannel.getPublisherConfirmListener() != null) {
+					pooledChannel.getPublisherConfirmListener().awaitOutstandingConfirms(0, this.rabbitMQConfiguration.getPublisherConfirmTimeoutMillis());
+				} else if (pooledChannel.getUncommittedMessageCount() > 0 && !this.rabbitMQConfiguration.isDisableTX() && !this.disableTX) {
+					pooledChannel.getChannel().txCommit();
+				}
+			} catch (Exception e) {
+				// Can't do much except log the error
+				LOGGER.error("Error completing publish of messages on pooled channel. Messages may be lost. Configuration : " + this.getConfiguration(), e);
+			}
+			this.discardChannel(pooledChannel);
+		}
+		for (PooledChannel pooledChannel : this.pooledChannels) { // channels still borrowed
+			this.discardChannel(pooledChannel);
+		}
+	}
+	
+	/**
+	 * Helper method for creating the RpcReplyDispatcher consumer for the specified {@link RabbitMQRpcConfiguration}
 	 * @param rabbitMQRpcConfiguration the RabbitMQRpcConfiguration or one of its sub-types to create consumer for
 	 * @param queueName the name of the queue that the Consumer is connected to
 	 * @param noAck is auto message acking turned on
@@ -334,9 +590,9 @@ public class RabbitConnectionHolder implements ShutdownListener {
 			if (this.getChannel() == null) {
 				throw new MessagingException("Attempt to create Consumer before calling RabbitConnectionHolder#createConnection(). Consumer will not be created.");
 			}
-			this.consumer = new QueueingConsumer(this.getChannel());
+			this.rpcReplyDispatcher = new RpcReplyDispatcher(this.getChannel());
 			try {
-				this.getChannel().basicConsume(queueName, noAck, this.consumer);
+				this.getChannel().basicConsume(queueName, noAck, this.rpcReplyDispatcher);
 			} catch (IOException ioe) {
 				LOGGER.error("Error setting up consumer on channel for : " + rabbitMQRpcConfiguration.toString(), ioe);
 				throw new MessagingException("Error setting up consumer on channel for : " + rabbitMQRpcConfiguration.toString()); //not passing the root cause as it is logged here
@@ -344,6 +600,25 @@ public class RabbitConnectionHolder implements ShutdownListener {
 		}		
 	}
 		
+	/**
+	 * Helper method for creating the PrefetchingConsumer for the specified {@link RabbitMQConfiguration}
+	 * @param rabbitMQConfiguration the RabbitMQConfiguration to create the consumer for
+	 */
+	private void createPrefetchingConsumer(RabbitMQConfiguration rabbitMQConfiguration) {
+		synchronized (this) { // all code blocks that mutate the connection and channel objects held by this class are synchronized
+			if (this.getChannel() == null) {
+				throw new MessagingException("Attempt to create Consumer before calling RabbitConnectionHolder#createConnection(). Consumer will not be created.");
+			}
+			this.prefetchingConsumer = new PrefetchingConsumer(this.getChannel(), rabbitMQConfiguration.getAckBatchSize(), rabbitMQConfiguration.getAckBatchWindowMillis());
+			try {
+				this.getChannel().basicConsume(rabbitMQConfiguration.getQueueName(), rabbitMQConfiguration.isNoAck(), this.prefetchingConsumer);
+			} catch (IOException ioe) {
+				LOGGER.error("Error setting up consumer on channel for : " + rabbitMQConfiguration.toString(), ioe);
+				throw new MessagingException("Error setting up consumer on channel for : " + rabbitMQConfiguration.toString()); //not passing the root cause as it is logged here
+			}
+		}		
+	}
+	
 	/**
 	 * Creates a server-named exclusive autodelete queue to use for receiving replies to RPC requests.
 	 * @param rabbitMQRpcConfiguration RabbitMQRpcConfiguration containing channel connection details
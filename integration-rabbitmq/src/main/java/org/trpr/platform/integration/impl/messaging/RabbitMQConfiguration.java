@@ -38,6 +38,15 @@ public class RabbitMQConfiguration extends RabbitMQRpcConfiguration {
 	/** The default durable commit count*/
 	public static final int DEFAULT_DURABLE_MSG_COMMIT_COUNT = 1;
 	
+	/** The defaults for max outstanding publisher confirms and the publisher confirm timeout*/
+	public static final int DEFAULT_MAX_OUTSTANDING_CONFIRMS = 1000;
+	public static final long DEFAULT_CONFIRM_TIMEOUT_MILLIS = 30000L;
+	
+	/** The defaults for consumer prefetch count, ack batch size and ack batch window*/
+	public static final int DEFAULT_PREFETCH_COUNT = 1;
+	public static final int DEFAULT_ACK_BATCH_SIZE = 1;
+	public static final long DEFAULT_ACK_BATCH_WINDOW_MILLIS = 1000L;
+	
 	/**
 	 * Durable true if we are declaring a durable exchange (the exchange will
 	 * survive a server restart). 
@@ -67,6 +76,43 @@ public class RabbitMQConfiguration extends RabbitMQRpcConfiguration {
 	 * every published message will be committed. Consider setting a higher value for better performance.
 	 */
 	private int durableMessageCommitCount = DEFAULT_DURABLE_MSG_COMMIT_COUNT;
+	
+	/**
+	 * Flag to use publisher confirms instead of TX for durable messages. Used only when RabbitMQConfiguration#durable is set to true. Publishers do not
+	 * wait for each message to be persisted by the broker and instead track the confirms sent asynchronously by the broker.
+	 */
+	private boolean usePublisherConfirms;
+	
+	/**
+	 * The maximum number of durable messages published and not yet confirmed by the broker, when using publisher confirms. Publishers wait for confirms
+	 * when this limit is reached. This also bounds the number of messages that may need to be re-published when a connection fails.
+	 */
+	private int maxOutstandingConfirms = DEFAULT_MAX_OUTSTANDING_CONFIRMS;
+	
+	/**
+	 * The batch size for publisher confirms. When set to a value greater than 0, publishers wait for all outstanding confirms after publishing
+	 * every batch of this many messages, similar to TX commits every RabbitMQConfiguration#durableMessageCommitCount messages. Default value is 0 
+	 * i.e. publishers wait only if RabbitMQConfiguration#maxOutstandingConfirms is reached.
+	 */
+	private int publisherConfirmBatchSize;
+	
+	/** The maximum time in milliseconds that publishers wait for publisher confirms*/
+	private long publisherConfirmTimeoutMillis = DEFAULT_CONFIRM_TIMEOUT_MILLIS;
+	
+	/**
+	 * The maximum number of unacknowledged messages that the broker delivers to a consumer. Default value is 1, which distributes messages evenly across
+	 * multiple consumers. Consider setting a higher value for better consumer throughput. A value of 0 indicates no limit.
+	 */
+	private int prefetchCount = DEFAULT_PREFETCH_COUNT;
+	
+	/**
+	 * The maximum number of consumed messages acknowledged together using a single multiple-ack. Default value is 1 i.e. every message is acknowledged
+	 * individually. Must be less than or equal to the prefetch count to be effective.
+	 */
+	private int ackBatchSize = DEFAULT_ACK_BATCH_SIZE;
+	
+	/** The maximum time in milliseconds that a consumed message stays unacknowledged while further messages are consumed*/
+	private long ackBatchWindowMillis = DEFAULT_ACK_BATCH_WINDOW_MILLIS;
 
 	/** Setting to indicate use of pre-declared queues default behavior is to create the queues using properties specified*/
 	private boolean usePredeclaredQueues;
@@ -103,6 +149,15 @@ public class RabbitMQConfiguration extends RabbitMQRpcConfiguration {
 		this.noAck=parent.isNoAck();
 		this.durableMessageCommitCount = parent.getDurableMessageCommitCount();
 		this.disableTX = parent.isDisableTX();
+		this.usePublisherConfirms = parent.isUsePublisherConfirms();
+		this.maxOutstandingConfirms = parent.getMaxOutstandingConfirms();
+		this.publisherConfirmBatchSize = parent.getPublisherConfirmBatchSize();
+		this.publisherConfirmTimeoutMillis = parent.getPublisherConfirmTimeoutMillis();
+		this.setChannelPoolSize(parent.getChannelPoolSize());
+		this.setChannelPoolWaitMillis(parent.getChannelPoolWaitMillis());
+		this.prefetchCount = parent.getPrefetchCount();
+		this.ackBatchSize = parent.getAckBatchSize();
+		this.ackBatchWindowMillis = parent.getAckBatchWindowMillis();
 		this.usePredeclaredQueues = parent.isUsePredeclaredQueues();
 		this.queueOverrideProperties = parent.getQueueOverrideProperties();
 	}
@@ -156,6 +211,48 @@ public class RabbitMQConfiguration extends RabbitMQRpcConfiguration {
 	public void setDurableMessageCommitCount(int durableMessageCommitCount) {
 		this.durableMessageCommitCount = durableMessageCommitCount;
 	}
+	public boolean isUsePublisherConfirms() {
+		return this.usePublisherConfirms;
+	}
+	public void setUsePublisherConfirms(boolean usePublisherConfirms) {
+		this.usePublisherConfirms = usePublisherConfirms;
+	}
+	public int getMaxOutstandingConfirms() {
+		return this.maxOutstandingConfirms;
+	}
+	public void setMaxOutstandingConfirms(int maxOutstandingConfirms) {
+		this.maxOutstandingConfirms = maxOutstandingConfirms;
+	}
+	public int getPublisherConfirmBatchSize() {
+		return this.publisherConfirmBatchSize;
+	}
+	public void setPublisherConfirmBatchSize(int publisherConfirmBatchSize) {
+		this.publisherConfirmBatchSize = publisherConfirmBatchSize;
+	}
+	public long getPublisherConfirmTimeoutMillis() {
+		return this.publisherConfirmTimeoutMillis;
+	}
+	public void setPublisherConfirmTimeoutMillis(long publisherConfirmTimeoutMillis) {
+		this.publisherConfirmTimeoutMillis = publisherConfirmTimeoutMillis;
+	}
+	public int getPrefetchCount() {
+		return this.prefetchCount;
+	}
+	public void setPrefetchCount(int prefetchCount) {
+		this.prefetchCount = prefetchCount;
+	}
+	public int getAckBatchSize() {
+		return this.ackBatchSize;
+	}
+	public void setAckBatchSize(int ackBatchSize) {
+		this.ackBatchSize = ackBatchSize;
+	}
+	public long getAckBatchWindowMillis() {
+		return this.ackBatchWindowMillis;
+	}
+	public void setAckBatchWindowMillis(long ackBatchWindowMillis) {
+		this.ackBatchWindowMillis = ackBatchWindowMillis;
+	}
 	public boolean isDlqEnabled() {
 		return this.dlqEnabled;
 	}
@@ -35,6 +35,9 @@ import com.rabbitmq.client.QueueingConsumer;
  * This consumer will exhaust all RabbitMQConfiguration instances when trying to consume a message and fails only when every one of the
  * configurations fail to connect or fail otherwise.
  * 
+ * Messages are pushed by the broker into a {@link PrefetchingConsumer}, up to {@link RabbitMQConfiguration#getPrefetchCount()} unacknowledged messages,
+ * and are acknowledged in batches as configured by {@link RabbitMQConfiguration#getAckBatchSize()} and {@link RabbitMQConfiguration#getAckBatchWindowMillis()}.
+ * 
  * This class implements the Spring {@link org.springframework.beans.factory.DisposableBean} and calls {@link #closeConnections()} method to 
  * cleanup connections when the application context is torn down. The dependence on Spring is justified by the need to close connections cleanly
  * during application shutdown.
@@ -235,13 +238,13 @@ public class RabbitMQMessageConsumerImpl implements MessageConsumer, DisposableB
 	protected MessageHolder consumeFromConnection(boolean isString, int connectionIndex) throws Exception {
 		MessageHolder messageHolder = null;
 		RabbitMQConfiguration msgPubConfig = rabbitMQConfigurations.get(connectionIndex);
-	    QueueingConsumer.Delivery delivery = getWaitTimeoutMillis() > 0 ? this.rabbitConnectionHolders[connectionIndex].getConsumer().nextDelivery(getWaitTimeoutMillis()) 
-	    		: this.rabbitConnectionHolders[connectionIndex].getConsumer().nextDelivery();
+	    PrefetchingConsumer consumer = this.rabbitConnectionHolders[connectionIndex].getPrefetchingConsumer();
+	    QueueingConsumer.Delivery delivery = consumer.nextDelivery(getWaitTimeoutMillis());
 	    if (delivery != null) { // check for null - possible in case of a timeout
 	    	messageHolder = isString ? new MessageHolder(connectionIndex, new String(delivery.getBody(), ENCODING))
 	    		: new MessageHolder(connectionIndex,PlatformUtils.toObject(delivery.getBody()));
-		    if (!msgPubConfig.isNoAck()) { // Client is expected to ack explicitly, else donot as per AMQP spec
-		    	this.rabbitConnectionHolders[connectionIndex].getChannel().basicAck(delivery.getEnvelope().getDeliveryTag(),false);
+		    if (!msgPubConfig.isNoAck()) { // Client is expected to ack explicitly, else donot as per AMQP spec. Acks are sent in batches
+		    	consumer.acknowledge(delivery.getEnvelope().getDeliveryTag());
 		    }
 	    }			    
 		return messageHolder;
@@ -259,7 +262,7 @@ public class RabbitMQMessageConsumerImpl implements MessageConsumer, DisposableB
 	    	// a connection for the same configuration. \
 	    	if (this.rabbitConnectionHolders[connectionIndex] == null || !this.rabbitConnectionHolders[connectionIndex].isValid()) { //Added code to check if connection is valid ... otherwise create a new connection 
 	    		this.rabbitConnectionHolders[connectionIndex] = new RabbitConnectionHolder(rabbitMQConfiguration);
-	    		this.rabbitConnectionHolders[connectionIndex].createConnection();
+	    		this.rabbitConnectionHolders[connectionIndex].createConnectionAndConsumer();
 	    	}
 	    }
     }
@@ -26,6 +26,7 @@ import org.trpr.platform.integration.spi.messaging.MessagePublisher;
 import org.trpr.platform.integration.spi.messaging.MessagingException;
 
 import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.MessageProperties;
 
 /**
@@ -36,6 +37,15 @@ import com.rabbitmq.client.MessageProperties;
  * This publisher will exhaust all {@link RabbitMQConfiguration} instances when trying to publish a message and fails only when every one of the
  * configurations fail to connect or fail otherwise.
  * 
+ * Durable messages are made persistent either using AMQP transactions, committed every {@link RabbitMQConfiguration#getDurableMessageCommitCount()} 
+ * messages, or using publisher confirms if {@link RabbitMQConfiguration#isUsePublisherConfirms()} is set. Publisher confirms are tracked asynchronously 
+ * and publishers wait only when the configured max outstanding confirms or the confirm batch size is reached, thereby avoiding the round trip and the 
+ * channel lock for each transaction commit. A message that is nacked by the broker, or whose confirm is not received in time, fails the publish with a 
+ * {@link PublisherConfirmException} and is not published again on other configurations, as it may already have been delivered.
+ * 
+ * Publishing threads share the single channel of a connection unless a channel pool is configured using {@link RabbitMQConfiguration#getChannelPoolSize()},
+ * in which case each publish uses a channel borrowed from the pool.
+ * 
  * This class implements the Spring {@link org.springframework.beans.factory.DisposableBean} and calls {@link #closeConnections()} method to 
  * cleanup connections when the application context is torn down. The dependence on Spring is justified by the need to close connections cleanly
  * during application shutdown.
@@ -120,7 +130,15 @@ public class RabbitMQMessagePublisherImpl implements MessagePublisher, Disposabl
 			if (this.rabbitConnectionHolders[i] != null && this.rabbitConnectionHolders[i].isValid()) {
 				// Commit any non-committed messages if it is durable and TX has not been disabled.
 				// This is needed for persisting messages when configured commit count is not reached and the client closes connections
-				if (rabbitMQConfigurations.get(i).isDurable() && !rabbitMQConfigurations.get(i).isDisableTX()) {
+				if (this.rabbitConnectionHolders[i].getPublisherConfirmListener() != null) {
+					try {
+						// wait for confirms of all messages published on the channel
+						this.rabbitConnectionHolders[i].getPublisherConfirmListener().awaitOutstandingConfirms(0, rabbitMQConfigurations.get(i).getPublisherConfirmTimeoutMillis());
+					} catch (MessagingException e) {
+						// Can't do much except log the error
+						LOGGER.error ("Error waiting for publisher confirms. Unconfirmed messages may be lost. Continuing to close connection for this configuration : " + rabbitMQConfigurations.get(i), e);
+					}
+				} else if (rabbitMQConfigurations.get(i).isDurable() && !rabbitMQConfigurations.get(i).isDisableTX()) {
 					try {
 			        	// synchronized on the channel to avoid the below RabbitMQ client exception, caused in multi-threaded execution using the same channel:
 			        	// java.lang.IllegalStateException: cannot execute more than one synchronous AMQP command at a time
@@ -157,7 +175,7 @@ public class RabbitMQMessagePublisherImpl implements MessagePublisher, Disposabl
 				return count;
 			} catch (Exception e) {
 				LOGGER.error("Error while initializing Rabbit connection / getting message count. Will try others. Error is : " + e.getMessage(), e);
-				this.rabbitConnectionHolders[connectionIndex] = null; // the connection holder is not working. Reset it so that in can be recreated for the next call
+				this.discardConnectionHolder(connectionIndex, this.rabbitConnectionHolders[connectionIndex]); // the connection holder is not working. Reset it so that in can be recreated for the next call
 				continue;
 			} finally {
 				attempt++; // continue to try with the next configuration
@@ -204,6 +222,7 @@ public class RabbitMQMessagePublisherImpl implements MessagePublisher, Disposabl
 	 * It tries all the rabbit-mq configurations provided.
 	 * If connection is successful it returns the index of the configuration to which connection was successful.
 	 * If connection to all provided configurations are unsuccessful then a Messaging Exception is thrown.
+	 * Publisher confirm failures are not retried on other configurations and are thrown as is.
 	 * @param message Message that needs to be published
 	 * @return index of the configuration to which connection was successful.
 	 * @throws MessagingException
@@ -226,12 +245,16 @@ public class RabbitMQMessagePublisherImpl implements MessagePublisher, Disposabl
 					continue;
 				} 
 			}
+			RabbitConnectionHolder connectionHolder = this.rabbitConnectionHolders[connectionIndex];
 			try {
 				publishToConnection(message, connectionIndex);
 				return connectionIndex;
+			} catch (PublisherConfirmException e) {
+				// the message was published but not confirmed. It may have been delivered, so publishing it on another configuration may create a duplicate
+				throw e;
 			} catch (Exception e) {
 				LOGGER.error("Error while publishing message into queue. Failed Configuration is " + rabbitMQConfigurations.get(connectionIndex)+ "\n" + "Will try other configurations. Error is : " + e.getMessage(), e);				
-				this.rabbitConnectionHolders[connectionIndex] = null; // the connection holder is not working. Remove from array
+				this.discardConnectionHolder(connectionIndex, connectionHolder); // the connection holder is not working. Remove from array
 			} finally {
 				attempt++;
 				totNoOfMessagesQueued++; // increment the count though the message publish might have failed. Used in determining the configuration in round-robin
@@ -267,7 +290,29 @@ public class RabbitMQMessagePublisherImpl implements MessagePublisher, Disposabl
 	    AMQP.BasicProperties msgProps = rabbitMQConfiguration.isDurable() ? 
 	    		(isMessageOfTypeString ? MessageProperties.PERSISTENT_TEXT_PLAIN : MessageProperties.PERSISTENT_BASIC) : 
 	    			(isMessageOfTypeString ? MessageProperties.TEXT_PLAIN : MessageProperties.BASIC); 
-	    if (rabbitMQConfiguration.isDurable()) {
+	    if (this.rabbitConnectionHolders[connectionIndex].isChannelPoolEnabled()) {
+	    	this.publishToPooledChannel(this.rabbitConnectionHolders[connectionIndex], rabbitMQConfiguration, msgProps, body);
+	    	return;
+	    }
+	    PublisherConfirmListener confirmListener = this.rabbitConnectionHolders[connectionIndex].getPublisherConfirmListener();
+	    if (rabbitMQConfiguration.isDurable() && confirmListener != null) {
+	    	Channel channel = this.rabbitConnectionHolders[connectionIndex].getChannel();
+	    	long sequenceNo;
+	    	// synchronized on the channel only to keep the publish sequence number consistent with the message published. Confirms are waited for 
+	    	// outside of the channel lock
+	    	synchronized(channel) {
+	    		sequenceNo = channel.getNextPublishSeqNo();
+	    		confirmListener.addOutstandingConfirm(sequenceNo);
+	    		channel.basicPublish(rabbitMQConfiguration.getExchangeName(), rabbitMQConfiguration.getRoutingKey(), msgProps, body);
+	    	}
+	    	// wait for all confirms at the end of a batch, if batching is configured, else only if max outstanding confirms is exceeded
+	    	// increment totNoOfMessagesQueued by 1 and check as it is post incremented after publishing the message
+	    	if (rabbitMQConfiguration.getPublisherConfirmBatchSize() > 0 && (totNoOfMessagesQueued + 1) % rabbitMQConfiguration.getPublisherConfirmBatchSize() == 0) {
+	    		confirmListener.awaitOutstandingConfirms(sequenceNo, 0, rabbitMQConfiguration.getPublisherConfirmTimeoutMillis());
+	    	} else {
+	    		confirmListener.awaitOutstandingConfirms(sequenceNo, rabbitMQConfiguration.getMaxOutstandingConfirms(), rabbitMQConfiguration.getPublisherConfirmTimeoutMillis());
+	    	}
+	    } else if (rabbitMQConfiguration.isDurable()) {
 	    	synchronized(this.rabbitConnectionHolders[connectionIndex].getChannel()) {
 	        	// synchronized on the channel to avoid the below RabbitMQ client exception, caused in multi-threaded execution using the same channel:
 	        	// java.lang.IllegalStateException: cannot execute more than one synchronous AMQP command at a time
@@ -297,6 +342,55 @@ public class RabbitMQMessagePublisherImpl implements MessagePublisher, Disposabl
 	    }
     }
 	
+	/**
+	 * Publishes the specified message body on a channel borrowed from the channel pool of the specified connection holder. The borrowed channel is
+	 * used exclusively by the calling thread and is therefore not synchronized on. TX commits and publisher confirm batches are tracked per channel.
+	 * The channel is discarded from the pool if publishing fails.
+	 * @param connectionHolder the RabbitConnectionHolder with channel pooling enabled
+	 * @param rabbitMQConfiguration the RabbitMQConfiguration of the connection
+	 * @param msgProps the message properties
+	 * @param body the message body
+	 * @throws Exception in case of errors publishing the message
+	 */
+	private void publishToPooledChannel(RabbitConnectionHolder connectionHolder, RabbitMQConfiguration rabbitMQConfiguration, AMQP.BasicProperties msgProps, 
+			byte[] body) throws Exception {
+		PooledChannel pooledChannel = connectionHolder.borrowChannel();
+		boolean failed = true;
+		try {
+			Channel channel = pooledChannel.getChannel();
+			PublisherConfirmListener confirmListener = pooledChannel.getPublisherConfirmListener();
+			long sequenceNo = channel.getNextPublishSeqNo();
+			if (confirmListener != null) {
+				confirmListener.addOutstandingConfirm(sequenceNo);
+			}
+			channel.basicPublish(rabbitMQConfiguration.getExchangeName(), rabbitMQConfiguration.getRoutingKey(), msgProps, body);
+			if (rabbitMQConfiguration.isDurable()) {
+				int uncommittedCount = pooledChannel.incrementUncommittedMessageCount();
+				if (confirmListener != null) {
+					// wait for all confirms at the end of a batch, if batching is configured, else only if max outstanding confirms is exceeded
+					if (rabbitMQConfiguration.getPublisherConfirmBatchSize() > 0 && uncommittedCount >= rabbitMQConfiguration.getPublisherConfirmBatchSize()) {
+						confirmListener.awaitOutstandingConfirms(sequenceNo, 0, rabbitMQConfiguration.getPublisherConfirmTimeoutMillis());
+						pooledChannel.resetUncommittedMessageCount();
+					} else {
+						confirmListener.awaitOutstandingConfirms(sequenceNo, rabbitMQConfiguration.getMaxOutstandingConfirms(), 
+								rabbitMQConfiguration.getPublisherConfirmTimeoutMillis());
+					}
+				} else if (uncommittedCount >= rabbitMQConfiguration.getDurableMessageCommitCount()) {
+					pooledChannel.resetUncommittedMessageCount();
+					if (rabbitMQConfiguration.isDisableTX()) {
+						// error out, as explicitly disabling TX will not make the message durable
+						LOGGER.error("Configuration conflict. TX disabled for message publishing on durable queue. Message will not be published.");
+					} else {
+						channel.txCommit();
+					}
+				}
+			}
+			failed = false;
+		} finally {
+			connectionHolder.returnChannel(pooledChannel, failed);
+		}
+	}
+	
 	/**
 	 * Checks if the connection for the configuration is null or invalid. 
 	 * If yes then creates a new connection as per the configuration.
@@ -313,5 +407,27 @@ public class RabbitMQMessagePublisherImpl implements MessagePublisher, Disposabl
 	    	}
 	    }
     }
+
+	/**
+	 * Removes the specified failed connection holder so that it is recreated for the next call, and closes its connection. 
+	 * The connection holder at the specified index is left as is if the failed one has already been replaced by another thread.
+	 * @param connectionIndex Index of the configuration and the connection
+	 * @param connectionHolder the failed connection holder, may be null
+	 */
+	private void discardConnectionHolder(int connectionIndex, RabbitConnectionHolder connectionHolder) {
+		synchronized(this.rabbitMQConfigurations.get(connectionIndex)) { // synchronized to not discard a connection holder created by another thread
+			if (this.rabbitConnectionHolders[connectionIndex] == connectionHolder) {
+				this.rabbitConnectionHolders[connectionIndex] = null;
+			}
+		}
+		if (connectionHolder != null) {
+			try {
+				connectionHolder.closeConnection();
+			} catch (Exception e) {
+				// Can't do much except log the error
+				LOGGER.warn("Error closing discarded Rabbit connection for configuration : " + this.rabbitMQConfigurations.get(connectionIndex) + ". Error is : " + e.getMessage());
+			}
+		}
+	}
 	
 }
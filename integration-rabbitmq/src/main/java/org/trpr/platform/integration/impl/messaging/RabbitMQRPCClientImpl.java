@@ -16,6 +16,14 @@
 package org.trpr.platform.integration.impl.messaging;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import org.trpr.platform.core.impl.logging.LogFactory;
 import org.trpr.platform.core.spi.logging.Logger;
@@ -32,6 +40,12 @@ import com.rabbitmq.client.QueueingConsumer;
  * provider. This implementation is compatible with Java client API of RabbitMQ version 2.2.0. Backward/Forward compatibility with other versions 
  * requires verification.
  * 
+ * Concurrent calls share the channel and reply queue of a connection. Each request carries a unique correlation id that the {@link RpcReplyDispatcher}
+ * uses to match replies to the calls awaiting them, allowing many calls to be in flight on a channel at a time. Requests are published on channels
+ * borrowed from a channel pool instead, if one is configured using {@link RabbitMQRpcConfiguration#getChannelPoolSize()}. Replies are always consumed
+ * on the channel of the reply queue. Use {@link #sendAsync(Object, int)} 
+ * to send requests without blocking on the reply.
+ * 
  * This RPC client will exhaust all {@link RabbitMQRpcConfiguration} instances when trying to publish a message and fails only when every one of the
  * configurations fail to connect or fail otherwise.
  * 
@@ -48,6 +62,9 @@ public class RabbitMQRPCClientImpl implements RpcClient {
 	/** Constant for the String literal UTF-8*/
 	private static final String ENCODING = "UTF-8";
 	
+	/** The thread name prefix for the RPC call timeout thread*/
+	private static final String TIMEOUT_THREAD_NAME_PREFIX = "RabbitMQRPCClient-Timeout-";
+	
 	/**
 	 * The Logger instance for this class
 	 */
@@ -68,6 +85,12 @@ public class RabbitMQRPCClientImpl implements RpcClient {
 	 */
 	private long totNoOfMessagesQueued;
 	
+	/** The sequence for generating correlation ids of RPC requests*/
+	private AtomicLong correlationIdSequence = new AtomicLong();
+	
+	/** The scheduler for timing out RPC calls, created lazily*/
+	private ScheduledExecutorService timeoutScheduler;
+	
 	/**
 	 * No-args constructor to initialize member variables.
 	 */
@@ -103,62 +126,96 @@ public class RabbitMQRPCClientImpl implements RpcClient {
 	}
 
 	/**
-	 * Interface method implementation
+	 * Interface method implementation. Sends the message using {@link #sendAsync(Object, int)} and waits for the reply
 	 * @see RpcClient#send(Object, int)
 	 */
 	public Object send(Object message, int timeout) throws MessagingTimeoutException, MessagingException {
+		CompletableFuture<Object> reply = this.sendAsync(message, timeout);
+		try {
+			return reply.get(); // the wait is bounded by the timeout scheduled on the reply
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			reply.cancel(false);
+			throw new MessagingException("Interrupted while waiting for RPC reply", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof MessagingException) {
+				throw (MessagingException)e.getCause();
+			}
+			throw new MessagingException("Error in RPC call : " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * Sends the specified object and returns a future for the reply. The request carries a unique correlation id and the reply is matched to it by the
+	 * {@link RpcReplyDispatcher} consuming the reply queue of the connection, thereby allowing many concurrent requests on a single channel and reply queue.
+	 * Tries all configurations in round-robin order until the request is published.
+	 * @param message the message to be sent
+	 * @param timeout the timeout duration in milliseconds, after which the returned future is completed with a {@link MessagingTimeoutException}
+	 * @return future that is completed with the reply Object, converted to a String if the message is a String
+	 * @throws MessagingException in case the message could not be published using any of the configurations
+	 */
+	public CompletableFuture<Object> sendAsync(Object message, int timeout) throws MessagingException {
 		if (null == message) {
 			throw new MessagingException("Message parameter cannot be null");
 		}
+		final boolean isMessageOfTypeString = (message instanceof String);
+		byte[] body = null;
+		try {
+			body = isMessageOfTypeString ? ((String)message).getBytes(ENCODING) : PlatformUtils.toBytes(message);
+		} catch (Exception e) {
+			throw new MessagingException("Error converting message to bytes : " + e.getMessage(), e);
+		}
 		int noOfQueues = rabbitMQRpcConfigurations.size();
 		int attempt = 0;
 		RabbitMQRpcConfiguration lastUsedConfiguration = null;
 		while (attempt < noOfQueues) {
 			int connectionIndex = (int)(totNoOfMessagesQueued % noOfQueues);
 			RabbitMQRpcConfiguration rabbitMQRpcConfiguration = lastUsedConfiguration = rabbitMQRpcConfigurations.get(connectionIndex);
-
-			RabbitConnectionHolder connectionHolder = this.rabbitConnectionHolders[connectionIndex];
-			if (connectionHolder == null || !connectionHolder.isValid()) { // don't synchronize here as all calls will require monitor acquisition
-				try {
-					synchronized(rabbitMQRpcConfiguration) { // synchronized to make connection creation for the configuration a thread-safe operation. 
-						// check after monitor acquisition in order to ensure that multiple threads do not create
-						// a connection for the same configuration. 
-						if (connectionHolder == null || !connectionHolder.isValid()) { 
-							connectionHolder = new RabbitConnectionHolder(rabbitMQRpcConfiguration);
-							connectionHolder.createConnectionAndConsumer();
-						}
-					}
-				} catch (Exception e) {
-					LOGGER.error("Error while initializing Rabbit connection. Will try others. Error is : " + e.getMessage(), e);
-					// continue to try with the next configuration
-					attempt++;
-					totNoOfMessagesQueued++; // increment the count though the connection create failed. Used in determining the configuration in round-robin
-					continue;
-				} 
+			RabbitConnectionHolder connectionHolder = null;
+			try {
+				connectionHolder = this.validateAndInitConnection(connectionIndex, rabbitMQRpcConfiguration);
+			} catch (Exception e) {
+				LOGGER.error("Error while initializing Rabbit connection. Will try others. Error is : " + e.getMessage(), e);
+				// continue to try with the next configuration
+				attempt++;
+				totNoOfMessagesQueued++; // increment the count though the connection create failed. Used in determining the configuration in round-robin
+				continue;
 			}
+			RpcReplyDispatcher replyDispatcher = connectionHolder.getRpcReplyDispatcher();
+			String correlationId = Long.toString(this.correlationIdSequence.incrementAndGet());
+			// register for the reply before publishing, as the reply may arrive before the publish call returns
+			CompletableFuture<QueueingConsumer.Delivery> reply = replyDispatcher.register(correlationId, timeout, this.getTimeoutScheduler());
 			try {
-				boolean isMessageOfTypeString = (message instanceof String);
-				byte[] body = isMessageOfTypeString ? ((String)message).getBytes(ENCODING) : PlatformUtils.toBytes(message);
 				AMQP.BasicProperties msgProps = new AMQP.BasicProperties("text/plain", null, null, 1,
-	                    						null, null,connectionHolder.getConsumerQueueName(), null, null, null,null, null, null, null); 
-				connectionHolder.getChannel().basicPublish(
-						rabbitMQRpcConfiguration.getExchangeName(), 
-						rabbitMQRpcConfiguration.getRoutingKey(), 
-						msgProps, 
-						body);
-				
-				QueueingConsumer.Delivery delivery = connectionHolder.getConsumer().nextDelivery(timeout);
-
-				if (delivery != null) {
-					// the connection holder is working. set it to the array
-					this.rabbitConnectionHolders[connectionIndex] = connectionHolder;
-					return (isMessageOfTypeString ? new String(delivery.getBody(), ENCODING): PlatformUtils.toObject(delivery.getBody()));
+	                    					null, correlationId, connectionHolder.getConsumerQueueName(), null, null, null,null, null, null, null); 
+				if (connectionHolder.isChannelPoolEnabled()) {
+					PooledChannel pooledChannel = connectionHolder.borrowChannel();
+					boolean failed = true;
+					try {
+						pooledChannel.getChannel().basicPublish(rabbitMQRpcConfiguration.getExchangeName(), rabbitMQRpcConfiguration.getRoutingKey(), msgProps, body);
+						failed = false;
+					} finally {
+						connectionHolder.returnChannel(pooledChannel, failed);
+					}
 				} else {
-					throw new MessagingTimeoutException(timeout);
+					connectionHolder.getChannel().basicPublish(
+							rabbitMQRpcConfiguration.getExchangeName(), 
+							rabbitMQRpcConfiguration.getRoutingKey(), 
+							msgProps, 
+							body);
 				}
-				
+				return reply.thenApply(new Function<QueueingConsumer.Delivery, Object>() {
+					public Object apply(QueueingConsumer.Delivery delivery) {
+						try {
+							return (isMessageOfTypeString ? new String(delivery.getBody(), ENCODING): PlatformUtils.toObject(delivery.getBody()));
+						} catch (Exception e) {
+							throw new MessagingException("Error converting RPC reply : " + e.getMessage(), e);
+						}
+					}
+				});
 			} catch (Exception e) {
-				this.rabbitConnectionHolders[connectionIndex] = null; // the connection holder is not working. Remove from array
+				replyDispatcher.cancel(correlationId);
+				this.discardConnection(connectionIndex, connectionHolder); // the connection holder is not working. Remove from array
 				LOGGER.error("Error while publishing message into queue. Will try other configurations. Error is : " + e.getMessage(), e);				
 			} finally {
 				attempt++;
@@ -179,6 +236,70 @@ public class RabbitMQRPCClientImpl implements RpcClient {
 				this.rabbitConnectionHolders[i] = null;
 			}
 		}
+		synchronized(this) {
+			if (this.timeoutScheduler != null) {
+				this.timeoutScheduler.shutdown();
+				this.timeoutScheduler = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns a valid connection holder for the configuration identified by the specified index, creating the connection and the RPC reply consumer if 
+	 * required. The connection holder is shared by all concurrent calls using the configuration.
+	 * @param connectionIndex Index of the configuration and the connection
+	 * @param rabbitMQRpcConfiguration Configuration for which the connection needs to be validated
+	 * @return the valid RabbitConnectionHolder
+	 */
+	private RabbitConnectionHolder validateAndInitConnection(int connectionIndex, RabbitMQRpcConfiguration rabbitMQRpcConfiguration) {
+		RabbitConnectionHolder connectionHolder = this.rabbitConnectionHolders[connectionIndex];
+		if (connectionHolder == null || !connectionHolder.isValid()) { // don't synchronize here as all calls will require monitor acquisition
+			synchronized(rabbitMQRpcConfiguration) { // synchronized to make connection creation for the configuration a thread-safe operation. 
+				// check after monitor acquisition in order to ensure that multiple threads do not create
+				// a connection for the same configuration. 
+				connectionHolder = this.rabbitConnectionHolders[connectionIndex];
+				if (connectionHolder == null || !connectionHolder.isValid()) { 
+					connectionHolder = new RabbitConnectionHolder(rabbitMQRpcConfiguration);
+					connectionHolder.createConnectionAndConsumer();
+					this.rabbitConnectionHolders[connectionIndex] = connectionHolder;
+				}
+			}
+		}
+		return connectionHolder;
+	}
+
+	/**
+	 * Removes the specified failed connection holder, if it is still the one in use for the configuration, and closes it. Closing fails all calls 
+	 * pending on the connection.
+	 * @param connectionIndex Index of the configuration and the connection
+	 * @param connectionHolder the failed RabbitConnectionHolder
+	 */
+	private void discardConnection(int connectionIndex, RabbitConnectionHolder connectionHolder) {
+		synchronized(this.rabbitMQRpcConfigurations.get(connectionIndex)) {
+			if (this.rabbitConnectionHolders[connectionIndex] == connectionHolder) {
+				this.rabbitConnectionHolders[connectionIndex] = null;
+			}
+		}
+		try {
+			connectionHolder.closeConnection();
+		} catch (Exception e) {
+			LOGGER.warn("Error closing failed connection for configuration : " + this.rabbitMQRpcConfigurations.get(connectionIndex) + ". Error is : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the scheduler for timing out RPC calls, creating it if required
+	 * @return the ScheduledExecutorService for call timeouts
+	 */
+	private synchronized ScheduledExecutorService getTimeoutScheduler() {
+		if (this.timeoutScheduler == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(TIMEOUT_THREAD_NAME_PREFIX);
+			threadFactory.setDaemon(true);
+			ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+			scheduler.setRemoveOnCancelPolicy(true); // remove timeouts of calls that have received replies
+			this.timeoutScheduler = scheduler;
+		}
+		return this.timeoutScheduler;
 	}
 	
 }
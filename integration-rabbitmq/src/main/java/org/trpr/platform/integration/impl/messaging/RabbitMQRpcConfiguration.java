@@ -25,6 +25,9 @@ package org.trpr.platform.integration.impl.messaging;
 
 public class RabbitMQRpcConfiguration {
 
+	/** The default time to wait for a pooled channel*/
+	public static final long DEFAULT_CHANNEL_POOL_WAIT_MILLIS = 5000L;
+	
 	/**
 	 * User credentials for RabbitMQ connection
 	 */
@@ -66,6 +69,15 @@ public class RabbitMQRpcConfiguration {
 	 */
 	private int requestHeartBeat;
 
+	/**
+	 * The maximum number of channels pooled on the connection for publishing messages. Publishing threads borrow a channel from the pool instead of
+	 * sharing a single channel. Default value is 0 i.e. no pooling, all publishers share the single channel of the connection.
+	 */
+	private int channelPoolSize;
+	
+	/** The maximum time in milliseconds to wait for a pooled channel when all channels are in use*/
+	private long channelPoolWaitMillis = DEFAULT_CHANNEL_POOL_WAIT_MILLIS;
+
 	/**
 	 * No args constructor
 	 */
@@ -146,6 +158,18 @@ public class RabbitMQRpcConfiguration {
 	public void setRequestHeartBeat(int requestHeartBeat) {
 		this.requestHeartBeat = requestHeartBeat;
 	}
+	public int getChannelPoolSize() {
+		return this.channelPoolSize;
+	}
+	public void setChannelPoolSize(int channelPoolSize) {
+		this.channelPoolSize = channelPoolSize;
+	}
+	public long getChannelPoolWaitMillis() {
+		return this.channelPoolWaitMillis;
+	}
+	public void setChannelPoolWaitMillis(long channelPoolWaitMillis) {
+		this.channelPoolWaitMillis = channelPoolWaitMillis;
+	}
 	/**==== End Spring DI style setters/getters */
 	
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trpr.platform.integration.impl.messaging;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.trpr.platform.core.impl.logging.LogFactory;
+import org.trpr.platform.core.spi.logging.Logger;
+import org.trpr.platform.integration.spi.messaging.MessagingException;
+import org.trpr.platform.integration.spi.messaging.MessagingTimeoutException;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.QueueingConsumer;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * The <code>RpcReplyDispatcher</code> is a RabbitMQ consumer on a RPC reply queue that dispatches replies to the RPC calls awaiting them. Calls are
+ * registered using a unique correlation id that is sent along with the request, and the reply carrying the same correlation id completes the
+ * future returned on registration. This allows many concurrent RPC calls to share a single channel and reply queue.
+ * 
+ * Calls that do not receive a reply within their timeout are completed with a {@link MessagingTimeoutException} and are removed, and replies arriving
+ * for them later are discarded. All pending calls are failed if the consumer is cancelled, by the client or the broker, or the channel is shutdown.
+ * 
+ * @author agent
+ * @version 1.0, 17/10/2026
+ */
+public class RpcReplyDispatcher extends DefaultConsumer {
+
+	/**
+	 * The Logger instance for this class
+	 */
+	private static final Logger LOGGER = LogFactory.getLogger(RpcReplyDispatcher.class);
+
+	/** The calls awaiting replies, keyed by correlation id*/
+	private Map<String, CompletableFuture<QueueingConsumer.Delivery>> pendingReplies = new ConcurrentHashMap<String, CompletableFuture<QueueingConsumer.Delivery>>();
+
+	/** The error for failing calls, set if the consumer is cancelled or the channel is shutdown*/
+	private volatile MessagingException terminationError;
+
+	/**
+	 * Constructor for this class
+	 * @param channel the Channel that the reply queue is consumed from
+	 */
+	public RpcReplyDispatcher(Channel channel) {
+		super(channel);
+	}
+
+	/**
+	 * Registers a call awaiting a reply with the specified correlation id. Must be called before the request is published.
+	 * @param correlationId the correlation id of the request
+	 * @param timeoutMillis the timeout in milliseconds for the reply
+	 * @param timeoutScheduler the scheduler used for timing out the call
+	 * @return future that is completed with the reply, or exceptionally with a MessagingTimeoutException or a MessagingException
+	 */
+	public CompletableFuture<QueueingConsumer.Delivery> register(final String correlationId, final long timeoutMillis, ScheduledExecutorService timeoutScheduler) {
+		final CompletableFuture<QueueingConsumer.Delivery> reply = new CompletableFuture<QueueingConsumer.Delivery>();
+		if (this.terminationError != null) {
+			reply.completeExceptionally(this.terminationError);
+			return reply;
+		}
+		this.pendingReplies.put(correlationId, reply);
+		final ScheduledFuture<?> timeoutTask = timeoutScheduler.schedule(new Runnable() {
+			public void run() {
+				if (pendingReplies.remove(correlationId, reply)) {
+					reply.completeExceptionally(new MessagingTimeoutException(timeoutMillis));
+				}
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+		reply.whenComplete(new BiConsumer<QueueingConsumer.Delivery, Throwable>() {
+			public void accept(QueueingConsumer.Delivery delivery, Throwable error) {
+				timeoutTask.cancel(false);
+			}
+		});
+		return reply;
+	}
+
+	/**
+	 * Cancels the call registered with the specified correlation id, for e.g. if publishing the request failed
+	 * @param correlationId the correlation id of the request
+	 */
+	public void cancel(String correlationId) {
+		CompletableFuture<QueueingConsumer.Delivery> reply = this.pendingReplies.remove(correlationId);
+		if (reply != null) {
+			reply.cancel(false);
+		}
+	}
+
+	/**
+	 * Returns the number of calls awaiting replies
+	 * @return the pending calls count
+	 */
+	public int getPendingReplyCount() {
+		return this.pendingReplies.size();
+	}
+
+	/**
+	 * Overriden superclass method. Completes the call awaiting the delivered reply
+	 * @see com.rabbitmq.client.DefaultConsumer#handleDelivery(java.lang.String, com.rabbitmq.client.Envelope, com.rabbitmq.client.AMQP.BasicProperties, byte[])
+	 */
+	public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) throws IOException {
+		String correlationId = properties == null ? null : properties.getCorrelationId();
+		CompletableFuture<QueueingConsumer.Delivery> reply = correlationId == null ? null : this.pendingReplies.remove(correlationId);
+		if (reply == null) {
+			LOGGER.warn("Discarding RPC reply for unknown or timed out correlation id : " + correlationId);
+			return;
+		}
+		reply.complete(new QueueingConsumer.Delivery(envelope, properties, body));
+	}
+
+	/**
+	 * Overriden superclass method. Fails all pending calls
+	 * @see com.rabbitmq.client.DefaultConsumer#handleShutdownSignal(java.lang.String, com.rabbitmq.client.ShutdownSignalException)
+	 */
+	public void handleShutdownSignal(String consumerTag, ShutdownSignalException sig) {
+		this.terminate(new MessagingException("RPC reply channel has been shutdown", sig));
+	}
+
+	/**
+	 * Overriden superclass method. Fails all pending calls
+	 * @see com.rabbitmq.client.DefaultConsumer#handleCancel(java.lang.String)
+	 */
+	public void handleCancel(String consumerTag) throws IOException {
+		this.terminate(new MessagingException("RPC reply consumer has been cancelled"));
+	}
+
+	/**
+	 * Overriden superclass method. Fails all pending calls, as a consumer cancelled by the client does not receive the channel shutdown signal
+	 * @see com.rabbitmq.client.DefaultConsumer#handleCancelOk(java.lang.String)
+	 */
+	public void handleCancelOk(String consumerTag) {
+		this.terminate(new MessagingException("RPC reply consumer has been cancelled"));
+	}
+
+	/**
+	 * Fails all pending calls and calls registered subsequently with the specified error
+	 * @param error the error to fail calls with
+	 */
+	public void terminate(MessagingException error) {
+		this.terminationError = error;
+		for (String correlationId : this.pendingReplies.keySet()) {
+			CompletableFuture<QueueingConsumer.Delivery> reply = this.pendingReplies.remove(correlationId);
+			if (reply != null) {
+				reply.completeExceptionally(error);
+			}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.platform.integration.messaging.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.trpr.platform.integration.impl.messaging.PrefetchingConsumer;
+
+import com.rabbitmq.client.Channel;
+
+/**
+ * Test class for org.trpr.platform.integration.impl.messaging.PrefetchingConsumer acknowledgements. Uses a Channel that records the acks sent.
+ * 
+ * @author agent
+ */
+public class PrefetchingConsumerTest {
+
+	/** The acks sent on the channel, as "deliveryTag:multiple" strings*/
+	private List<String> acks;
+	
+	/** The channel that records acks*/
+	private Channel channel;
+	
+	@Before
+	public void setUp() {
+		this.acks = new LinkedList<String>();
+		this.channel = (Channel)Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] {Channel.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("basicAck")) {
+					acks.add(args[0] + ":" + args[1]);
+				}
+				return null;
+			}
+		});
+	}
+	
+	@Test
+	public void testInOrderAcksAreBatched() throws Exception {
+		PrefetchingConsumer consumer = new PrefetchingConsumer(this.channel, 3, 60000);
+		consumer.acknowledge(1);
+		consumer.acknowledge(2);
+		Assert.assertTrue(this.acks.isEmpty());
+		consumer.acknowledge(3);
+		Assert.assertEquals(Arrays.asList("3:true"), this.acks);
+	}
+
+	@Test
+	public void testLowerTagAfterHigherTagIsNotReacked() throws Exception {
+		PrefetchingConsumer consumer = new PrefetchingConsumer(this.channel, 1, 60000);
+		consumer.acknowledge(1);
+		consumer.acknowledge(2);
+		consumer.acknowledge(4);
+		consumer.acknowledge(3);
+		Assert.assertEquals(Arrays.asList("1:true", "2:true", "4:false", "3:true"), this.acks);
+		// acknowledged tags are ignored
+		consumer.acknowledge(3);
+		consumer.acknowledge(4);
+		consumer.flushAcks();
+		Assert.assertEquals(4, this.acks.size());
+		consumer.acknowledge(5);
+		Assert.assertEquals("5:true", this.acks.get(4));
+	}
+
+	@Test
+	public void testTagsBeyondGapAreAckedIndividually() throws Exception {
+		PrefetchingConsumer consumer = new PrefetchingConsumer(this.channel, 10, 60000);
+		consumer.acknowledge(2);
+		consumer.acknowledge(1);
+		consumer.acknowledge(5);
+		consumer.acknowledge(4);
+		consumer.flushAcks();
+		Assert.assertEquals(Arrays.asList("2:true", "4:false", "5:false"), this.acks);
+		// the gap is filled, a single multiple ack settles 3 and 6 as 4 and 5 are already acknowledged
+		consumer.acknowledge(3);
+		consumer.acknowledge(6);
+		consumer.flushAcks();
+		Assert.assertEquals(Arrays.asList("2:true", "4:false", "5:false", "6:true"), this.acks);
+		consumer.acknowledge(7);
+		consumer.flushAcks();
+		Assert.assertEquals("7:true", this.acks.get(4));
+	}
+
+	@Test
+	public void testFlushWithNothingPending() throws Exception {
+		PrefetchingConsumer consumer = new PrefetchingConsumer(this.channel, 10, 60000);
+		consumer.flushAcks();
+		consumer.acknowledge(1);
+		consumer.flushAcks();
+		consumer.flushAcks();
+		Assert.assertEquals(Arrays.asList("1:true"), this.acks);
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.platform.integration.messaging.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.trpr.platform.integration.impl.messaging.PublisherConfirmException;
+import org.trpr.platform.integration.impl.messaging.PublisherConfirmListener;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * Test class for org.trpr.platform.integration.impl.messaging.PublisherConfirmListener. Uses a Channel that assigns publish sequence numbers.
+ * 
+ * @author agent
+ */
+public class PublisherConfirmListenerTest {
+
+	/** The next publish sequence number of the channel*/
+	private AtomicLong nextPublishSeqNo;
+	
+	/** The channel that assigns publish sequence numbers and the listener under test*/
+	private Channel channel;
+	private PublisherConfirmListener confirmListener;
+	
+	@Before
+	public void setUp() {
+		this.nextPublishSeqNo = new AtomicLong(1);
+		this.channel = (Channel)Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] {Channel.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("getNextPublishSeqNo")) {
+					return nextPublishSeqNo.get();
+				}
+				if (method.getName().equals("basicPublish")) {
+					nextPublishSeqNo.incrementAndGet();
+				}
+				return null;
+			}
+		});
+		this.confirmListener = new PublisherConfirmListener();
+	}
+	
+	@Test
+	public void testAckClearsOutstandingConfirm() throws Exception {
+		long first = this.publish();
+		long second = this.publish();
+		Assert.assertEquals(2, this.confirmListener.getOutstandingConfirmCount());
+		this.confirmListener.handleAck(second, false);
+		Assert.assertEquals(1, this.confirmListener.getOutstandingConfirmCount());
+		this.confirmListener.awaitOutstandingConfirms(second, 1, 1000);
+		this.confirmListener.handleAck(first, false);
+		this.confirmListener.awaitOutstandingConfirms(first, 0, 1000);
+		Assert.assertEquals(0, this.confirmListener.getOutstandingConfirmCount());
+	}
+
+	@Test
+	public void testMultipleAckClearsAllUpToSequenceNumber() throws Exception {
+		for (int i = 0; i < 4; i++) {
+			this.publish();
+		}
+		this.confirmListener.handleAck(3, true);
+		Assert.assertEquals(1, this.confirmListener.getOutstandingConfirmCount());
+		this.confirmListener.handleAck(4, true);
+		this.confirmListener.awaitOutstandingConfirms(0, 1000);
+		Assert.assertEquals(0, this.confirmListener.getNackedCount());
+	}
+
+	@Test
+	public void testNackIsReportedOnlyToPublisherOfNackedMessage() throws Exception {
+		long first = this.publish();
+		long second = this.publish();
+		long third = this.publish();
+		this.confirmListener.handleNack(second, false);
+		this.confirmListener.handleAck(third, true);
+		Assert.assertEquals(1, this.confirmListener.getNackedCount());
+		// publishers of the acked messages are not failed
+		this.confirmListener.awaitOutstandingConfirms(first, 0, 1000);
+		this.confirmListener.awaitOutstandingConfirms(third, 0, 1000);
+		try {
+			this.confirmListener.awaitOutstandingConfirms(second, 0, 1000);
+			Assert.fail("Nack was not reported to the publisher of the nacked message");
+		} catch (PublisherConfirmException e) {
+			Assert.assertTrue(e.getMessage().endsWith(" : " + second));
+		}
+		// nacks are reported only once
+		this.confirmListener.awaitOutstandingConfirms(second, 0, 1000);
+	}
+
+	@Test
+	public void testMultipleNackIsReportedToEachNackedPublisher() throws Exception {
+		long first = this.publish();
+		long second = this.publish();
+		this.confirmListener.handleNack(second, true);
+		Assert.assertEquals(2, this.confirmListener.getNackedCount());
+		for (long sequenceNo : new long[] {first, second}) {
+			try {
+				this.confirmListener.awaitOutstandingConfirms(sequenceNo, 0, 1000);
+				Assert.fail("Nack was not reported for sequence number : " + sequenceNo);
+			} catch (PublisherConfirmException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testNackAfterPublisherReturnedIsOnlyCounted() throws Exception {
+		long first = this.publish();
+		this.confirmListener.awaitOutstandingConfirms(first, 1, 1000);
+		this.confirmListener.handleNack(first, false);
+		Assert.assertEquals(1, this.confirmListener.getNackedCount());
+		long second = this.publish();
+		this.confirmListener.handleAck(second, false);
+		this.confirmListener.awaitOutstandingConfirms(second, 0, 1000);
+	}
+
+	@Test
+	public void testTimeoutWaitingForConfirms() throws Exception {
+		long sequenceNo = this.publish();
+		long start = System.currentTimeMillis();
+		try {
+			this.confirmListener.awaitOutstandingConfirms(sequenceNo, 0, 100);
+			Assert.fail("Waiting for confirms did not time out");
+		} catch (PublisherConfirmException e) {
+			Assert.assertTrue(e.getMessage().startsWith("Timed out"));
+		}
+		Assert.assertTrue(System.currentTimeMillis() - start >= 100);
+		Assert.assertEquals(1, this.confirmListener.getOutstandingConfirmCount());
+	}
+
+	@Test
+	public void testShutdownFailsWaitingPublisher() throws Exception {
+		final long sequenceNo = this.publish();
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		final CountDownLatch done = new CountDownLatch(1);
+		Thread publisher = new Thread() {
+			public void run() {
+				try {
+					confirmListener.awaitOutstandingConfirms(sequenceNo, 0, 60000);
+				} catch (Exception e) {
+					failure.set(e);
+				}
+				done.countDown();
+			}
+		};
+		publisher.start();
+		Thread.sleep(100);
+		this.confirmListener.shutdownCompleted(new ShutdownSignalException(false, false, null, this.channel));
+		publisher.join(5000);
+		Assert.assertEquals(0, done.getCount());
+		Assert.assertTrue(failure.get() instanceof PublisherConfirmException);
+		Assert.assertTrue(failure.get().getMessage().startsWith("Channel shutdown"));
+	}
+
+	/**
+	 * Helper method to publish a message on the channel after registering its sequence number as outstanding. Returns the sequence number
+	 */
+	private long publish() throws Exception {
+		long sequenceNo = this.channel.getNextPublishSeqNo();
+		this.confirmListener.addOutstandingConfirm(sequenceNo);
+		this.channel.basicPublish("exchange", "routingKey", null, new byte[0]);
+		return sequenceNo;
+	}
+}
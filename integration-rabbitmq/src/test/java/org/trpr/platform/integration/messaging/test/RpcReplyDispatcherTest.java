@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.platform.integration.messaging.test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.trpr.platform.integration.impl.messaging.RpcReplyDispatcher;
+import org.trpr.platform.integration.spi.messaging.MessagingException;
+import org.trpr.platform.integration.spi.messaging.MessagingTimeoutException;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.QueueingConsumer;
+
+/**
+ * Test class for org.trpr.platform.integration.impl.messaging.RpcReplyDispatcher
+ * 
+ * @author agent
+ */
+public class RpcReplyDispatcherTest {
+
+	/** The dispatcher under test and the scheduler for call timeouts*/
+	private RpcReplyDispatcher dispatcher;
+	private ScheduledExecutorService timeoutScheduler;
+	
+	@Before
+	public void setUp() {
+		this.dispatcher = new RpcReplyDispatcher(null);
+		this.timeoutScheduler = new ScheduledThreadPoolExecutor(1);
+	}
+	
+	@After
+	public void tearDown() {
+		this.timeoutScheduler.shutdownNow();
+	}
+	
+	@Test
+	public void testReplyCompletesCallWithSameCorrelationId() throws Exception {
+		CompletableFuture<QueueingConsumer.Delivery> first = this.dispatcher.register("1", 60000, this.timeoutScheduler);
+		CompletableFuture<QueueingConsumer.Delivery> second = this.dispatcher.register("2", 60000, this.timeoutScheduler);
+		this.deliver("2", "reply-2");
+		Assert.assertFalse(first.isDone());
+		Assert.assertEquals("reply-2", new String(second.get(1, TimeUnit.SECONDS).getBody()));
+		Assert.assertEquals(1, this.dispatcher.getPendingReplyCount());
+		// replies for unknown correlation ids are discarded
+		this.deliver("3", "reply-3");
+		this.deliver(null, "reply");
+		Assert.assertFalse(first.isDone());
+		this.deliver("1", "reply-1");
+		Assert.assertEquals("reply-1", new String(first.get(1, TimeUnit.SECONDS).getBody()));
+		Assert.assertEquals(0, this.dispatcher.getPendingReplyCount());
+	}
+
+	@Test
+	public void testCallTimesOut() throws Exception {
+		CompletableFuture<QueueingConsumer.Delivery> reply = this.dispatcher.register("1", 50, this.timeoutScheduler);
+		try {
+			reply.get(5, TimeUnit.SECONDS);
+			Assert.fail("Call did not time out");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof MessagingTimeoutException);
+		}
+		Assert.assertEquals(0, this.dispatcher.getPendingReplyCount());
+		// a late reply is discarded
+		this.deliver("1", "reply-1");
+	}
+
+	@Test
+	public void testCancelRemovesCall() throws Exception {
+		CompletableFuture<QueueingConsumer.Delivery> reply = this.dispatcher.register("1", 60000, this.timeoutScheduler);
+		this.dispatcher.cancel("1");
+		Assert.assertTrue(reply.isCancelled());
+		Assert.assertEquals(0, this.dispatcher.getPendingReplyCount());
+	}
+
+	@Test
+	public void testCancelOkFailsPendingAndSubsequentCalls() throws Exception {
+		CompletableFuture<QueueingConsumer.Delivery> pending = this.dispatcher.register("1", 60000, this.timeoutScheduler);
+		this.dispatcher.handleCancelOk("consumer");
+		this.assertFailed(pending);
+		this.assertFailed(this.dispatcher.register("2", 60000, this.timeoutScheduler));
+		Assert.assertEquals(0, this.dispatcher.getPendingReplyCount());
+	}
+
+	@Test
+	public void testTerminateFailsPendingCalls() throws Exception {
+		CompletableFuture<QueueingConsumer.Delivery> pending = this.dispatcher.register("1", 60000, this.timeoutScheduler);
+		this.dispatcher.terminate(new MessagingException("closed"));
+		this.assertFailed(pending);
+	}
+	
+	/**
+	 * Helper method to deliver a reply with the specified correlation id to the dispatcher
+	 */
+	private void deliver(String correlationId, String body) throws Exception {
+		AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder().correlationId(correlationId).build();
+		this.dispatcher.handleDelivery("consumer", new Envelope(1, false, "", "reply"), properties, body.getBytes());
+	}
+	
+	/**
+	 * Helper method to check that the specified call failed with a MessagingException other than a timeout
+	 */
+	private void assertFailed(CompletableFuture<QueueingConsumer.Delivery> reply) throws Exception {
+		try {
+			reply.get(1, TimeUnit.SECONDS);
+			Assert.fail("Call did not fail");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof MessagingException);
+			Assert.assertFalse(e.getCause() instanceof MessagingTimeoutException);
+		}
+	}
+}
@@ -66,11 +66,17 @@ public class RabbitConnector extends AbstractConnector {
 	
 	/** The default pre-fetch count. Negative value to indicate no explicit setting*/
 	private static final int DEFAULT_PREFETCH_COUNT = -1;
+	
+	/** The default number of acknowledgements batched into a cumulative ack and the max time an acknowledgement is held back*/
+	private static final int DEFAULT_ACK_BATCH_SIZE = 50;
+	private static final long DEFAULT_ACK_FLUSH_INTERVAL_MILLIS = 100L;
 
 	/** Connection related variables*/
     private Connection connection;
     private int durableMessageCommitCount = DEFAULT_DURABLE_MSG_COMMIT_COUNT;
     private int prefetchCount = DEFAULT_PREFETCH_COUNT;
+    private int ackBatchSize = DEFAULT_ACK_BATCH_SIZE;
+    private long ackFlushIntervalMillis = DEFAULT_ACK_FLUSH_INTERVAL_MILLIS;
     
     private List<RabbitMQConfiguration> rabbitMQConfigurations;
     
@@ -292,6 +298,21 @@ public class RabbitConnector extends AbstractConnector {
 	public void setPrefetchCount(int prefetchCount) {
 		this.prefetchCount = prefetchCount;
 	}
+	public int getAckBatchSize() {
+		return this.ackBatchSize;
+	}
+	public void setAckBatchSize(int ackBatchSize) {
+		this.ackBatchSize = ackBatchSize;
+	}
+	public long getAckFlushIntervalMillis() {
+		return this.ackFlushIntervalMillis;
+	}
+	public void setAckFlushIntervalMillis(long ackFlushIntervalMillis) {
+		if (ackFlushIntervalMillis <= 0) {
+			throw new IllegalArgumentException("Ack flush interval must be greater than zero. Specified value is : " + ackFlushIntervalMillis);
+		}
+		this.ackFlushIntervalMillis = ackFlushIntervalMillis;
+	}
 	public int getRequestHeartBeat() {
 		return this.requestHeartBeat;
 	}
@@ -22,9 +22,12 @@ package org.trpr.mule.transport.rabbitmq;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeSet;
 
 import javax.resource.spi.work.Work;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.mule.DefaultMuleMessage;
 import org.mule.api.MuleException;
 import org.mule.api.MuleMessage;
@@ -32,6 +35,7 @@ import org.mule.api.endpoint.InboundEndpoint;
 import org.mule.api.lifecycle.CreateException;
 import org.mule.api.lifecycle.InitialisationException;
 import org.mule.api.lifecycle.LifecycleException;
+import org.mule.api.config.ThreadingProfile;
 import org.mule.api.service.Service;
 import org.mule.api.transport.Connector;
 import org.mule.api.transport.MessageAdapter;
@@ -56,6 +60,14 @@ import com.rabbitmq.client.ShutdownSignalException;
  * scenarios where messages are routed to this RabbitMQ Consumer just as the Mule instance is starting. Also moved the actual message consumption
  * to doStart(). Implemented most of the life-cycle call-back methods
  *
+ * Deliveries are flow controlled : unless a pre-fetch count is set explicitly on the RabbitConnector, the channel's pre-fetch count is set to the
+ * capacity of the receiver WorkManager i.e. max active threads plus the work buffer size, so that the broker does not deliver more messages than 
+ * can be worked upon. Workers do not acknowledge messages themselves. Instead, a single {@link RabbitMessageReceiver.AckCoordinator} per channel 
+ * acknowledges completed messages cumulatively, i.e. using basicAck with multiple=true, once {@link RabbitConnector#getAckBatchSize()} messages have
+ * completed or {@link RabbitConnector#getAckFlushIntervalMillis()} has elapsed. Messages are acknowledged cumulatively up to the oldest message that
+ * is still being worked upon, and completed messages after it are acknowledged individually so that a slow message does not hold up deliveries. 
+ * Rejections are sent immediately.
+ *
  * @author Regunath B
  * @version 1.0, 17/08/2012
 */
@@ -87,6 +99,9 @@ public class RabbitMessageReceiver extends AbstractMessageReceiver implements Co
     
     /** Flag to indicate whether to start consuming messages on connect*/
     private boolean startOnConnect = false;
+    
+    /** The AckCoordinator for the current channel*/
+    private volatile AckCoordinator ackCoordinator;
 
     /**
      * Constructor for this class. 
@@ -111,6 +126,12 @@ public class RabbitMessageReceiver extends AbstractMessageReceiver implements Co
         RabbitConnector.ChannelHolder ch = conn.createChannel(endpoint);
         channel = ch.getChannel();
         logger.debug("Receiver opened channel: " + channel);
+        
+        // bound the unacknowledged deliveries to the WorkManager capacity, if a pre-fetch count has not been set explicitly
+        int inFlightWindow = this.getInFlightWindow();
+        if (conn.getPrefetchCount() < 0) {
+        	channel.basicQos(inFlightWindow);
+        }
 
         queue = EndpointUtils.getQueue(endpoint);
         routingKey = EndpointUtils.getRoutingKey(endpoint);
@@ -139,6 +160,13 @@ public class RabbitMessageReceiver extends AbstractMessageReceiver implements Co
     		channel.queueDeclare(queue,EndpointUtils.isDurable(endpoint),false,false,args); 
         }
         
+        // create the AckCoordinator once the queue name is known and before consuming messages
+        this.stopAckCoordinator();
+        // ack at least twice per window so that deliveries are not held up waiting for a flush interval
+        this.ackCoordinator = new AckCoordinator(channel, "RabbitAckCoordinator-" + queue, Math.max(1, Math.min(conn.getAckBatchSize(), inFlightWindow / 2)), 
+        		conn.getAckFlushIntervalMillis());
+        this.ackCoordinator.start();
+        
         if (startOnConnect) { // start the consumer only if set to start on connect
             doStart();
         }
@@ -165,6 +193,7 @@ public class RabbitMessageReceiver extends AbstractMessageReceiver implements Co
      * @see org.mule.transport.AbstractConnectable#doDisconnect()
      */
     protected void doDisconnect() throws Exception {
+    	this.stopAckCoordinator();
     	this.closeChannelQuietly();
     }
 
@@ -208,6 +237,7 @@ public class RabbitMessageReceiver extends AbstractMessageReceiver implements Co
      * @see org.mule.transport.AbstractConnectable#doStop()
      */
     protected void doStop() throws MuleException {
+    	this.stopAckCoordinator();
     	this.closeChannelQuietly();
     }
 
@@ -248,11 +278,14 @@ public class RabbitMessageReceiver extends AbstractMessageReceiver implements Co
 	 * @see com.rabbitmq.client.Consumer#handleDelivery(java.lang.String, com.rabbitmq.client.Envelope, com.rabbitmq.client.AMQP.BasicProperties, byte[])
 	 */
     public void handleDelivery(final String consumerTag, final Envelope env, final BasicProperties props, final byte[] body) throws IOException {
-    	 try {
-             getWorkManager().scheduleWork(new AMQPWorker(this, consumerTag, env, props, body));
-         } catch (Exception e){
-             handleException(e);
-         }
+    	AckCoordinator coordinator = this.ackCoordinator;
+    	coordinator.delivered(env.getDeliveryTag());
+    	try {
+    		getWorkManager().scheduleWork(new AMQPWorker(this, consumerTag, env, props, body, coordinator));
+    	} catch (Exception e){
+    		coordinator.reject(env.getDeliveryTag(), true); // return the message to the queue as it could not be worked upon
+    		handleException(e);
+    	}
     }
 
     /**
@@ -331,6 +364,9 @@ public class RabbitMessageReceiver extends AbstractMessageReceiver implements Co
     	private Envelope env;
     	private BasicProperties props;
     	private byte[] body;
+    	
+    	/** The AckCoordinator of the channel that delivered the message*/
+    	private AckCoordinator coordinator;
 
     	/**
     	 * Constructor for this class
@@ -339,13 +375,15 @@ public class RabbitMessageReceiver extends AbstractMessageReceiver implements Co
     	 * @param env the message envelope
     	 * @param props the message properties
     	 * @param body the payload as byte array
+    	 * @param coordinator the AckCoordinator for acknowledging the message
     	 */
     	public AMQPWorker (AbstractMessageReceiver receiver, String consumerTag,
-    			Envelope env, BasicProperties props, byte[] body) {
+    			Envelope env, BasicProperties props, byte[] body, AckCoordinator coordinator) {
     		this.consumerTag = consumerTag;
     		this.env = env;
     		this.props = props;
     		this.body = body;
+    		this.coordinator = coordinator;
     	}
 
         /**
@@ -380,15 +418,18 @@ public class RabbitMessageReceiver extends AbstractMessageReceiver implements Co
 	            // for receivers, service and dispatcher results in exceptions getting handled and bundled into the response Mule message. This necessitates
 	            // processing of response to determine execution outcome of invoking the service component.
 	            if (synchronous && returnMessage.getExceptionPayload() != null) {
-	            	if (env.isRedeliver()) {
-	            		channel.basicReject(env.getDeliveryTag(), false); // reject the message without re-queuing 
-	            	} else {
-	            		channel.basicReject(env.getDeliveryTag(), EndpointUtils.isMessageRequeued(endpoint)); // reject the message passing in the re-queuing flag declared on the endpoint
-	            	}
+	            	this.reject();
 	            } else {
-	            	channel.basicAck(env.getDeliveryTag(), false);
+	            	this.coordinator.acknowledge(env.getDeliveryTag());
 	            }
             } catch (Exception e) {
+            	// reject the message, re-queuing it as per the endpoint declaration unless it is a redelivery. Not rejecting the message
+            	// would hold back acknowledgement of all subsequent messages on the channel
+            	try {
+            		this.reject();
+            	} catch (IOException ioe) {
+            		logger.info("Error rejecting message. Ignoring it. Exception is : " + ioe.getMessage());
+            	}
             	// blanket catch for all exceptions. Let Mule handle the exception
             	handleException(e);
             }
@@ -402,6 +443,176 @@ public class RabbitMessageReceiver extends AbstractMessageReceiver implements Co
 		public void release() {
 			// no op
 		}
+		
+		/**
+		 * Rejects the message, re-queuing it as per the endpoint declaration unless it is a redelivery
+		 */
+		private void reject() throws IOException {
+        	if (env.isRedeliver()) {
+        		this.coordinator.reject(env.getDeliveryTag(), false); // reject the message without re-queuing 
+        	} else {
+        		this.coordinator.reject(env.getDeliveryTag(), EndpointUtils.isMessageRequeued(endpoint)); // reject the message passing in the re-queuing flag declared on the endpoint
+        	}
+		}
+    }
+    
+    /**
+     * The AckCoordinator acknowledges messages delivered on a channel, using a single thread per channel. Completed messages are acknowledged 
+     * cumulatively, up to the latest completed message that has no message before it still being worked upon. Completed messages after the oldest
+     * message still being worked upon are acknowledged individually, as holding them back would count them against the channel's pre-fetch count.
+     */
+    protected static class AckCoordinator implements Runnable {
+    	
+    	/** The Log instance for this class*/
+    	private static final Log LOGGER = LogFactory.getLog(AckCoordinator.class);
+    	
+    	/** The channel that delivered the messages and the name of the acknowledging thread*/
+    	private Channel channel;
+    	private String name;
+    	
+    	/** The number of completed messages that triggers an acknowledgement and the max time a completed message is not acknowledged*/
+    	private int ackBatchSize;
+    	private long flushIntervalMillis;
+    	
+    	/** Delivery tags of messages being worked upon and of completed messages that are not acknowledged yet*/
+    	private TreeSet<Long> outstandingTags = new TreeSet<Long>();
+    	private TreeSet<Long> completedTags = new TreeSet<Long>();
+    	
+    	/** Flag to indicate whether this coordinator is running*/
+    	private boolean running;
+    	
+    	/**
+    	 * Constructor for this class
+    	 * @param channel the channel that delivers the messages
+    	 * @param name the name of the acknowledging thread
+    	 * @param ackBatchSize the number of completed messages that triggers an acknowledgement
+    	 * @param flushIntervalMillis the max time a completed message is not acknowledged, must be greater than zero
+    	 */
+    	public AckCoordinator(Channel channel, String name, int ackBatchSize, long flushIntervalMillis) {
+    		if (flushIntervalMillis <= 0) {
+    			throw new IllegalArgumentException("Ack flush interval must be greater than zero. Specified value is : " + flushIntervalMillis);
+    		}
+    		this.channel = channel;
+    		this.name = name;
+    		this.ackBatchSize = ackBatchSize;
+    		this.flushIntervalMillis = flushIntervalMillis;
+    	}
+    	
+    	/**
+    	 * Starts the acknowledging thread
+    	 */
+    	public synchronized void start() {
+    		this.running = true;
+        	Thread thread = new Thread(this, this.name);
+        	// set the thread as a daemon so that it exits with the JVM
+        	thread.setDaemon(true);
+        	thread.start();
+    	}
+    	
+    	/**
+    	 * Stops the acknowledging thread after acknowledging all completed messages
+    	 */
+    	public synchronized void stop() {
+    		this.running = false;
+    		this.flush(); // acknowledge completed messages while the channel is still open
+    		notifyAll();
+    	}
+    	
+    	/**
+    	 * Registers the specified delivery tag as being worked upon. Must be called in the order of delivery
+    	 * @param deliveryTag the delivery tag of the message
+    	 */
+    	public synchronized void delivered(long deliveryTag) {
+    		this.outstandingTags.add(deliveryTag);
+    	}
+    	
+    	/**
+    	 * Marks the message of the specified delivery tag as completed, for acknowledging later
+    	 * @param deliveryTag the delivery tag of the message
+    	 */
+    	public synchronized void acknowledge(long deliveryTag) {
+    		this.outstandingTags.remove(deliveryTag);
+    		this.completedTags.add(deliveryTag);
+    		if (this.completedTags.size() >= this.ackBatchSize) {
+    			notifyAll();
+    		}
+    	}
+    	
+    	/**
+    	 * Rejects the message of the specified delivery tag immediately
+    	 * @param deliveryTag the delivery tag of the message
+    	 * @param requeue true if the message is to be re-queued
+    	 * @throws IOException in case of errors rejecting the message
+    	 */
+    	public synchronized void reject(long deliveryTag, boolean requeue) throws IOException {
+    		try {
+    			this.channel.basicReject(deliveryTag, requeue);
+    		} finally {
+    			// the message no longer holds back acknowledgement of subsequent messages
+    			this.outstandingTags.remove(deliveryTag);
+    		}
+    	}
+    	
+    	/**
+    	 * The Runnable run method of the acknowledging thread
+    	 */
+    	public synchronized void run() {
+    		while (this.running) {
+    			try {
+    				if (this.completedTags.size() < this.ackBatchSize) {
+    					wait(this.flushIntervalMillis);
+    				}
+    			} catch (InterruptedException ie) {
+    				// do nothing
+    			}
+    			this.flush();
+    		}
+    	}
+    	
+    	/**
+    	 * Acknowledges all completed messages : up to the oldest message being worked upon using a single cumulative acknowledgement, and the ones
+    	 * after it individually
+    	 */
+    	private void flush() {
+    		if (this.completedTags.isEmpty()) {
+    			return;
+    		}
+    		Long ackTag = this.outstandingTags.isEmpty() ? this.completedTags.last() : this.completedTags.lower(this.outstandingTags.first());
+    		if (ackTag != null) {
+	    		try {
+	    			this.channel.basicAck(ackTag, true);
+	    		} catch (Exception e) {
+	    			LOGGER.info("Error acknowledging messages up to delivery tag : " + ackTag + ". Ignoring it. Exception is : " + e.getMessage());
+	    		}
+	    		this.completedTags.headSet(ackTag, true).clear();
+    		}
+    		// the remaining completed messages are after the oldest message being worked upon
+    		for (Long completedTag : this.completedTags) {
+	    		try {
+	    			this.channel.basicAck(completedTag, false);
+	    		} catch (Exception e) {
+	    			LOGGER.info("Error acknowledging message with delivery tag : " + completedTag + ". Ignoring it. Exception is : " + e.getMessage());
+	    		}
+    		}
+    		this.completedTags.clear();
+    	}
+    }
+
+    /**
+     * Helper method to get the number of messages that the receiver WorkManager can accept i.e. its max active threads and work buffer size
+     */
+    private int getInFlightWindow() {
+    	ThreadingProfile threadingProfile = ((RabbitConnector)connector).getReceiverThreadingProfile();
+    	return Math.max(1, threadingProfile.getMaxThreadsActive() + Math.max(0, threadingProfile.getMaxBufferSize()));
+    }
+    
+    /**
+     * Helper method to stop the AckCoordinator, if any, of this receiver
+     */
+    private void stopAckCoordinator() {
+    	if (this.ackCoordinator != null) {
+    		this.ackCoordinator.stop();
+    	}
     }
 
     /**
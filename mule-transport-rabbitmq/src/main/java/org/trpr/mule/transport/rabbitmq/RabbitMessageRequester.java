@@ -32,7 +32,8 @@ import org.trpr.mule.transport.rabbitmq.i18n.RabbitMessages;
 
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
 import com.rabbitmq.client.RpcClient;
 
 /**
@@ -61,6 +62,8 @@ public class RabbitMessageRequester extends AbstractMessageRequester {
         try {
             RabbitConnector.ChannelHolder ch = conn.createChannel(endpoint);
             channel = ch.getChannel();
+            // a request consumes a single message, do not let the broker push more to the short-lived consumer of a request
+            channel.basicQos(1);
 
             logger.debug("RabbitMessageRequester opened channel: " + channel);
             String exchange = EndpointUtils.declareExchange(channel, endpoint);
@@ -80,7 +83,10 @@ public class RabbitMessageRequester extends AbstractMessageRequester {
     }
 
     /**
-     * Abstract method implementation. Tries to get a message from the queue identified by the endpoint until a timeout occurs.
+     * Abstract method implementation. Waits for a message from the queue identified by the endpoint until the timeout occurs. A consumer is 
+     * registered on the queue for the duration of the request and the delivered message is handed over to the requesting thread, which
+     * acknowledges it. Messages delivered after the request has stopped waiting, including ones dispatched after the consumer is cancelled, are
+     * rejected and re-queued by the consumer.
      * @see org.mule.transport.AbstractMessageRequester#doRequest(long)
      */
     protected MuleMessage doRequest(long timeout) throws Exception {
@@ -90,25 +96,26 @@ public class RabbitMessageRequester extends AbstractMessageRequester {
             {
                 throw new IllegalArgumentException(RabbitMessages.noQueueDefined(endpoint).getMessage());
             }
-            long time = System.currentTimeMillis() + timeout;
-            long count = System.currentTimeMillis();
-            while (count < time) {
-                GetResponse response = rpcClient.getChannel().basicGet(queue, false);
-                if (response == null)
-                {
-                    Thread.sleep(50);
-                    count += 50;
-                }
-                else
-                {
-                    AMQP.BasicProperties props = response.getProps();
-                    byte[] body = response.getBody();
-                    MessageAdapter adapter = connector.getMessageAdapter(new Object[]{body, props});
-                    return new DefaultMuleMessage(adapter);
-                }
+            Channel requestChannel = rpcClient.getChannel();
+            RequestConsumer consumer = new RequestConsumer(requestChannel);
+            String consumerTag = requestChannel.basicConsume(queue, false, consumer);
+            Delivery delivery = null;
+            try {
+            	delivery = consumer.awaitDelivery(timeout);
+            } finally {
+            	// the consumer rejects deliveries made from now on, as the client may dispatch deliveries even after the cancel returns
+            	requestChannel.basicCancel(consumerTag);
             }
-            return null;
+            if (delivery == null) {
+            	return null;
+            }
+            requestChannel.basicAck(delivery.env.getDeliveryTag(), false);
+            MessageAdapter adapter = connector.getMessageAdapter(new Object[]{delivery.body, delivery.props});
+            return new DefaultMuleMessage(adapter);
         } catch (Throwable e){
+        	if (e instanceof InterruptedException) {
+        		Thread.currentThread().interrupt();
+        	}
             e.printStackTrace();
             return null;
         }
@@ -143,6 +150,90 @@ public class RabbitMessageRequester extends AbstractMessageRequester {
             //ignore as we are shutting down anyway
         }
     }
+    
+    /** 
+     * The consumer of a request. Hands over a single delivery to the requesting thread and rejects, re-queuing, all other deliveries. The consumer
+     * is marked cancelled under its lock once the requesting thread stops waiting, so that deliveries from then on are rejected on the connection 
+     * thread instead of being handed over.
+     */
+    private class RequestConsumer extends DefaultConsumer {
+    	
+    	/** The delivery for the requesting thread, and flag to indicate whether the request has stopped accepting deliveries*/
+    	private Delivery delivery;
+    	private boolean cancelled;
+    	
+    	/**
+    	 * Constructor for this class
+    	 * @param channel the channel of the request
+    	 */
+    	RequestConsumer(Channel channel) {
+    		super(channel);
+    	}
+    	
+    	/**
+    	 * Overriden superclass method. Hands over the delivery to the requesting thread if it is waiting and no other delivery has been handed over, 
+    	 * rejects and re-queues it otherwise
+    	 * @see com.rabbitmq.client.DefaultConsumer#handleDelivery(java.lang.String, com.rabbitmq.client.Envelope, com.rabbitmq.client.AMQP.BasicProperties, byte[])
+    	 */
+    	public synchronized void handleDelivery(String consumerTag, Envelope env, AMQP.BasicProperties props, byte[] body) throws IOException {
+    		if (this.cancelled || this.delivery != null) {
+    			getChannel().basicReject(env.getDeliveryTag(), true); // only one message is needed, return any other to the queue
+    			return;
+    		}
+    		this.delivery = new Delivery(env, props, body);
+    		notifyAll();
+    	}
+    	
+    	/**
+    	 * Overriden superclass method. Rejects and re-queues the delivery, if any, that was not taken by the requesting thread
+    	 * @see com.rabbitmq.client.DefaultConsumer#handleCancelOk(java.lang.String)
+    	 */
+    	public synchronized void handleCancelOk(String consumerTag) {
+    		this.cancelled = true;
+    		if (this.delivery != null) {
+    			try {
+    				getChannel().basicReject(this.delivery.env.getDeliveryTag(), true);
+    			} catch (IOException e) {
+    				logger.info("Error rejecting message delivered after request completion. Ignoring it. Exception is : " + e.getMessage());
+    			}
+    			this.delivery = null;
+    		}
+    	}
+    	
+    	/**
+    	 * Waits up to the specified timeout for a delivery and takes it. Deliveries are rejected once this method returns.
+    	 * @param timeout the max time to wait in milliseconds
+    	 * @return the delivery, or null if none was made within the timeout
+    	 * @throws InterruptedException if interrupted while waiting
+    	 */
+    	synchronized Delivery awaitDelivery(long timeout) throws InterruptedException {
+    		try {
+	    		long deadline = System.currentTimeMillis() + timeout;
+	    		long remaining = timeout;
+	    		while (this.delivery == null && !this.cancelled && remaining > 0) {
+	    			wait(remaining);
+	    			remaining = deadline - System.currentTimeMillis();
+	    		}
+	    		Delivery takenDelivery = this.delivery;
+	    		this.delivery = null;
+	    		return takenDelivery;
+    		} finally {
+    			this.cancelled = true;
+    		}
+    	}
+    }
+    
+    /** A message delivered to the consumer of a request*/
+    private static class Delivery {
+    	private Envelope env;
+    	private AMQP.BasicProperties props;
+    	private byte[] body;
+    	Delivery(Envelope env, AMQP.BasicProperties props, byte[] body) {
+    		this.env = env;
+    		this.props = props;
+    		this.body = body;
+    	}
+    }
 
 }
 
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.mule.transport.rabbitmq;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.rabbitmq.client.Channel;
+
+/**
+ * Test class for org.trpr.mule.transport.rabbitmq.RabbitMessageReceiver.AckCoordinator
+ * 
+ * @author agent
+ */
+public class AckCoordinatorTest {
+
+	/** The coordinator under test*/
+	private RabbitMessageReceiver.AckCoordinator coordinator;
+	
+	/** The acknowledgements and rejections sent on the channel, as method name, delivery tag and flag*/
+	private List<List<Object>> channelCalls = new ArrayList<List<Object>>();
+	
+	@After
+	public void tearDown() throws Exception {
+		if (this.coordinator != null) {
+			this.coordinator.stop();
+		}
+	}
+	
+	@Test
+	public void testCompletedMessagesAreAcknowledgedCumulatively() throws Exception {
+		this.coordinator = this.createCoordinator(10);
+		for (long tag = 1; tag <= 3; tag++) {
+			this.coordinator.delivered(tag);
+		}
+		for (long tag = 1; tag <= 3; tag++) {
+			this.coordinator.acknowledge(tag);
+		}
+		this.coordinator.stop();
+		Assert.assertEquals(Arrays.asList(this.call("basicAck", 3L, true)), this.getChannelCalls());
+	}
+
+	@Test
+	public void testMessagesAfterOutstandingMessageAreAcknowledgedIndividually() throws Exception {
+		this.coordinator = this.createCoordinator(10);
+		for (long tag = 1; tag <= 4; tag++) {
+			this.coordinator.delivered(tag);
+		}
+		this.coordinator.acknowledge(1);
+		this.coordinator.acknowledge(3);
+		this.coordinator.acknowledge(4);
+		this.coordinator.stop();
+		Assert.assertEquals(Arrays.asList(this.call("basicAck", 1L, true), this.call("basicAck", 3L, false), this.call("basicAck", 4L, false)), 
+				this.getChannelCalls());
+	}
+
+	@Test
+	public void testAcknowledgementsAreFlushedWhenBatchSizeIsReached() throws Exception {
+		this.coordinator = this.createCoordinator(2);
+		this.coordinator.start();
+		for (long tag = 1; tag <= 3; tag++) {
+			this.coordinator.delivered(tag);
+		}
+		this.coordinator.acknowledge(2);
+		this.coordinator.acknowledge(3);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (this.getChannelCalls().size() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		Assert.assertEquals(Arrays.asList(this.call("basicAck", 2L, false), this.call("basicAck", 3L, false)), this.getChannelCalls());
+		this.coordinator.acknowledge(1);
+		this.coordinator.stop();
+		Assert.assertEquals(this.call("basicAck", 1L, true), this.getChannelCalls().get(2));
+	}
+
+	@Test
+	public void testRejectedMessageDoesNotHoldBackAcknowledgement() throws Exception {
+		this.coordinator = this.createCoordinator(10);
+		for (long tag = 1; tag <= 3; tag++) {
+			this.coordinator.delivered(tag);
+		}
+		this.coordinator.reject(1, true);
+		this.coordinator.acknowledge(2);
+		this.coordinator.acknowledge(3);
+		this.coordinator.stop();
+		Assert.assertEquals(Arrays.asList(this.call("basicReject", 1L, true), this.call("basicAck", 3L, true)), this.getChannelCalls());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFlushIntervalMustBePositive() {
+		new RabbitMessageReceiver.AckCoordinator(this.createChannel(), "test", 10, 0);
+	}
+	
+	/**
+	 * Creates a coordinator on a channel that records acknowledgements and rejections
+	 */
+	private RabbitMessageReceiver.AckCoordinator createCoordinator(int ackBatchSize) {
+		return new RabbitMessageReceiver.AckCoordinator(this.createChannel(), "test", ackBatchSize, 60000L);
+	}
+	
+	/**
+	 * Creates a channel that records acknowledgements and rejections
+	 */
+	private Channel createChannel() {
+		return (Channel)Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class<?>[]{Channel.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("basicAck") || method.getName().equals("basicReject")) {
+					synchronized(channelCalls) {
+						channelCalls.add(call(method.getName(), args[0], args[1]));
+					}
+					return null;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+	
+	/** Helper methods for recorded channel calls*/
+	private List<Object> call(String methodName, Object deliveryTag, Object flag) {
+		return Arrays.asList(methodName, deliveryTag, flag);
+	}
+	private List<List<Object>> getChannelCalls() {
+		synchronized(this.channelCalls) {
+			return new ArrayList<List<Object>>(this.channelCalls);
+		}
+	}
+}
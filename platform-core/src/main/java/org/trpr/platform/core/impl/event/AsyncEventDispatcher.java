@@ -0,0 +1,295 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trpr.platform.core.impl.event;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.trpr.platform.core.PlatformException;
+import org.trpr.platform.core.impl.logging.LogFactory;
+import org.trpr.platform.core.spi.logging.Logger;
+
+/**
+ * The <code>AsyncEventDispatcher</code> decouples event publishing from event delivery. Event deliveries are queued in a bounded queue and 
+ * executed by a fixed number of dispatcher threads, so that slow event listeners do not add to the latency of the code publishing the events.
+ * May be set on the {@link PlatformEventProducerImpl}, {@link EndpointEventProducerImpl} or the {@link PlatformEventMulticaster}. Configuring it on
+ * the multi-caster makes delivery asynchronous for all producers publishing to the ApplicationContext.
+ * 
+ * The {@link OverflowPolicy} determines the behavior when the queue is full. Events are delivered in the order they were published when a single 
+ * dispatcher thread is used, which is the default. Deliveries are executed on the calling thread when dispatched from a dispatcher thread, i.e. 
+ * by listeners that publish events, and after this dispatcher is shut down.
+ * 
+ * @author agent
+ * @version 1.0, 17/10/2026
+ */
+@ManagedResource(objectName = "spring.application:type=Trooper,application=Event-Dispatch,name=AsyncEventDispatcher-", description = "Trooper Asynchronous Event Dispatcher")
+public class AsyncEventDispatcher implements InitializingBean, DisposableBean {
+
+	/**
+	 * The policies for handling event deliveries when the queue is full
+	 */
+	public static enum OverflowPolicy {
+		/** Block the publishing thread until the queue has space*/
+		BLOCK,
+		/** Discard the oldest queued delivery to make space for the new one*/
+		DROP_OLDEST,
+		/** Discard the new delivery*/
+		DROP_NEWEST
+	}
+
+	/**
+	 * The Log instance for this class
+	 */
+	private static final Logger LOGGER = LogFactory.getLogger(AsyncEventDispatcher.class);
+
+	/** Default values for queue capacity, dispatcher threads and shutdown timeout*/
+	private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+	private static final int DEFAULT_DISPATCHER_THREADS = 1;
+	private static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 5000L;
+
+	/** The interval at which dispatcher threads check for shutdown when the queue is empty*/
+	private static final long POLL_INTERVAL_MILLIS = 500L;
+
+	/** The thread name prefix for dispatcher threads*/
+	private static final String THREAD_NAME_PREFIX = "AsyncEventDispatcher-";
+
+	/** The queue capacity, overflow policy, number of dispatcher threads and the time to wait for queued deliveries on shutdown*/
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+	private int dispatcherThreads = DEFAULT_DISPATCHER_THREADS;
+	private long shutdownTimeoutMillis = DEFAULT_SHUTDOWN_TIMEOUT_MILLIS;
+
+	/** The queue of event deliveries and the threads executing them*/
+	private BlockingQueue<Runnable> queue;
+	private Thread[] threads;
+
+	/** Indicates if this dispatcher is accepting deliveries*/
+	private volatile boolean running;
+
+	/** Delivery counters*/
+	private AtomicLong dispatchedCount = new AtomicLong();
+	private AtomicLong droppedCount = new AtomicLong();
+	private AtomicLong failedCount = new AtomicLong();
+
+	/**
+	 * Interface method implementation. Creates the queue and starts the dispatcher threads
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		if (this.queueCapacity <= 0 || this.dispatcherThreads <= 0) {
+			throw new PlatformException("Queue capacity and dispatcher threads must be greater than zero");
+		}
+		this.queue = new ArrayBlockingQueue<Runnable>(this.queueCapacity);
+		this.running = true;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(THREAD_NAME_PREFIX);
+		threadFactory.setDaemon(true);
+		this.threads = new Thread[this.dispatcherThreads];
+		for (int i = 0; i < this.threads.length; i++) {
+			this.threads[i] = threadFactory.newThread(new Runnable() {
+				public void run() {
+					dispatchLoop();
+				}
+			});
+			this.threads[i].start();
+		}
+	}
+
+	/**
+	 * Interface method implementation. Stops accepting deliveries and waits up to the shutdown timeout for queued deliveries to complete
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	public void destroy() throws Exception {
+		this.running = false;
+		if (this.threads == null) {
+			return;
+		}
+		long deadline = System.currentTimeMillis() + this.shutdownTimeoutMillis;
+		for (Thread thread : this.threads) {
+			thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+		}
+		for (Thread thread : this.threads) {
+			thread.interrupt();
+		}
+		if (!this.queue.isEmpty()) {
+			LOGGER.warn("Discarding " + this.queue.size() + " event deliveries that were not completed within the shutdown timeout of " + this.shutdownTimeoutMillis + " ms");
+			this.droppedCount.addAndGet(this.queue.size());
+			this.queue.clear();
+		}
+	}
+
+	/**
+	 * Queues the specified event delivery for execution by a dispatcher thread, applying the overflow policy if the queue is full. The delivery is 
+	 * executed on the calling thread if this dispatcher is not running or if called from a dispatcher thread. Deliveries queued while this dispatcher
+	 * is being stopped are drained on the calling thread, as the dispatcher threads may have exited already.
+	 * @param delivery the event delivery
+	 * @throws PlatformException in case the calling thread is interrupted while waiting for space in the queue
+	 */
+	public void dispatch(Runnable delivery) {
+		if (!this.running || this.isDispatcherThread()) {
+			this.deliver(delivery);
+			return;
+		}
+		if (!this.queue.offer(delivery)) {
+			switch (this.overflowPolicy) {
+			case DROP_NEWEST:
+				this.onDrop();
+				return;
+			case DROP_OLDEST:
+				while (!this.queue.offer(delivery)) {
+					if (this.queue.poll() != null) {
+						this.onDrop();
+					}
+				}
+				break;
+			default:
+				try {
+					while (!this.queue.offer(delivery, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+						if (!this.running) { // the dispatcher threads may have exited and will not make space in the queue
+							this.deliver(delivery);
+							break;
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new PlatformException("Interrupted while waiting to queue event delivery", e);
+				}
+			}
+		}
+		if (!this.running) { // stopped after the running check above, drain deliveries that the dispatcher threads may not execute
+			this.drainQueue();
+		}
+	}
+
+	/** === Start JMX metrics */
+	@ManagedAttribute
+	public int getQueueDepth() {
+		return this.queue == null ? 0 : this.queue.size();
+	}
+	@ManagedAttribute
+	public int getRemainingCapacity() {
+		return this.queue == null ? this.queueCapacity : this.queue.remainingCapacity();
+	}
+	@ManagedAttribute
+	public long getDispatchedCount() {
+		return this.dispatchedCount.get();
+	}
+	@ManagedAttribute
+	public long getDroppedCount() {
+		return this.droppedCount.get();
+	}
+	@ManagedAttribute
+	public long getFailedCount() {
+		return this.failedCount.get();
+	}
+	/** === End JMX metrics */
+
+	/** === Start Spring DI style Getter/Setter methods */
+	@ManagedAttribute
+	public int getQueueCapacity() {
+		return this.queueCapacity;
+	}
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+	public OverflowPolicy getOverflowPolicy() {
+		return this.overflowPolicy;
+	}
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+	public int getDispatcherThreads() {
+		return this.dispatcherThreads;
+	}
+	public void setDispatcherThreads(int dispatcherThreads) {
+		this.dispatcherThreads = dispatcherThreads;
+	}
+	public long getShutdownTimeoutMillis() {
+		return this.shutdownTimeoutMillis;
+	}
+	public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+		this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+	}
+	/** === End Spring DI style Getter/Setter methods */
+
+	/**
+	 * Loop executed by the dispatcher threads. Exits when this dispatcher is stopped and the queue has been drained
+	 */
+	private void dispatchLoop() {
+		while (this.running || !this.queue.isEmpty()) {
+			try {
+				Runnable delivery = this.queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+				if (delivery != null) {
+					this.deliver(delivery);
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Executes all queued deliveries on the calling thread
+	 */
+	private void drainQueue() {
+		Runnable delivery = null;
+		while ((delivery = this.queue.poll()) != null) {
+			this.deliver(delivery);
+		}
+	}
+
+	/**
+	 * Executes the specified delivery. Errors are logged and do not affect delivery of other events
+	 */
+	private void deliver(Runnable delivery) {
+		try {
+			delivery.run();
+			this.dispatchedCount.incrementAndGet();
+		} catch (Throwable e) {
+			this.failedCount.incrementAndGet();
+			LOGGER.error("Error delivering event : " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Records a dropped delivery
+	 */
+	private void onDrop() {
+		if ((this.droppedCount.incrementAndGet() - 1) % this.queueCapacity == 0) { // avoid flooding the logs when the queue stays full
+			LOGGER.warn("Event delivery queue is full. Dropped " + this.droppedCount.get() + " event deliveries so far using overflow policy : " + this.overflowPolicy);
+		}
+	}
+
+	/**
+	 * Determines if the current thread is one of the dispatcher threads
+	 */
+	private boolean isDispatcherThread() {
+		Thread current = Thread.currentThread();
+		for (Thread thread : this.threads) {
+			if (thread == current) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -25,6 +25,8 @@ import org.springframework.context.ApplicationContextAware;
 /**
  * The <code>EndpointEventProducerImpl</code> is an implementation of the EndpointEventProducer interface.
  * Wraps the PlatformEvent into a PlatformApplicationEvent and publishes it to the Spring ApplicationContext.
+ * Events are published on the calling thread unless an {@link AsyncEventDispatcher} is set, in which case publishing is done by the dispatcher
+ * threads.
  * 
  * @see org.springframework.context.ApplicationContext
  * 
@@ -42,6 +44,9 @@ public class EndpointEventProducerImpl implements EndpointEventProducer, Applica
 	/**EndpointURI configured for this event producer for sending MuleApplicationEvent(s)*/
 	private String defaultEndpointURI;
 
+	/** The optional dispatcher for publishing events asynchronously*/
+	private AsyncEventDispatcher asyncEventDispatcher;
+
 	/**
 	 * Interface method implementation
 	 * @see org.trpr.platform.core.spi.event.PlatformEventProducer#publishEvent(PlatformEvent)
@@ -82,15 +87,39 @@ public class EndpointEventProducerImpl implements EndpointEventProducer, Applica
 		this.defaultEndpointURI = defaultEndpointURI;
 	}	
 
+	/**
+	 * Gets the asyncEventDispatcher
+	 * @return Returns the AsyncEventDispatcher used for publishing events, may be null
+	 */
+	public AsyncEventDispatcher getAsyncEventDispatcher() {
+		return asyncEventDispatcher;
+	}
+
+	/**
+	 * Sets the asyncEventDispatcher
+	 * @param asyncEventDispatcher the AsyncEventDispatcher for publishing events asynchronously. Events are published on the calling thread if not set
+	 */
+	public void setAsyncEventDispatcher(AsyncEventDispatcher asyncEventDispatcher) {
+		this.asyncEventDispatcher = asyncEventDispatcher;
+	}
+
 	/**
 	 * Helper method to publish a {@link PlatformEvent} to corresponding
 	 * implementation based on the specified endpoint. It publishes the event to the {@link ApplicationContext}
 	 */
 	private void publishPlatformEvent(final PlatformEvent event, String endpointURI){
-		PlatformApplicationEvent platformEvent = new PlatformApplicationEvent(event);
+		final PlatformApplicationEvent platformEvent = new PlatformApplicationEvent(event);
 		platformEvent.setEndpointURI(endpointURI);
 		// publishes the PlatformEvent to the configured endpoint.
-		appContext.publishEvent(platformEvent);
+		if (this.asyncEventDispatcher == null) {
+			appContext.publishEvent(platformEvent);
+			return;
+		}
+		this.asyncEventDispatcher.dispatch(new Runnable() {
+			public void run() {
+				appContext.publishEvent(platformEvent);
+			}
+		});
 	}	
 	
 }
@@ -17,6 +17,8 @@
 package org.trpr.platform.core.impl.event;
 
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 
 import org.trpr.platform.core.impl.logging.LogFactory;
 import org.trpr.platform.core.spi.event.EndpointEventConsumer;
@@ -34,8 +36,9 @@ import org.springframework.core.ResolvableType;
  * supports routing only {@link PlatformApplicationEvent} instances to registered ApplicationListener instances where subscriptions match the
  * endpointURI contained in the published PlatformApplicationEvent.
  * 
- * This multi-caster does a synchronous multi-cast of the events. By default, all listeners are invoked in the calling thread.
- * This allows the danger of a rogue listener blocking the entire application. 
+ * This multi-caster does a synchronous multi-cast of the events by default, i.e. all listeners are invoked in the calling thread.
+ * This allows the danger of a rogue listener blocking the entire application. An {@link AsyncEventDispatcher} may be set to invoke the 
+ * listeners on the dispatcher threads instead. Subscriptions are matched on the calling thread in either case.
  * 
  * @author Regunath B
  * @version 2.0, 25/08/2015
@@ -50,6 +53,9 @@ public class PlatformEventMulticaster extends AbstractApplicationEventMulticaste
 	/** List of subscriptions recognized by this multi-caster*/
 	private String[] subscriptions;
 
+	/** The optional dispatcher for invoking listeners asynchronously*/
+	private AsyncEventDispatcher asyncEventDispatcher;
+
 	/**
 	 * Interface method implementation. Calls {@link #multicastEvent(ApplicationEvent)} with resolved default type
 	 * @see org.springframework.context.event.ApplicationEventMulticaster#multicastEvent(org.springframework.context.ApplicationEvent)
@@ -66,7 +72,7 @@ public class PlatformEventMulticaster extends AbstractApplicationEventMulticaste
 	 */
 	public void multicastEvent(ApplicationEvent event, ResolvableType eventType) {
 		if (event instanceof PlatformApplicationEvent) {
-			PlatformApplicationEvent platformApplicationEvent = (PlatformApplicationEvent)event;
+			final PlatformApplicationEvent platformApplicationEvent = (PlatformApplicationEvent)event;
 			String eventEndpointURI = platformApplicationEvent.getEndpointURI();
 			if (eventEndpointURI == null) {
 				LOGGER.debug("End-point URI of PlatformApplicationEvent is null. Event will not be forwarded. Event type is : " + platformApplicationEvent.getClass().getName()); 
@@ -76,14 +82,27 @@ public class PlatformEventMulticaster extends AbstractApplicationEventMulticaste
 				LOGGER.debug("Endpoint URI doesnot match any of the subscriptions specified on this multi-caster. Event will not be forwarded. Event URI is : " + eventEndpointURI); 
 				return;				
 			}
+			final List<EndpointEventConsumer> consumers = new LinkedList<EndpointEventConsumer>();
 			for (Iterator<ApplicationListener<?>> iterator = getApplicationListeners().iterator(); iterator.hasNext();) {
 	            ApplicationListener<?> listener = (ApplicationListener<?>) iterator.next();	
 	            if (listener instanceof EndpointEventConsumer) {
 	            	if (isSubscriptionMatch(eventEndpointURI, ((EndpointEventConsumer)listener).getSubscriptions())) {
-	            		((EndpointEventConsumer)listener).onApplicationEvent(platformApplicationEvent);
+	            		consumers.add((EndpointEventConsumer)listener);
 	            	}
 	            }
 			}
+			if (consumers.isEmpty()) {
+				return;
+			}
+			if (this.asyncEventDispatcher == null) {
+				this.invokeConsumers(consumers, platformApplicationEvent);
+				return;
+			}
+			this.asyncEventDispatcher.dispatch(new Runnable() {
+				public void run() {
+					invokeConsumers(consumers, platformApplicationEvent);
+				}
+			});
 		} else {
 			// log a warning and ignore the event
 			LOGGER.debug("Spring ApplicationEvent of un-supported type received : " + event.getClass().getName() + ". Only PlatformApplicationEvent instances with be forwarded.");
@@ -97,6 +116,12 @@ public class PlatformEventMulticaster extends AbstractApplicationEventMulticaste
 	public void setSubscriptions(String[] subscriptions) {
 		this.subscriptions = subscriptions;
 	}
+	public AsyncEventDispatcher getAsyncEventDispatcher() {
+		return asyncEventDispatcher;
+	}
+	public void setAsyncEventDispatcher(AsyncEventDispatcher asyncEventDispatcher) {
+		this.asyncEventDispatcher = asyncEventDispatcher;
+	}
 	/** === End Getter/Setter methods*/	
 	
     /**
@@ -115,6 +140,26 @@ public class PlatformEventMulticaster extends AbstractApplicationEventMulticaste
 		return false;
 	}
 	
+	/**
+	 * Invokes the specified consumers with the event. An error in one consumer does not prevent invocation of the others when dispatching
+	 * asynchronously, as there is no caller to report it to.
+	 * @param consumers the EndpointEventConsumer instances whose subscriptions match the event
+	 * @param event the PlatformApplicationEvent
+	 */
+	private void invokeConsumers(List<EndpointEventConsumer> consumers, PlatformApplicationEvent event) {
+		for (EndpointEventConsumer consumer : consumers) {
+			if (this.asyncEventDispatcher == null) {
+				consumer.onApplicationEvent(event);
+				continue;
+			}
+			try {
+				consumer.onApplicationEvent(event);
+			} catch (Exception e) {
+				LOGGER.error("Error invoking event consumer : " + consumer.getClass().getName() + " for event URI : " + event.getEndpointURI(), e);
+			}
+		}
+	}
+
 	/**
 	 * Resolve default event type from the specified ApplicationEvent
 	 * @param event ApplicationEvent
@@ -29,6 +29,9 @@ import org.springframework.context.ApplicationContextAware;
  * A Spring ApplicationEventMulticaster may be configured to route events published by this producer to consumers registered in 
  * the same ApplicationContext. 
  * 
+ * Events are published on the calling thread unless an {@link AsyncEventDispatcher} is set, in which case publishing is done by the dispatcher
+ * threads.
+ * 
  * @see org.springframework.context.ApplicationContext
  * 
  * @author Regunath B
@@ -42,12 +45,24 @@ public class PlatformEventProducerImpl implements PlatformEventProducer, Applica
 	 */
 	private ApplicationContext appContext;
 
+	/** The optional dispatcher for publishing events asynchronously*/
+	private AsyncEventDispatcher asyncEventDispatcher;
+
 	/**
 	 * Interface method implementation
 	 * @see org.trpr.platform.core.spi.event.PlatformEventProducer#publishEvent(PlatformEvent)
 	 */
 	public void publishEvent(PlatformEvent event) {
-		this.appContext.publishEvent(new PlatformApplicationEvent(event));
+		final PlatformApplicationEvent platformEvent = new PlatformApplicationEvent(event);
+		if (this.asyncEventDispatcher == null) {
+			this.appContext.publishEvent(platformEvent);
+			return;
+		}
+		this.asyncEventDispatcher.dispatch(new Runnable() {
+			public void run() {
+				appContext.publishEvent(platformEvent);
+			}
+		});
 	}
 
 	/**
@@ -57,4 +72,13 @@ public class PlatformEventProducerImpl implements PlatformEventProducer, Applica
 	public void setApplicationContext(ApplicationContext appContext) throws BeansException {
 		this.appContext = appContext;
 	}	
+
+	/** === Start Spring DI style Getter/Setter methods */
+	public AsyncEventDispatcher getAsyncEventDispatcher() {
+		return this.asyncEventDispatcher;
+	}
+	public void setAsyncEventDispatcher(AsyncEventDispatcher asyncEventDispatcher) {
+		this.asyncEventDispatcher = asyncEventDispatcher;
+	}
+	/** === End Spring DI style Getter/Setter methods */
 }
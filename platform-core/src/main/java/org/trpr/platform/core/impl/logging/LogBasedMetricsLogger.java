@@ -16,30 +16,61 @@
 
 package org.trpr.platform.core.impl.logging;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
 import org.trpr.platform.core.PlatformConstants;
 import org.trpr.platform.core.spi.logging.Logger;
 import org.trpr.platform.core.spi.logging.PerformanceMetricsLogger;
 import org.perf4j.StopWatch;
-import org.perf4j.slf4j.Slf4JStopWatch;
 
 /**
  * The <code>LogBasedMetricsLogger</code> class is an implementation of the {@link PerformanceMetricsLogger} that directs metrics logging
  * output to the Platform's {@link Logger} using the default appender identified by {@link PlatformConstants#PERF_LOGGER_CATEGORY}.
- * This implementation uses the perf4j Java library {@link http://perf4j.codehaus.org/}.
+ * This implementation uses the perf4j Java library {@link http://perf4j.codehaus.org/} format for logging individual timings.
+ * 
+ * Start times are held per thread, and per call when using {@link #startTimer()}, so that a single instance may be shared by concurrent callers.
+ * By default, each timing that exceeds the logging threshold is logged as it is recorded. When metrics aggregation is turned on, timings are 
+ * instead recorded into lock-free histograms per tag and summaries are logged once every flush interval, by the thread that records the first 
+ * timing after the interval has elapsed. Individual timings are additionally logged in this mode only if the logging threshold is greater than zero.
  *  
  * @author Regunath B
  * @version 1.0, 18/05/2012
  */
 public class LogBasedMetricsLogger implements PerformanceMetricsLogger {
 	
-	/** The performance logger stop watch*/
-	private StopWatch stopWatch = null;
+	/** The default interval for logging aggregated metrics*/
+	private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 60000L;
+
+	/** The performance Logger*/
+	private static final Logger PERF_LOGGER = LogFactory.getLogger(PlatformConstants.PERF_LOGGER_CATEGORY);
+
+	/** Marker for a thread that has not started metrics capture*/
+	private static final long CAPTURE_NOT_STARTED = Long.MIN_VALUE;
+
+	/** The start time, in nanoseconds, of the metrics capture started by each thread*/
+	private final ThreadLocal<long[]> captureStartTime = new ThreadLocal<long[]>() {
+		protected long[] initialValue() {
+			return new long[] {CAPTURE_NOT_STARTED};
+		}
+	};
 
 	/** Flag to turn on/off performance metrics collection*/
 	protected boolean capturePerfMetrics = false;
 
 	/** Elapsed time threshold to turn on/off performance logging*/
 	protected long performanceLoggingThreshold;
+
+	/** Flag to turn on/off aggregation of metrics and the interval at which aggregated metrics are logged*/
+	private boolean aggregateMetrics = false;
+	private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+
+	/** The aggregated timings keyed by tag, and the time at which these are next logged*/
+	private final ConcurrentHashMap<String, TimingHistogram> histograms = new ConcurrentHashMap<String, TimingHistogram>();
+	private final AtomicLong nextFlushTime = new AtomicLong(System.currentTimeMillis() + DEFAULT_FLUSH_INTERVAL_MILLIS);
 	
 	/**
 	 * No args constructor
@@ -59,32 +90,49 @@ public class LogBasedMetricsLogger implements PerformanceMetricsLogger {
 
 	/**
 	 * Interface method implementation.
-	 * Starts the performance logger for capturing time of subsequent code execution until {@link #logPerformanceMetrics(String, String)} is called. 
+	 * Starts the performance logger of the calling thread for capturing time of subsequent code execution until {@link #logPerformanceMetrics(String, String)} 
+	 * is called. 
 	 * @see PerformanceMetricsLogger#startPerformanceMetricsCapture()
 	 */
 	public void startPerformanceMetricsCapture() {
 		if (this.capturePerfMetrics) {
-			if (this.stopWatch == null) {
-				// we try to create the stop watch only once even when concurrent access happens on a singleton instance of this handler
-				synchronized(this) {
-					if (this.stopWatch == null) {
-						this.stopWatch = new Slf4JStopWatch(LogFactory.getLogger(PlatformConstants.PERF_LOGGER_CATEGORY));
-					}
-				}
-			} else {
-				this.stopWatch.start();
-			}
+			this.captureStartTime.get()[0] = System.nanoTime();
 		}
 	}
 
 	/**
 	 * Interface method implementation.
-	 * Logs the specified tag, message and the elapsed time to the Platform logger. 
+	 * Records the specified tag, message and the time elapsed since the calling thread last called {@link #startPerformanceMetricsCapture()}. 
+	 * Nothing is recorded if the calling thread has not started metrics capture. The capture is ended i.e. a subsequent call records nothing
+	 * until capture is started again.
 	 * @see PerformanceMetricsLogger#logPerformanceMetrics(String, String)
 	 */
 	public void logPerformanceMetrics(String tag, String message) {
-		if (this.capturePerfMetrics && this.stopWatch.getElapsedTime() > this.performanceLoggingThreshold) {
-			this.stopWatch.stop(tag, message);
+		if (this.capturePerfMetrics) {
+			long startTime = this.captureStartTime.get()[0];
+			this.captureStartTime.remove();
+			if (startTime != CAPTURE_NOT_STARTED) {
+				this.recordMetrics(startTime, tag, message);
+			}
+		}
+	}
+
+	/**
+	 * Interface method implementation. Returns the current value of the system nanosecond timer.
+	 * @see PerformanceMetricsLogger#startTimer()
+	 */
+	public long startTimer() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Interface method implementation.
+	 * Records the specified tag, message and the time elapsed since the specified timer was started. 
+	 * @see PerformanceMetricsLogger#logPerformanceMetrics(long, String, String)
+	 */
+	public void logPerformanceMetrics(long timer, String tag, String message) {
+		if (this.capturePerfMetrics) {
+			this.recordMetrics(timer, tag, message);
 		}
 	}
 
@@ -98,11 +146,143 @@ public class LogBasedMetricsLogger implements PerformanceMetricsLogger {
 	}
 	
 	/**
-	 * Interface method implementation. Uses the specified params to control logging by the perf4j stop watch.
+	 * Interface method implementation. Uses the specified params to control logging of metrics.
 	 * @see PerformanceMetricsLogger#setMetricsCaptureParams(boolean, long)
 	 */
 	public void setMetricsCaptureParams(boolean capturePerfMetrics, long performanceLoggingThreshold) {
 		this.capturePerfMetrics = capturePerfMetrics;
 		this.performanceLoggingThreshold = performanceLoggingThreshold;
 	}
+
+	/**
+	 * Logs a summary of the timings aggregated for each tag since the last flush and resets the aggregated timings.
+	 */
+	public void flushMetrics() {
+		for (Map.Entry<String, TimingHistogram> entry : this.histograms.entrySet()) {
+			String summary = entry.getValue().summarizeAndReset();
+			if (summary != null) {
+				PERF_LOGGER.info("tag[" + entry.getKey() + "] " + summary);
+			}
+		}
+	}
+
+	/** === Start Spring DI style Getter/Setter methods */
+	public boolean isAggregateMetrics() {
+		return this.aggregateMetrics;
+	}
+	public void setAggregateMetrics(boolean aggregateMetrics) {
+		this.aggregateMetrics = aggregateMetrics;
+	}
+	public long getFlushIntervalMillis() {
+		return this.flushIntervalMillis;
+	}
+	public void setFlushIntervalMillis(long flushIntervalMillis) {
+		this.flushIntervalMillis = flushIntervalMillis;
+		this.nextFlushTime.set(System.currentTimeMillis() + flushIntervalMillis);
+	}
+	/** === End Spring DI style Getter/Setter methods */
+
+	/**
+	 * Helper method to record the time elapsed since the specified start time. Logs the timing if it exceeds the threshold and aggregates it
+	 * if aggregation is turned on.
+	 * @param startTime the start time in nanoseconds
+	 * @param tag the tag identifying the code block
+	 * @param message the message detailing the metrics
+	 */
+	private void recordMetrics(long startTime, String tag, String message) {
+		long elapsedTime = (System.nanoTime() - startTime) / 1000000L;
+		if (!this.aggregateMetrics) {
+			if (elapsedTime > this.performanceLoggingThreshold) {
+				this.logTiming(elapsedTime, tag, message);
+			}
+			return;
+		}
+		if (this.performanceLoggingThreshold > 0 && elapsedTime > this.performanceLoggingThreshold) {
+			this.logTiming(elapsedTime, tag, message);
+		}
+		TimingHistogram histogram = this.histograms.get(tag);
+		if (histogram == null) {
+			TimingHistogram newHistogram = new TimingHistogram();
+			histogram = this.histograms.putIfAbsent(tag, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		histogram.record(elapsedTime);
+		long now = System.currentTimeMillis();
+		long flushTime = this.nextFlushTime.get();
+		// only one of the threads recording metrics after the flush time does the flush
+		if (now >= flushTime && this.nextFlushTime.compareAndSet(flushTime, now + this.flushIntervalMillis)) {
+			this.flushMetrics();
+		}
+	}
+
+	/**
+	 * Helper method to log an individual timing in the perf4j StopWatch format
+	 */
+	private void logTiming(long elapsedTime, String tag, String message) {
+		PERF_LOGGER.info(new StopWatch(System.currentTimeMillis() - elapsedTime, elapsedTime, tag, message).toString());
+	}
+
+	/**
+	 * Lock-free histogram of timings in milliseconds. Bucket i holds timings in the range [2^(i-1), 2^i), with bucket 0 holding timings of zero
+	 * and the last bucket holding all timings from 2^(BUCKETS-2) upwards.
+	 * Counts are reset when summarized, and timings recorded concurrently with a reset may be attributed to either interval.
+	 */
+	static class TimingHistogram {
+		private static final int BUCKETS = 32;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalTime = new LongAdder();
+		private final AtomicLong maxTime = new AtomicLong();
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+		/**
+		 * Records the specified timing
+		 */
+		void record(long elapsedTime) {
+			this.count.increment();
+			this.totalTime.add(elapsedTime);
+			long max = this.maxTime.get();
+			while (elapsedTime > max && !this.maxTime.compareAndSet(max, elapsedTime)) {
+				max = this.maxTime.get();
+			}
+			this.buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(elapsedTime)));
+		}
+
+		/**
+		 * Returns a summary of the timings recorded since the last reset and resets the histogram. Returns null if no timings were recorded
+		 */
+		String summarizeAndReset() {
+			long samples = this.count.sumThenReset();
+			long total = this.totalTime.sumThenReset();
+			long max = this.maxTime.getAndSet(0);
+			long[] counts = new long[BUCKETS];
+			long bucketTotal = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] = this.buckets.getAndSet(i, 0);
+				bucketTotal += counts[i];
+			}
+			if (samples == 0) {
+				return null;
+			}
+			return "count[" + samples + "] avg[" + (total / samples) + "] max[" + max + "] p50[" + percentile(counts, bucketTotal, 0.50, max) 
+					+ "] p90[" + percentile(counts, bucketTotal, 0.90, max) + "] p99[" + percentile(counts, bucketTotal, 0.99, max) + "]";
+		}
+
+		/**
+		 * Returns the upper bound of the bucket containing the specified percentile, capped at the max recorded timing. The max recorded timing
+		 * is returned for the last, unbounded, bucket
+		 */
+		private static long percentile(long[] counts, long total, double percentile, long max) {
+			long rank = (long)Math.ceil(total * percentile);
+			long cumulative = 0;
+			for (int i = 0; i < counts.length; i++) {
+				cumulative += counts[i];
+				if (cumulative >= rank) {
+					return i == counts.length - 1 ? max : Math.min(max, i == 0 ? 0 : (1L << i) - 1);
+				}
+			}
+			return max;
+		}
+	}
 }
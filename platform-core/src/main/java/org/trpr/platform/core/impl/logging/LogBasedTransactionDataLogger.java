@@ -16,8 +16,7 @@
 
 package org.trpr.platform.core.impl.logging;
 
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 import org.apache.commons.lang.StringUtils;
 import org.trpr.platform.core.PlatformConstants;
@@ -46,7 +45,10 @@ import org.trpr.platform.core.spi.logging.TransactionDataLogger;
 		log4j.appender.txn_data_appender.Header=true
  * </pre></code> 
  * 
- * This implementation uses a Java {@link ThreadLocal} to store the transaction metrics for the currently active Thread. This implementation
+ * This implementation uses a Java {@link ThreadLocal} to store the transaction metrics for the currently active Thread in a record that is reused
+ * across transactions. Timings are held as long values and attributes are kept sorted by name, so that recording metrics and writing the CSV line 
+ * does not create objects other than the logged String. Values are enclosed in double quotes and double quotes within values are escaped by 
+ * doubling them, as is the convention for CSV. This implementation
  * protects from runaway loggers by imposing default and configurable thresholds for metrics logged for a transaction. This logger truncates
  * metrics logged after the threshold is reached and data truncation is suitably logged using the transaction attribute : {@link LogBasedTransactionDataLogger#DATA_TRUNCATED_ATTR}, 
  * value : {@link LogBasedTransactionDataLogger#DATA_TRUNCATED_VALUE} when {@link #log()} is invoked. 
@@ -71,10 +73,10 @@ public class LogBasedTransactionDataLogger implements TransactionDataLogger {
 	private static final Logger LOGGER = LogFactory.getLogger(PlatformConstants.TX_LOGGER_CATEGORY);
 	
 	/** ThreadLocal instance for holding metrics, attributes and their values*/
-	private static ThreadLocal<Map<String, String>> metricNameToValueMap = new ThreadLocal<Map<String, String>>() {
+	private static ThreadLocal<TransactionRecord> transactionRecord = new ThreadLocal<TransactionRecord>() {
 		@Override
-		protected Map<String, String> initialValue() {
-			return new TreeMap<String, String>();
+		protected TransactionRecord initialValue() {
+			return new TransactionRecord();
 		}
 	};
 	
@@ -86,7 +88,11 @@ public class LogBasedTransactionDataLogger implements TransactionDataLogger {
 	 * @see org.trpr.platform.core.spi.logging.TransactionDataLogger#recordTransactionAttribute(java.lang.String, java.lang.String)
 	 */
 	public void recordTransactionAttribute(String attrName, String attrValue) {
-		addTXData(attrName, attrValue);
+		TransactionRecord record = transactionRecord.get();
+		int index = this.addTXData(record, attrName);
+		if (index >= 0) {
+			record.setValue(index, attrValue);
+		}
 	}
 	
 	/**
@@ -94,7 +100,11 @@ public class LogBasedTransactionDataLogger implements TransactionDataLogger {
 	 * @see org.trpr.platform.core.spi.logging.TransactionDataLogger#startTrackingTimeFor(java.lang.String)
 	 */
 	public void startTrackingTimeFor(String metricName) {
-		addTXData(metricName, String.valueOf(System.currentTimeMillis()));
+		TransactionRecord record = transactionRecord.get();
+		int index = this.addTXData(record, metricName);
+		if (index >= 0) {
+			record.setValue(index, TransactionRecord.START_TIME, System.currentTimeMillis());
+		}
 	}
 
 	/**
@@ -102,17 +112,14 @@ public class LogBasedTransactionDataLogger implements TransactionDataLogger {
 	 * @see org.trpr.platform.core.spi.logging.TransactionDataLogger#stopTrackingTimeFor(String)
 	 */
 	public void stopTrackingTimeFor(String metricName) {
-		String metric = metricName;
-		
-		// Store the difference between previous value (timestamp of start of tracking) and current time.
-		String previousValue = metricNameToValueMap.get().get(metric);
-		
-		if (StringUtils.isNotBlank(previousValue) && StringUtils.isNumeric(previousValue)) {
-			long diff = System.currentTimeMillis() - Long.valueOf(previousValue);
-			metricNameToValueMap.get().put(metric, String.valueOf(diff));
+		TransactionRecord record = transactionRecord.get();
+		int index = record.indexOf(metricName);
+		if (index >= 0 && record.types[index] == TransactionRecord.START_TIME) {
+			// Store the difference between previous value (timestamp of start of tracking) and current time.
+			record.setValue(index, TransactionRecord.ELAPSED_TIME, System.currentTimeMillis() - record.longValues[index]);
 		} else {
 			//If no previous value, lets set the value to -1 to indicate that developer forgot to call the start
-			metricNameToValueMap.get().put(metric, String.valueOf(-1));
+			record.setValue(record.add(metricName), TransactionRecord.ELAPSED_TIME, -1);
 		}
 	}
 
@@ -121,17 +128,24 @@ public class LogBasedTransactionDataLogger implements TransactionDataLogger {
 	 * @see org.trpr.platform.core.spi.logging.TransactionDataLogger#log()
 	 */
 	public void log() {
-		StringBuffer sb = new StringBuffer();
-		
-		for (String k : metricNameToValueMap.get().keySet()) {
-			sb.append(decorateForCsv(k) + ",");
-			sb.append(decorateForCsv(metricNameToValueMap.get().get(k)) + ",");
+		TransactionRecord record = transactionRecord.get();
+		StringBuilder sb = record.builder;
+		sb.setLength(0);
+		for (int i = 0; i < record.size; i++) {
+			appendForCsv(sb, record.names[i]);
+			sb.append(',');
+			if (record.types[i] == TransactionRecord.ATTRIBUTE) {
+				appendForCsv(sb, record.stringValues[i]);
+			} else {
+				sb.append('"').append(record.longValues[i]).append('"');
+			}
+			sb.append(',');
 		}
 	
 		LOGGER.info(sb.toString());
 		
-		//Lets clear the map after logging the current transaction's data		
-		clearValues();
+		//Lets clear the record after logging the current transaction's data		
+		record.clear();
 	}
 	
 	/** === Start Getter, Setter methods */
@@ -144,36 +158,132 @@ public class LogBasedTransactionDataLogger implements TransactionDataLogger {
 	/**== End Getter,Setter methods */
 	
 	/**
-	 * Clears the map values.
-	 */
-	private void clearValues() {
-		for (String key : metricNameToValueMap.get().keySet()) {
-			metricNameToValueMap.get().put(key, null);
-		}
-	}
-	
-	/**
-	 * Adds double quotes to the string, and escapes any double quote present in the input.
+	 * Appends the specified string to the builder enclosed in double quotes, after trimming it and escaping any double quote present in it.
+	 * Appends {@link #NOT_AVAILABLE} if the string is blank.
+	 * @param sb the StringBuilder for the CSV line
 	 * @param s the undecorated input string
-	 * @return decorated string for writing to CSV
 	 */
-	private String decorateForCsv(String s) {
-		return StringUtils.isNotBlank(s) ? "\"" + s.trim().replaceAll("\"", "\\\"") + "\"" : "\"" + NOT_AVAILABLE + "\"";
+	static void appendForCsv(StringBuilder sb, String s) {
+		sb.append('"');
+		if (StringUtils.isBlank(s)) {
+			sb.append(NOT_AVAILABLE);
+		} else {
+			int start = 0;
+			int end = s.length();
+			while (start < end && s.charAt(start) <= ' ') { // trim as done by String#trim()
+				start++;
+			}
+			while (end > start && s.charAt(end - 1) <= ' ') {
+				end--;
+			}
+			for (int i = start; i < end; i++) {
+				char c = s.charAt(i);
+				if (c == '"') {
+					sb.append('"');
+				}
+				sb.append(c);
+			}
+		}
+		sb.append('"');
 	}
 	
 	/**
 	 * Adds the specified metric/attribute to the currently active transaction data if the threshold is not crossed.
+	 * @param record the TransactionRecord of the current thread
 	 * @param key metric/attribute identifier key
-	 * @param value the metric/attrinute value
+	 * @return the index of the metric/attribute in the record, -1 if the threshold has been crossed
 	 */
-	private void addTXData(String key, String value) {
+	private int addTXData(TransactionRecord record, String key) {
 		// check to see if the threshold for number of metrics has been crossed.
-		if (metricNameToValueMap.get().size() > this.getMetricsCountThreshold()) {
+		if (record.size > this.getMetricsCountThreshold() && record.indexOf(key) < 0) {
 			// Add the data truncation attribute to the TX data - will replace if already exists
-			metricNameToValueMap.get().put(LogBasedTransactionDataLogger.DATA_TRUNCATED_ATTR, LogBasedTransactionDataLogger.DATA_TRUNCATED_VALUE);
-			return;
+			record.setValue(record.add(LogBasedTransactionDataLogger.DATA_TRUNCATED_ATTR), LogBasedTransactionDataLogger.DATA_TRUNCATED_VALUE);
+			return -1;
+		}
+		return record.add(key);
+	}
+	
+	/**
+	 * The metrics and attributes of a transaction, held in arrays sorted by name. Instances are confined to a thread and are reused across transactions.
+	 */
+	static final class TransactionRecord {
+		/** Types of values*/
+		static final byte ATTRIBUTE = 0;
+		static final byte START_TIME = 1;
+		static final byte ELAPSED_TIME = 2;
+		/** Initial capacities of the arrays and the CSV line builder, and the builder capacity beyond which it is not retained*/
+		private static final int INITIAL_CAPACITY = 16;
+		private static final int INITIAL_LINE_CAPACITY = 512;
+		private static final int MAX_RETAINED_LINE_CAPACITY = 16384;
+		
+		String[] names = new String[INITIAL_CAPACITY];
+		byte[] types = new byte[INITIAL_CAPACITY];
+		long[] longValues = new long[INITIAL_CAPACITY];
+		String[] stringValues = new String[INITIAL_CAPACITY];
+		int size;
+		private StringBuilder builder = new StringBuilder(INITIAL_LINE_CAPACITY);
+		
+		/**
+		 * Returns the index of the specified name, or a negative value if it is not present
+		 */
+		int indexOf(String name) {
+			return Arrays.binarySearch(this.names, 0, this.size, name);
+		}
+		
+		/**
+		 * Adds the specified name, if not present, and returns its index
+		 */
+		int add(String name) {
+			int index = this.indexOf(name);
+			if (index >= 0) {
+				return index;
+			}
+			index = -(index + 1);
+			if (this.size == this.names.length) {
+				int capacity = this.names.length * 2;
+				this.names = Arrays.copyOf(this.names, capacity);
+				this.types = Arrays.copyOf(this.types, capacity);
+				this.longValues = Arrays.copyOf(this.longValues, capacity);
+				this.stringValues = Arrays.copyOf(this.stringValues, capacity);
+			}
+			int moved = this.size - index;
+			System.arraycopy(this.names, index, this.names, index + 1, moved);
+			System.arraycopy(this.types, index, this.types, index + 1, moved);
+			System.arraycopy(this.longValues, index, this.longValues, index + 1, moved);
+			System.arraycopy(this.stringValues, index, this.stringValues, index + 1, moved);
+			this.names[index] = name;
+			this.size++;
+			return index;
+		}
+		
+		/**
+		 * Sets the attribute value at the specified index
+		 */
+		void setValue(int index, String value) {
+			this.types[index] = ATTRIBUTE;
+			this.stringValues[index] = value;
+		}
+		
+		/**
+		 * Sets the time value of the specified type at the specified index
+		 */
+		void setValue(int index, byte type, long value) {
+			this.types[index] = type;
+			this.longValues[index] = value;
+			this.stringValues[index] = null;
+		}
+		
+		/**
+		 * Removes all metrics and attributes, retaining the allocated arrays
+		 */
+		void clear() {
+			Arrays.fill(this.names, 0, this.size, null);
+			Arrays.fill(this.stringValues, 0, this.size, null);
+			this.size = 0;
+			if (this.builder.capacity() > MAX_RETAINED_LINE_CAPACITY) {
+				this.builder = new StringBuilder(INITIAL_LINE_CAPACITY);
+			}
 		}
-		metricNameToValueMap.get().put(key, value);
 	}
 	
 }
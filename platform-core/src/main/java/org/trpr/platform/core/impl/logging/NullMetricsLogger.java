@@ -49,6 +49,22 @@ public class NullMetricsLogger implements PerformanceMetricsLogger {
 		// do nothing
 	}
 
+	/**
+	 * Interface method implementation. Returns zero always
+	 * @see PerformanceMetricsLogger#startTimer()
+	 */
+	public long startTimer() {
+		return 0;
+	}
+
+	/**
+	 * Interface method implementation. Does nothing.
+	 * @see PerformanceMetricsLogger#logPerformanceMetrics(long, String, String)
+	 */
+	public void logPerformanceMetrics(long timer, String tag, String message) {
+		// do nothing
+	}
+
 	/**
 	 * Interface method implementation. Returns false always
 	 * @see PerformanceMetricsLogger#isMetricsCaptureEnabled()
@@ -73,6 +73,15 @@ public abstract class AbstractPersistenceProvider implements PersistenceProvider
 		return getHandler().makePersistent(entity);
 	}
 
+	/**
+	 * Interface method implementation. Delegates the call to PersistenceHandler.
+	 * @see PersistenceProvider#makePersistent(Collection)
+	 */
+	@Override
+	public Collection<PersistentEntity> makePersistent(Collection<PersistentEntity> entities) throws PersistenceException {
+		return getHandler().makePersistent(entities);
+	}
+
 	/**
 	 * Interface method implementation. Delegates the call to PersistenceHandler.
 	 * @see PersistenceProvider#makeTransient(PersistentEntity)
@@ -16,6 +16,9 @@
 
 package org.trpr.platform.core.impl.persistence;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 import org.trpr.platform.core.spi.persistence.Criteria;
 import org.trpr.platform.core.spi.persistence.PersistenceException;
 import org.trpr.platform.core.spi.persistence.PersistenceProvider;
@@ -79,12 +82,35 @@ public class PersistenceDelegate {
 	 */
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW,isolation=Isolation.DEFAULT ,rollbackForClassName={"Exception"})
 	public PersistentEntity[] makePersistent(PersistentEntity[] entities, PersistenceProvider[] providers) throws PersistenceException {
-		for (int i=0; i<entities.length; i++) {
-			providers[i].makePersistent(entities[i]);
+		// hand runs of entities that use the same provider to the provider in bulk
+		int runStart = 0;
+		for (int i=1; i<=entities.length; i++) {
+			if (i == entities.length || providers[i] != providers[runStart]) {
+				if (i - runStart == 1) {
+					providers[runStart].makePersistent(entities[runStart]);
+				} else {
+					providers[runStart].makePersistent(Arrays.asList(entities).subList(runStart, i));
+				}
+				runStart = i;
+			}
 		}
 		return entities;
 	}
 	
+	/**
+	 * Persists the specified PersistentEntity instances in bulk using the specified PersistenceProvider. Note that this method is transactional by default
+	 * and all the entities are persisted in a single transaction.
+	 * It is advisable to use {@link PersistenceManagerProvider#makePersistent(Collection)} instead of calling this method directly.
+	 * @param entities the PersistentEntity instances to persist
+	 * @param provider the PersistenceProvider to use in persistence
+	 * @return PersistentEntity instances that were persisted
+	 * @throws PersistenceException in case of persistence errors
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRES_NEW,isolation=Isolation.DEFAULT ,rollbackForClassName={"Exception"})
+	public Collection<PersistentEntity> makePersistent(Collection<PersistentEntity> entities, PersistenceProvider provider) throws PersistenceException {
+		return provider.makePersistent(entities);
+	}
+	
 	/**
 	 * Deletes the specified PersistentEntity instances using the specified PersistenceProvider instances, matched by index positions. 
 	 * Note that this method is transactional by default.
@@ -18,10 +18,25 @@ package org.trpr.platform.core.impl.persistence;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import org.trpr.platform.core.impl.persistence.sharding.AbstractMultiShardedPersistentEntity;
 import org.trpr.platform.core.impl.persistence.sharding.ShardedEntityContextHolder;
@@ -44,6 +59,16 @@ import org.trpr.platform.core.spi.persistence.sharding.ShardedPersistentEntity;
  * 
  * This PersistenceManager is shard-aware and supports persistence calls on sharded entities.
  * 
+ * Calls to {@link #findEntities(Criteria)} for multi-sharded criteria visit the shards one after the other by default. When parallel shard execution 
+ * is turned on, the query is executed on all shards concurrently using a bounded thread pool and the results are merged, so that the latency is that 
+ * of the slowest shard rather than the sum over all shards. Each shard query executes on a pool thread using its own copy of the criteria, with the 
+ * shard hint set to the shard and the {@link ShardedEntityContextHolder} populated with it. Calls to {@link #makePersistent(PersistentEntity[])} for
+ * multi-sharded entities always visit the shards one after the other, as the entity instances are shared by the shard calls and may be modified 
+ * by the PersistenceProviders.
+ * 
+ * In parallel mode, {@link Criteria#getFirstResult()} and {@link Criteria#getMaxResults()} apply to the merged results of all shards and results are
+ * merged in order if {@link MultiShardAwareCriteria#getResultComparator()} is set. 
+ * 
  * @see PersistenceManager
  * @see PersistentEntity
  * @see ShardedEntity
@@ -52,7 +77,15 @@ import org.trpr.platform.core.spi.persistence.sharding.ShardedPersistentEntity;
  * @version 1.0, 23/05/2012
  */
 
-public class PersistenceManagerProvider implements PersistenceManager {
+public class PersistenceManagerProvider implements PersistenceManager, DisposableBean {
+	
+	/** Default values for shard execution thread pool size, queue size and timeout*/
+	private static final int DEFAULT_SHARD_EXECUTOR_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+	private static final int DEFAULT_SHARD_EXECUTOR_QUEUE_SIZE = 1000;
+	private static final long DEFAULT_SHARD_EXECUTION_TIMEOUT_MILLIS = 60000L;
+	
+	/** The thread name prefix for shard execution threads*/
+	private static final String THREAD_NAME_PREFIX = "PersistenceManagerProvider-Shard-";
 	
 	/**
 	 * Mapping between entities and it corresponding <code>PersistenceProvider</code> instances
@@ -61,6 +94,15 @@ public class PersistenceManagerProvider implements PersistenceManager {
 	
 	/** The PersistenceDelegate instance to use for all persistence calls involving PersistentEntity instances*/
 	private PersistenceDelegate persistenceDelegate;
+	
+	/** Flag to turn on parallel execution of multi-shard calls, and the thread pool size, queue size and timeout for shard calls*/
+	private boolean parallelShardExecution = false;
+	private int shardExecutorPoolSize = DEFAULT_SHARD_EXECUTOR_POOL_SIZE;
+	private int shardExecutorQueueSize = DEFAULT_SHARD_EXECUTOR_QUEUE_SIZE;
+	private long shardExecutionTimeoutMillis = DEFAULT_SHARD_EXECUTION_TIMEOUT_MILLIS;
+	
+	/** The executor for parallel shard calls, created when first used*/
+	private ThreadPoolExecutor shardExecutor;
 
 	/**
 	 * no-arg constructor.
@@ -76,6 +118,17 @@ public class PersistenceManagerProvider implements PersistenceManager {
 		this.m_EntityToProviders = entityToProviders;
 	}
 	
+	/**
+	 * Interface method implementation. Shuts down the shard execution thread pool, if created
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	public synchronized void destroy() throws Exception {
+		if (this.shardExecutor != null) {
+			this.shardExecutor.shutdown();
+			this.shardExecutor = null;
+		}
+	}
+	
 	/**
 	 * Interface method implementation. This method is transactional by default and implemented by calling {@link PersistenceDelegate#makePersistent(PersistentEntity, PersistenceProvider)}
 	 * For multi-sharded entities, the TX guarantee is limited to per shard and DOES NOT span across multiple shards.
@@ -139,6 +192,63 @@ public class PersistenceManagerProvider implements PersistenceManager {
 		return entities;
 	}
 
+	/**
+	 * Interface method implementation. Groups the entities by PersistenceProvider and shard hint and persists each group in bulk by calling 
+	 * {@link PersistenceDelegate#makePersistent(Collection, PersistenceProvider)} i.e. in a transaction per group. Multi-sharded entities are grouped
+	 * by PersistenceProvider and shard hints, and each group is persisted to each of its shards in turn.
+	 * @see PersistenceManager#makePersistent(Collection)
+	 */
+	public Collection<PersistentEntity> makePersistent(Collection<PersistentEntity> entities) throws PersistenceException {
+		if (null == entities || entities.isEmpty()) {
+			// If no entities to persist then return whatever is passed and do not execute rest of the code.
+			return entities;
+		}
+		PersistentEntity[] filteredEntities = filterNullEntities(entities.toArray(new PersistentEntity[entities.size()]));
+		// group the entity positions by provider and shard, retaining the order in which groups are first seen
+		Map<List<Object>, List<Integer>> groups = new LinkedHashMap<List<Object>, List<Integer>>();
+		for (int i = 0; i < filteredEntities.length; i++) {
+			PersistentEntity entity = filteredEntities[i];
+			Object shardKey = ShardedEntity.DEFAULT_SHARD;
+			if (AbstractMultiShardedPersistentEntity.class.isAssignableFrom(entity.getClass())) {
+				shardKey = Arrays.asList(((AbstractMultiShardedPersistentEntity)entity).getShardHints());
+			} else if (ShardedEntity.class.isAssignableFrom(entity.getClass())) {
+				shardKey = ((ShardedEntity)entity).getShardHint();
+			}
+			List<Object> groupKey = Arrays.asList(findSuitableProvider(entity), shardKey, ShardedEntity.class.isAssignableFrom(entity.getClass()));
+			List<Integer> group = groups.get(groupKey);
+			if (group == null) {
+				group = new ArrayList<Integer>();
+				groups.put(groupKey, group);
+			}
+			group.add(i);
+		}
+		PersistentEntity[] persistedEntities = new PersistentEntity[filteredEntities.length];
+		for (Map.Entry<List<Object>, List<Integer>> group : groups.entrySet()) {
+			PersistenceProvider provider = (PersistenceProvider)group.getKey().get(0);
+			PersistentEntity[] groupEntities = new PersistentEntity[group.getValue().size()];
+			for (int i = 0; i < groupEntities.length; i++) {
+				groupEntities[i] = filteredEntities[group.getValue().get(i)];
+			}
+			Collection<PersistentEntity> groupResult = null;
+			if (AbstractMultiShardedPersistentEntity.class.isAssignableFrom(groupEntities[0].getClass())) {
+				for (String shardHint : ((AbstractMultiShardedPersistentEntity)groupEntities[0]).getShardHints()) {
+					for (PersistentEntity entityToPersist : groupEntities) {
+						((AbstractMultiShardedPersistentEntity)entityToPersist).setShardHint(shardHint);
+					}
+					groupResult = this.makePersistentInBulk(groupEntities, provider);
+				}
+			} else {
+				groupResult = this.makePersistentInBulk(groupEntities, provider);
+			}
+			// place the persisted entities in the positions of the entities passed in, if the provider returned one for each
+			Iterator<PersistentEntity> groupResultIterator = groupResult.size() == groupEntities.length ? groupResult.iterator() : null;
+			for (Integer position : group.getValue()) {
+				persistedEntities[position] = groupResultIterator != null ? groupResultIterator.next() : filteredEntities[position];
+			}
+		}
+		return Arrays.asList(persistedEntities);
+	}
+
 	/**
 	 * Interface method implementation. This method is transactional by default and implemented by calling {@link PersistenceDelegate#makeTransient(PersistentEntity, PersistenceProvider)}
 	 * For multi-sharded entities, the TX guarantee is limited to per shard and DOES NOT span across multiple shards.
@@ -228,7 +338,8 @@ public class PersistenceManagerProvider implements PersistenceManager {
 	/**
 	 * Interface method implementation. 
 	 * For multi-sharded entities, returns data collected from each shard i.e. by execution of the query against each shard and collating the
-	 * results into a single collection. Limits the search results by {@link Criteria#getMaxResults()} if specified.
+	 * results into a single collection. Limits the search results by {@link Criteria#getMaxResults()} if specified. Executes the query on all
+	 * shards concurrently if parallel shard execution is turned on.
 	 * @see PersistenceManager#findEntities(Criteria)
 	 */
 	@SuppressWarnings("unchecked")	
@@ -241,6 +352,9 @@ public class PersistenceManagerProvider implements PersistenceManager {
 			// It is a multi-sharded criteria. Iterate through shards and invoke the persistence call on the delegate
 			// once for each retrieved shard hint. Return the results collated from each shard
 			MultiShardAwareCriteria multiShardAwareCriteria = (MultiShardAwareCriteria)criteria;
+			if (this.parallelShardExecution && multiShardAwareCriteria.getShardHints().length > 1) {
+				return this.findEntitiesOnShardsInParallel(multiShardAwareCriteria);
+			}
 			for (String shardHint : multiShardAwareCriteria.getShardHints()) {
 				// set the returned shards one at a time and make persistence calls on the delegate
 				multiShardAwareCriteria.setShardHint(shardHint);
@@ -258,7 +372,7 @@ public class PersistenceManagerProvider implements PersistenceManager {
 				checkAndUnsetShardedEntityContextHolder(multiShardAwareCriteria);
 				// check to see if max results has been set and break loop if results count match or exceed this limit
 				if (criteria.getMaxResults() > 0 && returnedObjects.size() >= criteria.getMaxResults()) {
-					returnedObjects = (LinkedList)returnedObjects.subList(0, criteria.getMaxResults());
+					returnedObjects = new LinkedList(returnedObjects.subList(0, criteria.getMaxResults()));
 					break;
 				}
 			}
@@ -337,8 +451,206 @@ public class PersistenceManagerProvider implements PersistenceManager {
 	public void setPersistenceDelegate(PersistenceDelegate persistenceDelegate) {
 		this.persistenceDelegate = persistenceDelegate;
 	}
+	public boolean isParallelShardExecution() {
+		return this.parallelShardExecution;
+	}
+	public void setParallelShardExecution(boolean parallelShardExecution) {
+		this.parallelShardExecution = parallelShardExecution;
+	}
+	public int getShardExecutorPoolSize() {
+		return this.shardExecutorPoolSize;
+	}
+	public void setShardExecutorPoolSize(int shardExecutorPoolSize) {
+		this.shardExecutorPoolSize = shardExecutorPoolSize;
+	}
+	public int getShardExecutorQueueSize() {
+		return this.shardExecutorQueueSize;
+	}
+	public void setShardExecutorQueueSize(int shardExecutorQueueSize) {
+		this.shardExecutorQueueSize = shardExecutorQueueSize;
+	}
+	public long getShardExecutionTimeoutMillis() {
+		return this.shardExecutionTimeoutMillis;
+	}
+	public void setShardExecutionTimeoutMillis(long shardExecutionTimeoutMillis) {
+		this.shardExecutionTimeoutMillis = shardExecutionTimeoutMillis;
+	}
 	/** End Java bean style setter-getter methods*/
 
+	/**
+	 * Helper method to persist the specified entities, all of which use the specified provider and belong to the same shard, in bulk
+	 * @param entities the entities to persist
+	 * @param provider the PersistenceProvider for the entities
+	 * @return the persisted entities
+	 * @throws PersistenceException in case of persistence errors
+	 */
+	private Collection<PersistentEntity> makePersistentInBulk(PersistentEntity[] entities, PersistenceProvider provider) throws PersistenceException {
+		checkAndPopulateShardedEntityContextHolder(entities);
+		try {
+			return this.persistenceDelegate.makePersistent(Arrays.asList(entities), provider);
+		} finally {
+			// unset the context using the first entity, even if the persistence call failed
+			checkAndUnsetShardedEntityContextHolder(entities[0]);
+		}
+	}
+	
+	/**
+	 * Helper method to find entities matching the specified multi-shard criteria on all of its shards concurrently. Each shard is queried for
+	 * results up to the sum of first result and max results, and the first result and max results are applied to the merged results. Each shard is
+	 * queried using its own copy of the criteria and the specified criteria is not modified.
+	 * @param criteria the MultiShardAwareCriteria for the query
+	 * @return the results merged from all shards
+	 * @throws PersistenceException in case of errors querying any of the shards
+	 */
+	@SuppressWarnings("unchecked")
+	private Collection<PersistentEntity> findEntitiesOnShardsInParallel(final MultiShardAwareCriteria criteria) throws PersistenceException {
+		final PersistenceProvider provider = findSuitableProvider(criteria.getManagedClass());
+		final int firstResult = criteria.getFirstResult();
+		final int maxResults = criteria.getMaxResults();
+		List<Collection<PersistentEntity>> shardResults = this.executeOnShards(criteria.getShardHints(), new ShardCall<Collection<PersistentEntity>>() {
+			public Collection<PersistentEntity> call(String shardHint) throws PersistenceException {
+				// use a copy of the criteria, as the calls on other shards (and the caller, after a timeout) may be using it concurrently
+				MultiShardAwareCriteria shardCriteria = (MultiShardAwareCriteria)criteria.clone();
+				shardCriteria.setShardHint(shardHint);
+				shardCriteria.setFirstResult(0);
+				shardCriteria.setMaxResults(maxResults > 0 ? firstResult + maxResults : maxResults);
+				checkAndPopulateShardedEntityContextHolder(new Criteria[]{shardCriteria});
+				Collection<PersistentEntity> lookedUpEntities = provider.findEntities(shardCriteria);
+				for (Object entity : lookedUpEntities) {
+					// set the shard hint to denote the data store the entity was loaded from
+					if (ShardedEntity.class.isAssignableFrom(entity.getClass())) {
+						((ShardedEntity)entity).setShardHint(shardHint);
+					}
+				}
+				return lookedUpEntities;
+			}
+		});
+		Iterator<PersistentEntity> mergedResults = mergeShardResults(shardResults, (Comparator<PersistentEntity>)criteria.getResultComparator());
+		List<PersistentEntity> returnedObjects = new LinkedList<PersistentEntity>();
+		for (int skipped = 0; skipped < firstResult && mergedResults.hasNext(); skipped++) {
+			mergedResults.next();
+		}
+		while (mergedResults.hasNext() && (maxResults <= 0 || returnedObjects.size() < maxResults)) {
+			returnedObjects.add(mergedResults.next());
+		}
+		return returnedObjects;
+	}
+	
+	/**
+	 * Helper method to merge the results returned by shards. Results are concatenated in the order of shards if the Comparator is null, else the 
+	 * sorted results of each shard are merged in order. Results that compare equal are ordered by shard.
+	 * @param shardResults the results from each shard
+	 * @param comparator the Comparator for ordering results, may be null
+	 * @return Iterator over the merged results
+	 */
+	private Iterator<PersistentEntity> mergeShardResults(List<Collection<PersistentEntity>> shardResults, final Comparator<PersistentEntity> comparator) {
+		if (comparator == null) {
+			List<PersistentEntity> concatenatedResults = new ArrayList<PersistentEntity>();
+			for (Collection<PersistentEntity> results : shardResults) {
+				concatenatedResults.addAll(results);
+			}
+			return concatenatedResults.iterator();
+		}
+		final PriorityQueue<ShardResultCursor> heads = new PriorityQueue<ShardResultCursor>(shardResults.size(), new Comparator<ShardResultCursor>() {
+			public int compare(ShardResultCursor c1, ShardResultCursor c2) {
+				int result = comparator.compare(c1.head, c2.head);
+				return result != 0 ? result : c1.shardIndex - c2.shardIndex;
+			}
+		});
+		for (int i = 0; i < shardResults.size(); i++) {
+			Iterator<PersistentEntity> iterator = shardResults.get(i).iterator();
+			if (iterator.hasNext()) {
+				heads.add(new ShardResultCursor(i, iterator));
+			}
+		}
+		return new Iterator<PersistentEntity>() {
+			public boolean hasNext() {
+				return !heads.isEmpty();
+			}
+			public PersistentEntity next() {
+				ShardResultCursor cursor = heads.poll();
+				PersistentEntity entity = cursor.head;
+				if (cursor.advance()) {
+					heads.add(cursor);
+				}
+				return entity;
+			}
+			public void remove() {
+				throw new UnsupportedOperationException("Remove is not supported");
+			}
+		};
+	}
+	
+	/**
+	 * Helper method to execute the specified call concurrently for each of the specified shards. Calls must not share mutable multi-sharded entities
+	 * or criteria, and the ShardedEntityContextHolder of the executing thread is restored after each call. 
+	 * @param shardHints the shard hints
+	 * @param call the ShardCall to execute for each shard
+	 * @return the results of the calls, in the order of shard hints
+	 * @throws PersistenceException in case any of the calls fails or does not complete within the shard execution timeout
+	 */
+	private <T> List<T> executeOnShards(String[] shardHints, final ShardCall<T> call) throws PersistenceException {
+		ThreadPoolExecutor executor = this.getShardExecutor();
+		List<Future<T>> futures = new ArrayList<Future<T>>(shardHints.length);
+		for (final String shardHint : shardHints) {
+			futures.add(executor.submit(new Callable<T>() {
+				public T call() throws Exception {
+					ShardedEntity previousEntity = ShardedEntityContextHolder.getShardedEntity();
+					try {
+						return call.call(shardHint);
+					} finally {
+						// restore the context, as this call may have been executed on the calling thread
+						if (previousEntity == null) {
+							ShardedEntityContextHolder.clearShardedEntity();
+						} else {
+							ShardedEntityContextHolder.setShardedEntity(previousEntity);
+						}
+					}
+				}
+			}));
+		}
+		List<T> results = new ArrayList<T>(shardHints.length);
+		long deadline = System.currentTimeMillis() + this.shardExecutionTimeoutMillis;
+		try {
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					results.add(futures.get(i).get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof PersistenceException) {
+						throw (PersistenceException)e.getCause();
+					}
+					throw new PersistenceException("Error executing persistence call on shard : " + shardHints[i], e.getCause());
+				} catch (TimeoutException e) {
+					throw new PersistenceException("Timed out after " + this.shardExecutionTimeoutMillis + " ms waiting for persistence call on shard : " + shardHints[i]);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new PersistenceException("Interrupted while waiting for persistence call on shard : " + shardHints[i], e);
+				}
+			}
+		} finally {
+			if (results.size() < futures.size()) {
+				for (Future<T> future : futures) {
+					future.cancel(true);
+				}
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Returns the executor for shard calls, creating it if required. Shard calls are run on the calling thread if the executor's queue is full.
+	 */
+	private synchronized ThreadPoolExecutor getShardExecutor() {
+		if (this.shardExecutor == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(THREAD_NAME_PREFIX);
+			threadFactory.setDaemon(true);
+			this.shardExecutor = new ThreadPoolExecutor(this.shardExecutorPoolSize, this.shardExecutorPoolSize, 60L, TimeUnit.SECONDS, 
+					new ArrayBlockingQueue<Runnable>(this.shardExecutorQueueSize), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+			this.shardExecutor.allowCoreThreadTimeOut(true);
+		}
+		return this.shardExecutor;
+	}
+	
 	/**
 	 * Helper method to locate the PersistenceProvider for the specified PersistentEntity
 	 */
@@ -599,4 +911,32 @@ public class PersistenceManagerProvider implements PersistenceManager {
 		return entities;
 	}
 	
+	
+	/**
+	 * A persistence call executed for a shard
+	 */
+	private static interface ShardCall<T> {
+		T call(String shardHint) throws PersistenceException;
+	}
+	
+	/**
+	 * Cursor over the sorted results of a shard, used in merging results from shards in order
+	 */
+	private static class ShardResultCursor {
+		private final int shardIndex;
+		private final Iterator<PersistentEntity> iterator;
+		private PersistentEntity head;
+		ShardResultCursor(int shardIndex, Iterator<PersistentEntity> iterator) {
+			this.shardIndex = shardIndex;
+			this.iterator = iterator;
+			this.head = iterator.next();
+		}
+		boolean advance() {
+			if (this.iterator.hasNext()) {
+				this.head = this.iterator.next();
+				return true;
+			}
+			return false;
+		}
+	}
 }
\ No newline at end of file
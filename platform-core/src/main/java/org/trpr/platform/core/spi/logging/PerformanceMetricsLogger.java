@@ -38,8 +38,19 @@ package org.trpr.platform.core.spi.logging;
  * </code>
  * </pre>
  * 
- * This is a simple logger that does not support nested {@link #startPerformanceMetricsCapture()} and expects each call to be followed by a 
- * {@link #logPerformanceMetrics(String, String)}.
+ * {@link #startPerformanceMetricsCapture()} does not support nesting and expects each call to be followed by a 
+ * {@link #logPerformanceMetrics(String, String)} from the same thread. Use {@link #startTimer()} and {@link #logPerformanceMetrics(long, String, String)}
+ * for nested code blocks :
+ * <pre>
+ * <code>
+ * 
+ * 		long timer = l.startTimer();
+ *		... code that may itself capture metrics ......
+ *		l.logPerformanceMetrics(timer, "ServiceHandler","Process request ID : " + requestIdentifier);
+ *
+ * </code>
+ * </pre>
+ * 
  * For generic transaction based logging, use {@link TransactionDataLogger}. 
  * 
  * @see TransactionDataLogger
@@ -61,6 +72,27 @@ public interface PerformanceMetricsLogger {
 	 * @param message additional message detailing the metrics captured
 	 */
 	public void logPerformanceMetrics(String tag, String message);
+
+	/**
+	 * Starts a metrics collection timer and returns it. Timers are independent of each other and of {@link #startPerformanceMetricsCapture()}.
+	 * This default implementation returns the current value of {@link System#nanoTime()}.
+	 * @return the timer to be passed to {@link #logPerformanceMetrics(long, String, String)}
+	 */
+	public default long startTimer() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Informs this metrics logger to log elapsed time since the specified timer was started along with the specified tag and message.
+	 * Loggers should override this default implementation that appends the elapsed time to the message and delegates to 
+	 * {@link #logPerformanceMetrics(String, String)}, as the latter also logs its own elapsed time, if any.
+	 * @param timer the timer returned by {@link #startTimer()}
+	 * @param tag the tag used to identify the code block that was executed 
+	 * @param message additional message detailing the metrics captured
+	 */
+	public default void logPerformanceMetrics(long timer, String tag, String message) {
+		this.logPerformanceMetrics(tag, message + ". Elapsed time (ms) : " + (System.nanoTime() - timer) / 1000000L);
+	}
 	
 	/**
 	 * Determines if metrics logging is enabled on this logger
@@ -30,7 +30,7 @@ import org.apache.commons.lang.StringUtils;
  * @version 1.0, 21/05/2012
  */
 
-public class Criteria {
+public class Criteria implements Cloneable {
 	
 	/** The optional Identifier that may be used in loading a PersistentEntity from the underlying data store*/
 	private Identifier identifier;
@@ -158,6 +158,22 @@ public class Criteria {
 		return values;
 	}
 	
+	/**
+	 * Overriden super class method. Returns a copy of this Criteria that may be modified independently of this instance. Note that parameter
+	 * values are not copied and are shared with this instance.
+	 * @see java.lang.Object#clone()
+	 */
+	public Criteria clone() {
+		try {
+			Criteria copy = (Criteria)super.clone();
+			copy.paramsMap = new HashMap<String, Object>(this.paramsMap);
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			// cannot happen as this class is Cloneable
+			throw new IllegalStateException("Error cloning Criteria : " + this.toConciseString(), e);
+		}
+	}
+	
 	/** === Start getter/setter methods == */
 	public int getQueryType() {
 		return this.queryType;
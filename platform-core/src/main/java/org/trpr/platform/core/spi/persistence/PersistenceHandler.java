@@ -15,6 +15,7 @@
  */
 package org.trpr.platform.core.spi.persistence;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 /**
@@ -37,6 +38,22 @@ public interface PersistenceHandler {
 	 * @throws PersistenceException or one of its relevant sub-types in case of errors during persistence. See PersistenceException type hierarchy. 
 	 */
 	public PersistentEntity makePersistent(PersistentEntity entity) throws PersistenceException;
+	
+	/**
+	 * Creates/Updates the specified PersistentEntity instances to the underlying data store. Handlers that support writing multiple entities 
+	 * in bulk, for e.g. using batched statements, should override this default implementation that persists the entities one at a time using 
+	 * {@link #makePersistent(PersistentEntity)}.
+	 * @param entities the PersistentEntity instances to be persisted
+	 * @return the PersistentEntity instances that were persisted, in the order of the specified entities
+	 * @throws PersistenceException or one of its relevant sub-types in case of errors during persistence. See PersistenceException type hierarchy. 
+	 */
+	public default Collection<PersistentEntity> makePersistent(Collection<PersistentEntity> entities) throws PersistenceException {
+		Collection<PersistentEntity> persistentEntities = new ArrayList<PersistentEntity>(entities.size());
+		for (PersistentEntity entity : entities) {
+			persistentEntities.add(this.makePersistent(entity));
+		}
+		return persistentEntities;
+	}
 
 	/**
 	 * Deletes the specified PersistentEntity form the underyling data store. Returns quietly if the specified entity was not found (or) was already
@@ -45,6 +45,13 @@ public interface PersistenceManager {
 	 */
 	public PersistentEntity[] makePersistent(PersistentEntity[] entities) throws PersistenceException;	
 	
+	/**
+	 * Variant of {@link #makePersistent(PersistentEntity)} for bulk writes. The entities are grouped by PersistenceProvider and shard, and each
+	 * group is persisted in bulk in a transaction of its own. Unlike {@link #makePersistent(PersistentEntity[])}, the entities may therefore belong 
+	 * to different providers and shards, and the transaction guarantee is limited to each group.
+	 */
+	public Collection<PersistentEntity> makePersistent(Collection<PersistentEntity> entities) throws PersistenceException;	
+	
 	/**
 	 * Deletes the specified PersistentEntity form the underyling data store. Returns quietly if the specified entity was not found (or) was already
 	 * deleted.
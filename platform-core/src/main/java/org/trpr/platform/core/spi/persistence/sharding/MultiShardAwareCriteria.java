@@ -16,6 +16,8 @@
 
 package org.trpr.platform.core.spi.persistence.sharding;
 
+import java.util.Comparator;
+
 import org.trpr.platform.core.spi.persistence.Criteria;
 import org.trpr.platform.core.spi.persistence.PersistentEntity;
 
@@ -27,6 +29,9 @@ import org.trpr.platform.core.spi.persistence.PersistentEntity;
  * This MultiShardAwareCriteria is initialized with an array of shards of size one containing the default shard i.e. {@link ShardedEntity#DEFAULT_SHARD}}.
  * Sub-types may override the {@link #getShardHints()} to provide more meaningful and invocation specific values, as required.
  * 
+ * A result Comparator may be set to have results from the shards merged in order. Results returned by each shard are then expected to be sorted
+ * in the same order, typically by an "order by" clause in the query.
+ * 
  * @author Regunath B
  * @version 1.0, 23/05/2012
  */
@@ -37,6 +42,11 @@ public class MultiShardAwareCriteria extends ShardAwareCriteria implements Multi
 	 */
 	private String[] shardHints = new String[]{ShardedEntity.DEFAULT_SHARD};
 	
+	/**
+	 * The Comparator for merging results from the shards, may be null
+	 */
+	private Comparator<? super PersistentEntity> resultComparator;
+	
 	/**
 	 * Constructor for this class
 	 * @see {@link Criteria}
@@ -60,6 +70,12 @@ public class MultiShardAwareCriteria extends ShardAwareCriteria implements Multi
 	public String[] getShardHints() {
 		return this.shardHints;
 	}
+	public void setResultComparator(Comparator<? super PersistentEntity> resultComparator) {
+		this.resultComparator = resultComparator;
+	}
+	public Comparator<? super PersistentEntity> getResultComparator() {
+		return this.resultComparator;
+	}
 	
 	
 }
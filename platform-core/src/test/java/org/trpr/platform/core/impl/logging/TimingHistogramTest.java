@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.platform.core.impl.logging;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for the timing histogram of org.trpr.platform.core.impl.logging.LogBasedMetricsLogger
+ * 
+ * @author agent
+ */
+public class TimingHistogramTest {
+
+	@Test
+	public void testSummaryOfRecordedTimings() {
+		LogBasedMetricsLogger.TimingHistogram histogram = new LogBasedMetricsLogger.TimingHistogram();
+		for (long i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+		// percentiles are the upper bounds of the power of two buckets, capped at the max
+		Assert.assertEquals("count[100] avg[50] max[100] p50[63] p90[100] p99[100]", histogram.summarizeAndReset());
+	}
+
+	@Test
+	public void testZeroAndLargeTimings() {
+		LogBasedMetricsLogger.TimingHistogram histogram = new LogBasedMetricsLogger.TimingHistogram();
+		histogram.record(0);
+		Assert.assertEquals("count[1] avg[0] max[0] p50[0] p90[0] p99[0]", histogram.summarizeAndReset());
+		histogram.record(Long.MAX_VALUE / 2);
+		Assert.assertEquals("count[1] avg[" + (Long.MAX_VALUE / 2) + "] max[" + (Long.MAX_VALUE / 2) + "] p50[" + (Long.MAX_VALUE / 2) + "] p90[" 
+				+ (Long.MAX_VALUE / 2) + "] p99[" + (Long.MAX_VALUE / 2) + "]", histogram.summarizeAndReset());
+	}
+
+	@Test
+	public void testSummaryResetsHistogram() {
+		LogBasedMetricsLogger.TimingHistogram histogram = new LogBasedMetricsLogger.TimingHistogram();
+		Assert.assertNull(histogram.summarizeAndReset());
+		histogram.record(10);
+		Assert.assertNotNull(histogram.summarizeAndReset());
+		Assert.assertNull(histogram.summarizeAndReset());
+		histogram.record(3);
+		Assert.assertEquals("count[1] avg[3] max[3] p50[3] p90[3] p99[3]", histogram.summarizeAndReset());
+	}
+
+	@Test
+	public void testConcurrentRecording() throws Exception {
+		final LogBasedMetricsLogger.TimingHistogram histogram = new LogBasedMetricsLogger.TimingHistogram();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final long timing = i + 1;
+			threads[i] = new Thread() {
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						histogram.record(timing);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals("count[40000] avg[2] max[4] p50[3] p90[4] p99[4]", histogram.summarizeAndReset());
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.platform.core.impl.logging;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for the per-thread transaction record and CSV formatting of org.trpr.platform.core.impl.logging.LogBasedTransactionDataLogger
+ * 
+ * @author agent
+ */
+public class TransactionRecordTest {
+
+	@Test
+	public void testNamesAreKeptSorted() {
+		LogBasedTransactionDataLogger.TransactionRecord record = new LogBasedTransactionDataLogger.TransactionRecord();
+		int cIndex = record.add("c");
+		record.setValue(cIndex, "3");
+		int aIndex = record.add("a");
+		record.setValue(aIndex, "1");
+		int bIndex = record.add("b");
+		record.setValue(bIndex, "2");
+		Assert.assertEquals(3, record.size);
+		for (int i = 0; i < 3; i++) {
+			String name = String.valueOf((char)('a' + i));
+			Assert.assertEquals(i, record.indexOf(name));
+			Assert.assertEquals(name, record.names[i]);
+			Assert.assertEquals(String.valueOf(i + 1), record.stringValues[i]);
+		}
+		// adding an existing name returns its index
+		Assert.assertEquals(1, record.add("b"));
+		Assert.assertEquals(3, record.size);
+		Assert.assertTrue(record.indexOf("d") < 0);
+	}
+
+	@Test
+	public void testRecordGrowsBeyondInitialCapacity() {
+		LogBasedTransactionDataLogger.TransactionRecord record = new LogBasedTransactionDataLogger.TransactionRecord();
+		for (int i = 99; i >= 0; i--) {
+			record.setValue(record.add("metric" + (1000 + i)), LogBasedTransactionDataLogger.TransactionRecord.ELAPSED_TIME, i);
+		}
+		Assert.assertEquals(100, record.size);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals("metric" + (1000 + i), record.names[i]);
+			Assert.assertEquals(i, record.longValues[i]);
+			Assert.assertEquals(LogBasedTransactionDataLogger.TransactionRecord.ELAPSED_TIME, record.types[i]);
+		}
+	}
+
+	@Test
+	public void testTimeValueReplacesAttributeValue() {
+		LogBasedTransactionDataLogger.TransactionRecord record = new LogBasedTransactionDataLogger.TransactionRecord();
+		int index = record.add("m");
+		record.setValue(index, "value");
+		record.setValue(index, LogBasedTransactionDataLogger.TransactionRecord.START_TIME, 42);
+		Assert.assertEquals(LogBasedTransactionDataLogger.TransactionRecord.START_TIME, record.types[index]);
+		Assert.assertEquals(42, record.longValues[index]);
+		Assert.assertNull(record.stringValues[index]);
+	}
+
+	@Test
+	public void testClearEmptiesRecordForReuse() {
+		LogBasedTransactionDataLogger.TransactionRecord record = new LogBasedTransactionDataLogger.TransactionRecord();
+		for (int i = 0; i < 20; i++) {
+			record.setValue(record.add("attr" + i), "value" + i);
+		}
+		record.clear();
+		Assert.assertEquals(0, record.size);
+		Assert.assertTrue(record.indexOf("attr1") < 0);
+		Assert.assertEquals(0, record.add("z"));
+		Assert.assertEquals(1, record.size);
+	}
+
+	@Test
+	public void testCsvFormatting() {
+		Assert.assertEquals("\"value\"", this.formatForCsv("  value\t"));
+		Assert.assertEquals("\"say \"\"hi\"\"\"", this.formatForCsv("say \"hi\""));
+		Assert.assertEquals("\"NA\"", this.formatForCsv(null));
+		Assert.assertEquals("\"NA\"", this.formatForCsv("   "));
+	}
+	
+	/**
+	 * Helper method to format the specified value for CSV
+	 */
+	private String formatForCsv(String s) {
+		StringBuilder sb = new StringBuilder();
+		LogBasedTransactionDataLogger.appendForCsv(sb, s);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.platform.core.test;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.trpr.platform.core.impl.event.AsyncEventDispatcher;
+
+/**
+ * Test class for org.trpr.platform.core.impl.event.AsyncEventDispatcher
+ * 
+ * @author agent
+ */
+public class AsyncEventDispatcherTest {
+
+	/** The dispatcher under test*/
+	private AsyncEventDispatcher dispatcher;
+	
+	/** The ids of executed deliveries*/
+	private List<Integer> delivered = Collections.synchronizedList(new LinkedList<Integer>());
+	
+	@After
+	public void tearDown() throws Exception {
+		if (this.dispatcher != null) {
+			this.dispatcher.destroy();
+		}
+	}
+	
+	@Test
+	public void testDeliveriesAreExecutedInOrderOnDispatcherThread() throws Exception {
+		this.dispatcher = this.createDispatcher(100, AsyncEventDispatcher.OverflowPolicy.BLOCK);
+		final Thread caller = Thread.currentThread();
+		final List<Thread> deliveryThreads = Collections.synchronizedList(new LinkedList<Thread>());
+		for (int i = 0; i < 50; i++) {
+			final int id = i;
+			this.dispatcher.dispatch(new Runnable() {
+				public void run() {
+					deliveryThreads.add(Thread.currentThread());
+					delivered.add(id);
+				}
+			});
+		}
+		this.dispatcher.destroy();
+		Assert.assertEquals(50, this.delivered.size());
+		for (int i = 0; i < 50; i++) {
+			Assert.assertEquals(i, this.delivered.get(i).intValue());
+		}
+		Assert.assertFalse(deliveryThreads.contains(caller));
+		Assert.assertEquals(50, this.dispatcher.getDispatchedCount());
+	}
+
+	@Test
+	public void testDropNewestWhenQueueIsFull() throws Exception {
+		this.dispatcher = this.createDispatcher(1, AsyncEventDispatcher.OverflowPolicy.DROP_NEWEST);
+		CountDownLatch release = this.blockDispatcherThread();
+		this.dispatcher.dispatch(this.delivery(1));
+		this.dispatcher.dispatch(this.delivery(2));
+		Assert.assertEquals(1, this.dispatcher.getDroppedCount());
+		release.countDown();
+		this.dispatcher.destroy();
+		Assert.assertEquals(Collections.singletonList(1), this.delivered);
+	}
+
+	@Test
+	public void testDropOldestWhenQueueIsFull() throws Exception {
+		this.dispatcher = this.createDispatcher(1, AsyncEventDispatcher.OverflowPolicy.DROP_OLDEST);
+		CountDownLatch release = this.blockDispatcherThread();
+		this.dispatcher.dispatch(this.delivery(1));
+		this.dispatcher.dispatch(this.delivery(2));
+		Assert.assertEquals(1, this.dispatcher.getDroppedCount());
+		release.countDown();
+		this.dispatcher.destroy();
+		Assert.assertEquals(Collections.singletonList(2), this.delivered);
+	}
+
+	@Test
+	public void testFailedDeliveryDoesNotAffectOthers() throws Exception {
+		this.dispatcher = this.createDispatcher(10, AsyncEventDispatcher.OverflowPolicy.BLOCK);
+		this.dispatcher.dispatch(new Runnable() {
+			public void run() {
+				throw new IllegalStateException("Listener failure");
+			}
+		});
+		this.dispatcher.dispatch(this.delivery(1));
+		this.dispatcher.destroy();
+		Assert.assertEquals(Collections.singletonList(1), this.delivered);
+		Assert.assertEquals(1, this.dispatcher.getFailedCount());
+	}
+
+	@Test
+	public void testDispatchAfterStopExecutesOnCallingThread() throws Exception {
+		this.dispatcher = this.createDispatcher(10, AsyncEventDispatcher.OverflowPolicy.BLOCK);
+		this.dispatcher.destroy();
+		final Thread caller = Thread.currentThread();
+		final List<Thread> deliveryThreads = new LinkedList<Thread>();
+		this.dispatcher.dispatch(new Runnable() {
+			public void run() {
+				deliveryThreads.add(Thread.currentThread());
+			}
+		});
+		Assert.assertEquals(Collections.singletonList(caller), deliveryThreads);
+	}
+
+	@Test
+	public void testConcurrentStopDoesNotStrandDeliveries() throws Exception {
+		for (int run = 0; run < 5; run++) {
+			this.delivered.clear();
+			final AsyncEventDispatcher dispatcher = this.createDispatcher(1000, AsyncEventDispatcher.OverflowPolicy.BLOCK);
+			dispatcher.setShutdownTimeoutMillis(10000);
+			Thread publisher = new Thread() {
+				public void run() {
+					for (int i = 0; i < 500; i++) {
+						dispatcher.dispatch(delivery(i));
+					}
+				}
+			};
+			publisher.start();
+			dispatcher.destroy();
+			publisher.join();
+			Assert.assertEquals(500, this.delivered.size());
+			Assert.assertEquals(0, dispatcher.getQueueDepth());
+		}
+	}
+	
+	/**
+	 * Helper method to create and start a dispatcher
+	 */
+	private AsyncEventDispatcher createDispatcher(int queueCapacity, AsyncEventDispatcher.OverflowPolicy overflowPolicy) throws Exception {
+		AsyncEventDispatcher dispatcher = new AsyncEventDispatcher();
+		dispatcher.setQueueCapacity(queueCapacity);
+		dispatcher.setOverflowPolicy(overflowPolicy);
+		dispatcher.afterPropertiesSet();
+		return dispatcher;
+	}
+	
+	/**
+	 * Helper method to block the dispatcher thread until the returned latch is released
+	 */
+	private CountDownLatch blockDispatcherThread() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		this.dispatcher.dispatch(new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		return release;
+	}
+	
+	/**
+	 * Helper method to create a delivery that records the specified id
+	 */
+	private Runnable delivery(final int id) {
+		return new Runnable() {
+			public void run() {
+				delivered.add(id);
+			}
+		};
+	}
+}
@@ -18,10 +18,16 @@ package org.trpr.platform.integration.impl.xml;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.transform.Result;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
@@ -29,7 +35,11 @@ import org.trpr.platform.integration.spi.xml.XMLDataException;
 import org.trpr.platform.integration.spi.xml.XMLTranscoder;
 import org.springframework.oxm.Marshaller;
 import org.springframework.oxm.Unmarshaller;
-import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
 
 /**
  * The <code> XMLTranscoderImpl </code> is as implementation of {@link XMLTranscoder} using the Spring OXM framework.
@@ -37,6 +47,11 @@ import org.springframework.oxm.jaxb.Jaxb2Marshaller;
  * The default implementation uses the JAXB provider and thereby implies support only for those Java types that have been XML schema derived, 
  * usually defined and compiled in any of the "model" projects defined - for e.g. platform-model.
  * 
+ * The default implementation creates the JAXBContext only once for a package and class loader, and shares it between all Java types of the 
+ * package. The JAXB Marshaller and Unmarshaller instances, which are not thread-safe, are pooled with the context and are released along with it
+ * i.e. cached instances do not keep the class loader of a package alive once its types are unloaded. Instances of this class are therefore
+ * cheap to create and safe to share across threads.
+ * 
  * Users of this transcoder implementation may inject suitable binding providers such as Castor, Jibx or any of the types supported by Spring OXM.
  * 
  * @author Regunath B
@@ -44,19 +59,45 @@ import org.springframework.oxm.jaxb.Jaxb2Marshaller;
  */
 public class XMLTranscoderImpl implements XMLTranscoder {
 	
-	/** Default properties for the JAXB Marshaller*/
-	private static final Map<String, Object> DEFAULT_MARSHALLER_PROPS = new HashMap<String,Object>();
-	static {
-		DEFAULT_MARSHALLER_PROPS.put(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-	}
+	/** The JAXB bindings for Java types, looked up once per type and held for as long as the type is loaded*/
+	private static final ClassValue<JAXBBinding> JAXB_BINDINGS = new ClassValue<JAXBBinding>() {
+		protected JAXBBinding computeValue(Class<?> type) {
+			return getPackageBinding(type);
+		}
+	};
 	
-	/** The default Marshaller, Unmarshaller instances based on JAXB*/
-	private Jaxb2Marshaller defaultMarshaller = new Jaxb2Marshaller();
-	private Jaxb2Marshaller defaultUnmarshaller = defaultMarshaller;
+	/** 
+	 * The JAXB bindings shared by the types of a package, keyed by class loader and package name. Neither the class loader nor the bindings
+	 * are strongly held here - the bindings are kept alive by the types that use them (see {@link #JAXB_BINDINGS})  
+	 */
+	private static final Map<ClassLoader, Map<String, WeakReference<JAXBBinding>>> PACKAGE_BINDINGS = 
+		new WeakHashMap<ClassLoader, Map<String, WeakReference<JAXBBinding>>>();
 	
-	/** The Spring OXM Marshaller, Unmarshaller instances to use*/
-	private Marshaller marshaller = defaultMarshaller;
-	private Unmarshaller unmarshaller = defaultUnmarshaller;
+	/** Entity resolver that does not resolve external entities*/
+	private static final EntityResolver NO_OP_ENTITY_RESOLVER = new EntityResolver() {
+		public InputSource resolveEntity(String publicId, String systemId) {
+			return new InputSource(new StringReader(""));
+		}
+	};
+	
+	/** The per-thread XML readers used by the cached JAXB bindings. Configured, like the Spring OXM Jaxb2Marshaller, to not process DTDs and external entities*/
+	private static final ThreadLocal<XMLReader> XML_READERS = new ThreadLocal<XMLReader>() {
+		protected XMLReader initialValue() {
+			try {
+				XMLReader xmlReader = XMLReaderFactory.createXMLReader();
+				xmlReader.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+				xmlReader.setFeature("http://xml.org/sax/features/external-general-entities", false);
+				xmlReader.setEntityResolver(NO_OP_ENTITY_RESOLVER);
+				return xmlReader;
+			} catch (SAXException e) {
+				throw new XMLDataException("Error creating XMLReader", e);
+			}
+		}
+	};
+	
+	/** The Spring OXM Marshaller, Unmarshaller instances to use. The cached JAXB bindings are used when these are not set*/
+	private Marshaller marshaller;
+	private Unmarshaller unmarshaller;
 
 	/**
 	 * Interface method implementation. Note that the specified Object should be an XML schema derived type. 
@@ -90,10 +131,14 @@ public class XMLTranscoderImpl implements XMLTranscoder {
 	public <T> T unmarshal(String xml, Class<T> clazz) throws XMLDataException {
 		StringReader stringReader = new StringReader(xml);
 		try {
-			if (this.getUnmarshaller() == this.defaultUnmarshaller) {
-				// the default unmarshaller is not initialized with the context path. Initialize it by calling suitable methods
-				this.defaultUnmarshaller.setContextPath(clazz.getPackage().getName());
-				this.defaultUnmarshaller.afterPropertiesSet();
+			if (this.getUnmarshaller() == null) {
+				JAXBBinding binding = JAXB_BINDINGS.get(clazz);
+				javax.xml.bind.Unmarshaller jaxbUnmarshaller = binding.borrowUnmarshaller();
+				try {
+					return (T)jaxbUnmarshaller.unmarshal(new SAXSource(XML_READERS.get(), new InputSource(stringReader)));
+				} finally {
+					binding.releaseUnmarshaller(jaxbUnmarshaller);
+				}
 			}
 			return (T)this.getUnmarshaller().unmarshal(new StreamSource(stringReader));
 		} catch (Exception e) {
@@ -123,45 +168,104 @@ public class XMLTranscoderImpl implements XMLTranscoder {
 	 */
 	private void marshalToResult(Object object, Result result) throws XMLDataException {
 		try {
-			if (this.getMarshaller() == this.defaultMarshaller) {
-				// the default marshaller is not initialized with the context path. Initialize it by calling suitable methods
-				this.defaultMarshaller.setMarshallerProperties(XMLTranscoderImpl.DEFAULT_MARSHALLER_PROPS);
-				this.defaultMarshaller.setContextPath(object.getClass().getPackage().getName());
-				this.defaultMarshaller.afterPropertiesSet();
+			if (this.getMarshaller() == null) {
+				JAXBBinding binding = JAXB_BINDINGS.get(object.getClass());
+				javax.xml.bind.Marshaller jaxbMarshaller = binding.borrowMarshaller();
+				try {
+					jaxbMarshaller.marshal(object, result);
+				} finally {
+					binding.releaseMarshaller(jaxbMarshaller);
+				}
+			} else {
+				this.getMarshaller().marshal(object, result);
 			}
-			this.getMarshaller().marshal(object, result);		
 		} catch (Exception e) {
 			throw new XMLDataException("Error marshalling Object of type : " + object.getClass().getName(),e);
 		}
 	}
 	
 	/**
-	 * Replacement method that uses JAXB directly instead of via Spring OXM. Provided just as an option
+	 * Helper method to return the JAXB binding for the package and class loader of the specified type, creating one if required
 	 */
-	private String marshalUsingJAXB(Object object) throws XMLDataException {		
-		try {
-			StringWriter stringWriter = new StringWriter();
-			javax.xml.bind.JAXBContext context = javax.xml.bind.JAXBContext.newInstance(object.getClass().getPackage().getName());
-			javax.xml.bind.Marshaller marshaller = context.createMarshaller();
-			marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, true);			
-			marshaller.marshal(object, stringWriter);
-			return stringWriter.toString();
-		} catch (javax.xml.bind.JAXBException e) {
-			throw new XMLDataException("Error marshalling Object of type : " + object.getClass().getName(),e);
+	private static JAXBBinding getPackageBinding(Class<?> type) {
+		String packageName = type.getPackage().getName();
+		synchronized(PACKAGE_BINDINGS) {
+			Map<String, WeakReference<JAXBBinding>> loaderBindings = PACKAGE_BINDINGS.get(type.getClassLoader());
+			if (loaderBindings == null) {
+				loaderBindings = new HashMap<String, WeakReference<JAXBBinding>>();
+				PACKAGE_BINDINGS.put(type.getClassLoader(), loaderBindings);
+			}
+			WeakReference<JAXBBinding> bindingReference = loaderBindings.get(packageName);
+			JAXBBinding binding = bindingReference == null ? null : bindingReference.get();
+			if (binding == null) {
+				binding = new JAXBBinding(packageName, type.getClassLoader());
+				loaderBindings.put(packageName, new WeakReference<JAXBBinding>(binding));
+			}
+			return binding;
 		}
 	}
-
+	
 	/**
-	 * Replacement method that uses JAXB directly instead of via Spring OXM. Provided just as an option
+	 * The JAXB binding for a package. Holds the JAXBContext created for the package and a pool of JAXB Marshaller and Unmarshaller 
+	 * instances created from the context. 
 	 */
-	@SuppressWarnings("unchecked")
-	private <T> T unmarshalUsingJAXB(String xml, Class<T> clazz) throws XMLDataException {
-		try {
-			javax.xml.bind.JAXBContext context = javax.xml.bind.JAXBContext.newInstance(clazz.getPackage().getName());
-			javax.xml.bind.Unmarshaller unmarshaller = context.createUnmarshaller();
-			return (T)unmarshaller.unmarshal(new StringReader(xml));
-		} catch (javax.xml.bind.JAXBException e) {
-			throw new XMLDataException("Error unmarshalling XML. XML:packageName is " + xml + ":" + clazz.getPackage().getName(),e);
+	private static final class JAXBBinding {
+		
+		/** The JAXBContext, thread-safe and expensive to create*/
+		private final JAXBContext context;
+		
+		/** The idle JAXB Marshaller and Unmarshaller instances. Pooled here rather than per thread so that they are released with the context*/
+		private final ConcurrentLinkedQueue<javax.xml.bind.Marshaller> marshallers = new ConcurrentLinkedQueue<javax.xml.bind.Marshaller>();
+		private final ConcurrentLinkedQueue<javax.xml.bind.Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<javax.xml.bind.Unmarshaller>();
+		
+		/**
+		 * Constructor for this class. Creates the JAXBContext for the specified package name and class loader
+		 * @param packageName the package to create the JAXBContext for
+		 * @param classLoader the class loader of the package's types
+		 */
+		private JAXBBinding(String packageName, ClassLoader classLoader) {
+			try {
+				this.context = JAXBContext.newInstance(packageName, classLoader);
+			} catch (JAXBException e) {
+				throw new XMLDataException("Error creating JAXBContext for package : " + packageName,e);
+			}
+		}
+		
+		/**
+		 * Returns an idle JAXB Marshaller, creating one if none exist. Marshalled XML is formatted
+		 */
+		private javax.xml.bind.Marshaller borrowMarshaller() throws JAXBException {
+			javax.xml.bind.Marshaller marshaller = this.marshallers.poll();
+			if (marshaller == null) {
+				marshaller = this.context.createMarshaller();
+				marshaller.setProperty(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+			}
+			return marshaller;
+		}
+		
+		/**
+		 * Returns the specified JAXB Marshaller to the pool
+		 */
+		private void releaseMarshaller(javax.xml.bind.Marshaller marshaller) {
+			this.marshallers.offer(marshaller);
+		}
+
+		/**
+		 * Returns an idle JAXB Unmarshaller, creating one if none exist
+		 */
+		private javax.xml.bind.Unmarshaller borrowUnmarshaller() throws JAXBException {
+			javax.xml.bind.Unmarshaller unmarshaller = this.unmarshallers.poll();
+			if (unmarshaller == null) {
+				unmarshaller = this.context.createUnmarshaller();
+			}
+			return unmarshaller;
+		}
+		
+		/**
+		 * Returns the specified JAXB Unmarshaller to the pool
+		 */
+		private void releaseUnmarshaller(javax.xml.bind.Unmarshaller unmarshaller) {
+			this.unmarshallers.offer(unmarshaller);
 		}
 	}
 }
@@ -82,13 +82,11 @@ public abstract class AbstractTask implements Task {
 	}
 
 	/**
-	 * Interface method implementation. Executes this Task
+	 * Interface method implementation. Executes this Task. The result is added to the TaskContext by the TaskManager that executes this Task
 	 * @see java.lang.Runnable#run()
 	 */
-	@SuppressWarnings("unchecked")
 	public void run() {
 		this.doExecute();
-		this.context.addResult(this.getTaskId(), this.result);
 	}
 
 	/**
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trpr.platform.impl.task;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.trpr.platform.core.PlatformException;
+import org.trpr.platform.model.common.BusinessEntity;
+import org.trpr.platform.model.event.PlatformEvent;
+import org.trpr.platform.spi.task.DependentTask;
+import org.trpr.platform.spi.task.Resource;
+import org.trpr.platform.spi.task.Task;
+import org.trpr.platform.spi.task.TaskContext;
+import org.trpr.platform.spi.task.TaskData;
+import org.trpr.platform.spi.task.TaskManager;
+import org.trpr.platform.spi.task.TaskResult;
+
+/**
+ *
+ * The <code>ParallelTaskManager</code> class is an implementation of {@link org.trpr.platform.spi.task.TaskManager}.
+ * ParallelTaskManager executes the tasks in parallel on a bounded pool of threads. Tasks that implement {@link DependentTask} are executed only after
+ * all the tasks they depend on have completed, i.e. the tasks form a directed acyclic graph of executions. Tasks are executed in-process i.e. within
+ * the same JVM and the calling thread waits until all tasks have completed or the execution timeout has elapsed.
+ *
+ * This TaskManager is suited to services composed of independent I/O bound tasks, where the service latency is then the longest path through the
+ * task graph rather than the sum of the task latencies.
+ *
+ * @author agent
+ * @version 1.0, 17/10/2026
+ */
+
+public class ParallelTaskManager<T extends TaskData<BusinessEntity, Resource>, S extends TaskResult<BusinessEntity>,
+		R extends TaskContext<S, PlatformEvent>> implements TaskManager<T,S,R>, InitializingBean, DisposableBean {
+
+	/** Default values for thread pool size, queue size and execution timeout*/
+	private static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+	private static final int DEFAULT_QUEUE_SIZE = 1000;
+	private static final long DEFAULT_EXECUTION_TIMEOUT_MILLIS = 60000L;
+
+	/** The thread name prefix for task execution threads*/
+	private static final String THREAD_NAME_PREFIX = "ParallelTaskManager-";
+
+	/** The thread pool size, queue size and execution timeout*/
+	private int poolSize = DEFAULT_POOL_SIZE;
+	private int queueSize = DEFAULT_QUEUE_SIZE;
+	private long executionTimeoutMillis = DEFAULT_EXECUTION_TIMEOUT_MILLIS;
+
+	/** The executor for running the tasks*/
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * Interface method implementation. Creates the bounded thread pool for task execution. Tasks are run on the caller thread if the pool's queue is full.
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		this.executor = new ThreadPoolExecutor(this.poolSize, this.poolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(this.queueSize),
+				new CustomizableThreadFactory(THREAD_NAME_PREFIX), new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * Interface method implementation. Shuts down the task execution thread pool
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	public void destroy() throws Exception {
+		if (this.executor != null) {
+			this.executor.shutdown();
+		}
+	}
+
+	/**
+	 * Interface method implementation. Executes the tasks in parallel, honoring dependencies declared by {@link DependentTask} instances. Creates a
+	 * TaskContextImpl prior to task execution and passes it to each task being executed.
+	 * @see org.trpr.platform.spi.task.TaskManager#execute(org.trpr.platform.spi.task.Task<T,S,R>[])
+	 * @throws PlatformException in case of invalid task dependencies, task execution errors or timeout
+	 */
+	@SuppressWarnings("unchecked")
+	public R execute(Task<T,S,R>[] tasks) {
+		if (this.executor == null) {
+			throw new PlatformException("ParallelTaskManager is not initialized. Call afterPropertiesSet() before executing tasks");
+		}
+		final TaskContextImpl<S,PlatformEvent> taskContext = new TaskContextImpl<S,PlatformEvent>();
+		Map<String, Task<T,S,R>> tasksById = new HashMap<String, Task<T,S,R>>();
+		for (Task<T,S,R> t : tasks) {
+			if (tasksById.put(t.getTaskId(), t) != null) {
+				throw new PlatformException("Duplicate task Id : " + t.getTaskId());
+			}
+			t.init((R)taskContext);
+		}
+		// the Futures of Tasks submitted to the thread pool, retained so that running Tasks may be interrupted on timeout
+		final Queue<Future<?>> submittedTasks = new ConcurrentLinkedQueue<Future<?>>();
+		final AtomicBoolean cancelled = new AtomicBoolean(false);
+		Executor taskExecutor = new Executor() {
+			public void execute(Runnable command) {
+				if (cancelled.get()) {
+					throw new RejectedExecutionException("Task execution has been cancelled");
+				}
+				submittedTasks.add(executor.submit(command));
+			}
+		};
+		// all executions are chained off a start trigger so that no Task runs if the task dependencies turn out to be invalid
+		CompletableFuture<Void> start = new CompletableFuture<Void>();
+		Map<String, CompletableFuture<Void>> executions = new HashMap<String, CompletableFuture<Void>>();
+		for (Task<T,S,R> t : tasks) {
+			this.scheduleTask(t, tasksById, executions, new HashSet<String>(), start, taskContext, taskExecutor, cancelled);
+		}
+		start.complete(null);
+		CompletableFuture<Void> allExecutions = CompletableFuture.allOf(executions.values().toArray(new CompletableFuture[executions.size()]));
+		try {
+			allExecutions.get(this.executionTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PlatformException("Interrupted while waiting for task execution to complete", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			throw new PlatformException("Error executing tasks : " + cause.getMessage(), cause);
+		} catch (TimeoutException e) {
+			// stop Tasks that are yet to start and interrupt the ones that are running
+			cancelled.set(true);
+			for (Future<?> submittedTask : submittedTasks) {
+				submittedTask.cancel(true);
+			}
+			throw new PlatformException("Timed out after " + this.executionTimeoutMillis + " ms waiting for task execution to complete");
+		}
+		return (R)taskContext;
+	}
+
+	/**
+	 * Helper method to schedule the specified Task after scheduling all the Tasks that it depends on. Detects unknown task Ids and cyclic dependencies.
+	 * @param task the Task to schedule
+	 * @param tasksById all Tasks of this execution, keyed by task Id
+	 * @param executions the scheduled Task executions, keyed by task Id
+	 * @param visiting the task Ids on the current dependency path, used for detecting cycles
+	 * @param start the trigger for starting execution of Tasks that have no dependencies
+	 * @param taskContext the TaskContextImpl for storing Task results
+	 * @param taskExecutor the Executor that submits Tasks to the thread pool
+	 * @param cancelled flag that is set when the execution is cancelled, checked before running each Task
+	 * @return the scheduled execution of the specified Task
+	 */
+	@SuppressWarnings("unchecked")
+	private CompletableFuture<Void> scheduleTask(final Task<T,S,R> task, Map<String, Task<T,S,R>> tasksById, Map<String, CompletableFuture<Void>> executions,
+			Set<String> visiting, CompletableFuture<Void> start, final TaskContextImpl<S,PlatformEvent> taskContext, Executor taskExecutor,
+			final AtomicBoolean cancelled) {
+		CompletableFuture<Void> execution = executions.get(task.getTaskId());
+		if (execution != null) {
+			return execution;
+		}
+		if (!visiting.add(task.getTaskId())) {
+			throw new PlatformException("Cyclic task dependency detected for task Id : " + task.getTaskId());
+		}
+		Runnable taskRunner = new Runnable() {
+			public void run() {
+				if (cancelled.get()) {
+					throw new CancellationException("Task execution has been cancelled for task Id : " + task.getTaskId());
+				}
+				task.run();
+				taskContext.addResult(task.getTaskId(), task.getResult());
+			}
+		};
+		String[] dependsOnTaskIds = task instanceof DependentTask ? ((DependentTask<T,S,R>)task).getDependsOnTaskIds() : new String[0];
+		if (dependsOnTaskIds.length == 0) {
+			execution = start.thenRunAsync(taskRunner, taskExecutor);
+		} else {
+			CompletableFuture<?>[] dependencies = new CompletableFuture<?>[dependsOnTaskIds.length];
+			for (int i = 0; i < dependsOnTaskIds.length; i++) {
+				Task<T,S,R> dependency = tasksById.get(dependsOnTaskIds[i]);
+				if (dependency == null) {
+					throw new PlatformException("Task Id : " + task.getTaskId() + " depends on unknown task Id : " + dependsOnTaskIds[i]);
+				}
+				dependencies[i] = this.scheduleTask(dependency, tasksById, executions, visiting, start, taskContext, taskExecutor, cancelled);
+			}
+			execution = CompletableFuture.allOf(dependencies).thenRunAsync(taskRunner, taskExecutor);
+		}
+		visiting.remove(task.getTaskId());
+		executions.put(task.getTaskId(), execution);
+		return execution;
+	}
+
+	/** Setter/Getter methods*/
+	public int getPoolSize() {
+		return this.poolSize;
+	}
+	public void setPoolSize(int poolSize) {
+		this.poolSize = poolSize;
+	}
+	public int getQueueSize() {
+		return this.queueSize;
+	}
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+	public long getExecutionTimeoutMillis() {
+		return this.executionTimeoutMillis;
+	}
+	public void setExecutionTimeoutMillis(long executionTimeoutMillis) {
+		this.executionTimeoutMillis = executionTimeoutMillis;
+	}
+	/** End setter/getter methods */
+}
@@ -16,8 +16,8 @@
 
 package org.trpr.platform.impl.task;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.trpr.platform.core.spi.event.PlatformEventProducer;
 import org.trpr.platform.model.common.BusinessEntity;
@@ -27,8 +27,8 @@ import org.trpr.platform.spi.task.TaskResult;
 
 /**
  * The <code>TaskContextImpl</code> is the default implementation for TaskContext. 
- * This implementation stores the task execution results in an in-memory collection. This class also publishes events published to it using
- * the {@link PlatformEventProducer} instance set on it.
+ * This implementation stores the task execution results in an in-memory concurrent collection, and may therefore be shared by tasks executing in parallel.
+ * This class also publishes events published to it using the {@link PlatformEventProducer} instance set on it.
  * 
  * @author Regunath B
  * @version 1.0, 04/06/2012
@@ -36,7 +36,7 @@ import org.trpr.platform.spi.task.TaskResult;
 public class TaskContextImpl <T extends TaskResult<BusinessEntity>, S extends PlatformEvent> implements TaskContext<T,S> {
 
 	/** Collection for holding the task execution results*/
-	private Map<String, T> results = new LinkedHashMap<String, T>();
+	private Map<String, T> results = new ConcurrentHashMap<String, T>();
 	
 	/** The PlatformEventProducer to use for event publishing*/
 	private PlatformEventProducer eventProducer;
@@ -50,12 +50,14 @@ public class TaskContextImpl <T extends TaskResult<BusinessEntity>, S extends Pl
 	}
 	
 	/**
-	 * Adds the specified TaskResult against the task Id specified.
+	 * Adds the specified TaskResult against the task Id specified. Null results are not stored.
 	 * @param taskId Id of the Task that was executed
 	 * @param taskResult the TaskResult from execution of the Task identified by the specified Id
 	 */
 	public void addResult(String taskId, T taskResult) {
-		this.results.put(taskId, taskResult);
+		if (taskResult != null) {
+			this.results.put(taskId, taskResult);
+		}
 	}
 
 	/**
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.platform.spi.task;
+
+import org.trpr.platform.model.common.BusinessEntity;
+import org.trpr.platform.model.event.PlatformEvent;
+
+/**
+ * The <code>DependentTask</code> is a {@link Task} that declares other Tasks whose execution must complete before it may be executed.
+ * {@link TaskManager} implementations that execute tasks in parallel use the declared dependencies to order execution, while sequential
+ * implementations may ignore them and rely on the order in which the tasks are passed. The dependencies of all the tasks in an execution
+ * must form a directed acyclic graph.
+ *
+ * @author agent
+ * @version 1.0, 17/10/2026
+ */
+public interface DependentTask <T extends TaskData<BusinessEntity, Resource>, S extends TaskResult<BusinessEntity>,
+				R extends TaskContext<S, PlatformEvent>> extends Task<T,S,R> {
+
+	/**
+	 * Gets the identifiers of Tasks that must complete execution before this Task is executed
+	 * @return array of task identifiers, may be empty but not null
+	 */
+	public String[] getDependsOnTaskIds();
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.platform.task.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.trpr.platform.core.PlatformException;
+import org.trpr.platform.impl.task.AbstractTask;
+import org.trpr.platform.impl.task.ParallelTaskManager;
+import org.trpr.platform.spi.task.DependentTask;
+import org.trpr.platform.spi.task.Task;
+
+/**
+ * Test class for org.trpr.platform.impl.task.ParallelTaskManager
+ * 
+ * @author agent
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class ParallelTaskManagerTest {
+
+	/** The task manager under test*/
+	private ParallelTaskManager taskManager;
+	
+	/** The ids of tasks in the order of completion*/
+	private List<String> completed = Collections.synchronizedList(new LinkedList<String>());
+	
+	@Before
+	public void setUp() throws Exception {
+		this.taskManager = new ParallelTaskManager();
+		this.taskManager.setPoolSize(4);
+		this.taskManager.setExecutionTimeoutMillis(5000L);
+		this.taskManager.afterPropertiesSet();
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		this.taskManager.destroy();
+	}
+	
+	@Test
+	public void testDependentTasksRunAfterTheirDependencies() {
+		this.taskManager.execute(new Task[] {
+				new TestTask("d", 0, "b", "c"),
+				new TestTask("b", 50, "a"),
+				new TestTask("c", 0, "a"),
+				new TestTask("a", 50),
+		});
+		Assert.assertEquals(4, this.completed.size());
+		Assert.assertEquals("a", this.completed.get(0));
+		Assert.assertEquals("d", this.completed.get(3));
+		Assert.assertTrue(this.completed.containsAll(Arrays.asList("b", "c")));
+	}
+	
+	@Test
+	public void testCyclicDependenciesAreRejectedBeforeExecution() {
+		try {
+			this.taskManager.execute(new Task[] {
+					new TestTask("a", 0, "c"),
+					new TestTask("b", 0, "a"),
+					new TestTask("c", 0, "b"),
+					new TestTask("d", 0),
+			});
+			Assert.fail("Expected cyclic dependency to be rejected");
+		} catch (PlatformException e) {
+			Assert.assertTrue(e.getMessage().startsWith("Cyclic task dependency detected"));
+		}
+		Assert.assertTrue(this.completed.isEmpty());
+	}
+	
+	@Test
+	public void testTaskFailureIsPropagatedAndDependentsAreSkipped() {
+		TestTask failing = new TestTask("a", 0);
+		failing.failure = new IllegalStateException("task a failed");
+		try {
+			this.taskManager.execute(new Task[] {failing, new TestTask("b", 0, "a"), new TestTask("c", 0)});
+			Assert.fail("Expected the task failure to be propagated");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("task a failed", e.getMessage());
+		}
+		Assert.assertFalse(this.completed.contains("b"));
+	}
+	
+	@Test
+	public void testTimeoutInterruptsRunningTasksAndSkipsDependents() throws Exception {
+		this.taskManager.setExecutionTimeoutMillis(200L);
+		TestTask slow = new TestTask("a", 10000);
+		try {
+			this.taskManager.execute(new Task[] {slow, new TestTask("b", 0, "a")});
+			Assert.fail("Expected the execution to time out");
+		} catch (PlatformException e) {
+			Assert.assertTrue(e.getMessage().startsWith("Timed out"));
+		}
+		Assert.assertTrue(slow.interrupted.await(1, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		Assert.assertTrue(this.completed.isEmpty());
+	}
+	
+	/**
+	 * Task that sleeps for the configured time and records its completion
+	 */
+	private class TestTask extends AbstractTask implements DependentTask {
+		private static final long serialVersionUID = 1L;
+		private String[] dependsOnTaskIds;
+		private long sleepMillis;
+		private RuntimeException failure;
+		private CountDownLatch interrupted = new CountDownLatch(1);
+		TestTask(String taskId, long sleepMillis, String... dependsOnTaskIds) {
+			super(taskId);
+			this.sleepMillis = sleepMillis;
+			this.dependsOnTaskIds = dependsOnTaskIds;
+		}
+		public String[] getDependsOnTaskIds() {
+			return this.dependsOnTaskIds;
+		}
+		protected void doExecute() {
+			try {
+				Thread.sleep(this.sleepMillis);
+			} catch (InterruptedException e) {
+				this.interrupted.countDown();
+				return;
+			}
+			if (this.failure != null) {
+				throw this.failure;
+			}
+			completed.add(this.taskId);
+		}
+	}
+}
@@ -53,7 +53,7 @@ import com.yammer.metrics.core.TimerContext;
  * <code>AbstractServiceImpl<code> is an implementation of the {@link Service} interface that provides common behavior for all services that implement service
  * functionality in {@link Task}. Use the simpler {@link SimpleAbstractServiceImpl} for services that do not intend to distribute execution as tasks.
  * This implementation implements a template for service request processing. It uses a {@link TaskManager} implementation to process the service
- * request as a number of {@link Task} instances executed sequentially.
+ * request as a number of {@link Task} instances executed sequentially or in parallel, depending on the TaskManager implementation.
  * 
  * @author Regunath B
  * @version 1.0, 14/08/2012
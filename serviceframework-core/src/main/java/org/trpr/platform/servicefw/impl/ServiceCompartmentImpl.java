@@ -65,7 +65,7 @@ public class ServiceCompartmentImpl<T extends PlatformServiceRequest, S extends
 	/**
 	 * Stores timeStamp when Service is last used.
 	 */
-	private long lastUsageTimeStamp = INVALID_STATISTICS_VALUE;
+	private volatile long lastUsageTimeStamp = INVALID_STATISTICS_VALUE;
 	
 	/**
 	 * Stores total requests processed.
@@ -80,7 +80,7 @@ public class ServiceCompartmentImpl<T extends PlatformServiceRequest, S extends
 	/**
 	 * The last serviced request's response time
 	 */
-	private long lastServiceRequestResponseTime = INVALID_STATISTICS_VALUE;
+	private volatile long lastServiceRequestResponseTime = INVALID_STATISTICS_VALUE;
 	
 	/**
 	 * Counts of service requests that failed - either due to validations or underlying exceptions
@@ -181,15 +181,13 @@ public class ServiceCompartmentImpl<T extends PlatformServiceRequest, S extends
 	 */
 	public void notifyServiceExecutionEnd(ServiceRequest request, ServiceResponse response, long executionStartTime, long executionEndTime) {
 		decrementUsageCounter();		
-		// synchronized block as this is a single instance through for all service bean instances
-		// This class is not thread safe as a consequence and the instance variables need to be modified inside a synchronized block
-		synchronized(this) {
-			this.lastServiceRequestResponseTime = executionEndTime - executionStartTime;
-			if (String.valueOf(ServiceFrameworkConstants.FAILURE_STATUS_CODE).equalsIgnoreCase(((ServiceResponseImpl)response).getStatusCode())) {
-				this.errorRequestCount.inc();
-				this.errorRequestRate.mark();
-			}
-		}		
+		// No synchronized block even though this is a single instance through for all service bean instances.
+		// The counters and meter are atomic and the response time is a volatile last-writer-wins value
+		this.lastServiceRequestResponseTime = executionEndTime - executionStartTime;
+		if (String.valueOf(ServiceFrameworkConstants.FAILURE_STATUS_CODE).equalsIgnoreCase(((ServiceResponseImpl)response).getStatusCode())) {
+			this.errorRequestCount.inc();
+			this.errorRequestRate.mark();
+		}
 	}
 
 	/**
@@ -216,10 +214,10 @@ public class ServiceCompartmentImpl<T extends PlatformServiceRequest, S extends
 
 	/**
 	 * Method which updates active request count and total request count.
-	 * Method is synchronized as this is a single instance through which all calls to the associated service bean is routed.
-	 * All modifications to instance variables of this class are synchronized.  
+	 * Method is not synchronized though this is a single instance through which all calls to the associated service bean is routed.
+	 * The counters are lock-free and the last usage timestamp is volatile.  
 	 */
-	private synchronized void incrementUsageCounter() {
+	private void incrementUsageCounter() {
 		lastUsageTimeStamp = System.currentTimeMillis();
 		currentUsageCount.inc();
 		totalUsageCount.inc();
@@ -227,10 +225,9 @@ public class ServiceCompartmentImpl<T extends PlatformServiceRequest, S extends
 
 	/**
 	 * Method which updates active request count.
-	 * Method is synchronized as this is a single instance through which all calls to the associated service bean is routed.
-	 * All modifications to instance variables of this class are synchronized.  
+	 * Method is not synchronized as the counter is lock-free. The greater-than-zero check is therefore a best-effort guard.  
 	 */
-	private synchronized void decrementUsageCounter() {
+	private void decrementUsageCounter() {
 		// decrement only if use count is greater than zero. It might have been set to zero if #resetServiceStatistics() is called
 		if (currentUsageCount.count() > 0) {
 			currentUsageCount.dec();
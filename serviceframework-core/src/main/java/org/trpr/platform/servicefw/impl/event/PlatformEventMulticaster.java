@@ -16,8 +16,14 @@
 
 package org.trpr.platform.servicefw.impl.event;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.AbstractApplicationEventMulticaster;
@@ -35,6 +41,11 @@ import org.trpr.platform.servicefw.spi.event.ServiceEventConsumer;
  * supports routing only {@link PlatformApplicationEvent} instances to registered ApplicationListener instances where subscriptions match the
  * endpointURI contained in the published PlatformApplicationEvent.
  * 
+ * Subscriptions are matched ignoring case. A subscription ending with {@link #WILDCARD} matches all endpointURIs that start with the part preceding it.
+ * The listeners matching an endpointURI are resolved once and cached in an index keyed by the normalized endpointURI, so that the cost of 
+ * dispatching an event does not grow with the number of listeners and subscriptions. The index is discarded whenever listeners are added or 
+ * removed or subscriptions of this multi-caster change. Subscriptions of registered listeners are therefore expected not to change after registration.
+ * 
  * This multi-caster does a synchronous multi-cast of the events. By default, all listeners are invoked in the calling thread.
  * This allows the danger of a rogue listener blocking the entire application. 
  * 
@@ -51,6 +62,18 @@ public class PlatformEventMulticaster extends AbstractApplicationEventMulticaste
 	/** List of subscriptions recognized by this multi-caster*/
 	private String[] subscriptions;
 
+	/** The wild-card suffix for subscriptions*/
+	public static final String WILDCARD = "*";
+
+	/** The maximum number of endpointURIs in the listener index. Listeners for endpointURIs beyond this are resolved for each event*/
+	private static final int MAX_INDEXED_ENDPOINTS = 1024;
+
+	/** Empty listener array returned for endpointURIs that match no listener*/
+	private static final ApplicationListener<?>[] NO_LISTENERS = new ApplicationListener<?>[0];
+
+	/** Index of matching listeners keyed by normalized endpointURI. Replaced by a new one whenever listeners or subscriptions change*/
+	private volatile Map<String, ApplicationListener<?>[]> listenerIndex = new ConcurrentHashMap<String, ApplicationListener<?>[]>();
+
 	/**
 	 * Interface method implementation. Calls {@link #multicastEvent(ApplicationEvent)} with resolved default type
 	 * @see org.springframework.context.event.ApplicationEventMulticaster#multicastEvent(org.springframework.context.ApplicationEvent)
@@ -74,17 +97,13 @@ public class PlatformEventMulticaster extends AbstractApplicationEventMulticaste
 				LOGGER.warn("End-point URI of PlatformApplicationEvent is null. Event will not be forwarded. Event type is : " + platformApplicationEvent.getClass().getName()); 
 				return;
 			}
-			if (!isSubscriptionMatch(eventEndpointURI, subscriptions)) {
+			ApplicationListener<?>[] listeners = this.getMatchingListeners(eventEndpointURI);
+			if (listeners == null) {
 				LOGGER.warn("Endpoint URI doesnot match any of the subscriptions specified on this multi-caster. Event will not be forwarded. Event URI is : " + eventEndpointURI); 
 				return;				
 			}
-			for (Iterator<ApplicationListener<?>> iterator = getApplicationListeners().iterator(); iterator.hasNext();) {
-	            ApplicationListener listener = (ApplicationListener) iterator.next();	
-	            if (listener instanceof ServiceEventConsumer) {
-	            	if (isSubscriptionMatch(eventEndpointURI, ((ServiceEventConsumer)listener).getSubscriptions())) {
-	            		listener.onApplicationEvent(event);
-	            	}
-	            }
+			for (ApplicationListener listener : listeners) {
+				listener.onApplicationEvent(event);
 			}
 		} else {
 			// log a warning and ignore the event
@@ -98,11 +117,114 @@ public class PlatformEventMulticaster extends AbstractApplicationEventMulticaste
 	}
 	public void setSubscriptions(String[] subscriptions) {
 		this.subscriptions = subscriptions;
+		this.clearListenerIndex();
 	}
 	/** === End Getter/Setter methods*/	
+
+	/**
+	 * Overriden super type method. Clears the listener index after adding the listener
+	 * @see org.springframework.context.event.AbstractApplicationEventMulticaster#addApplicationListener(org.springframework.context.ApplicationListener)
+	 */
+	public void addApplicationListener(ApplicationListener<?> listener) {
+		super.addApplicationListener(listener);
+		this.clearListenerIndex();
+	}
+
+	/**
+	 * Overriden super type method. Clears the listener index after adding the listener bean
+	 * @see org.springframework.context.event.AbstractApplicationEventMulticaster#addApplicationListenerBean(java.lang.String)
+	 */
+	public void addApplicationListenerBean(String listenerBeanName) {
+		super.addApplicationListenerBean(listenerBeanName);
+		this.clearListenerIndex();
+	}
+
+	/**
+	 * Overriden super type method. Clears the listener index after removing the listener
+	 * @see org.springframework.context.event.AbstractApplicationEventMulticaster#removeApplicationListener(org.springframework.context.ApplicationListener)
+	 */
+	public void removeApplicationListener(ApplicationListener<?> listener) {
+		super.removeApplicationListener(listener);
+		this.clearListenerIndex();
+	}
+
+	/**
+	 * Overriden super type method. Clears the listener index after removing the listener bean
+	 * @see org.springframework.context.event.AbstractApplicationEventMulticaster#removeApplicationListenerBean(java.lang.String)
+	 */
+	public void removeApplicationListenerBean(String listenerBeanName) {
+		super.removeApplicationListenerBean(listenerBeanName);
+		this.clearListenerIndex();
+	}
+
+	/**
+	 * Overriden super type method. Clears the listener index after removing all listeners
+	 * @see org.springframework.context.event.AbstractApplicationEventMulticaster#removeAllListeners()
+	 */
+	public void removeAllListeners() {
+		super.removeAllListeners();
+		this.clearListenerIndex();
+	}
+
+	/**
+	 * Overriden super type method. Clears the listener index as listener beans are resolved using the bean factory
+	 * @see org.springframework.context.event.AbstractApplicationEventMulticaster#setBeanFactory(org.springframework.beans.factory.BeanFactory)
+	 */
+	public void setBeanFactory(BeanFactory beanFactory) {
+		super.setBeanFactory(beanFactory);
+		this.clearListenerIndex();
+	}
+
+	/**
+	 * Returns the listeners whose subscriptions match the specified endpointURI, using the listener index
+	 * @param endpoint the endpointURI of the event
+	 * @return array of matching listeners in registration order, null if the endpointURI does not match the subscriptions of this multi-caster
+	 */
+	private ApplicationListener<?>[] getMatchingListeners(String endpoint) {
+		Map<String, ApplicationListener<?>[]> index = this.listenerIndex;
+		String normalizedEndpoint = endpoint.toLowerCase(Locale.ENGLISH);
+		ApplicationListener<?>[] listeners = index.get(normalizedEndpoint);
+		if (listeners == null) {
+			listeners = this.resolveMatchingListeners(endpoint);
+			// index only if the index has not been replaced since resolving the listeners
+			if (index.size() < MAX_INDEXED_ENDPOINTS && index == this.listenerIndex) {
+				index.put(normalizedEndpoint, listeners);
+			}
+		}
+		return listeners == NO_LISTENERS && !isSubscriptionMatch(endpoint, this.subscriptions) ? null : listeners;
+	}
+
+	/**
+	 * Resolves the listeners whose subscriptions match the specified endpointURI by matching subscriptions of all listeners
+	 * @param endpoint the endpointURI of the event
+	 * @return array of matching listeners in registration order, empty if none match or if the endpointURI does not match the subscriptions of this multi-caster
+	 */
+	private ApplicationListener<?>[] resolveMatchingListeners(String endpoint) {
+		if (!isSubscriptionMatch(endpoint, this.subscriptions)) {
+			return NO_LISTENERS;
+		}
+		List<ApplicationListener<?>> listeners = new ArrayList<ApplicationListener<?>>();
+		for (Iterator<ApplicationListener<?>> iterator = getApplicationListeners().iterator(); iterator.hasNext();) {
+            ApplicationListener<?> listener = iterator.next();	
+            if (listener instanceof ServiceEventConsumer) {
+            	if (isSubscriptionMatch(endpoint, ((ServiceEventConsumer)listener).getSubscriptions())) {
+            		listeners.add(listener);
+            	}
+            }
+		}
+		return listeners.isEmpty() ? NO_LISTENERS : listeners.toArray(new ApplicationListener<?>[listeners.size()]);
+	}
+
+	/**
+	 * Discards the listener index by replacing it with an empty one
+	 */
+	private void clearListenerIndex() {
+		this.listenerIndex = new ConcurrentHashMap<String, ApplicationListener<?>[]>();
+	}
 	
     /**
-     * Matches a subscription to the current event endpointURI. Performs an exact match.
+     * Matches a subscription to the current event endpointURI. Performs an exact match ignoring case, or a prefix match for subscriptions 
+     * ending with {@link #WILDCARD}.
      * 
      * @param endpoint endpoint
      * @param subscriptions subscriptions
@@ -113,6 +235,10 @@ public class PlatformEventMulticaster extends AbstractApplicationEventMulticaste
 			if (endpoint.equalsIgnoreCase(subscription)) {
 				return true;
 			}
+			if (subscription.endsWith(WILDCARD) 
+					&& endpoint.regionMatches(true, 0, subscription, 0, subscription.length() - WILDCARD.length())) {
+				return true;
+			}
 		}
 		return false;
 	}
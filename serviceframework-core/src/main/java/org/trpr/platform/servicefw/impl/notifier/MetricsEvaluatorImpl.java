@@ -16,9 +16,13 @@
 package org.trpr.platform.servicefw.impl.notifier;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.mvel2.CompileException;
 import org.mvel2.MVEL;
@@ -40,6 +44,9 @@ import org.trpr.platform.servicefw.spi.notifier.MetricsEvaluator;
  * The convention to be followed is : <service_name>_<service_version>.<property_name>, where,
  *  <property_name> is a property from {@link ServiceStatistics}
  * 
+ * Rules are bound to the deployed service they refer to and compiled once. The compiled rules are re-created only when the rules
+ * or the set of deployed services change.
+ * 
  * @author devashishshankar
  * @version 1.0, 13th March, 2013 
  */
@@ -47,6 +54,9 @@ public class MetricsEvaluatorImpl implements MetricsEvaluator {
 
 	/** The list of rules being checked by this instance */
 	private List<String> rules;
+	
+	/** The rules compiled against the currently deployed services, re-created when either of them change */
+	private volatile CompiledRules compiledRules;
 
 	/** The notification receiver */
 	private List<MetricsEventReceiver> receivers;
@@ -81,10 +91,8 @@ public class MetricsEvaluatorImpl implements MetricsEvaluator {
 	@Override
 	public void checkRules() {
 		Map<String, ServiceStatistics> statisticsMap = this.serviceStatisticsGatherer.getStatsAsMap();
-		Map<String, ServiceStatistics> statisticsMapWithoutPeriod =new HashMap<String, ServiceStatistics>();
-		//Map holds the old service name to new service name, e.g. abc_1.0 to abc_1_0
-		Map<String, String> statisticsNameReplaceMap = new HashMap<String, String>();
-		if(this.rules==null || this.rules.size()==0) { //If rule doesn't exist, send notification about all the services
+		List<String> rules = this.rules;
+		if(rules==null || rules.size()==0) { //If rule doesn't exist, send notification about all the services
 			for(ServiceStatistics serviceStatistics: statisticsMap.values()) {
 				if(this.receivers!=null) {
 					for(MetricsEventReceiver receiver: this.receivers) {
@@ -94,58 +102,105 @@ public class MetricsEvaluatorImpl implements MetricsEvaluator {
 			}
 			return;
 		}
-		//Replace period in the map keys
-		for(String serviceName:statisticsMap.keySet()) {
-			String newServiceName = serviceName.replaceAll(PERIOD, PERIOD_REPLACEMENT);
-			statisticsMapWithoutPeriod.put(newServiceName, statisticsMap.get(serviceName));
-			statisticsNameReplaceMap.put(serviceName, newServiceName);
+		CompiledRules compiledRules = this.compiledRules;
+		if (compiledRules == null || compiledRules.rules != rules || !compiledRules.serviceNames.equals(statisticsMap.keySet())) {
+			compiledRules = new CompiledRules(rules, statisticsMap.keySet());
+			this.compiledRules = compiledRules;
 		}
-		for(String rule: this.rules) {
-			//Check the rule to get the Service Name
-			String ruleServiceName = null; //The serviceName accessed in the rule
-			String replacedRule = null;    //Rule with correct periods replaced
-			for(String originalName : statisticsNameReplaceMap.keySet()) {
-				if(rule.contains(originalName)) {
-					replacedRule = rule.replace(originalName, statisticsNameReplaceMap.get(originalName));
-					ruleServiceName = originalName;
-				}
-			}
-			if(ruleServiceName == null) { //No existing service found in rule
-				LOGGER.warn("The rule: '"+rule+"' contains no currently deployed service");
-				LOGGER.debug("The deployed services are: ");
-				LOGGER.debug(statisticsMap.keySet().toString());
-				continue;
-			}
-			ServiceStatistics currentStatistics = statisticsMap.get(ruleServiceName);  //Statistics to be sent back to reciever
+		//Replace period in the map keys, using the names resolved when compiling the rules
+		Map<String, ServiceStatistics> statisticsMapWithoutPeriod = new HashMap<String, ServiceStatistics>();
+		for(Map.Entry<String, String> serviceNameEntry : compiledRules.serviceNameReplaceMap.entrySet()) {
+			statisticsMapWithoutPeriod.put(serviceNameEntry.getValue(), statisticsMap.get(serviceNameEntry.getKey()));
+		}
+		for(CompiledRule compiledRule: compiledRules.compiledRules) {
+			ServiceStatistics currentStatistics = statisticsMap.get(compiledRule.serviceName);  //Statistics to be sent back to reciever
 			try {
-				Serializable compiled = MVEL.compileExpression(replacedRule);
-				boolean mvelResult = ((Boolean) MVEL.executeExpression(compiled,statisticsMapWithoutPeriod)).booleanValue();
+				boolean mvelResult = ((Boolean) MVEL.executeExpression(compiledRule.compiled,statisticsMapWithoutPeriod)).booleanValue();
 				if(mvelResult==true) { //Rule is true
 					if(this.receivers!=null) {
 						for(MetricsEventReceiver receiver: this.receivers) {
-							receiver.handleMetricsEvent(rule, currentStatistics);
+							receiver.handleMetricsEvent(compiledRule.rule, currentStatistics);
 						}
 					}
 				}
 			}
 			catch(PropertyAccessException e) {
 				if(e.getCause() instanceof NullPointerException) {//Rule Failed probably due to property not found
-					LOGGER.warn("Property accessed by MVEL rule not found: "+rule);
+					LOGGER.warn("Property accessed by MVEL rule not found: "+compiledRule.rule);
 				} else {
-					LOGGER.error("Property not found/not public. Please check the rule. Make sure the rule is a boolean expression: "+rule);
+					LOGGER.error("Property not found/not public. Please check the rule. Make sure the rule is a boolean expression: "+compiledRule.rule);
 				}
 			}
 			catch(NullPointerException e) {
-				LOGGER.warn("Property accessed by MVEL rule not found: "+rule);
-			}
-			catch (CompileException e) {
-				LOGGER.error("CompileException while compiling MVEL rule: "+rule);
+				LOGGER.warn("Property accessed by MVEL rule not found: "+compiledRule.rule);
 			}
 			catch (Exception e) {
-				LOGGER.error("Invalid rule/Property not found. Please check the rule.  Make sure the rule is a boolean expression: "+rule);
+				LOGGER.error("Invalid rule/Property not found. Please check the rule.  Make sure the rule is a boolean expression: "+compiledRule.rule);
 			}
 		}
 	}
+	
+	/**
+	 * Holder of rules that are bound to deployed services and compiled. Instances are immutable
+	 */
+	private static final class CompiledRules {
+		/** The rules and the deployed service names that the rules were compiled against*/
+		private final List<String> rules;
+		private final Set<String> serviceNames;
+		/** Map holds the old service name to new service name, e.g. abc_1.0 to abc_1_0 */
+		private final Map<String, String> serviceNameReplaceMap = new HashMap<String, String>();
+		/** The successfully compiled rules*/
+		private final List<CompiledRule> compiledRules = new ArrayList<CompiledRule>();
+		
+		/**
+		 * Constructor for this class. Resolves the service accessed in each rule and compiles the rule
+		 * @param rules the rules to compile
+		 * @param serviceNames the names of deployed services
+		 */
+		private CompiledRules(List<String> rules, Set<String> serviceNames) {
+			this.rules = rules;
+			this.serviceNames = Collections.unmodifiableSet(new HashSet<String>(serviceNames));
+			for(String serviceName : this.serviceNames) {
+				this.serviceNameReplaceMap.put(serviceName, serviceName.replaceAll(PERIOD, PERIOD_REPLACEMENT));
+			}
+			for(String rule: rules) {
+				//Check the rule to get the Service Name
+				String ruleServiceName = null; //The serviceName accessed in the rule
+				String replacedRule = null;    //Rule with correct periods replaced
+				for(Map.Entry<String, String> serviceNameEntry : this.serviceNameReplaceMap.entrySet()) {
+					if(rule.contains(serviceNameEntry.getKey())) {
+						replacedRule = rule.replace(serviceNameEntry.getKey(), serviceNameEntry.getValue());
+						ruleServiceName = serviceNameEntry.getKey();
+					}
+				}
+				if(ruleServiceName == null) { //No existing service found in rule
+					LOGGER.warn("The rule: '"+rule+"' contains no currently deployed service");
+					LOGGER.debug("The deployed services are: ");
+					LOGGER.debug(this.serviceNames.toString());
+					continue;
+				}
+				try {
+					this.compiledRules.add(new CompiledRule(rule, ruleServiceName, MVEL.compileExpression(replacedRule)));
+				} catch (CompileException e) {
+					LOGGER.error("CompileException while compiling MVEL rule: "+rule);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A rule, the deployed service that it accesses and its compiled MVEL expression
+	 */
+	private static final class CompiledRule {
+		private final String rule;
+		private final String serviceName;
+		private final Serializable compiled;
+		private CompiledRule(String rule, String serviceName, Serializable compiled) {
+			this.rule = rule;
+			this.serviceName = serviceName;
+			this.compiled = compiled;
+		}
+	}
 
 	/** Getter/Setter Methods */
 	public List<String> getRules() {
@@ -154,6 +209,7 @@ public class MetricsEvaluatorImpl implements MetricsEvaluator {
 
 	public void setRules(List<String> rules) {
 		this.rules = rules;
+		this.compiledRules = null;
 	}
 
 	public List<MetricsEventReceiver> getNotificationReceiver() {
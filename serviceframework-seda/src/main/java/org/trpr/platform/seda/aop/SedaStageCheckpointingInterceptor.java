@@ -16,12 +16,18 @@
 
 package org.trpr.platform.seda.aop;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.trpr.platform.core.impl.persistence.PersistenceManagerProvider;
 import org.trpr.platform.core.spi.persistence.PersistenceManager;
 import org.trpr.platform.core.spi.persistence.PersistentEntity;
 import org.trpr.platform.seda.api.checkpointing.StageExecutionEvaluator;
+import org.trpr.platform.seda.impl.checkpointing.CheckpointWriter;
 import org.trpr.platform.service.model.common.platformservicerequest.PlatformServiceRequest;
 import org.trpr.platform.service.model.common.platformserviceresponse.PlatformServiceResponse;
 import org.trpr.platform.servicefw.ServiceContext;
@@ -37,10 +43,33 @@ import org.trpr.platform.servicefw.spi.ServiceResponse;
  * {@link PersistenceManagerProvider} only if the active {@link ServiceContainer}
  * requires checkpointing.
  * 
+ * The check-point data is persisted as per the configured {@link DurabilityMode}:
+ * <pre><ul>
+ * <li>{@link DurabilityMode#SYNC} - persisted on the stage execution thread before the stage returns. This is the default</li>
+ * <li>{@link DurabilityMode#ASYNC} - queued to a {@link CheckpointWriter} and persisted in batches in the background. Check-points queued within the 
+ * last flush interval may be lost if the process terminates abruptly. Check-points that fail to be persisted are retried up to the configured 
+ * check-point max retries with the next batch</li>
+ * <li>{@link DurabilityMode#GROUP_COMMIT} - queued to a {@link CheckpointWriter} and the stage waits until the check-points are persisted. Check-points
+ * of concurrently executing stages are persisted together in a batch. Check-points that fail to be persisted are not retried and the failure is
+ * propagated to the stages whose check-points were in the failed batch</li>
+ * </ul></pre>
+ * 
  * @author Regunath B
  * @version 1.0, 23/08/2012
  */
-public class SedaStageCheckpointingInterceptor<T,S,P extends PlatformServiceRequest,R extends PlatformServiceResponse> implements MethodInterceptor {
+public class SedaStageCheckpointingInterceptor<T,S,P extends PlatformServiceRequest,R extends PlatformServiceResponse> implements MethodInterceptor, InitializingBean, DisposableBean {
+	
+	/** The modes of persisting check-point data*/
+	public enum DurabilityMode {
+		SYNC, ASYNC, GROUP_COMMIT;
+	}
+	
+	/** Default values for check-point batch size, flush interval, max pending check-points and shutdown timeout*/
+	private static final int DEFAULT_CHECKPOINT_BATCH_SIZE = 500;
+	private static final long DEFAULT_CHECKPOINT_FLUSH_INTERVAL_MILLIS = 1000L;
+	private static final int DEFAULT_MAX_PENDING_CHECKPOINTS = 10000;
+	private static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 10000L;
+	private static final int DEFAULT_CHECKPOINT_MAX_RETRIES = 3;
 	
 	/** The StageExecutionEvaluator to use for getting stage execution check-point data*/
 	private StageExecutionEvaluator<T,S> stageExecutionEvaluator;
@@ -50,6 +79,44 @@ public class SedaStageCheckpointingInterceptor<T,S,P extends PlatformServiceRequ
 	
 	/** The PersistenceManagerProvider to use for persisting the stage execution check-point data*/
 	private PersistenceManager persistenceManager;
+	
+	/** The DurabilityMode for persisting check-point data*/
+	private DurabilityMode durabilityMode = DurabilityMode.SYNC;
+	
+	/** The check-point batch size, flush interval and max retries (used in ASYNC mode), max pending check-points and shutdown timeout*/
+	private int checkpointBatchSize = DEFAULT_CHECKPOINT_BATCH_SIZE;
+	private long checkpointFlushIntervalMillis = DEFAULT_CHECKPOINT_FLUSH_INTERVAL_MILLIS;
+	private int checkpointMaxRetries = DEFAULT_CHECKPOINT_MAX_RETRIES;
+	private int maxPendingCheckpoints = DEFAULT_MAX_PENDING_CHECKPOINTS;
+	private long shutdownTimeoutMillis = DEFAULT_SHUTDOWN_TIMEOUT_MILLIS;
+	
+	/** The CheckpointWriter, used in ASYNC and GROUP_COMMIT modes*/
+	private CheckpointWriter checkpointWriter;
+
+	/**
+	 * Interface method implementation. Creates and starts the CheckpointWriter if check-points are not persisted synchronously
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		if (this.durabilityMode != DurabilityMode.SYNC) {
+			// group commit writes check-points as soon as the writer is free, without waiting for a flush interval, and fails the waiting stages
+			// instead of retrying
+			boolean isGroupCommit = this.durabilityMode == DurabilityMode.GROUP_COMMIT;
+			this.checkpointWriter = new CheckpointWriter(this.persistenceManager, this.checkpointBatchSize, isGroupCommit ? 0 : this.checkpointFlushIntervalMillis, 
+					this.maxPendingCheckpoints, isGroupCommit ? 0 : this.checkpointMaxRetries);
+			this.checkpointWriter.start();
+		}
+	}
+
+	/**
+	 * Interface method implementation. Stops the CheckpointWriter, if any, after writing the queued check-points
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	public void destroy() throws Exception {
+		if (this.checkpointWriter != null) {
+			this.checkpointWriter.stop(this.shutdownTimeoutMillis);
+		}
+	}
 
 	/**
 	 * Interface method implementation. Persists check-point data if the currently active ServiceContainer requires check-pointing
@@ -66,7 +133,18 @@ public class SedaStageCheckpointingInterceptor<T,S,P extends PlatformServiceRequ
 			PersistentEntity[] entities = this.stageExecutionEvaluator.evaluateStageExecutionResponse(
 					(ServiceRequest<T>) arguments[0], (ServiceResponse<S>) returnValue);
 			if (null != entities) {
-				this.persistenceManager.makePersistent(entities);
+				if (this.checkpointWriter == null) {
+					this.persistenceManager.makePersistent(entities);
+				} else {
+					Future<Void> checkpointWrite = this.checkpointWriter.write(entities);
+					if (this.durabilityMode == DurabilityMode.GROUP_COMMIT) {
+						try {
+							checkpointWrite.get();
+						} catch (ExecutionException e) {
+							throw e.getCause();
+						}
+					}
+				}
 			}
 		}
 		return returnValue;
@@ -91,6 +169,42 @@ public class SedaStageCheckpointingInterceptor<T,S,P extends PlatformServiceRequ
 	public void setPersistenceManager(PersistenceManager persistenceManager) {
 		this.persistenceManager = persistenceManager;
 	}
+	public DurabilityMode getDurabilityMode() {
+		return this.durabilityMode;
+	}
+	public void setDurabilityMode(DurabilityMode durabilityMode) {
+		this.durabilityMode = durabilityMode;
+	}
+	public int getCheckpointBatchSize() {
+		return this.checkpointBatchSize;
+	}
+	public void setCheckpointBatchSize(int checkpointBatchSize) {
+		this.checkpointBatchSize = checkpointBatchSize;
+	}
+	public long getCheckpointFlushIntervalMillis() {
+		return this.checkpointFlushIntervalMillis;
+	}
+	public void setCheckpointFlushIntervalMillis(long checkpointFlushIntervalMillis) {
+		this.checkpointFlushIntervalMillis = checkpointFlushIntervalMillis;
+	}
+	public int getCheckpointMaxRetries() {
+		return this.checkpointMaxRetries;
+	}
+	public void setCheckpointMaxRetries(int checkpointMaxRetries) {
+		this.checkpointMaxRetries = checkpointMaxRetries;
+	}
+	public int getMaxPendingCheckpoints() {
+		return this.maxPendingCheckpoints;
+	}
+	public void setMaxPendingCheckpoints(int maxPendingCheckpoints) {
+		this.maxPendingCheckpoints = maxPendingCheckpoints;
+	}
+	public long getShutdownTimeoutMillis() {
+		return this.shutdownTimeoutMillis;
+	}
+	public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+		this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+	}
 	/** End Java bean style setter-getter methods*/
 	
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.trpr.platform.seda.impl.checkpointing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.trpr.platform.core.impl.logging.LogFactory;
+import org.trpr.platform.core.spi.logging.Logger;
+import org.trpr.platform.core.spi.persistence.PersistenceManager;
+import org.trpr.platform.core.spi.persistence.PersistentEntity;
+
+/**
+ * The <code>CheckpointWriter</code> is a write-behind writer of stage execution check-point data. Check-points are queued and persisted in batches by
+ * a background thread using {@link PersistenceManager#makePersistent(java.util.Collection)}. Check-points queued for an entity that has not been written 
+ * yet are coalesced i.e. only the latest check-point of an entity is written. Entities are identified by their type, entity name and {@link 
+ * PersistentEntity#getIdentifier()}; entities without an identifier are never coalesced.
+ * 
+ * A batch is written when it reaches the max batch size or when the flush interval has elapsed since the first check-point of the batch was queued.
+ * A flush interval of zero writes check-points as soon as the writer is free i.e. check-points queued while a batch is being written are group 
+ * committed in the next batch. Callers are blocked when the number of queued check-points reaches the max pending check-points.
+ * 
+ * Each call to {@link #write(PersistentEntity[])} gets its own Future, completed from the outcome of the batches that its check-points were 
+ * written in. Check-points of a batch that fails to be written are queued again, up to the max retries, and are written along with the next
+ * batch. The Future of a call completes exceptionally when one of its check-points has failed to be written max retries + 1 times.
+ * 
+ * @author agent
+ * @version 1.0, 17/10/2026
+ */
+public class CheckpointWriter {
+
+	/** The Logger for this class*/
+	private static final Logger LOGGER = LogFactory.getLogger(CheckpointWriter.class);
+
+	/** The PersistenceManager for writing check-points*/
+	private final PersistenceManager persistenceManager;
+
+	/** The max batch size, flush interval, max number of queued check-points and max retries of a failed check-point*/
+	private final int maxBatchSize;
+	private final long flushIntervalMillis;
+	private final int maxPendingCheckpoints;
+	private final int maxRetries;
+
+	/** Lock guarding the pending check-points and the state of this writer*/
+	private final Object lock = new Object();
+
+	/** The queued check-points keyed by entity*/
+	private Map<Object, PendingCheckpoint> pendingCheckpoints = new LinkedHashMap<Object, PendingCheckpoint>();
+
+	/** The writer thread and its state*/
+	private Thread writerThread;
+	private boolean running;
+
+	/**
+	 * Constructor for this class
+	 * @param persistenceManager the PersistenceManager for writing check-points
+	 * @param maxBatchSize the max number of check-points written in a batch
+	 * @param flushIntervalMillis the max time a check-point is queued before a batch is written, zero for writing as soon as possible
+	 * @param maxPendingCheckpoints the max number of queued check-points, beyond which callers are blocked
+	 * @param maxRetries the max number of times a check-point that failed to be written is queued again, zero for failing it right away
+	 */
+	public CheckpointWriter(PersistenceManager persistenceManager, int maxBatchSize, long flushIntervalMillis, int maxPendingCheckpoints, int maxRetries) {
+		this.persistenceManager = persistenceManager;
+		this.maxBatchSize = maxBatchSize;
+		this.flushIntervalMillis = flushIntervalMillis;
+		this.maxPendingCheckpoints = maxPendingCheckpoints;
+		this.maxRetries = maxRetries;
+	}
+
+	/**
+	 * Starts the writer thread
+	 */
+	public void start() {
+		synchronized(this.lock) {
+			if (this.running) {
+				return;
+			}
+			this.running = true;
+			this.writerThread = new Thread(new Runnable() {
+				public void run() {
+					writeCheckpoints();
+				}
+			}, "CheckpointWriter-" + this.hashCode());
+			this.writerThread.setDaemon(true);
+			this.writerThread.start();
+		}
+	}
+
+	/**
+	 * Stops the writer thread after writing all queued check-points, waiting at most the specified time for the queued check-points to be written
+	 * @param timeoutMillis the max time to wait for queued check-points to be written
+	 */
+	public void stop(long timeoutMillis) {
+		Thread thread = null;
+		synchronized(this.lock) {
+			this.running = false;
+			this.lock.notifyAll();
+			thread = this.writerThread;
+		}
+		if (thread != null) {
+			try {
+				thread.join(timeoutMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (thread.isAlive()) {
+				LOGGER.warn("Timed out waiting for queued check-points to be written. Pending check-points : " + this.getPendingCheckpointCount());
+			}
+		}
+	}
+
+	/**
+	 * Queues the specified check-point entities for writing. Writes the entities on the caller thread if this writer is not running.
+	 * @param entities the check-point entities
+	 * @return Future that completes when the entities (or later check-points of the same entities) have been written, or completes exceptionally 
+	 * if writing them failed
+	 */
+	public Future<Void> write(PersistentEntity[] entities) {
+		synchronized(this.lock) {
+			if (this.running) {
+				while (this.running && this.pendingCheckpoints.size() >= this.maxPendingCheckpoints) {
+					try {
+						this.lock.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+				boolean isFirstInBatch = this.pendingCheckpoints.isEmpty();
+				CheckpointWrite write = new CheckpointWrite();
+				for (PersistentEntity entity : entities) {
+					if (entity != null) {
+						Object key = this.getCheckpointKey(entity);
+						PendingCheckpoint checkpoint = this.pendingCheckpoints.get(key);
+						if (checkpoint == null) {
+							checkpoint = new PendingCheckpoint(key);
+							this.pendingCheckpoints.put(key, checkpoint);
+						}
+						// the latest check-point of the entity supersedes the queued one, and is written on behalf of all its callers
+						checkpoint.entity = entity;
+						checkpoint.failedAttempts = 0;
+						checkpoint.addWrite(write);
+					}
+				}
+				if (write.remaining == 0) {
+					write.future.complete(null);
+				}
+				// wake up the writer to start the flush interval for a new batch or to write a full batch
+				if (isFirstInBatch || this.pendingCheckpoints.size() >= this.maxBatchSize) {
+					this.lock.notifyAll();
+				}
+				return write.future;
+			}
+		}
+		CompletableFuture<Void> write = new CompletableFuture<Void>();
+		try {
+			this.persistenceManager.makePersistent(entities);
+			write.complete(null);
+		} catch (RuntimeException e) {
+			write.completeExceptionally(e);
+		}
+		return write;
+	}
+
+	/**
+	 * Returns the number of queued check-points
+	 * @return number of check-points queued for writing
+	 */
+	public int getPendingCheckpointCount() {
+		synchronized(this.lock) {
+			return this.pendingCheckpoints.size();
+		}
+	}
+
+	/**
+	 * Writes batches of queued check-points until this writer is stopped and all queued check-points have been written
+	 */
+	private void writeCheckpoints() {
+		while (true) {
+			List<PendingCheckpoint> batch = null;
+			synchronized(this.lock) {
+				try {
+					while (this.running && this.pendingCheckpoints.isEmpty()) {
+						this.lock.wait();
+					}
+					long deadline = System.currentTimeMillis() + this.flushIntervalMillis;
+					long remaining = this.flushIntervalMillis;
+					while (this.running && this.pendingCheckpoints.size() < this.maxBatchSize && remaining > 0) {
+						this.lock.wait(remaining);
+						remaining = deadline - System.currentTimeMillis();
+					}
+				} catch (InterruptedException e) {
+					this.running = false; // write out the queued check-points and exit
+				}
+				if (this.pendingCheckpoints.isEmpty()) {
+					if (!this.running) {
+						return;
+					}
+					continue;
+				}
+				batch = new ArrayList<PendingCheckpoint>(this.pendingCheckpoints.values());
+				this.pendingCheckpoints = new LinkedHashMap<Object, PendingCheckpoint>();
+				this.lock.notifyAll(); // wake up callers blocked on a full queue
+			}
+			List<PendingCheckpoint> failedCheckpoints = new ArrayList<PendingCheckpoint>();
+			for (int i = 0; i < batch.size(); i += this.maxBatchSize) {
+				List<PendingCheckpoint> checkpoints = batch.subList(i, Math.min(i + this.maxBatchSize, batch.size()));
+				List<PersistentEntity> entities = new ArrayList<PersistentEntity>(checkpoints.size());
+				for (PendingCheckpoint checkpoint : checkpoints) {
+					entities.add(checkpoint.entity);
+				}
+				try {
+					this.persistenceManager.makePersistent(entities);
+				} catch (Exception e) {
+					LOGGER.error("Error writing batch of " + checkpoints.size() + " check-points : " + e.getMessage(), e);
+					for (PendingCheckpoint checkpoint : checkpoints) {
+						checkpoint.failedAttempts++;
+						if (checkpoint.failedAttempts > this.maxRetries) {
+							checkpoint.fail(e);
+						} else {
+							failedCheckpoints.add(checkpoint);
+						}
+					}
+					continue;
+				}
+				for (PendingCheckpoint checkpoint : checkpoints) {
+					checkpoint.complete();
+				}
+			}
+			if (!failedCheckpoints.isEmpty()) {
+				this.requeue(failedCheckpoints);
+			}
+		}
+	}
+
+	/**
+	 * Queues the specified check-points that failed to be written ahead of the queued check-points. A failed check-point is dropped in favour of a 
+	 * check-point of the same entity queued in the meantime, which is then written on behalf of the callers of both.
+	 */
+	private void requeue(List<PendingCheckpoint> failedCheckpoints) {
+		synchronized(this.lock) {
+			LOGGER.warn("Queueing " + failedCheckpoints.size() + " check-points again for writing, after failure to write them");
+			Map<Object, PendingCheckpoint> checkpoints = new LinkedHashMap<Object, PendingCheckpoint>();
+			for (PendingCheckpoint failedCheckpoint : failedCheckpoints) {
+				PendingCheckpoint laterCheckpoint = this.pendingCheckpoints.get(failedCheckpoint.key);
+				if (laterCheckpoint == null) {
+					checkpoints.put(failedCheckpoint.key, failedCheckpoint);
+				} else {
+					for (CheckpointWrite write : failedCheckpoint.writes) {
+						laterCheckpoint.addWrite(write);
+						write.remaining--; // the write no longer waits on the failed check-point
+					}
+				}
+			}
+			checkpoints.putAll(this.pendingCheckpoints);
+			this.pendingCheckpoints = checkpoints;
+		}
+	}
+
+	/**
+	 * Helper method to get the key by which check-points of the specified entity are coalesced
+	 */
+	private Object getCheckpointKey(PersistentEntity entity) {
+		if (entity.getIdentifier() == null) {
+			return entity;
+		}
+		return Arrays.asList(entity.getClass().getName(), entity.getEntityName(), entity.getIdentifier().toString());
+	}
+
+	/**
+	 * A call to {@link CheckpointWriter#write(PersistentEntity[])} : the Future returned to the caller and the number of its check-points yet to 
+	 * be written. Modified under the writer's lock until the check-points are handed to the writer thread, and by the writer thread thereafter.
+	 */
+	private static class CheckpointWrite {
+		final CompletableFuture<Void> future = new CompletableFuture<Void>();
+		int remaining;
+	}
+
+	/**
+	 * A queued check-point : the latest check-point entity for its key, the calls waiting for it to be written and its count of failed attempts
+	 */
+	private static class PendingCheckpoint {
+		final Object key;
+		final List<CheckpointWrite> writes = new ArrayList<CheckpointWrite>(1);
+		PersistentEntity entity;
+		int failedAttempts;
+		PendingCheckpoint(Object key) {
+			this.key = key;
+		}
+		/** Adds the specified write, if not added already*/
+		void addWrite(CheckpointWrite write) {
+			if (!this.writes.contains(write)) {
+				this.writes.add(write);
+				write.remaining++;
+			}
+		}
+		/** Completes the writes that were waiting only on this check-point*/
+		void complete() {
+			for (CheckpointWrite write : this.writes) {
+				if (--write.remaining == 0) {
+					write.future.complete(null);
+				}
+			}
+		}
+		/** Fails all writes waiting on this check-point*/
+		void fail(Exception e) {
+			for (CheckpointWrite write : this.writes) {
+				write.future.completeExceptionally(e);
+			}
+		}
+	}
+}
@@ -15,13 +15,27 @@
  */
 package org.trpr.platform.seda.impl.mule.router;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.mule.DefaultMuleMessage;
+import org.mule.RequestContext;
 import org.mule.api.MessagingException;
+import org.mule.api.MuleEvent;
 import org.mule.api.MuleException;
 import org.mule.api.MuleMessage;
 import org.mule.api.MuleSession;
 import org.mule.api.endpoint.OutboundEndpoint;
 import org.mule.api.routing.CouldNotRouteOutboundMessageException;
 import org.mule.routing.outbound.AbstractOutboundRouter;
+import org.mule.transaction.TransactionCoordination;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.trpr.platform.core.impl.logging.LogFactory;
 import org.trpr.platform.core.spi.logging.Logger;
 import org.trpr.platform.servicefw.common.ServiceFrameworkConstants;
@@ -32,6 +46,13 @@ import org.trpr.platform.servicefw.spi.ServiceResponse;
  * The <code>ErrorResponseFilteringRouter</code> class is a sub-type of the Mule AbstractOutboundRouter that filters out service responses that 
  * return error status in the response. 
  * 
+ * Successful responses are routed to the outbound endpoints one after another by default. When {@link #isParallelRouting()} is turned on, the
+ * responses are routed to all outbound endpoints concurrently using a pool of threads of this router, and the caller waits up to 
+ * {@link #getParallelRoutingTimeoutMillis()} for all of them to complete. Each endpoint is sent a copy of the message in this mode, but the payload
+ * i.e. the service response is shared by all endpoints. Parallel routing must therefore be turned on only if the endpoints, and their transformers, 
+ * do not modify the service response. Responses are routed sequentially when a Mule transaction is active, as the transaction is bound to the 
+ * calling thread. The thread pool of this router is shut down when the router is disposed.
+ * 
  * @author Regunath B
  * @version 1.0, 23/08/2012
  */
@@ -43,6 +64,21 @@ public class ErrorResponseFilteringRouter<T> extends AbstractOutboundRouter {
 	 */
 	private static final Logger LOGGER = LogFactory.getLogger(ErrorResponseFilteringRouter.class);
 	
+	/** Default values for the parallel routing thread pool size and timeout*/
+	private static final int DEFAULT_PARALLEL_ROUTING_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+	private static final long DEFAULT_PARALLEL_ROUTING_TIMEOUT_MILLIS = 30000L;
+	
+	/** The outbound endpoints, cached as an array. Reset whenever the endpoints are changed*/
+	private volatile OutboundEndpoint[] endpointsArray;
+	
+	/** Parallel routing flag, thread pool size and timeout*/
+	private boolean parallelRouting;
+	private int parallelRoutingPoolSize = DEFAULT_PARALLEL_ROUTING_POOL_SIZE;
+	private long parallelRoutingTimeoutMillis = DEFAULT_PARALLEL_ROUTING_TIMEOUT_MILLIS;
+	
+	/** The thread pool for parallel routing, created lazily*/
+	private volatile ThreadPoolExecutor parallelRoutingExecutor;
+	
 	/**
 	 * Overriden superclass method. Returns true only if the message payload is of type {@link ServiceResponseImpl}
 	 * @see org.mule.api.routing.OutboundRouter#isMatch(org.mule.api.MuleMessage)
@@ -59,18 +95,24 @@ public class ErrorResponseFilteringRouter<T> extends AbstractOutboundRouter {
 	@SuppressWarnings("unchecked")
 	public MuleMessage route(MuleMessage message, MuleSession session) throws MessagingException {
 		MuleMessage result = null;
-		for (OutboundEndpoint endPoint : (OutboundEndpoint[])getEndpoints().toArray(new OutboundEndpoint[0])) {
-			ServiceResponseImpl<T> serviceResponse = (ServiceResponseImpl<T>)message.getPayload();
+		OutboundEndpoint[] endPoints = this.getEndpointsArray();
+		ServiceResponseImpl<T> serviceResponse = (ServiceResponseImpl<T>)message.getPayload();
+		if (!serviceResponse.getStatusCode().equalsIgnoreCase(String.valueOf(ServiceFrameworkConstants.SUCCESS_STATUS_CODE))) {
+			if (endPoints.length > 0) {
+				// just log the fact that the router is not forwarding the message
+				LOGGER.debug("Error response not being forwarded through for service response of type : " + serviceResponse.getResponseData().getClass().getName());
+			}
+			return result;
+		}
+		if (this.parallelRouting && endPoints.length > 1 && TransactionCoordination.getInstance().getTransaction() == null) {
+			return this.routeInParallel(message, session, endPoints);
+		}
+		for (OutboundEndpoint endPoint : endPoints) {
 			try {
-				if (serviceResponse.getStatusCode().equalsIgnoreCase(String.valueOf(ServiceFrameworkConstants.SUCCESS_STATUS_CODE))) {
-					if (endPoint.isSynchronous()) {
-						result = send(session, message, endPoint);
-					} else {
-						dispatch(session, message, endPoint);
-					}
+				if (endPoint.isSynchronous()) {
+					result = send(session, message, endPoint);
 				} else {
-					// just log the fact that the router is not forwarding the message
-					LOGGER.debug("Error response not being forwarded through for service response of type : " + serviceResponse.getResponseData().getClass().getName());
+					dispatch(session, message, endPoint);
 				}
 		    } catch (MuleException e) {
 		        throw new CouldNotRouteOutboundMessageException(message, endPoint, e);
@@ -78,5 +120,160 @@ public class ErrorResponseFilteringRouter<T> extends AbstractOutboundRouter {
 		}
 	    return result; // return the last successfully executed response
 	 }
+	
+	/**
+	 * Overriden superclass method. Resets the cached endpoints array
+	 * @see org.mule.routing.outbound.AbstractOutboundRouter#setEndpoints(java.util.List)
+	 */
+	@SuppressWarnings("rawtypes")
+	public void setEndpoints(List endpoints) {
+		super.setEndpoints(endpoints);
+		this.endpointsArray = null;
+	}
+
+	/**
+	 * Overriden superclass method. Resets the cached endpoints array
+	 * @see org.mule.routing.outbound.AbstractOutboundRouter#addEndpoint(org.mule.api.endpoint.OutboundEndpoint)
+	 */
+	public void addEndpoint(OutboundEndpoint endpoint) {
+		super.addEndpoint(endpoint);
+		this.endpointsArray = null;
+	}
+
+	/**
+	 * Overriden superclass method. Resets the cached endpoints array
+	 * @see org.mule.routing.outbound.AbstractOutboundRouter#removeEndpoint(org.mule.api.endpoint.OutboundEndpoint)
+	 */
+	public boolean removeEndpoint(OutboundEndpoint endpoint) {
+		boolean removed = super.removeEndpoint(endpoint);
+		this.endpointsArray = null;
+		return removed;
+	}
+	
+	/**
+	 * Overriden superclass method. Shuts down the parallel routing thread pool, if one was created
+	 * @see org.mule.routing.AbstractRouter#dispose()
+	 */
+	public void dispose() {
+		synchronized(this) {
+			if (this.parallelRoutingExecutor != null) {
+				this.parallelRoutingExecutor.shutdownNow();
+				this.parallelRoutingExecutor = null;
+			}
+		}
+		super.dispose();
+	}
+	
+	/** Setter/Getter methods*/
+	public boolean isParallelRouting() {
+		return this.parallelRouting;
+	}
+	public void setParallelRouting(boolean parallelRouting) {
+		this.parallelRouting = parallelRouting;
+	}
+	public int getParallelRoutingPoolSize() {
+		return this.parallelRoutingPoolSize;
+	}
+	public void setParallelRoutingPoolSize(int parallelRoutingPoolSize) {
+		this.parallelRoutingPoolSize = parallelRoutingPoolSize;
+	}
+	public long getParallelRoutingTimeoutMillis() {
+		return this.parallelRoutingTimeoutMillis;
+	}
+	public void setParallelRoutingTimeoutMillis(long parallelRoutingTimeoutMillis) {
+		this.parallelRoutingTimeoutMillis = parallelRoutingTimeoutMillis;
+	}
+	/** End Setter/Getter methods*/
+	
+	/**
+	 * Helper method to route copies of the specified message to all the specified endpoints concurrently. Waits for all sends and dispatches to 
+	 * complete and returns the response of the last synchronous endpoint, in the order of endpoints, as done when routing sequentially.
+	 */
+	private MuleMessage routeInParallel(MuleMessage message, final MuleSession session, OutboundEndpoint[] endPoints) throws MessagingException {
+		final MuleEvent event = RequestContext.getEvent();
+		@SuppressWarnings("unchecked")
+		Future<MuleMessage>[] routings = new Future[endPoints.length];
+		for (int i = 0; i < endPoints.length; i++) {
+			final OutboundEndpoint endPoint = endPoints[i];
+			final MuleMessage endPointMessage = new DefaultMuleMessage(message.getPayload(), message);
+			routings[i] = this.getParallelRoutingExecutor().submit(new Callable<MuleMessage>() {
+				public MuleMessage call() throws Exception {
+					RequestContext.setEvent(event); // the Mule request context is thread local
+					try {
+						if (endPoint.isSynchronous()) {
+							return send(session, endPointMessage, endPoint);
+						}
+						dispatch(session, endPointMessage, endPoint);
+						return null;
+					} finally {
+						RequestContext.clear();
+					}
+				}
+			});
+		}
+		MuleMessage result = null;
+		long deadline = System.currentTimeMillis() + this.parallelRoutingTimeoutMillis;
+		for (int i = 0; i < endPoints.length; i++) {
+			try {
+				MuleMessage endPointResult = routings[i].get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				if (endPoints[i].isSynchronous()) {
+					result = endPointResult;
+				}
+			} catch (ExecutionException e) {
+				this.cancelRoutings(routings);
+				throw new CouldNotRouteOutboundMessageException(message, endPoints[i], e.getCause());
+			} catch (TimeoutException e) {
+				this.cancelRoutings(routings);
+				throw new CouldNotRouteOutboundMessageException(message, endPoints[i], e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.cancelRoutings(routings);
+				throw new CouldNotRouteOutboundMessageException(message, endPoints[i], e);
+			}
+		}
+		return result; // return the last successfully executed response
+	}
+	
+	/**
+	 * Helper method to cancel the specified routings, if not completed already
+	 */
+	private void cancelRoutings(Future<MuleMessage>[] routings) {
+		for (Future<MuleMessage> routing : routings) {
+			routing.cancel(true);
+		}
+	}
+	
+	/**
+	 * Helper method to get the outbound endpoints as an array, creating the array only if the endpoints have changed 
+	 */
+	private OutboundEndpoint[] getEndpointsArray() {
+		OutboundEndpoint[] endPoints = this.endpointsArray;
+		if (endPoints == null) {
+			endPoints = (OutboundEndpoint[])getEndpoints().toArray(new OutboundEndpoint[0]);
+			this.endpointsArray = endPoints;
+		}
+		return endPoints;
+	}
+	
+	/**
+	 * Helper method to get the parallel routing thread pool, creating it if required. Threads of the pool are daemon threads and time out when idle.
+	 */
+	private ThreadPoolExecutor getParallelRoutingExecutor() {
+		ThreadPoolExecutor executor = this.parallelRoutingExecutor;
+		if (executor == null) {
+			synchronized(this) {
+				executor = this.parallelRoutingExecutor;
+				if (executor == null) {
+					CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ErrorResponseFilteringRouter-");
+					threadFactory.setDaemon(true);
+					executor = new ThreadPoolExecutor(this.parallelRoutingPoolSize, this.parallelRoutingPoolSize, 60L, TimeUnit.SECONDS,
+							new LinkedBlockingQueue<Runnable>(), threadFactory);
+					executor.allowCoreThreadTimeOut(true);
+					this.parallelRoutingExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
 
 }
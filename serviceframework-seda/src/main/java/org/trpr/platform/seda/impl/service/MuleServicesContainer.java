@@ -17,17 +17,19 @@
 package org.trpr.platform.seda.impl.service;
 
 import java.io.File;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.mule.api.MuleContext;
 import org.mule.api.MuleException;
 import org.mule.api.registry.Registry;
 import org.mule.context.DefaultMuleContextFactory;
-import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.AbstractApplicationContext;
 import org.springframework.context.support.FileSystemXmlApplicationContext;
-import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.trpr.platform.core.PlatformException;
 import org.trpr.platform.core.impl.logging.LogFactory;
@@ -43,9 +45,21 @@ import org.trpr.platform.servicefw.spi.ServiceContainer;
 import org.trpr.platform.servicefw.spi.event.ServiceEventProducer;
 
 /**
- * The <code>MuleServicesContainer</code> class is a sub-type of the SpringServicesContainer implementation that creates a MuleContext using
+ * The <code>MuleServicesContainer</code> class is a sub-type of the SpringServicesContainer implementation that creates MuleContexts using
  * services loaded by the parent container.
  * 
+ * By default, all service beans are loaded into a single application context and all Mule configurations are loaded into a single MuleContext 
+ * that uses it as parent. Dynamic loading/reloading of service beans is not supported in this mode.
+ * 
+ * If project isolation is enabled via {@link #setProjectIsolationEnabled(boolean)}, services are loaded per project i.e. per folder containing a {@link ServiceFrameworkConstants#SPRING_SERVICES_CONFIG} file, into an application
+ * context and classloader of the project's own as done by {@link SpringServicesContainer}. A {@link SedaFrameworkConstants#MULE_CONFIG} file found in 
+ * the same folder is loaded into a MuleContext of the project's own that uses the project's application context as parent. Mule configurations
+ * that are not part of a project are loaded into a shared MuleContext that uses the common service beans context as parent. 
+ * 
+ * Projects may therefore be reloaded in isolation using {@link #loadComponent(Resource)} - only the endpoints of the reloaded project are stopped 
+ * while the project is reloaded. Note that Mule configurations may refer to beans of their own project and the common service beans only, and
+ * that in-memory (e.g. vm://) endpoints are not shared across projects.
+ * 
  * @see SpringServicesContainer
  * @author Regunath B
  * @version 1.0, 23/08/2012
@@ -62,20 +76,37 @@ public class MuleServicesContainer extends SpringServicesContainer {
 	private static final String SERVICE_EVENT_PRODUCER = "serviceEventProducer";
 	
 	/**
-	 * The Spring application context that would hold all service declarations from all services
+	 * Indicates if projects are loaded into application contexts and MuleContexts of their own. Defaults to false i.e. shared contexts
+	 */
+	private boolean projectIsolationEnabled;
+	
+	/**
+	 * The Spring application context that would hold all service declarations from all services, when project isolation is not enabled
+	 */
+	private AbstractApplicationContext servicesContext;
+	
+	/**
+	 * The ServiceConfigInfo of the loaded projects, keyed by project folder path
 	 */
-    private AbstractApplicationContext servicesContext;	
+	private Map<String, ServiceConfigInfo> projectServiceConfigs = new LinkedHashMap<String, ServiceConfigInfo>();
 	
 	/**
-	 * The MuleContext instance
+	 * The MuleContext instances of the loaded projects, keyed by project folder path
+	 */
+	private Map<String, MuleContext> projectMuleContexts = new LinkedHashMap<String, MuleContext>();
+	
+	/**
+	 * The shared MuleContext instance for all Mule configurations or, if project isolation is enabled, for Mule configurations that are not part 
+	 * of a project
 	 */
 	private MuleContext muleContext;
 
 	/**
-	 * Overriden superclass method. Calls super.init() and also initializes the MuleContext
+	 * Overriden superclass method. Calls super.init() and also initializes the shared and, if project isolation is enabled, the per project 
+	 * MuleContext instances
 	 * @see SpringServicesContainer#init()
 	 */
-	public void init() throws PlatformException {		
+	public synchronized void init() throws PlatformException {		
 		super.init();		
 		LinkedList<String> fileNamesList = new LinkedList<String>();
 		// add the common Mule beans file
@@ -83,34 +114,29 @@ public class MuleServicesContainer extends SpringServicesContainer {
 		// add the Mule configurations containing Mule service definitions
 		File[] serviceBeansFiles = FileLocator.findFiles(SedaFrameworkConstants.MULE_CONFIG);					
 		for (File serviceBeansFile : serviceBeansFiles) {
-			fileNamesList.add(serviceBeansFile.getAbsolutePath());			
+			if (!this.projectServiceConfigs.containsKey(getProjectPath(serviceBeansFile))) {
+				fileNamesList.add(serviceBeansFile.getAbsolutePath());
+			}
 		}
-		String[] muleConfigPaths = (String[])fileNamesList.toArray(new String[0]);		
-		try {
-			SpringXmlConfigurationBuilder springConfigBuilder = new SpringXmlConfigurationBuilder(muleConfigPaths);
-			springConfigBuilder.setUseDefaultConfigResource(false); // turn off using the default config resource as we have a custom config defined in SedaFrameworkConstants.COMMON_MULE_CONFIG
-			springConfigBuilder.setParentContext(this.servicesContext);
-			this.muleContext = new DefaultMuleContextFactory().createMuleContext(springConfigBuilder);
-			this.muleContext.start();
-		} catch (Exception e) {
-			LOGGER.error("Fatal error loading Mule configurations : " + e.getMessage(),e);
-			throw new PlatformException("Fatal error loading Mule configurations : " + e.getMessage(),e);
+		this.muleContext = this.createMuleContext(fileNamesList.toArray(new String[0]), 
+				this.projectIsolationEnabled ? SpringServicesContainer.getCommonServiceBeansContext() : this.servicesContext);
+		for (String projectPath : this.projectServiceConfigs.keySet()) {
+			this.loadProjectMuleContext(projectPath);
 		}
 	}
 	
 	/**
-	 * Overriden superclass method. Closes the MuleContext and then invokes {@link #resetContainer()}
+	 * Overriden superclass method. Closes the MuleContext instances and then invokes {@link #resetContainer()}
 	 * @see SpringServicesContainer#destroy()
 	 */
-	public void destroy() throws PlatformException {
-		try {
-			this.muleContext.stop();
-		} catch (MuleException e) {
-			LOGGER.error("Fatal error stopping Mule : " + e.getMessage(),e);
-			throw new PlatformException("Fatal error stopping Mule : " + e.getMessage(),e);
+	public synchronized void destroy() throws PlatformException {
+		for (String projectPath : new LinkedList<String>(this.projectMuleContexts.keySet())) {
+			this.unloadProjectMuleContext(projectPath);
 		}
-		this.muleContext.dispose();
+		this.disposeMuleContext(this.muleContext);
 		this.muleContext = null;
+		this.servicesContext = null;
+		this.projectServiceConfigs.clear();
 		// now invoke superclass clean up code
 		this.resetContainer();
 	}
@@ -139,30 +165,144 @@ public class MuleServicesContainer extends SpringServicesContainer {
 	}	
 
 	/**
-	 * Overriden superclass method. Throws an operation not supported exception to indicate that dynamic loading/reloading of service beans is not supported
+	 * Overriden superclass method. Reloads the project of the specified {@link ServiceFrameworkConstants#SPRING_SERVICES_CONFIG} or 
+	 * {@link SedaFrameworkConstants#MULE_CONFIG} file. The project's MuleContext is stopped first so that its endpoints stop receiving messages 
+	 * and in-flight messages are processed. The project's services are then reloaded (only if a services file is specified) and a new MuleContext 
+	 * is started for the project. Other projects are not affected.
+	 * Throws an operation not supported exception if project isolation is not enabled.
 	 * @see org.trpr.platform.servicefw.impl.spring.SpringServicesContainer#loadComponent(org.springframework.core.io.Resource)
 	 */
-	public void loadComponent(Resource resource) {
-		throw new UnsupportedOperationException("Dynamic loading/realoding of service beans is not supported by : " + this.getClass().getName());
+	public synchronized void loadComponent(Resource resource) {
+		if (!this.projectIsolationEnabled) {
+			throw new UnsupportedOperationException("Dynamic loading/realoding of service beans is not supported by : " + this.getClass().getName() + 
+					" unless project isolation is enabled");
+		}
+		if (FileSystemResource.class.isAssignableFrom(resource.getClass()) && 
+				((FileSystemResource)resource).getFilename().equalsIgnoreCase(SedaFrameworkConstants.MULE_CONFIG)) {
+			String projectPath = getProjectPath(((FileSystemResource)resource).getFile());
+			if (!this.projectServiceConfigs.containsKey(projectPath)) {
+				throw new UnsupportedOperationException("Mule configurations can be reloaded only for projects containing : " + 
+						ServiceFrameworkConstants.SPRING_SERVICES_CONFIG + ". Specified resource is : " + resource.toString());
+			}
+			LOGGER.info("Reloading Mule configuration of project : " + projectPath);
+			this.unloadProjectMuleContext(projectPath);
+			this.loadProjectMuleContext(projectPath);
+			return;
+		}
+		// validate the resource before stopping anything
+		if (!FileSystemResource.class.isAssignableFrom(resource.getClass()) || 
+				!((FileSystemResource)resource).getFilename().equalsIgnoreCase(ServiceFrameworkConstants.SPRING_SERVICES_CONFIG)) {
+			throw new UnsupportedOperationException("Services can be loaded only from files by name : " + ServiceFrameworkConstants.SPRING_SERVICES_CONFIG + 
+					" or " + SedaFrameworkConstants.MULE_CONFIG + ". Specified resource is : " + resource.toString());
+		}
+		String projectPath = getProjectPath(((FileSystemResource)resource).getFile());
+		LOGGER.info("Reloading services and Mule configuration of project : " + projectPath);
+		this.unloadProjectMuleContext(projectPath);
+		super.loadComponent(resource); // reloads the project's services and registers these via #registerServiceContext
+		this.loadProjectMuleContext(projectPath);
 	}
 
 	/**
-	 * Overriden superclass method. Creates a single application context containing all the service beans
-	 * @throws PlatformException
+	 * Overriden superclass method. Loads service contexts per project if project isolation is enabled. Creates a single application context 
+	 * containing all the service beans otherwise
+	 * @see org.trpr.platform.servicefw.impl.spring.SpringServicesContainer#loadServiceContexts()
 	 */
 	protected void loadServiceContexts() throws PlatformException {
+		if (this.projectIsolationEnabled) {
+			super.loadServiceContexts();
+			return;
+		}
 		// locate and load the individual service bean XML files using the common services beans context as parent
 		File[] serviceBeansFiles = FileLocator.findFiles(ServiceFrameworkConstants.SPRING_SERVICES_CONFIG);	
 		List<String> fileNamesList = new LinkedList<String>();		
 		for (File serviceBeansFile : serviceBeansFiles) {
 			// add the "file:" prefix to file names to get around strange behavior of FileSystemXmlApplicationContext that converts absolute path to relative path
-            fileNamesList.add(ServiceConfigInfo.FILE_PREFIX + serviceBeansFile.getAbsolutePath());		            
+			fileNamesList.add(ServiceConfigInfo.FILE_PREFIX + serviceBeansFile.getAbsolutePath());		            
 		}	
 		this.servicesContext = new FileSystemXmlApplicationContext((String[])fileNamesList.toArray(new String[0]),
 				SpringServicesContainer.getCommonServiceBeansContext());
 		super.registerServiceContext(new ServiceConfigInfo(new File(ServiceFrameworkConstants.SPRING_SERVICES_CONFIG), null, this.servicesContext));
 	}
 
+	/**
+	 * Overriden superclass method. Registers the specified ServiceConfigInfo and also records it as a project, if it is loaded from a project's
+	 * {@link ServiceFrameworkConstants#SPRING_SERVICES_CONFIG} file 
+	 * @see org.trpr.platform.servicefw.impl.spring.SpringServicesContainer#registerServiceContext(org.trpr.platform.servicefw.impl.spring.ServiceConfigInfo)
+	 */
+	protected void registerServiceContext(ServiceConfigInfo serviceConfigInfo) {
+		super.registerServiceContext(serviceConfigInfo);
+		File serviceConfigXML = serviceConfigInfo.getServiceConfigXML();
+		if (serviceConfigXML.getParentFile() != null && serviceConfigXML.getName().equalsIgnoreCase(ServiceFrameworkConstants.SPRING_SERVICES_CONFIG)) {
+			this.projectServiceConfigs.put(getProjectPath(serviceConfigXML), serviceConfigInfo);
+		}
+	}
+	
+	/**
+	 * Helper method to create and start a MuleContext for the project at the specified path, if the project contains a Mule configuration. 
+	 * The project's service classloader is used as the thread context classloader when loading the configuration.
+	 */
+	private void loadProjectMuleContext(String projectPath) {
+		File muleConfig = new File(projectPath, SedaFrameworkConstants.MULE_CONFIG);
+		if (!muleConfig.exists()) {
+			return;
+		}
+		ApplicationContext serviceContext = this.projectServiceConfigs.get(projectPath).getServiceContext();
+		ClassLoader existingTCCL = Thread.currentThread().getContextClassLoader();
+		Thread.currentThread().setContextClassLoader(serviceContext.getClassLoader());
+		try {
+			this.projectMuleContexts.put(projectPath, this.createMuleContext(
+					new String[]{SedaFrameworkConstants.COMMON_MULE_CONFIG, muleConfig.getAbsolutePath()}, serviceContext));
+		} finally {
+			Thread.currentThread().setContextClassLoader(existingTCCL);
+		}
+	}
+	
+	/**
+	 * Helper method to stop and dispose the MuleContext, if any, of the project at the specified path
+	 */
+	private void unloadProjectMuleContext(String projectPath) {
+		this.disposeMuleContext(this.projectMuleContexts.remove(projectPath));
+	}
+
+	/**
+	 * Helper method to create and start a MuleContext from the specified Mule configurations
+	 */
+	private MuleContext createMuleContext(String[] muleConfigPaths, ApplicationContext parentContext) {
+		try {
+			SpringXmlConfigurationBuilder springConfigBuilder = new SpringXmlConfigurationBuilder(muleConfigPaths);
+			springConfigBuilder.setUseDefaultConfigResource(false); // turn off using the default config resource as we have a custom config defined in SedaFrameworkConstants.COMMON_MULE_CONFIG
+			springConfigBuilder.setParentContext(parentContext);
+			MuleContext context = new DefaultMuleContextFactory().createMuleContext(springConfigBuilder);
+			context.start();
+			return context;
+		} catch (Exception e) {
+			LOGGER.error("Fatal error loading Mule configurations : " + e.getMessage(),e);
+			throw new PlatformException("Fatal error loading Mule configurations : " + e.getMessage(),e);
+		}
+	}
+	
+	/**
+	 * Helper method to stop and dispose the specified MuleContext, if not null 
+	 */
+	private void disposeMuleContext(MuleContext context) {
+		if (context == null) {
+			return;
+		}
+		try {
+			context.stop();
+		} catch (MuleException e) {
+			LOGGER.error("Fatal error stopping Mule : " + e.getMessage(),e);
+			throw new PlatformException("Fatal error stopping Mule : " + e.getMessage(),e);
+		}
+		context.dispose();
+	}
+	
+	/**
+	 * Helper method to get the project path i.e. the absolute path of the folder containing the specified configuration file
+	 */
+	private String getProjectPath(File configFile) {
+		return configFile.getAbsoluteFile().getParentFile().getAbsolutePath();
+	}
 	
 	/**
 	 * Helper method to get the ServiceEventProducer from the Mule SpringRegistry configured as mule-config.xml
@@ -171,4 +311,13 @@ public class MuleServicesContainer extends SpringServicesContainer {
 		return (ServiceEventProducer)((Registry)this.muleContext.getRegistry()).lookupObject(SERVICE_EVENT_PRODUCER);
 	}
 	
+	/** Setter/Getter methods*/
+	public boolean isProjectIsolationEnabled() {
+		return this.projectIsolationEnabled;
+	}
+	public void setProjectIsolationEnabled(boolean projectIsolationEnabled) {
+		this.projectIsolationEnabled = projectIsolationEnabled;
+	}
+	/** End setter/getter methods */
+	
 }
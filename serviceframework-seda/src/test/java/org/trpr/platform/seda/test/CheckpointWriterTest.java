@@ -0,0 +1,195 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trpr.platform.seda.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.trpr.platform.core.impl.persistence.AbstractPersistentEntity;
+import org.trpr.platform.core.spi.persistence.Identifier;
+import org.trpr.platform.core.spi.persistence.PersistenceException;
+import org.trpr.platform.core.spi.persistence.PersistenceManager;
+import org.trpr.platform.core.spi.persistence.PersistentEntity;
+import org.trpr.platform.seda.impl.checkpointing.CheckpointWriter;
+
+/**
+ * Test class for org.trpr.platform.seda.impl.checkpointing.CheckpointWriter
+ * 
+ * @author agent
+ */
+public class CheckpointWriterTest {
+
+	/** The writer under test*/
+	private CheckpointWriter writer;
+	
+	/** The batches of entities written by the PersistenceManager*/
+	private List<List<PersistentEntity>> writtenBatches = Collections.synchronizedList(new LinkedList<List<PersistentEntity>>());
+	
+	/** The entities for which writes fail, and the number of writes that fail regardless of entities*/
+	private List<PersistentEntity> failingEntities = Collections.synchronizedList(new LinkedList<PersistentEntity>());
+	private AtomicInteger failingWrites = new AtomicInteger();
+	
+	/** Latch that the first write waits on, if set*/
+	private volatile CountDownLatch firstWriteLatch;
+	
+	@After
+	public void tearDown() throws Exception {
+		if (this.writer != null) {
+			this.writer.stop(5000);
+		}
+	}
+	
+	@Test
+	public void testCheckpointsOfAnEntityAreCoalesced() throws Exception {
+		this.writer = this.createWriter(100, 60000L, 0);
+		TestEntity first = new TestEntity("1"), second = new TestEntity("1"), other = new TestEntity("2");
+		Future<Void> firstWrite = this.writer.write(new PersistentEntity[]{first});
+		Future<Void> secondWrite = this.writer.write(new PersistentEntity[]{second, other});
+		this.writer.stop(5000);
+		Assert.assertEquals(1, this.writtenBatches.size());
+		Assert.assertEquals(2, this.writtenBatches.get(0).size());
+		Assert.assertSame(second, this.writtenBatches.get(0).get(0));
+		Assert.assertSame(other, this.writtenBatches.get(0).get(1));
+		firstWrite.get(1, TimeUnit.SECONDS);
+		secondWrite.get(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testFailedBatchFailsOnlyItsCallers() throws Exception {
+		this.writer = this.createWriter(1, 0L, 0);
+		CountDownLatch release = new CountDownLatch(1);
+		this.firstWriteLatch = release;
+		Future<Void> blockingWrite = this.writer.write(new PersistentEntity[]{new TestEntity("0")});
+		// wait for the writer to pick up the first check-point, so that the next two are written in sub-batches of the same batch
+		while (this.writer.getPendingCheckpointCount() > 0) {
+			Thread.sleep(5);
+		}
+		TestEntity failing = new TestEntity("1");
+		this.failingEntities.add(failing);
+		Future<Void> failedWrite = this.writer.write(new PersistentEntity[]{failing});
+		Future<Void> succeededWrite = this.writer.write(new PersistentEntity[]{new TestEntity("2")});
+		release.countDown();
+		blockingWrite.get(5, TimeUnit.SECONDS);
+		succeededWrite.get(5, TimeUnit.SECONDS);
+		try {
+			failedWrite.get(5, TimeUnit.SECONDS);
+			Assert.fail("Write of failing check-point must fail");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof PersistenceException);
+		}
+	}
+
+	@Test
+	public void testFailedCheckpointsAreQueuedAgain() throws Exception {
+		this.writer = this.createWriter(10, 0L, 2);
+		this.failingWrites.set(2);
+		TestEntity entity = new TestEntity("1");
+		this.writer.write(new PersistentEntity[]{entity}).get(5, TimeUnit.SECONDS);
+		Assert.assertEquals(3, this.writtenBatches.size());
+		Assert.assertSame(entity, this.writtenBatches.get(2).get(0));
+	}
+
+	@Test
+	public void testCheckpointFailsAfterMaxRetries() throws Exception {
+		this.writer = this.createWriter(10, 0L, 1);
+		TestEntity entity = new TestEntity("1");
+		this.failingEntities.add(entity);
+		try {
+			this.writer.write(new PersistentEntity[]{entity}).get(5, TimeUnit.SECONDS);
+			Assert.fail("Write of failing check-point must fail");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof PersistenceException);
+		}
+		Assert.assertEquals(2, this.writtenBatches.size());
+		Assert.assertEquals(0, this.writer.getPendingCheckpointCount());
+	}
+	
+	@Test
+	public void testRetriedCheckpointIsSupersededByLaterCheckpoint() throws Exception {
+		this.writer = this.createWriter(1, 0L, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		this.firstWriteLatch = release;
+		this.failingWrites.set(1);
+		TestEntity first = new TestEntity("1"), second = new TestEntity("1");
+		Future<Void> firstWrite = this.writer.write(new PersistentEntity[]{first});
+		while (this.writer.getPendingCheckpointCount() > 0) {
+			Thread.sleep(5);
+		}
+		Future<Void> secondWrite = this.writer.write(new PersistentEntity[]{second});
+		release.countDown();
+		firstWrite.get(5, TimeUnit.SECONDS);
+		secondWrite.get(5, TimeUnit.SECONDS);
+		Assert.assertEquals(2, this.writtenBatches.size());
+		Assert.assertSame(second, this.writtenBatches.get(1).get(0));
+	}
+	
+	/**
+	 * Creates and starts a writer using a PersistenceManager that records the written batches
+	 */
+	private CheckpointWriter createWriter(int maxBatchSize, long flushIntervalMillis, int maxRetries) {
+		PersistenceManager persistenceManager = (PersistenceManager)Proxy.newProxyInstance(this.getClass().getClassLoader(), 
+				new Class<?>[]{PersistenceManager.class}, new InvocationHandler() {
+			@SuppressWarnings("unchecked")
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (!method.getName().equals("makePersistent") || !(args[0] instanceof Collection)) {
+					throw new UnsupportedOperationException(method.getName());
+				}
+				CountDownLatch latch = firstWriteLatch;
+				if (latch != null) {
+					firstWriteLatch = null;
+					latch.await(5, TimeUnit.SECONDS);
+				}
+				Collection<PersistentEntity> entities = (Collection<PersistentEntity>)args[0];
+				writtenBatches.add(new ArrayList<PersistentEntity>(entities));
+				if (failingWrites.getAndDecrement() > 0 || !Collections.disjoint(entities, failingEntities)) {
+					throw new PersistenceException("Failed writing : " + entities.size() + " entities");
+				}
+				return entities;
+			}
+		});
+		CheckpointWriter writer = new CheckpointWriter(persistenceManager, maxBatchSize, flushIntervalMillis, 100, maxRetries);
+		writer.start();
+		return writer;
+	}
+	
+	/** Check-point entity for tests*/
+	private static class TestEntity extends AbstractPersistentEntity {
+		TestEntity(final String id) {
+			super("TestEntity", new Identifier() {
+				public boolean equals(Identifier anotherIdentifier) {
+					return anotherIdentifier != null && id.equals(anotherIdentifier.toString());
+				}
+				public String toString() {
+					return id;
+				}
+			});
+		}
+	}
+}